@@ -0,0 +1,71 @@
+package org.deeplearning4j;
+
+import org.datavec.api.records.reader.RecordReader;
+import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
+import org.datavec.api.records.reader.impl.csv.ColumnarCSVRecordReader;
+import org.datavec.api.split.FileSplit;
+import org.deeplearning4j.datasets.datavec.RecordReaderDataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV to DataSet throughput (epochs per second) for a 100 column numeric CSV file (99 features + class index,
+ * 20,000 rows), comparing CSVRecordReader (one Text writable per value) against ColumnarCSVRecordReader (primitive
+ * columns, converted with one bulk copy per array) through RecordReaderDataSetIterator.
+ */
+public class ColumnarCsv {
+
+    @State(Scope.Benchmark)
+    public static class SetupState {
+        @Param({"csv", "columnar"})
+        public String reader;
+
+        @Param({"32", "256"})
+        public int batchSize;
+
+        public File file;
+        public DataSetIterator iter;
+
+        @Setup
+        public void setup() throws Exception {
+            file = File.createTempFile("columnarcsv", ".csv");
+            Random r = new Random(12345);
+            try (BufferedWriter w = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                for (int i = 0; i < 20000; i++) {
+                    for (int j = 0; j < 99; j++) {
+                        w.write(String.valueOf(r.nextFloat()));
+                        w.write(',');
+                    }
+                    w.write(String.valueOf(r.nextInt(10)));
+                    w.newLine();
+                }
+            }
+            RecordReader rr = "csv".equals(reader) ? new CSVRecordReader() : new ColumnarCSVRecordReader();
+            rr.initialize(new FileSplit(file));
+            iter = new RecordReaderDataSetIterator(rr, batchSize, 99, 10);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public long epoch(SetupState state) {
+        state.iter.reset();
+        long n = 0;
+        while (state.iter.hasNext()) {
+            n += state.iter.next().numExamples();
+        }
+        return n;
+    }
+}
@@ -0,0 +1,86 @@
+package org.deeplearning4j;
+
+import org.datavec.api.transform.MathOp;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.columnar.ColumnarTransformProcess;
+import org.datavec.api.transform.condition.ConditionOp;
+import org.datavec.api.transform.condition.column.DoubleColumnCondition;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.doubletransform.StandardizeNormalizer;
+import org.datavec.api.writable.DoubleWritable;
+import org.datavec.api.writable.Text;
+import org.datavec.api.writable.Writable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput (batches per second) of a typical TransformProcess - normalization of 20 double columns, a filter and
+ * categorical to one-hot - executed record by record with TransformProcess.execute, and executed on whole batches with
+ * a ColumnarTransformProcess.
+ */
+public class ColumnarTransform {
+
+    @State(Scope.Benchmark)
+    public static class SetupState {
+        @Param({"1024"})
+        public int batchSize;
+
+        public TransformProcess tp;
+        public ColumnarTransformProcess ctp;
+        public List<List<Writable>> batch;
+
+        @Setup
+        public void setup() {
+            Schema.Builder sb = new Schema.Builder();
+            for (int i = 0; i < 20; i++) {
+                sb.addColumnDouble("d" + i);
+            }
+            Schema schema = sb.addColumnCategorical("label", "a", "b", "c", "d", "e").build();
+
+            TransformProcess.Builder b = new TransformProcess.Builder(schema);
+            for (int i = 0; i < 20; i++) {
+                b.transform(new StandardizeNormalizer("d" + i, 0.5, 0.3))
+                        .doubleMathOp("d" + i, MathOp.ScalarMax, -3.0)
+                        .doubleMathOp("d" + i, MathOp.ScalarMin, 3.0);
+            }
+            tp = b.filter(new ConditionFilter(new DoubleColumnCondition("d0", ConditionOp.GreaterThan, 2.5)))
+                    .categoricalToOneHot("label")
+                    .build();
+            ctp = ColumnarTransformProcess.compile(tp);
+
+            Random r = new Random(12345);
+            String[] labels = {"a", "b", "c", "d", "e"};
+            batch = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                List<Writable> l = new ArrayList<>(21);
+                for (int j = 0; j < 20; j++) {
+                    l.add(new DoubleWritable(r.nextDouble()));
+                }
+                l.add(new Text(labels[r.nextInt(labels.length)]));
+                batch.add(l);
+            }
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public List<List<Writable>> rowWise(SetupState state) {
+        List<List<Writable>> out = new ArrayList<>(state.batch.size());
+        for (List<Writable> l : state.batch) {
+            List<Writable> r = state.tp.execute(l);
+            if (r != null) {
+                out.add(r);
+            }
+        }
+        return out;
+    }
+
+    @Benchmark @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public List<List<Writable>> columnar(SetupState state) {
+        return state.ctp.execute(state.batch);
+    }
+}
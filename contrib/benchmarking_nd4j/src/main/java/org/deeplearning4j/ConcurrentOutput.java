@@ -0,0 +1,95 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.SubsamplingLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inference throughput of a single MultiLayerNetwork instance shared by 1 to 32 threads, with concurrent output
+ * (per thread replicas sharing the parameters) and without (synchronized output), for a dense and a CNN model.
+ */
+public class ConcurrentOutput {
+
+    @State(Scope.Benchmark)
+    public static class SetupState {
+        @Param({"dense", "cnn"})
+        public String model;
+
+        @Param({"true", "false"})
+        public boolean concurrent;
+
+        public MultiLayerNetwork net;
+        public INDArray input;
+
+        @Setup
+        public void setup() {
+            if ("dense".equals(model)) {
+                MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).activation(Activation.RELU).list()
+                        .layer(new DenseLayer.Builder().nIn(784).nOut(512).build())
+                        .layer(new DenseLayer.Builder().nOut(512).build())
+                        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(10).activation(Activation.SOFTMAX).build())
+                        .setInputType(InputType.feedForward(784))
+                        .build();
+                net = new MultiLayerNetwork(conf);
+                input = Nd4j.rand(DataType.FLOAT, 16, 784);
+            } else {
+                MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).activation(Activation.RELU).list()
+                        .layer(new ConvolutionLayer.Builder().kernelSize(5, 5).nOut(20).build())
+                        .layer(new SubsamplingLayer.Builder().kernelSize(2, 2).stride(2, 2).build())
+                        .layer(new ConvolutionLayer.Builder().kernelSize(5, 5).nOut(50).build())
+                        .layer(new SubsamplingLayer.Builder().kernelSize(2, 2).stride(2, 2).build())
+                        .layer(new DenseLayer.Builder().nOut(500).build())
+                        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(10).activation(Activation.SOFTMAX).build())
+                        .setInputType(InputType.convolutionalFlat(28, 28, 1))
+                        .build();
+                net = new MultiLayerNetwork(conf);
+                input = Nd4j.rand(DataType.FLOAT, 16, 784);
+            }
+            net.init();
+            net.setConcurrentOutput(concurrent);
+        }
+    }
+
+    @Benchmark @Threads(1) @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public INDArray threads01(SetupState state) {
+        return state.net.output(state.input);
+    }
+
+    @Benchmark @Threads(2) @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public INDArray threads02(SetupState state) {
+        return state.net.output(state.input);
+    }
+
+    @Benchmark @Threads(4) @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public INDArray threads04(SetupState state) {
+        return state.net.output(state.input);
+    }
+
+    @Benchmark @Threads(8) @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public INDArray threads08(SetupState state) {
+        return state.net.output(state.input);
+    }
+
+    @Benchmark @Threads(16) @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public INDArray threads16(SetupState state) {
+        return state.net.output(state.input);
+    }
+
+    @Benchmark @Threads(32) @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public INDArray threads32(SetupState state) {
+        return state.net.output(state.input);
+    }
+}
@@ -0,0 +1,78 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.config.DL4JSystemProperties;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LSTM inference and training throughput with the fused lstmLayer op (FusedLSTMHelper) vs. the built-in per time step
+ * implementation in LSTMHelpers, for sequence lengths from 10 to 1000.
+ */
+public class FusedLSTM {
+
+    @State(Scope.Benchmark)
+    public static class SetupState {
+        @Param({"10", "100", "1000"})
+        public int seqLength;
+
+        @Param({"true", "false"})
+        public boolean fused;
+
+        public MultiLayerNetwork net;
+        public INDArray features;
+        public INDArray labels;
+
+        @Setup
+        public void setup() {
+            //FusedLSTMHelper is created via HelperUtils, so is only used when helpers are enabled
+            System.setProperty(DL4JSystemProperties.DISABLE_HELPER_PROPERTY, String.valueOf(!fused));
+            net = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .dataType(DataType.FLOAT)
+                    .updater(new Adam(1e-3))
+                    .list()
+                    .layer(new LSTM.Builder().nOut(128).activation(Activation.TANH).build())
+                    .layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(10).activation(Activation.SOFTMAX).build())
+                    .setInputType(InputType.recurrent(64))
+                    .build());
+            net.init();
+            System.clearProperty(DL4JSystemProperties.DISABLE_HELPER_PROPERTY);
+
+            features = Nd4j.rand(DataType.FLOAT, 16, 64, seqLength);
+            labels = Nd4j.zeros(DataType.FLOAT, 16, 10, seqLength);
+            for (int i = 0; i < 16; i++) {
+                for (int t = 0; t < seqLength; t++) {
+                    labels.putScalar(new int[]{i, (i + t) % 10, t}, 1.0);
+                }
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            net.close();
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public INDArray output(SetupState state) {
+        return state.net.output(state.features);
+    }
+
+    @Benchmark @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public MultiLayerNetwork fit(SetupState state) {
+        state.net.fit(state.features, state.labels);
+        return state.net;
+    }
+}
@@ -0,0 +1,83 @@
+package org.deeplearning4j;
+
+import org.apache.commons.io.FileUtils;
+import org.datavec.api.io.labels.ParentPathLabelGenerator;
+import org.datavec.api.split.FileSplit;
+import org.datavec.api.writable.Writable;
+import org.datavec.image.recordreader.ImageRecordReader;
+import org.datavec.image.transform.FlipImageTransform;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Image decoding throughput (images per second) for ImageRecordReader with 1, 4 and 16 decode threads, loading batches
+ * of 64 224x224x3 images with random flips. Set the "dir" parameter to a local directory of JPEGs (one subdirectory per
+ * label); if left empty, 256 synthetic 640x480 JPEGs are generated in a temporary directory.
+ */
+public class ImageDecoding {
+
+    private static final int BATCH_SIZE = 64;
+
+    @State(Scope.Benchmark)
+    public static class SetupState {
+        @Param({""})
+        public String dir;
+
+        @Param({"1", "4", "16"})
+        public int numThreads;
+
+        public File tempDir;
+        public ImageRecordReader rr;
+
+        @Setup
+        public void setup() throws Exception {
+            File root;
+            if (dir == null || dir.isEmpty()) {
+                tempDir = Files.createTempDirectory("ImageDecoding").toFile();
+                Random r = new Random(12345);
+                for (int i = 0; i < 256; i++) {
+                    File labelDir = new File(tempDir, "label" + (i % 4));
+                    labelDir.mkdirs();
+                    BufferedImage img = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+                    for (int y = 0; y < 480; y++) {
+                        for (int x = 0; x < 640; x++) {
+                            img.setRGB(x, y, ((x * 255 / 640) << 16) | ((y * 255 / 480) << 8) | r.nextInt(256));
+                        }
+                    }
+                    ImageIO.write(img, "jpg", new File(labelDir, i + ".jpg"));
+                }
+                root = tempDir;
+            } else {
+                root = new File(dir);
+            }
+
+            rr = new ImageRecordReader(224, 224, 3, new ParentPathLabelGenerator(), new FlipImageTransform(new Random(12345)));
+            rr.setAugmentationSeed(12345L);
+            rr.setNumDecodeThreads(numThreads);
+            rr.initialize(new FileSplit(root, new String[]{"jpg", "jpeg", "JPG", "JPEG"}, new Random(12345)));
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            rr.close();
+            if (tempDir != null) {
+                FileUtils.deleteQuietly(tempDir);
+            }
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS) @OperationsPerInvocation(BATCH_SIZE)
+    public List<List<Writable>> decode(SetupState state) {
+        if (!state.rr.hasNext()) {
+            state.rr.reset();
+        }
+        return state.rr.next(BATCH_SIZE);
+    }
+}
@@ -0,0 +1,76 @@
+package org.deeplearning4j;
+
+import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
+import org.datavec.api.records.reader.impl.csv.ParallelCSVRecordReader;
+import org.datavec.api.split.FileSplit;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV parsing throughput (full passes over a ~100MB, 20 column file per second) for CSVRecordReader
+ * (numThreads = 0) vs. ParallelCSVRecordReader with 1 to 16 threads, with and without memory-mapped I/O and quoted
+ * newline handling.
+ */
+public class ParallelCsv {
+
+    @State(Scope.Benchmark)
+    public static class SetupState {
+        @Param({"0", "1", "2", "4", "8", "16"})
+        public int numThreads;
+
+        @Param({"false", "true"})
+        public boolean memoryMapped;
+
+        @Param({"true", "false"})
+        public boolean quotedNewlines;
+
+        public File file;
+        public CSVRecordReader rr;
+
+        @Setup
+        public void setup() throws Exception {
+            file = File.createTempFile("parallelcsv", ".csv");
+            Random r = new Random(12345);
+            try (BufferedWriter w = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                for (int i = 0; i < 500_000; i++) {
+                    for (int j = 0; j < 20; j++) {
+                        if (j > 0)
+                            w.write(',');
+                        w.write(String.valueOf(r.nextFloat()));
+                    }
+                    w.newLine();
+                }
+            }
+            if (numThreads == 0) {
+                rr = new CSVRecordReader();
+            } else {
+                rr = new ParallelCSVRecordReader.Builder().numThreads(numThreads).memoryMapped(memoryMapped)
+                        .quotedNewlines(quotedNewlines).build();
+            }
+            rr.initialize(new FileSplit(file));
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            rr.close();
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public long readAll(SetupState state) {
+        state.rr.reset();
+        long n = 0;
+        while (state.rr.hasNext()) {
+            n += state.rr.next().size();
+        }
+        return n;
+    }
+}
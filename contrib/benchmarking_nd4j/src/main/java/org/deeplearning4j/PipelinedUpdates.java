@@ -0,0 +1,88 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training throughput (fit calls per second) with and without pipelined updates - i.e., the updater for each layer
+ * applied on a background thread while backprop continues for the earlier layers - for a 24 layer dense network and a
+ * 4 layer LSTM stack, using Adam.
+ */
+public class PipelinedUpdates {
+
+    @State(Scope.Benchmark)
+    public static class SetupState {
+        @Param({"dense24", "lstm4"})
+        public String model;
+
+        @Param({"true", "false"})
+        public boolean pipelined;
+
+        public MultiLayerNetwork net;
+        public INDArray features;
+        public INDArray labels;
+
+        @Setup
+        public void setup() {
+            NeuralNetConfiguration.ListBuilder b = new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .dataType(DataType.FLOAT)
+                    .updater(new Adam(1e-3))
+                    .activation(Activation.TANH)
+                    .list()
+                    .pipelinedUpdates(pipelined);
+            if ("dense24".equals(model)) {
+                for (int i = 0; i < 24; i++) {
+                    b.layer(new DenseLayer.Builder().nOut(512).build());
+                }
+                b.layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(10).activation(Activation.SOFTMAX).build())
+                        .setInputType(InputType.feedForward(512));
+                features = Nd4j.rand(DataType.FLOAT, 32, 512);
+                labels = Nd4j.zeros(DataType.FLOAT, 32, 10);
+                for (int i = 0; i < 32; i++) {
+                    labels.putScalar(i, i % 10, 1.0);
+                }
+            } else {
+                for (int i = 0; i < 4; i++) {
+                    b.layer(new LSTM.Builder().nOut(256).build());
+                }
+                b.layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(10).activation(Activation.SOFTMAX).build())
+                        .setInputType(InputType.recurrent(128));
+                features = Nd4j.rand(DataType.FLOAT, 32, 128, 50);
+                labels = Nd4j.zeros(DataType.FLOAT, 32, 10, 50);
+                for (int i = 0; i < 32; i++) {
+                    for (int t = 0; t < 50; t++) {
+                        labels.putScalar(new int[]{i, (i + t) % 10, t}, 1.0);
+                    }
+                }
+            }
+            net = new MultiLayerNetwork(b.build());
+            net.init();
+        }
+
+        @TearDown
+        public void tearDown() {
+            net.close();
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public MultiLayerNetwork fit(SetupState state) {
+        state.net.fit(state.features, state.labels);
+        return state.net;
+    }
+}
@@ -0,0 +1,85 @@
+package org.nd4j.samediff;
+
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.optimize.GraphOptimizer;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.Conv2DConfig;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.PaddingMode;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SameDiff inference latency before and after operator fusion ({@link GraphOptimizer#inferenceOptimizations()}), on a
+ * small ResNet style graph: conv + bias + batch norm + relu stem, 4 residual blocks, global average pooling and a
+ * 2 layer dense head. Setup checks that the optimized graph has fewer ops than the original.
+ */
+public class GraphFusion {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"false", "true"})
+        public boolean fused;
+
+        public SameDiff sd;
+        public Map<String, INDArray> placeholders;
+
+        @Setup
+        public void setup() {
+            SameDiff original = resnetGraph();
+            if (fused) {
+                sd = GraphOptimizer.optimize(original, Collections.singletonList("out"), GraphOptimizer.inferenceOptimizations());
+                Preconditions.checkState(sd.getOps().size() < original.getOps().size(), "No ops were fused: %s ops before " +
+                        "fusion, %s after fusion", original.getOps().size(), sd.getOps().size());
+            } else {
+                sd = original;
+            }
+            placeholders = Collections.singletonMap("in", Nd4j.rand(DataType.FLOAT, 8, 3, 32, 32));
+            //Warm up the session and memory manager
+            sd.output(placeholders, "out");
+        }
+
+        private static SameDiff resnetGraph() {
+            SameDiff sd = SameDiff.create();
+            SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 3, 32, 32);
+            SDVariable x = convBnRelu(sd, "stem", in, 3, 16, true);
+            for (int block = 0; block < 4; block++) {
+                SDVariable h = convBnRelu(sd, "b" + block + "_0", x, 16, 16, true);
+                h = convBnRelu(sd, "b" + block + "_1", h, 16, 16, false);
+                x = sd.nn().relu(h.add(x), 0.0);
+            }
+            SDVariable pooled = x.mean(2, 3);
+            SDVariable w0 = sd.var("dense_w0", Nd4j.rand(DataType.FLOAT, 16, 64).subi(0.5).muli(0.1));
+            SDVariable b0 = sd.var("dense_b0", Nd4j.rand(DataType.FLOAT, 64));
+            SDVariable w1 = sd.var("dense_w1", Nd4j.rand(DataType.FLOAT, 64, 10).subi(0.5).muli(0.1));
+            SDVariable b1 = sd.var("dense_b1", Nd4j.rand(DataType.FLOAT, 10));
+            SDVariable dense = sd.nn().relu(pooled.mmul(w0).add(b0), 0.0);
+            sd.nn().softmax("out", dense.mmul(w1).add(b1));
+            return sd;
+        }
+
+        private static SDVariable convBnRelu(SameDiff sd, String name, SDVariable in, int nIn, int nOut, boolean relu) {
+            SDVariable w = sd.var(name + "_w", Nd4j.rand(DataType.FLOAT, 3, 3, nIn, nOut).subi(0.5).muli(0.2));
+            SDVariable b = sd.var(name + "_b", Nd4j.rand(DataType.FLOAT, nOut));
+            SDVariable mean = sd.constant(name + "_mean", Nd4j.rand(DataType.FLOAT, nOut));
+            SDVariable var = sd.constant(name + "_var", Nd4j.rand(DataType.FLOAT, nOut).addi(0.5));
+            SDVariable gamma = sd.constant(name + "_gamma", Nd4j.rand(DataType.FLOAT, nOut));
+            SDVariable beta = sd.constant(name + "_beta", Nd4j.rand(DataType.FLOAT, nOut));
+            Conv2DConfig c = Conv2DConfig.builder().kH(3).kW(3).paddingMode(PaddingMode.SAME).build();
+            SDVariable conv = sd.nn().biasAdd(sd.cnn().conv2d(in, w, c), b, true);
+            SDVariable bn = sd.nn().batchNorm(conv, mean, var, gamma, beta, 1e-5, 1);
+            return relu ? sd.nn().relu(bn, 0.0) : bn;
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public INDArray output(SetupState state) {
+        return state.sd.output(state.placeholders, "out").get("out");
+    }
+}
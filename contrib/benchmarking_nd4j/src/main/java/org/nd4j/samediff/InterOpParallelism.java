@@ -0,0 +1,79 @@
+package org.nd4j.samediff;
+
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.Conv2DConfig;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.PaddingMode;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SameDiff inference latency with and without inter-op parallelism, on a wide (Inception style) graph:
+ * 4 stacked blocks of 4 parallel convolution branches each.<br>
+ * An imported model can be used instead by setting the system properties "samediff.model" (path to a SameDiff
+ * FlatBuffers file), "samediff.input", "samediff.output" and "samediff.shape" (comma separated input shape)
+ */
+public class InterOpParallelism {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"1", "2", "4", "8"})
+        public int interOpThreads;
+
+        public SameDiff sd;
+        public Map<String, INDArray> placeholders;
+        public String output;
+
+        @Setup
+        public void setup() {
+            String model = System.getProperty("samediff.model");
+            if (model != null) {
+                sd = SameDiff.load(new File(model), false);
+                output = System.getProperty("samediff.output");
+                String[] split = System.getProperty("samediff.shape").split(",");
+                long[] shape = new long[split.length];
+                for (int i = 0; i < split.length; i++) {
+                    shape[i] = Long.parseLong(split[i].trim());
+                }
+                String in = System.getProperty("samediff.input");
+                placeholders = Collections.singletonMap(in, Nd4j.rand(sd.getVariable(in).dataType(), shape));
+            } else {
+                sd = wideGraph();
+                output = "out";
+                placeholders = Collections.singletonMap("in", Nd4j.rand(DataType.FLOAT, 1, 32, 28, 28));
+            }
+            sd.setInterOpThreads(interOpThreads);
+            //Warm up the session and memory manager
+            sd.output(placeholders, output);
+        }
+
+        private static SameDiff wideGraph() {
+            SameDiff sd = SameDiff.create();
+            SDVariable x = sd.placeHolder("in", DataType.FLOAT, -1, 32, 28, 28);
+            int[] kernels = {1, 3, 5, 3};
+            for (int block = 0; block < 4; block++) {
+                SDVariable[] branches = new SDVariable[kernels.length];
+                for (int b = 0; b < kernels.length; b++) {
+                    int k = kernels[b];
+                    SDVariable w = sd.var("w_" + block + "_" + b, Nd4j.rand(DataType.FLOAT, k, k, 32, 8).muli(0.1));
+                    Conv2DConfig c = Conv2DConfig.builder().kH(k).kW(k).paddingMode(PaddingMode.SAME).build();
+                    branches[b] = sd.nn().relu(sd.cnn().conv2d(x, w, c), 0.0);
+                }
+                x = sd.concat(block == 3 ? "out" : null, 1, branches);
+            }
+            return sd;
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public INDArray output(SetupState state) {
+        return state.sd.output(state.placeholders, state.output).get(state.output);
+    }
+}
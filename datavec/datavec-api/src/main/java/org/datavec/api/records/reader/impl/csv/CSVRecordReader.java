@@ -175,12 +175,7 @@ public class CSVRecordReader extends LineRecordReader {
     }
 
     protected List<Writable> parseLine(String line) {
-        String[] split;
-        try {
-            split = csvParser.parseLine(line);
-        } catch(IOException e) {
-            throw new RuntimeException(e);
-        }
+        String[] split = splitLine(line);
         List<Writable> ret = new ArrayList<>();
         for (String s : split) {
             ret.add(new Text(s));
@@ -188,6 +183,17 @@ public class CSVRecordReader extends LineRecordReader {
         return ret;
     }
 
+    /**
+     * Split the line into its values, using the configured delimiter and quote characters
+     */
+    protected String[] splitLine(String line) {
+        try {
+            return csvParser.parseLine(line);
+        } catch(IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     protected String readStringLine(){
         Preconditions.checkState(initialized, "RecordReader has not been initialized before use");
         Text t = (Text) super.next().iterator().next();
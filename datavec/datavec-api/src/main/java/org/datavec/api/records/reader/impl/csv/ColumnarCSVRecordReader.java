@@ -0,0 +1,168 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.records.reader.impl.csv;
+
+import org.datavec.api.transform.ColumnType;
+import org.datavec.api.transform.metadata.CategoricalMetaData;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A CSV record reader that returns {@link ColumnarRecordBatch} instances from {@link #next(int)}: values are parsed
+ * directly into primitive columns, without creating a {@link org.datavec.api.writable.Text} object per value.
+ * RecordReaderDataSetIterator and RecordReaderMultiDataSetIterator convert these batches to features and labels with
+ * one bulk copy per array.<br>
+ * Column types are taken from the (optional) schema:<br>
+ * - Integer, Long, Float and Double columns are parsed into the corresponding primitive column<br>
+ * - Categorical columns are stored as the index of the state, as per the state names in the schema<br>
+ * - String columns are dictionary encoded, with codes assigned in the order values are first seen by this reader<br>
+ * If no schema is provided, all columns are parsed as floats.<br>
+ * Single records ({@link #next()}) are returned with the same typed Writables as the batch columns.
+ */
+public class ColumnarCSVRecordReader extends CSVRecordReader {
+
+    private final Schema schema;
+    private StringColumn.Dictionary[] dictionaries;
+
+    /**
+     * Create a reader with no lines skipped, default delimiter and all columns parsed as floats
+     */
+    public ColumnarCSVRecordReader() {
+        this(0, DEFAULT_DELIMITER, null);
+    }
+
+    /**
+     * @param schema Schema for the column types. May be null, in which case all columns are parsed as floats
+     */
+    public ColumnarCSVRecordReader(Schema schema) {
+        this(0, DEFAULT_DELIMITER, schema);
+    }
+
+    /**
+     * @param skipNumLines the number of lines to skip
+     * @param delimiter    the delimiter
+     * @param schema       Schema for the column types. May be null, in which case all columns are parsed as floats
+     */
+    public ColumnarCSVRecordReader(int skipNumLines, char delimiter, Schema schema) {
+        super(skipNumLines, delimiter);
+        if (schema != null) {
+            for (int i = 0; i < schema.numColumns(); i++) {
+                switch (schema.getType(i)) {
+                    case Integer:
+                    case Long:
+                    case Float:
+                    case Double:
+                    case Categorical:
+                    case String:
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Column type " + schema.getType(i) + " (column " + i + ", \"" +
+                                schema.getName(i) + "\") is not supported by ColumnarCSVRecordReader");
+                }
+            }
+        }
+        this.schema = schema;
+    }
+
+    @Override
+    public List<List<Writable>> next(int num) {
+        BatchColumn[] columns = null;
+        int recordsRead = 0;
+        while (hasNext() && recordsRead++ < num) {
+            String[] split = splitLine(readStringLine());
+            if (columns == null) {
+                columns = createColumns(split.length, Math.min(num, 10000));
+            } else if (split.length != columns.length) {
+                throw new IllegalStateException("Invalid number of columns: expected " + columns.length + ", got " +
+                        split.length + " for line " + (lineIndex - 1));
+            }
+            for (int j = 0; j < split.length; j++) {
+                columns[j].append(split[j]);
+            }
+        }
+
+        if (columns == null)
+            return new ArrayList<>();
+        return new ColumnarRecordBatch(columns);
+    }
+
+    @Override
+    protected List<Writable> parseLine(String line) {
+        String[] split = splitLine(line);
+        BatchColumn[] columns = createColumns(split.length, 1);
+        List<Writable> ret = new ArrayList<>(split.length);
+        for (int j = 0; j < split.length; j++) {
+            columns[j].append(split[j]);
+            ret.add(columns[j].getWritable(0));
+        }
+        return ret;
+    }
+
+    private BatchColumn[] createColumns(int numColumns, int capacity) {
+        if (schema != null && schema.numColumns() != numColumns) {
+            throw new IllegalStateException("Invalid number of columns: schema has " + schema.numColumns() +
+                    " columns, but line " + (lineIndex - 1) + " has " + numColumns + " values");
+        }
+        BatchColumn[] columns = new BatchColumn[numColumns];
+        for (int j = 0; j < numColumns; j++) {
+            ColumnType type = schema == null ? ColumnType.Float : schema.getType(j);
+            switch (type) {
+                case Integer:
+                    columns[j] = new IntColumn(capacity);
+                    break;
+                case Long:
+                    columns[j] = new LongColumn(capacity);
+                    break;
+                case Double:
+                    columns[j] = new DoubleColumn(capacity);
+                    break;
+                case Categorical:
+                case String:
+                    columns[j] = new StringColumn(capacity, dictionary(j));
+                    break;
+                case Float:
+                default:
+                    columns[j] = new FloatColumn(capacity);
+                    break;
+            }
+        }
+        return columns;
+    }
+
+    private StringColumn.Dictionary dictionary(int column) {
+        if (dictionaries == null)
+            dictionaries = new StringColumn.Dictionary[schema.numColumns()];
+        if (dictionaries[column] == null) {
+            if (schema.getType(column) == ColumnType.Categorical) {
+                dictionaries[column] = new StringColumn.Dictionary(
+                        ((CategoricalMetaData) schema.getMetaData(column)).getStateNames());
+            } else {
+                dictionaries[column] = new StringColumn.Dictionary();
+            }
+        }
+        return dictionaries[column];
+    }
+}
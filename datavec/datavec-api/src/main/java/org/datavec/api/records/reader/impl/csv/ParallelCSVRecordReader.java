@@ -0,0 +1,530 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.records.reader.impl.csv;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.records.Record;
+import org.datavec.api.split.InputSplit;
+import org.datavec.api.split.streams.FileStreamCreatorFunction;
+import org.datavec.api.writable.Writable;
+import org.nd4j.common.base.Preconditions;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A CSV record reader that parses large files on multiple threads.<br>
+ * Each file is split into byte ranges (chunks) of approximately {@code chunkSize} bytes, aligned to record boundaries.
+ * Chunks are read and parsed on a thread pool, with at most 2 chunks per thread in flight at any time.
+ * Records are returned in file order by default; with {@code ordered(false)}, chunks are returned in the order they
+ * finish, which avoids waiting on slow chunks when the data is shuffled later anyway.<br>
+ * <br>
+ * Chunk boundaries:<br>
+ * - With {@code quotedNewlines(true)} (default) newlines inside quoted values are not treated as record boundaries:
+ * the chunk boundaries are found with a quote-aware scan of the bytes on the calling thread, which is much cheaper than
+ * parsing. Quotes inside values must be escaped by doubling them.<br>
+ * - With {@code quotedNewlines(false)} each worker aligns its own chunk to the next newline, so no part of the file is
+ * read on the calling thread. Use this only when values never contain newlines.<br>
+ * <br>
+ * Limitations: parallel mode is used only for local files (file URIs); other input splits (String, InputStream,
+ * custom stream creators) are read sequentially as per {@link CSVRecordReader}. The character set must be ASCII
+ * compatible (such as UTF-8), as boundaries are found by scanning bytes. Record metadata ({@link #nextRecord()}) is
+ * only supported in ordered mode.
+ */
+@Slf4j
+public class ParallelCSVRecordReader extends CSVRecordReader {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 256 * 1024;
+
+    private final int numThreads;
+    private final int chunkSize;
+    private final boolean ordered;
+    private final boolean quotedNewlines;
+    private final boolean memoryMapped;
+    private char delimiter;
+    private char quote;
+
+    private File[] files;
+    private transient ExecutorService executor;
+    private transient ThreadLocal<SerializableCSVParser> parsers;
+    private transient ChunkGenerator generator;
+    private transient Deque<Future<Chunk>> pending;
+    private transient CompletionService<Chunk> completionService;
+    private int inFlight;
+    private List<List<Writable>> current;
+    private int currentIdx;
+    private int currentFile;
+
+    /**
+     * Create a reader with no lines skipped, default delimiter and quote, and the given number of threads
+     */
+    public ParallelCSVRecordReader(int numThreads) {
+        this(new Builder().numThreads(numThreads));
+    }
+
+    /**
+     * @param skipNumLines the number of lines to skip at the start of each file
+     * @param delimiter    the delimiter
+     * @param quote        the quote character
+     * @param numThreads   the number of parsing threads
+     */
+    public ParallelCSVRecordReader(int skipNumLines, char delimiter, char quote, int numThreads) {
+        this(new Builder().skipNumLines(skipNumLines).delimiter(delimiter).quote(quote).numThreads(numThreads));
+    }
+
+    private ParallelCSVRecordReader(Builder builder) {
+        super(builder.skipNumLines, builder.delimiter, builder.quote);
+        Preconditions.checkArgument(builder.numThreads > 0, "Number of threads must be positive, got %s", builder.numThreads);
+        Preconditions.checkArgument(builder.chunkSize > 0, "Chunk size must be positive, got %s", builder.chunkSize);
+        Preconditions.checkArgument(builder.quote < 128 && builder.delimiter < 128, "Delimiter and quote characters must" +
+                " be ASCII characters for parallel parsing");
+        this.numThreads = builder.numThreads;
+        this.chunkSize = builder.chunkSize;
+        this.ordered = builder.ordered;
+        this.quotedNewlines = builder.quotedNewlines;
+        this.memoryMapped = builder.memoryMapped;
+        this.delimiter = builder.delimiter;
+        this.quote = builder.quote;
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        this.delimiter = conf.getChar(DELIMITER, delimiter);
+        this.quote = conf.getChar(QUOTE, quote);
+        super.initialize(conf, split);
+    }
+
+    @Override
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        stop();
+        super.initialize(split);
+        files = null;
+        if (locations != null && locations.length > 0 && streamCreatorFn instanceof FileStreamCreatorFunction) {
+            File[] f = new File[locations.length];
+            for (int i = 0; i < locations.length; i++) {
+                if (!"file".equalsIgnoreCase(locations[i].getScheme()))
+                    return;
+                f[i] = new File(locations[i]);
+            }
+            //Parallel mode reads the files directly: close the line iterator opened by LineRecordReader
+            super.close();
+            files = f;
+            start();
+        }
+    }
+
+    private void start() {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ParallelCSVRecordReader-" + count.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            parsers = new ThreadLocal<>();
+        }
+        generator = new ChunkGenerator();
+        pending = new ArrayDeque<>();
+        completionService = new ExecutorCompletionService<>(executor);
+        inFlight = 0;
+        current = null;
+        currentIdx = 0;
+        currentFile = -1;
+        splitIndex = 0;
+        lineIndex = 0;
+    }
+
+    private void stop() {
+        if (pending != null) {
+            for (Future<Chunk> f : pending) {
+                f.cancel(true);
+            }
+            pending = null;
+        }
+        if (generator != null) {
+            generator.close();
+            generator = null;
+        }
+        //Any remaining in-flight chunks for the unordered case are discarded with the old completion service
+        completionService = null;
+        inFlight = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (files == null)
+            return super.hasNext();
+        Preconditions.checkState(initialized, "RecordReader has not been initialized before use");
+
+        while (current == null || currentIdx >= current.size()) {
+            current = null;
+            submitChunks();
+            if (inFlight == 0)
+                return false;
+            Chunk c = takeChunk();
+            if (c.fileIdx != currentFile) {
+                currentFile = c.fileIdx;
+                lineIndex = c.firstLineIndex;
+            }
+            splitIndex = c.fileIdx;
+            current = c.records;
+            currentIdx = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public List<Writable> next() {
+        if (files == null)
+            return super.next();
+        if (!hasNext())
+            throw new NoSuchElementException("No next element found!");
+        lineIndex++;
+        return current.get(currentIdx++);
+    }
+
+    @Override
+    public Record nextRecord() {
+        if (files != null && !ordered)
+            throw new UnsupportedOperationException("Record metadata is not supported by ParallelCSVRecordReader " +
+                    "in unordered mode");
+        return super.nextRecord();
+    }
+
+    @Override
+    public void reset() {
+        if (files == null) {
+            super.reset();
+            return;
+        }
+        stop();
+        start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        super.close();
+    }
+
+    @Override
+    protected String[] splitLine(String line) {
+        if (parsers == null)
+            return super.splitLine(line);
+        //SerializableCSVParser is not thread safe: one instance per worker thread
+        SerializableCSVParser p = parsers.get();
+        if (p == null) {
+            p = new SerializableCSVParser(delimiter, quote);
+            parsers.set(p);
+        }
+        try {
+            return p.parseLine(line);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void submitChunks() {
+        int maxInFlight = 2 * numThreads;
+        try {
+            while (inFlight < maxInFlight && generator.hasNext()) {
+                final ChunkTask t = generator.next();
+                Callable<Chunk> c = new Callable<Chunk>() {
+                    @Override
+                    public Chunk call() throws Exception {
+                        return readChunk(t);
+                    }
+                };
+                if (ordered) {
+                    pending.add(executor.submit(c));
+                } else {
+                    completionService.submit(c);
+                }
+                inFlight++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error finding CSV chunk boundaries in file " + files[generator.fileIdx], e);
+        }
+    }
+
+    private Chunk takeChunk() {
+        try {
+            Future<Chunk> f = ordered ? pending.poll() : completionService.take();
+            inFlight--;
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for CSV chunk", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error parsing CSV chunk", e.getCause());
+        }
+    }
+
+    private Chunk readChunk(ChunkTask t) throws IOException {
+        try (FileChannel ch = FileChannel.open(files[t.fileIdx].toPath(), StandardOpenOption.READ)) {
+            long start = t.alignStart ? nextRecordStart(ch, t.fileSize, t.start - 1, t.start - 1, false) : t.start;
+            long end = t.alignEnd ? nextRecordStart(ch, t.fileSize, t.end - 1, t.end - 1, false) : t.end;
+            List<List<Writable>> records = new ArrayList<>();
+            if (start < end) {
+                Preconditions.checkState(end - start <= Integer.MAX_VALUE, "Record(s) in file %s at byte offset %s" +
+                        " are too large: chunk size exceeds 2GB", files[t.fileIdx], start);
+                ByteBuffer bytes;
+                if (memoryMapped) {
+                    bytes = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                } else {
+                    bytes = ByteBuffer.allocate((int) (end - start));
+                    while (bytes.hasRemaining()) {
+                        if (ch.read(bytes, start + bytes.position()) < 0)
+                            break;
+                    }
+                    bytes.flip();
+                }
+                splitRecords(Charset.forName(charset).decode(bytes), records);
+            }
+            return new Chunk(t.fileIdx, t.firstLineIndex, records);
+        }
+    }
+
+    private void splitRecords(CharBuffer chars, List<List<Writable>> out) {
+        int n = chars.limit();
+        int recordStart = 0;
+        boolean inQuote = false;
+        for (int i = 0; i < n; i++) {
+            char c = chars.get(i);
+            if (quotedNewlines && c == quote) {
+                inQuote = !inQuote;
+            } else if (c == '\n' && !inQuote) {
+                int recordEnd = (i > recordStart && chars.get(i - 1) == '\r') ? i - 1 : i;
+                out.add(parseLine(chars.subSequence(recordStart, recordEnd).toString()));
+                recordStart = i + 1;
+            }
+        }
+        if (recordStart < n) {
+            int recordEnd = chars.get(n - 1) == '\r' ? n - 1 : n;
+            out.add(parseLine(chars.subSequence(recordStart, recordEnd).toString()));
+        }
+    }
+
+    /**
+     * Find the start of the first record that begins after position minPos: i.e., the position after the first
+     * newline at or after minPos. If quoted is true, newlines inside quotes are ignored; in that case from must be the
+     * start of a record, and the scan starts there.
+     *
+     * @return Start of the next record, or the file size if there is no newline after minPos
+     */
+    private long nextRecordStart(FileChannel ch, long fileSize, long from, long minPos, boolean quoted) throws IOException {
+        long p = quoted ? from : minPos;
+        boolean inQuote = false;
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        byte[] b = buffer.array();
+        byte quoteByte = (byte) quote;
+        while (p < fileSize) {
+            buffer.clear();
+            int n = ch.read(buffer, p);
+            if (n <= 0)
+                break;
+            for (int i = 0; i < n; i++) {
+                if (quoted && b[i] == quoteByte) {
+                    inQuote = !inQuote;
+                } else if (b[i] == '\n' && !inQuote && p + i >= minPos) {
+                    return p + i + 1;
+                }
+            }
+            p += n;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Creates the chunk tasks for all files, in order. With quoted newlines, this does the quote-aware boundary scan.
+     */
+    private class ChunkGenerator {
+        private int fileIdx = -1;
+        private FileChannel channel;
+        private long fileSize;
+        private long dataStart;
+        private long pos;
+        private int linesSkipped;
+
+        private boolean hasNext() throws IOException {
+            while (channel == null || pos >= fileSize) {
+                close();
+                if (fileIdx + 1 >= files.length)
+                    return false;
+                fileIdx++;
+                channel = FileChannel.open(files[fileIdx].toPath(), StandardOpenOption.READ);
+                fileSize = channel.size();
+                pos = 0;
+                linesSkipped = 0;
+                while (linesSkipped < skipNumLines && pos < fileSize) {
+                    pos = nextRecordStart(channel, fileSize, pos, pos, quotedNewlines);
+                    linesSkipped++;
+                }
+                dataStart = pos;
+            }
+            return true;
+        }
+
+        private ChunkTask next() throws IOException {
+            long start = pos;
+            long end;
+            if (quotedNewlines) {
+                end = nextRecordStart(channel, fileSize, start, start + chunkSize - 1, true);
+            } else {
+                end = Math.min(fileSize, start + chunkSize);
+            }
+            pos = end;
+            //Line index is only known up front for the first chunk of each file; ordered mode counts from there
+            return new ChunkTask(fileIdx, fileSize, start, end, !quotedNewlines && start != dataStart,
+                    !quotedNewlines && end < fileSize, linesSkipped);
+        }
+
+        private void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.warn("Error closing file channel", e);
+                }
+                channel = null;
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static class ChunkTask {
+        private final int fileIdx;
+        private final long fileSize;
+        private final long start;
+        private final long end;
+        private final boolean alignStart;
+        private final boolean alignEnd;
+        private final int firstLineIndex;
+    }
+
+    @AllArgsConstructor
+    private static class Chunk {
+        private final int fileIdx;
+        private final int firstLineIndex;
+        private final List<List<Writable>> records;
+    }
+
+    public static class Builder {
+        private int skipNumLines = 0;
+        private char delimiter = DEFAULT_DELIMITER;
+        private char quote = DEFAULT_QUOTE;
+        private int numThreads = Runtime.getRuntime().availableProcessors();
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+        private boolean ordered = true;
+        private boolean quotedNewlines = true;
+        private boolean memoryMapped = false;
+
+        /**
+         * @param skipNumLines Number of lines to skip at the start of each file. Default: 0
+         */
+        public Builder skipNumLines(int skipNumLines) {
+            this.skipNumLines = skipNumLines;
+            return this;
+        }
+
+        /**
+         * @param delimiter Delimiter character. Default: ','
+         */
+        public Builder delimiter(char delimiter) {
+            this.delimiter = delimiter;
+            return this;
+        }
+
+        /**
+         * @param quote Quote character. Default: '"'
+         */
+        public Builder quote(char quote) {
+            this.quote = quote;
+            return this;
+        }
+
+        /**
+         * @param numThreads Number of parsing threads. Default: number of processors
+         */
+        public Builder numThreads(int numThreads) {
+            this.numThreads = numThreads;
+            return this;
+        }
+
+        /**
+         * @param chunkSize Approximate size of each chunk, in bytes. Default: 4MB
+         */
+        public Builder chunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * @param ordered If true (default): return records in file order. If false: return chunks in the order they
+         *                are parsed
+         */
+        public Builder ordered(boolean ordered) {
+            this.ordered = ordered;
+            return this;
+        }
+
+        /**
+         * @param quotedNewlines If true (default): newlines may occur inside quoted values, and are not treated as
+         *                       record boundaries. If false: chunk boundaries are found by the workers, which is faster
+         */
+        public Builder quotedNewlines(boolean quotedNewlines) {
+            this.quotedNewlines = quotedNewlines;
+            return this;
+        }
+
+        /**
+         * @param memoryMapped If true: read chunks using memory-mapped I/O. If false (default): read chunks into heap
+         *                     buffers
+         */
+        public Builder memoryMapped(boolean memoryMapped) {
+            this.memoryMapped = memoryMapped;
+            return this;
+        }
+
+        public ParallelCSVRecordReader build() {
+            return new ParallelCSVRecordReader(this);
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.datavec.api.records.metadata.RecordMetaData;
 import org.datavec.api.records.reader.RecordReader;
 import org.datavec.api.split.InputSplit;
 import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.columnar.ColumnarTransformProcess;
 import org.datavec.api.writable.Writable;
 
 import java.io.DataInputStream;
@@ -40,15 +41,33 @@ import java.util.NoSuchElementException;
 public class TransformProcessRecordReader implements RecordReader {
     protected RecordReader recordReader;
     protected TransformProcess transformProcess;
+    protected ColumnarTransformProcess columnarTransformProcess;
 
     //Cached/prefetched values, in case of filtering
     protected Record next;
+    //Untransformed prefetched record, for columnar execution
+    protected List<Writable> nextRaw;
 
     public TransformProcessRecordReader(RecordReader recordReader, TransformProcess transformProcess){
         this.recordReader = recordReader;
         this.transformProcess = transformProcess;
     }
 
+    /**
+     * @param recordReader     Underlying record reader
+     * @param transformProcess TransformProcess to execute
+     * @param columnar         If true: compile the transform process to a {@link ColumnarTransformProcess}, which is
+     *                         used to execute whole batches in {@link #next(int)}. Records are read from the underlying
+     *                         reader in batches if it supports them, or one at a time otherwise. Single records
+     *                         ({@link #next()}, etc) are still executed one at a time.
+     */
+    public TransformProcessRecordReader(RecordReader recordReader, TransformProcess transformProcess, boolean columnar){
+        this(recordReader, transformProcess);
+        if(columnar){
+            this.columnarTransformProcess = ColumnarTransformProcess.compile(transformProcess);
+        }
+    }
+
     /**
      * Called once at initialization.
      *
@@ -81,6 +100,36 @@ public class TransformProcessRecordReader implements RecordReader {
 
     @Override
     public List<List<Writable>> next(int num) {
+        if(columnarTransformProcess != null){
+            List<List<Writable>> out;
+            if(next != null){
+                //Record already prefetched by hasNext(): executed again as part of the batch, so that all records in the
+                // batch have the same Writable types
+                List<List<Writable>> batch = new ArrayList<>(num);
+                batch.add(nextRaw);
+                next = null;
+                nextRaw = null;
+                if(num > 1 && recordReader.hasNext()){
+                    for(List<Writable> l : readBatch(num - 1)){
+                        batch.add(l);
+                    }
+                }
+                out = columnarTransformProcess.execute(batch);
+                if(!out.isEmpty()){
+                    return out;
+                }
+            }
+
+            //Keep reading until at least one record is not filtered
+            while(recordReader.hasNext()){
+                out = columnarTransformProcess.execute(readBatch(num));
+                if(!out.isEmpty()){
+                    return out;
+                }
+            }
+            throw new NoSuchElementException("No next element");
+        }
+
         if(!hasNext())
             throw new NoSuchElementException("No next element");
 
@@ -91,6 +140,20 @@ public class TransformProcessRecordReader implements RecordReader {
         return out;
     }
 
+    /**
+     * Read up to num (untransformed) records from the underlying reader, in one batch if supported
+     */
+    protected List<List<Writable>> readBatch(int num){
+        if(recordReader.batchesSupported()){
+            return recordReader.next(num);
+        }
+        List<List<Writable>> out = new ArrayList<>(num);
+        for( int i=0; i<num && recordReader.hasNext(); i++ ){
+            out.add(recordReader.next());
+        }
+        return out;
+    }
+
     /**
      * Get the next record
      *
@@ -103,6 +166,7 @@ public class TransformProcessRecordReader implements RecordReader {
         }
         List<Writable> out = next.getRecord();
         next = null;
+        nextRaw = null;
         return out;
     }
 
@@ -128,6 +192,7 @@ public class TransformProcessRecordReader implements RecordReader {
                 continue;
             }
             next = new org.datavec.api.records.impl.Record(temp, r.getMetaData());
+            nextRaw = r.getRecord();
         }
 
         return next != null;
@@ -151,6 +216,7 @@ public class TransformProcessRecordReader implements RecordReader {
     @Override
     public void reset() {
         next = null;
+        nextRaw = null;
         recordReader.reset();
     }
 
@@ -186,6 +252,7 @@ public class TransformProcessRecordReader implements RecordReader {
         }
         Record toRet = next;
         next = null;
+        nextRaw = null;
         return toRet;
     }
 
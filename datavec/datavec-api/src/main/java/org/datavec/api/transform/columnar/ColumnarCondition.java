@@ -0,0 +1,213 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.transform.columnar;
+
+import org.datavec.api.transform.condition.BooleanCondition;
+import org.datavec.api.transform.condition.Condition;
+import org.datavec.api.transform.condition.column.BaseColumnCondition;
+import org.datavec.api.writable.*;
+import org.datavec.api.writable.batch.*;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A {@link Condition}, evaluated for all rows of a batch at once. The result is a bitmask, with bit i set if the
+ * condition holds for row i. Bits for removed rows are never set.<br>
+ * - BooleanConditions are evaluated as bitwise operations on the masks of their sub-conditions<br>
+ * - Column conditions are evaluated over the primitive column only, with a single reused Writable for numeric columns
+ * and a cached result per dictionary entry for String and categorical columns<br>
+ * - Other conditions are evaluated row by row
+ */
+abstract class ColumnarCondition {
+
+    abstract BitSet evaluate(ColumnarState state);
+
+    abstract String describe();
+
+    static ColumnarCondition compile(Condition condition) {
+        if (condition instanceof BooleanCondition) {
+            BooleanCondition b = (BooleanCondition) condition;
+            Condition[] c = b.getConditions();
+            ColumnarCondition[] compiled = new ColumnarCondition[c.length];
+            for (int i = 0; i < c.length; i++) {
+                compiled[i] = compile(c[i]);
+            }
+            return new BooleanNode(b.getType(), compiled);
+        }
+        if (condition instanceof BaseColumnCondition && !overridesCondition(condition)) {
+            return new ColumnNode((BaseColumnCondition) condition);
+        }
+        return new RowNode(condition);
+    }
+
+    private static boolean overridesCondition(Condition condition) {
+        //Some column conditions (such as TrivialColumnCondition) don't use the value of the column
+        try {
+            return condition.getClass().getMethod("condition", List.class).getDeclaringClass() != BaseColumnCondition.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    private static class BooleanNode extends ColumnarCondition {
+        private final BooleanCondition.Type type;
+        private final ColumnarCondition[] conditions;
+
+        private BooleanNode(BooleanCondition.Type type, ColumnarCondition[] conditions) {
+            this.type = type;
+            this.conditions = conditions;
+        }
+
+        @Override
+        BitSet evaluate(ColumnarState state) {
+            BitSet out = conditions[0].evaluate(state);
+            switch (type) {
+                case AND:
+                    for (int i = 1; i < conditions.length; i++) {
+                        out.and(conditions[i].evaluate(state));
+                    }
+                    return out;
+                case OR:
+                    for (int i = 1; i < conditions.length; i++) {
+                        out.or(conditions[i].evaluate(state));
+                    }
+                    return out;
+                case NOT:
+                    out.flip(0, state.size);
+                    out.andNot(state.removed);
+                    return out;
+                case XOR:
+                    out.xor(conditions[1].evaluate(state));
+                    return out;
+                default:
+                    throw new RuntimeException("Unknown condition type: " + type);
+            }
+        }
+
+        @Override
+        String describe() {
+            StringBuilder sb = new StringBuilder(type.toString()).append("(");
+            for (int i = 0; i < conditions.length; i++) {
+                if (i > 0)
+                    sb.append(",");
+                sb.append(conditions[i].describe());
+            }
+            return sb.append(")").toString();
+        }
+    }
+
+    private static class ColumnNode extends ColumnarCondition {
+        private final BaseColumnCondition condition;
+
+        private ColumnNode(BaseColumnCondition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        BitSet evaluate(ColumnarState state) {
+            BatchColumn c = state.columns.get(condition.getColumnIdx());
+            BitSet out = new BitSet(state.size);
+            int n = state.size;
+            BitSet removed = state.removed;
+            if (c instanceof DoubleColumn) {
+                DoubleWritable w = new DoubleWritable();
+                for (int i = removed.nextClearBit(0); i < n; i = removed.nextClearBit(i + 1)) {
+                    w.set(c.getDouble(i));
+                    if (condition.columnCondition(w))
+                        out.set(i);
+                }
+            } else if (c instanceof FloatColumn) {
+                FloatColumn f = (FloatColumn) c;
+                FloatWritable w = new FloatWritable();
+                for (int i = removed.nextClearBit(0); i < n; i = removed.nextClearBit(i + 1)) {
+                    w.set(f.getFloat(i));
+                    if (condition.columnCondition(w))
+                        out.set(i);
+                }
+            } else if (c instanceof IntColumn) {
+                IntColumn ic = (IntColumn) c;
+                IntWritable w = new IntWritable();
+                for (int i = removed.nextClearBit(0); i < n; i = removed.nextClearBit(i + 1)) {
+                    w.set(ic.getInt(i));
+                    if (condition.columnCondition(w))
+                        out.set(i);
+                }
+            } else if (c instanceof LongColumn) {
+                LongColumn lc = (LongColumn) c;
+                LongWritable w = new LongWritable();
+                for (int i = removed.nextClearBit(0); i < n; i = removed.nextClearBit(i + 1)) {
+                    w.set(lc.getLong(i));
+                    if (condition.columnCondition(w))
+                        out.set(i);
+                }
+            } else if (c instanceof StringColumn) {
+                //Evaluate once per distinct value: 0 = not yet evaluated, 1 = false, 2 = true
+                StringColumn sc = (StringColumn) c;
+                StringColumn.Dictionary dict = sc.getDictionary();
+                byte[] cache = new byte[dict.size()];
+                for (int i = removed.nextClearBit(0); i < n; i = removed.nextClearBit(i + 1)) {
+                    int code = sc.getCode(i);
+                    if (cache[code] == 0)
+                        cache[code] = condition.columnCondition(new Text(dict.decode(code))) ? (byte) 2 : (byte) 1;
+                    if (cache[code] == 2)
+                        out.set(i);
+                }
+            } else {
+                for (int i = removed.nextClearBit(0); i < n; i = removed.nextClearBit(i + 1)) {
+                    if (condition.columnCondition(c.getWritable(i)))
+                        out.set(i);
+                }
+            }
+            return out;
+        }
+
+        @Override
+        String describe() {
+            return condition.toString();
+        }
+    }
+
+    private static class RowNode extends ColumnarCondition {
+        private final Condition condition;
+
+        private RowNode(Condition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        BitSet evaluate(ColumnarState state) {
+            BitSet out = new BitSet(state.size);
+            BitSet removed = state.removed;
+            for (int i = removed.nextClearBit(0); i < state.size; i = removed.nextClearBit(i + 1)) {
+                if (condition.condition(state.row(i)))
+                    out.set(i);
+            }
+            return out;
+        }
+
+        @Override
+        String describe() {
+            return "row(" + condition + ")";
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.transform.columnar;
+
+import org.datavec.api.transform.metadata.CategoricalMetaData;
+import org.datavec.api.transform.metadata.ColumnMetaData;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The data of one batch during execution of a {@link ColumnarTransformProcess}: one column per column of the current
+ * schema, plus the set of rows that have been removed by filters so far. Removed rows are only dropped at the end of
+ * execution; steps may compute values for them, but must not fail on them.
+ */
+class ColumnarState {
+
+    List<BatchColumn> columns;
+    final int size;
+    final BitSet removed;
+
+    ColumnarState(List<BatchColumn> columns, int size) {
+        this.columns = columns;
+        this.size = size;
+        this.removed = new BitSet(size);
+    }
+
+    /**
+     * @return The values of the given row, as a record
+     */
+    List<Writable> row(int row) {
+        List<Writable> out = new ArrayList<>(columns.size());
+        for (BatchColumn c : columns) {
+            out.add(c.getWritable(row));
+        }
+        return out;
+    }
+
+    /**
+     * @return The columns, with the removed rows dropped
+     */
+    List<BatchColumn> compact() {
+        if (removed.isEmpty())
+            return columns;
+        int[] rows = new int[size - removed.cardinality()];
+        int j = 0;
+        for (int i = removed.nextClearBit(0); i < size; i = removed.nextClearBit(i + 1)) {
+            rows[j++] = i;
+        }
+        List<BatchColumn> out = new ArrayList<>(columns.size());
+        for (BatchColumn c : columns) {
+            out.add(c.select(rows));
+        }
+        return out;
+    }
+
+    /**
+     * @return True if the column type is one that can be represented by a {@link BatchColumn}
+     */
+    static boolean isSupported(ColumnMetaData meta) {
+        switch (meta.getColumnType()) {
+            case Integer:
+            case Long:
+            case Time:
+            case Double:
+            case Float:
+            case Categorical:
+            case String:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Create an empty column for the given column of the schema. Categorical columns use a fixed dictionary, with codes
+     * equal to the state indices
+     */
+    static BatchColumn newColumn(Schema schema, int column, int capacity) {
+        ColumnMetaData meta = schema.getMetaData(column);
+        switch (meta.getColumnType()) {
+            case Integer:
+                return new IntColumn(capacity);
+            case Long:
+            case Time:
+                return new LongColumn(capacity);
+            case Double:
+                return new DoubleColumn(capacity);
+            case Float:
+                return new FloatColumn(capacity);
+            case Categorical:
+                return new StringColumn(capacity,
+                        new StringColumn.Dictionary(((CategoricalMetaData) meta).getStateNames()));
+            case String:
+                return new StringColumn(capacity, new StringColumn.Dictionary());
+            default:
+                throw new UnsupportedOperationException("Column type " + meta.getColumnType() + " (column \"" +
+                        meta.getName() + "\") is not supported by ColumnarTransformProcess");
+        }
+    }
+
+    /**
+     * @return True if the column has the type used by {@link #newColumn(Schema, int, int)} for the schema column
+     */
+    static boolean hasType(BatchColumn c, ColumnMetaData meta) {
+        switch (meta.getColumnType()) {
+            case Integer:
+                return c instanceof IntColumn;
+            case Long:
+            case Time:
+                return c instanceof LongColumn;
+            case Double:
+                return c instanceof DoubleColumn;
+            case Float:
+                return c instanceof FloatColumn;
+            case Categorical:
+            case String:
+                return c instanceof StringColumn;
+            default:
+                return false;
+        }
+    }
+}
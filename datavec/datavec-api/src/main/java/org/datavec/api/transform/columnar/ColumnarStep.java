@@ -0,0 +1,36 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.transform.columnar;
+
+/**
+ * A single step of a {@link ColumnarTransformProcess} plan. Steps must not modify the columns of the input state in
+ * place (columns may be shared between steps, and with the input batch): they replace them with new columns instead.
+ */
+interface ColumnarStep {
+
+    void execute(ColumnarState state);
+
+    /**
+     * @return Description of the step, for {@link ColumnarTransformProcess#toString()}
+     */
+    String describe();
+}
@@ -0,0 +1,370 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.transform.columnar;
+
+import org.datavec.api.transform.DataAction;
+import org.datavec.api.transform.Transform;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.BaseColumnTransform;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.BatchColumn;
+import org.datavec.api.writable.batch.DoubleColumn;
+import org.datavec.api.writable.batch.IntColumn;
+import org.datavec.api.writable.batch.StringColumn;
+
+import java.util.*;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * The {@link ColumnarStep} implementations used by {@link ColumnarTransformProcess}
+ */
+class ColumnarSteps {
+
+    private ColumnarSteps() {
+    }
+
+    /**
+     * Consecutive in-place transforms of double columns, fused into a single pass per column: each value is read once,
+     * all operations for that column are applied, and the result is written once.
+     */
+    static class FusedDoubleStep implements ColumnarStep {
+        private final Map<Integer, List<DoubleUnaryOperator>> ops = new LinkedHashMap<>();
+        private final List<String> names = new ArrayList<>();
+
+        void add(int column, DoubleUnaryOperator op, String name) {
+            List<DoubleUnaryOperator> l = ops.get(column);
+            if (l == null) {
+                l = new ArrayList<>();
+                ops.put(column, l);
+            }
+            l.add(op);
+            names.add(name);
+        }
+
+        @Override
+        public void execute(ColumnarState state) {
+            state.columns = new ArrayList<>(state.columns);
+            for (Map.Entry<Integer, List<DoubleUnaryOperator>> e : ops.entrySet()) {
+                DoubleUnaryOperator[] o = e.getValue().toArray(new DoubleUnaryOperator[0]);
+                BatchColumn in = state.columns.get(e.getKey());
+                DoubleColumn out = new DoubleColumn(state.size);
+                for (int i = 0; i < state.size; i++) {
+                    if (state.removed.get(i)) {
+                        //Filtered out values may be invalid for the transforms (NaN, sentinel values, etc)
+                        out.appendDefault();
+                        continue;
+                    }
+                    double v = in.getDouble(i);
+                    for (DoubleUnaryOperator op : o) {
+                        v = op.applyAsDouble(v);
+                    }
+                    out.append(v);
+                }
+                state.columns.set(e.getKey(), out);
+            }
+        }
+
+        @Override
+        public String describe() {
+            return "FusedDouble" + names;
+        }
+    }
+
+    /**
+     * An in-place single column transform, applied value by value over the column without creating a record per row
+     */
+    static class ColumnMapStep implements ColumnarStep {
+        private final BaseColumnTransform transform;
+        private final int column;
+        private final Schema outputSchema;
+
+        ColumnMapStep(BaseColumnTransform transform, Schema outputSchema) {
+            this.transform = transform;
+            this.column = transform.getColumnNumber();
+            this.outputSchema = outputSchema;
+        }
+
+        @Override
+        public void execute(ColumnarState state) {
+            BatchColumn in = state.columns.get(column);
+            BatchColumn out = ColumnarState.newColumn(outputSchema, column, state.size);
+            for (int i = 0; i < state.size; i++) {
+                if (state.removed.get(i)) {
+                    out.appendDefault();
+                } else {
+                    out.appendWritable(transform.map(in.getWritable(i)));
+                }
+            }
+            state.columns = new ArrayList<>(state.columns);
+            state.columns.set(column, out);
+        }
+
+        @Override
+        public String describe() {
+            return "Column(" + transform + ")";
+        }
+    }
+
+    /**
+     * A transform that only removes, reorders, renames or duplicates columns, or adds constant columns. No values are
+     * copied except for the constant columns.
+     */
+    static class SelectColumnsStep implements ColumnarStep {
+        private final Transform transform;
+        private final int[] sourceColumns;
+        private final Writable[] constants;
+        private final Schema outputSchema;
+
+        /**
+         * @param sourceColumns For each output column: the index of the input column, or -1 for a constant column
+         * @param constants     For each output column: the constant value (for constant columns only)
+         */
+        SelectColumnsStep(Transform transform, int[] sourceColumns, Writable[] constants, Schema outputSchema) {
+            this.transform = transform;
+            this.sourceColumns = sourceColumns;
+            this.constants = constants;
+            this.outputSchema = outputSchema;
+        }
+
+        @Override
+        public void execute(ColumnarState state) {
+            List<BatchColumn> out = new ArrayList<>(sourceColumns.length);
+            for (int j = 0; j < sourceColumns.length; j++) {
+                if (sourceColumns[j] >= 0) {
+                    out.add(state.columns.get(sourceColumns[j]));
+                } else {
+                    BatchColumn c = ColumnarState.newColumn(outputSchema, j, state.size);
+                    for (int i = 0; i < state.size; i++) {
+                        c.appendWritable(constants[j]);
+                    }
+                    out.add(c);
+                }
+            }
+            state.columns = out;
+        }
+
+        @Override
+        public String describe() {
+            return "Select(" + transform + ")";
+        }
+    }
+
+    /**
+     * Categorical to integer or one-hot conversion. The lookup from String value to category index is done once per
+     * dictionary entry rather than once per row.
+     */
+    static class CategoricalStep implements ColumnarStep {
+        private final int column;
+        private final List<String> stateNames;
+        private final Map<String, Integer> statesMap;
+        private final boolean oneHot;
+
+        CategoricalStep(int column, List<String> stateNames, boolean oneHot) {
+            this.column = column;
+            this.stateNames = stateNames;
+            this.statesMap = new HashMap<>();
+            for (int i = 0; i < stateNames.size(); i++) {
+                statesMap.put(stateNames.get(i), i);
+            }
+            this.oneHot = oneHot;
+        }
+
+        @Override
+        public void execute(ColumnarState state) {
+            StringColumn in = (StringColumn) state.columns.get(column);
+            StringColumn.Dictionary dict = in.getDictionary();
+            int[] index = new int[dict.size()];
+            Arrays.fill(index, -1);
+            int n = stateNames.size();
+            IntColumn[] out = new IntColumn[oneHot ? n : 1];
+            for (int j = 0; j < out.length; j++) {
+                out[j] = new IntColumn(state.size);
+            }
+            for (int i = 0; i < state.size; i++) {
+                int idx = 0;
+                int code = in.getCode(i);
+                if (!state.removed.get(i)) {
+                    if (index[code] < 0) {
+                        Integer classIdx = statesMap.get(dict.decode(code));
+                        if (classIdx == null) {
+                            throw new IllegalStateException("Cannot convert categorical value to " + (oneHot ? "one-hot" :
+                                    "integer value") + ": input value (\"" + dict.decode(code) + "\") is not in the list" +
+                                    " of known categories (state names/categories: " + stateNames + ")");
+                        }
+                        index[code] = classIdx;
+                    }
+                    idx = index[code];
+                }
+                if (oneHot) {
+                    for (int j = 0; j < n; j++) {
+                        out[j].append(j == idx ? 1 : 0);
+                    }
+                } else {
+                    out[0].append(idx);
+                }
+            }
+            List<BatchColumn> cols = new ArrayList<>(state.columns.size() + out.length - 1);
+            cols.addAll(state.columns.subList(0, column));
+            cols.addAll(Arrays.asList(out));
+            cols.addAll(state.columns.subList(column + 1, state.columns.size()));
+            state.columns = cols;
+        }
+
+        @Override
+        public String describe() {
+            return (oneHot ? "CategoricalToOneHot(" : "CategoricalToInteger(") + column + ")";
+        }
+    }
+
+    /**
+     * Conditional replacement or copy of values in one column. The condition is evaluated as a bitmask.
+     */
+    static class ConditionalStep implements ColumnarStep {
+        private final Transform transform;
+        private final int column;
+        private final ColumnarCondition condition;
+        private final Writable valueIfTrue;
+        private final int sourceColumnIfTrue;
+        private final Writable valueIfFalse;
+        private final Schema outputSchema;
+
+        /**
+         * @param valueIfTrue        Value to set when the condition holds. May be null, if sourceColumnIfTrue is set
+         * @param sourceColumnIfTrue Column to copy from when the condition holds, or -1
+         * @param valueIfFalse       Value to set when the condition does not hold. If null: keep the current value
+         */
+        ConditionalStep(Transform transform, int column, ColumnarCondition condition, Writable valueIfTrue,
+                        int sourceColumnIfTrue, Writable valueIfFalse, Schema outputSchema) {
+            this.transform = transform;
+            this.column = column;
+            this.condition = condition;
+            this.valueIfTrue = valueIfTrue;
+            this.sourceColumnIfTrue = sourceColumnIfTrue;
+            this.valueIfFalse = valueIfFalse;
+            this.outputSchema = outputSchema;
+        }
+
+        @Override
+        public void execute(ColumnarState state) {
+            BitSet mask = condition.evaluate(state);
+            BatchColumn in = state.columns.get(column);
+            BatchColumn source = sourceColumnIfTrue >= 0 ? state.columns.get(sourceColumnIfTrue) : null;
+            BatchColumn out = ColumnarState.newColumn(outputSchema, column, state.size);
+            for (int i = 0; i < state.size; i++) {
+                if (state.removed.get(i)) {
+                    out.appendDefault();
+                } else if (mask.get(i)) {
+                    out.appendWritable(source != null ? source.getWritable(i) : valueIfTrue);
+                } else {
+                    out.appendWritable(valueIfFalse != null ? valueIfFalse : in.getWritable(i));
+                }
+            }
+            state.columns = new ArrayList<>(state.columns);
+            state.columns.set(column, out);
+        }
+
+        @Override
+        public String describe() {
+            return "Conditional(" + transform + ", condition=" + condition.describe() + ")";
+        }
+    }
+
+    /**
+     * A filter, evaluated as a bitmask: rows are marked as removed, and dropped at the end of execution
+     */
+    static class FilterStep implements ColumnarStep {
+        private final ColumnarCondition condition;
+
+        FilterStep(ColumnarCondition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        public void execute(ColumnarState state) {
+            state.removed.or(condition.evaluate(state));
+        }
+
+        @Override
+        public String describe() {
+            return "Filter(" + condition.describe() + ")";
+        }
+    }
+
+    /**
+     * Fallback for consecutive actions that have no columnar implementation: these are executed record by record, as per
+     * {@link org.datavec.api.transform.TransformProcess#execute(List)}, and the results converted back to columns
+     */
+    static class RowStep implements ColumnarStep {
+        private final List<DataAction> actions = new ArrayList<>();
+        private Schema outputSchema;
+
+        void add(DataAction action, Schema outputSchema) {
+            actions.add(action);
+            this.outputSchema = outputSchema;
+        }
+
+        Schema getOutputSchema() {
+            return outputSchema;
+        }
+
+        @Override
+        public void execute(ColumnarState state) {
+            int numOut = outputSchema.numColumns();
+            List<BatchColumn> out = new ArrayList<>(numOut);
+            for (int j = 0; j < numOut; j++) {
+                out.add(ColumnarState.newColumn(outputSchema, j, state.size));
+            }
+            for (int i = 0; i < state.size; i++) {
+                List<Writable> values = state.removed.get(i) ? null : state.row(i);
+                for (int a = 0; a < actions.size() && values != null; a++) {
+                    DataAction d = actions.get(a);
+                    if (d.getTransform() != null) {
+                        values = d.getTransform().map(values);
+                    } else if (d.getFilter().removeExample(values)) {
+                        values = null;
+                    }
+                }
+                if (values == null) {
+                    state.removed.set(i);
+                    for (BatchColumn c : out) {
+                        c.appendDefault();
+                    }
+                } else {
+                    for (int j = 0; j < numOut; j++) {
+                        out.get(j).appendWritable(values.get(j));
+                    }
+                }
+            }
+            state.columns = out;
+        }
+
+        @Override
+        public String describe() {
+            List<String> l = new ArrayList<>();
+            for (DataAction d : actions) {
+                l.add(String.valueOf(d.getTransform() != null ? d.getTransform() : d.getFilter()));
+            }
+            return "Row" + l;
+        }
+    }
+}
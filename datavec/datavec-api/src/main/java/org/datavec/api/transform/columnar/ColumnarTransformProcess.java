@@ -0,0 +1,426 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.transform.columnar;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.transform.ColumnType;
+import org.datavec.api.transform.DataAction;
+import org.datavec.api.transform.Transform;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.schema.SequenceSchema;
+import org.datavec.api.transform.transform.BaseColumnTransform;
+import org.datavec.api.transform.transform.categorical.CategoricalToIntegerTransform;
+import org.datavec.api.transform.transform.categorical.CategoricalToOneHotTransform;
+import org.datavec.api.transform.transform.column.*;
+import org.datavec.api.transform.transform.condition.ConditionalCopyValueTransform;
+import org.datavec.api.transform.transform.condition.ConditionalReplaceValueTransform;
+import org.datavec.api.transform.transform.condition.ConditionalReplaceValueTransformWithDefault;
+import org.datavec.api.transform.transform.doubletransform.DoubleMathOpTransform;
+import org.datavec.api.transform.transform.doubletransform.MinMaxNormalizer;
+import org.datavec.api.transform.transform.doubletransform.StandardizeNormalizer;
+import org.datavec.api.transform.transform.doubletransform.SubtractMeanNormalizer;
+import org.datavec.api.writable.DoubleWritable;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.BatchColumn;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
+
+import java.util.*;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A {@link TransformProcess}, compiled to operate on whole batches of records stored by column (one primitive array
+ * per column - see {@link ColumnarRecordBatch}) rather than on one {@code List<Writable>} at a time.<br>
+ * Compared to {@link TransformProcess#execute(List)}:<br>
+ * - Consecutive double transforms (math ops and normalizers) are fused into a single pass over each column<br>
+ * - Conditions (for filters and conditional transforms) are evaluated as bitmasks over the batch. Filtered rows are
+ * dropped once, at the end of execution<br>
+ * - Categorical to integer/one-hot is done with one lookup per distinct value rather than one per row<br>
+ * - Column removal, renaming and reordering copy no values<br>
+ * - Other single column transforms are applied value by value over the column<br>
+ * - Anything else (multi-column transforms, custom filters, etc) is executed record by record, as per the
+ * TransformProcess<br>
+ * <br>
+ * The output values are the same as for TransformProcess execution, but always have the Writable type of the output
+ * schema column: for example, an integer column is returned as IntWritable values even if the input contained Text.<br>
+ * Sequence schemas and sequence operations (ConvertToSequence, reductions, etc) are not supported.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * {@code
+ * ColumnarTransformProcess ctp = ColumnarTransformProcess.compile(transformProcess);
+ * List<List<Writable>> out = ctp.execute(recordReader.next(batchSize));
+ * }
+ * </pre>
+ * Instances are thread safe: a compiled process may be used to execute multiple batches in parallel.
+ */
+@Slf4j
+public class ColumnarTransformProcess {
+
+    private final TransformProcess transformProcess;
+    private final Schema initialSchema;
+    private final Schema finalSchema;
+    private final List<ColumnarStep> steps;
+
+    private ColumnarTransformProcess(TransformProcess transformProcess, List<ColumnarStep> steps) {
+        this.transformProcess = transformProcess;
+        this.initialSchema = transformProcess.getInitialSchema();
+        this.finalSchema = transformProcess.getFinalSchema();
+        this.steps = steps;
+    }
+
+    /**
+     * Compile the given TransformProcess.
+     *
+     * @param transformProcess TransformProcess to compile
+     * @throws UnsupportedOperationException If the TransformProcess cannot be executed in columnar form: for example, if
+     *                                       it has sequence operations, or has columns (such as NDArray or Bytes
+     *                                       columns) with no primitive column representation in the initial or final
+     *                                       schema
+     */
+    public static ColumnarTransformProcess compile(@NonNull TransformProcess transformProcess) {
+        Schema schema = transformProcess.getInitialSchema();
+        if (schema instanceof SequenceSchema) {
+            throw new UnsupportedOperationException("Sequence schemas are not supported by ColumnarTransformProcess");
+        }
+        checkSupported(schema, "initial");
+
+        List<ColumnarStep> steps = new ArrayList<>();
+        ColumnarSteps.FusedDoubleStep fused = null;
+        ColumnarSteps.RowStep rows = null;
+        for (DataAction d : transformProcess.getActionList()) {
+            Schema out;
+            if (d.getTransform() != null) {
+                out = d.getTransform().transform(schema);
+            } else if (d.getFilter() != null) {
+                out = d.getFilter().transform(schema);
+            } else {
+                throw new UnsupportedOperationException("Cannot compile TransformProcess: action " + d + " is not supported" +
+                        " by ColumnarTransformProcess - only transforms and filters are supported");
+            }
+
+            DoubleUnaryOperator op = d.getTransform() == null ? null : doubleOp(d.getTransform(), schema, out);
+            ColumnarStep step = null;
+            if (op == null) {
+                step = vectorizedStep(d, schema, out);
+            }
+
+            boolean vectorized = op != null || step != null;
+            if (vectorized && rows != null && !isSupported(schema)) {
+                //Can't convert back to columns at this point: keep going row by row
+                vectorized = false;
+            }
+
+            if (!vectorized) {
+                if (fused != null) {
+                    steps.add(fused);
+                    fused = null;
+                }
+                if (rows == null) {
+                    rows = new ColumnarSteps.RowStep();
+                }
+                rows.add(d, out);
+            } else {
+                if (rows != null) {
+                    steps.add(rows);
+                    rows = null;
+                }
+                if (op != null) {
+                    if (fused == null) {
+                        fused = new ColumnarSteps.FusedDoubleStep();
+                    }
+                    fused.add(((BaseColumnTransform) d.getTransform()).getColumnNumber(), op, d.getTransform().toString());
+                } else {
+                    if (fused != null) {
+                        steps.add(fused);
+                        fused = null;
+                    }
+                    steps.add(step);
+                }
+            }
+            schema = out;
+        }
+        if (fused != null) {
+            steps.add(fused);
+        }
+        if (rows != null) {
+            steps.add(rows);
+        }
+        checkSupported(schema, "final");
+        if (schema.numColumns() == 0) {
+            throw new UnsupportedOperationException("Cannot compile TransformProcess: final schema has no columns");
+        }
+
+        ColumnarTransformProcess ctp = new ColumnarTransformProcess(transformProcess, steps);
+        log.debug("Compiled TransformProcess: {}", ctp);
+        return ctp;
+    }
+
+    /**
+     * Execute the transform process on the given batch. If the batch is a {@link ColumnarRecordBatch} with the column
+     * types of the initial schema, its columns are used directly; otherwise the values are first converted to columns.
+     * If that conversion fails (for example, non-numerical values in a numerical column), the batch is executed record
+     * by record with {@link TransformProcess#execute(List)} instead, so that the same errors (if any) are produced.
+     *
+     * @param batch Batch to execute
+     * @return Output batch, as a {@link ColumnarRecordBatch}, without the records removed by filters
+     */
+    public List<List<Writable>> execute(@NonNull List<List<Writable>> batch) {
+        List<BatchColumn> columns;
+        try {
+            columns = toColumns(batch);
+        } catch (RuntimeException e) {
+            log.debug("Could not convert batch to columns, executing record by record", e);
+            List<List<Writable>> out = new ArrayList<>(batch.size());
+            for (List<Writable> l : batch) {
+                List<Writable> r = transformProcess.execute(l);
+                if (r != null) {
+                    out.add(r);
+                }
+            }
+            return out;
+        }
+
+        ColumnarState state = new ColumnarState(columns, batch.size());
+        for (ColumnarStep s : steps) {
+            s.execute(state);
+        }
+        return new ColumnarRecordBatch(state.compact());
+    }
+
+    /**
+     * @return The TransformProcess that this was compiled from
+     */
+    public TransformProcess getTransformProcess() {
+        return transformProcess;
+    }
+
+    /**
+     * @return The output schema
+     */
+    public Schema getFinalSchema() {
+        return finalSchema;
+    }
+
+    private List<BatchColumn> toColumns(List<List<Writable>> batch) {
+        int n = initialSchema.numColumns();
+        if (batch instanceof ColumnarRecordBatch) {
+            ColumnarRecordBatch c = (ColumnarRecordBatch) batch;
+            boolean match = c.numColumns() == n;
+            for (int j = 0; j < n && match; j++) {
+                match = ColumnarState.hasType(c.getColumn(j), initialSchema.getMetaData(j));
+            }
+            if (match) {
+                return c.getColumns();
+            }
+        }
+
+        List<BatchColumn> columns = new ArrayList<>(n);
+        for (int j = 0; j < n; j++) {
+            columns.add(ColumnarState.newColumn(initialSchema, j, batch.size()));
+        }
+        for (List<Writable> l : batch) {
+            if (l.size() != n) {
+                throw new IllegalStateException("Record has " + l.size() + " values, expected " + n + " (initial schema)");
+            }
+            for (int j = 0; j < n; j++) {
+                columns.get(j).appendWritable(l.get(j));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @return The operation for a double transform that can be fused, or null otherwise
+     */
+    private static DoubleUnaryOperator doubleOp(Transform t, Schema in, Schema out) {
+        if (!(t instanceof BaseColumnTransform) || overridesRecordMap((BaseColumnTransform) t)) {
+            return null;
+        }
+        int col = ((BaseColumnTransform) t).getColumnNumber();
+        if (out.getType(col) != ColumnType.Double) {
+            return null;
+        }
+        ColumnType inType = in.getType(col);
+        boolean numerical = inType == ColumnType.Double || inType == ColumnType.Float || inType == ColumnType.Integer
+                || inType == ColumnType.Long;
+        if (!numerical) {
+            return null;
+        }
+
+        if (t instanceof DoubleMathOpTransform) {
+            DoubleMathOpTransform m = (DoubleMathOpTransform) t;
+            final double s = m.getScalar();
+            switch (m.getMathOp()) {
+                case Add:
+                    return v -> v + s;
+                case Subtract:
+                    return v -> v - s;
+                case Multiply:
+                    return v -> v * s;
+                case Divide:
+                    return v -> v / s;
+                case Modulus:
+                    return v -> v % s;
+                case ReverseSubtract:
+                    return v -> s - v;
+                case ReverseDivide:
+                    return v -> s / v;
+                case ScalarMin:
+                    return v -> Math.min(v, s);
+                case ScalarMax:
+                    return v -> Math.max(v, s);
+                default:
+                    return null;
+            }
+        } else if (t instanceof MinMaxNormalizer) {
+            MinMaxNormalizer m = (MinMaxNormalizer) t;
+            final double ratio = m.getRatio();
+            final double min = m.getMin();
+            final double newMin = m.getNewMin();
+            return v -> Double.isNaN(v) ? 0 : ratio * (v - min) + newMin;
+        } else if (t instanceof StandardizeNormalizer) {
+            final double mean = ((StandardizeNormalizer) t).getMean();
+            final double stdev = ((StandardizeNormalizer) t).getStdev();
+            return v -> (v - mean) / stdev;
+        } else if (t instanceof SubtractMeanNormalizer) {
+            final double mean = ((SubtractMeanNormalizer) t).getMean();
+            return v -> v - mean;
+        } else if (inType == ColumnType.Double) {
+            //Any other double -> double transform: still fused, but with a Writable per value
+            final BaseColumnTransform b = (BaseColumnTransform) t;
+            return v -> b.map(new DoubleWritable(v)).toDouble();
+        }
+        return null;
+    }
+
+    /**
+     * @return The columnar step for the action, or null if the action has no columnar implementation
+     */
+    private static ColumnarStep vectorizedStep(DataAction d, Schema in, Schema out) {
+        if (!isSupported(out)) {
+            return null;
+        }
+        if (d.getFilter() != null) {
+            if (d.getFilter() instanceof ConditionFilter) {
+                return new ColumnarSteps.FilterStep(ColumnarCondition.compile(((ConditionFilter) d.getFilter()).getCondition()));
+            }
+            return null;
+        }
+
+        Transform t = d.getTransform();
+        if (t instanceof CategoricalToIntegerTransform) {
+            CategoricalToIntegerTransform c = (CategoricalToIntegerTransform) t;
+            return new ColumnarSteps.CategoricalStep(c.getColumnIdx(), c.getStateNames(), false);
+        } else if (t instanceof CategoricalToOneHotTransform) {
+            CategoricalToOneHotTransform c = (CategoricalToOneHotTransform) t;
+            return new ColumnarSteps.CategoricalStep(c.getColumnIdx(), c.getStateNames(), true);
+        } else if (t instanceof ConditionalReplaceValueTransform) {
+            ConditionalReplaceValueTransform c = (ConditionalReplaceValueTransform) t;
+            return new ColumnarSteps.ConditionalStep(t, in.getIndexOfColumn(c.getColumnToReplace()),
+                    ColumnarCondition.compile(c.getCondition()), c.getNewValue(), -1, null, out);
+        } else if (t instanceof ConditionalReplaceValueTransformWithDefault) {
+            ConditionalReplaceValueTransformWithDefault c = (ConditionalReplaceValueTransformWithDefault) t;
+            return new ColumnarSteps.ConditionalStep(t, in.getIndexOfColumn(c.getColumnToReplace()),
+                    ColumnarCondition.compile(c.getCondition()), c.getYesVal(), -1, c.getNoVal(), out);
+        } else if (t instanceof ConditionalCopyValueTransform) {
+            ConditionalCopyValueTransform c = (ConditionalCopyValueTransform) t;
+            return new ColumnarSteps.ConditionalStep(t, in.getIndexOfColumn(c.getColumnToReplace()),
+                    ColumnarCondition.compile(c.getCondition()), null, in.getIndexOfColumn(c.getSourceColumn()), null, out);
+        } else if (t instanceof RemoveColumnsTransform || t instanceof RemoveAllColumnsExceptForTransform
+                || t instanceof RenameColumnsTransform || t instanceof ReorderColumnsTransform
+                || t instanceof DuplicateColumnsTransform || t instanceof AddConstantColumnTransform) {
+            return selectStep(t, in, out);
+        } else if (t instanceof BaseColumnTransform && !overridesRecordMap((BaseColumnTransform) t)
+                && isSupported(in)) {
+            return new ColumnarSteps.ColumnMapStep((BaseColumnTransform) t, out);
+        }
+        return null;
+    }
+
+    private static ColumnarStep selectStep(Transform t, Schema in, Schema out) {
+        //Work out where each output column comes from by mapping a record of distinct values
+        List<Writable> probe = new ArrayList<>(in.numColumns());
+        Map<Writable, Integer> source = new IdentityHashMap<>();
+        for (int i = 0; i < in.numColumns(); i++) {
+            Writable w = new IntWritable(i);
+            probe.add(w);
+            source.put(w, i);
+        }
+        List<Writable> mapped = t.map(probe);
+        if (mapped.size() != out.numColumns()) {
+            return null;
+        }
+        int[] sourceColumns = new int[mapped.size()];
+        Writable[] constants = new Writable[mapped.size()];
+        for (int j = 0; j < mapped.size(); j++) {
+            Integer idx = source.get(mapped.get(j));
+            sourceColumns[j] = idx == null ? -1 : idx;
+            if (idx == null) {
+                constants[j] = mapped.get(j);
+            }
+        }
+        return new ColumnarSteps.SelectColumnsStep(t, sourceColumns, constants, out);
+    }
+
+    private static boolean overridesRecordMap(BaseColumnTransform t) {
+        try {
+            return t.getClass().getMethod("map", List.class).getDeclaringClass() != BaseColumnTransform.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    private static boolean isSupported(Schema schema) {
+        for (int i = 0; i < schema.numColumns(); i++) {
+            if (!ColumnarState.isSupported(schema.getMetaData(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkSupported(Schema schema, String which) {
+        for (int i = 0; i < schema.numColumns(); i++) {
+            if (!ColumnarState.isSupported(schema.getMetaData(i))) {
+                throw new UnsupportedOperationException("Cannot compile TransformProcess: column \"" + schema.getName(i)
+                        + "\" of the " + which + " schema has type " + schema.getType(i) + ", which is not supported by"
+                        + " ColumnarTransformProcess");
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ColumnarTransformProcess(");
+        for (int i = 0; i < steps.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(steps.get(i).describe());
+        }
+        return sb.append(")").toString();
+    }
+}
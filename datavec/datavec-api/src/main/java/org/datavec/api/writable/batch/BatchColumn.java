@@ -0,0 +1,107 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.writable.batch;
+
+import org.datavec.api.writable.Writable;
+
+/**
+ * A single column of a {@link ColumnarRecordBatch}, stored as a primitive array rather than one {@link Writable}
+ * object per value. Columns are filled by record readers via {@link #append(String)} (or the typed append methods of
+ * the subclasses), and grow as required.
+ */
+public abstract class BatchColumn {
+
+    protected int size;
+
+    /**
+     * @return Number of values in the column
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Parse the given value and add it to the end of the column
+     */
+    public abstract void append(String value);
+
+    /**
+     * Add the value of the given Writable to the end of the column
+     */
+    public abstract void appendWritable(Writable value);
+
+    /**
+     * Add a placeholder value (zero, or an invalid code for String columns) to the end of the column. Used for rows
+     * that have been removed, and will not be read
+     */
+    public abstract void appendDefault();
+
+    /**
+     * @return A new column of the same type, containing the values at the given rows
+     */
+    public abstract BatchColumn select(int[] rows);
+
+    /**
+     * @return The value at the given row, as a double
+     */
+    public abstract double getDouble(int row);
+
+    /**
+     * @return The value at the given row, as a Writable. This allocates a new object; use only when a record-based view
+     * of the batch is required
+     */
+    public abstract Writable getWritable(int row);
+
+    /**
+     * Copy the values to {@code dst[offset + row * stride]}, for each row
+     */
+    public void copyTo(float[] dst, int offset, int stride) {
+        for (int i = 0; i < size; i++) {
+            dst[offset + i * stride] = (float) getDouble(i);
+        }
+    }
+
+    /**
+     * Copy the values to {@code dst[offset + row * stride]}, for each row
+     */
+    public void copyTo(double[] dst, int offset, int stride) {
+        for (int i = 0; i < size; i++) {
+            dst[offset + i * stride] = getDouble(i);
+        }
+    }
+
+    /**
+     * Remove all values, keeping the allocated capacity
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    protected void checkRow(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Invalid row: " + row + ", size = " + size);
+    }
+
+    protected static int grow(int capacity) {
+        return Math.max(16, capacity + (capacity >> 1));
+    }
+}
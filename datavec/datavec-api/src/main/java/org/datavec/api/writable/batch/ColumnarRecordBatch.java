@@ -0,0 +1,141 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.writable.batch;
+
+import lombok.Data;
+import lombok.NonNull;
+import org.datavec.api.writable.Writable;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A record batch stored by column, with one primitive {@link BatchColumn} per column rather than one {@link Writable}
+ * per value.<br>
+ * Record readers that support it (such as {@link org.datavec.api.records.reader.impl.csv.ColumnarCSVRecordReader})
+ * return this from {@code next(int)}, and the DataSet iterators convert the batch to features/labels using
+ * {@link #toArray(int, int, DataType)} and {@link #toOneHot(int, int, DataType)}: a single buffer fill and a single
+ * INDArray creation, instead of one putScalar call per value.<br>
+ * The {@code List<List<Writable>>} methods are still supported, but create the Writable objects on each call.
+ */
+@Data
+public class ColumnarRecordBatch extends AbstractWritableRecordBatch {
+
+    private List<BatchColumn> columns;
+    private int size;
+
+    public ColumnarRecordBatch(BatchColumn... columns) {
+        this(Arrays.asList(columns));
+    }
+
+    public ColumnarRecordBatch(@NonNull List<BatchColumn> columns) {
+        Preconditions.checkArgument(columns.size() > 0, "Input list must not be empty");
+        this.columns = columns;
+        this.size = columns.get(0).size();
+        for (int i = 1; i < columns.size(); i++) {
+            Preconditions.checkArgument(columns.get(i).size() == size, "Invalid columns: all columns must have the same" +
+                    " size. columns.get(0).size()=%s, columns.get(%s).size()=%s", size, i, columns.get(i).size());
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<Writable> get(int index) {
+        Preconditions.checkArgument(index >= 0 && index < size, "Invalid index: %s, size = %s", index, size);
+        List<Writable> out = new ArrayList<>(columns.size());
+        for (BatchColumn c : columns) {
+            out.add(c.getWritable(index));
+        }
+        return out;
+    }
+
+    public int numColumns() {
+        return columns.size();
+    }
+
+    public BatchColumn getColumn(int column) {
+        return columns.get(column);
+    }
+
+    /**
+     * Convert all columns to a 2d array with shape [size, numColumns]
+     */
+    public INDArray toArray(DataType dataType) {
+        return toArray(0, columns.size() - 1, dataType);
+    }
+
+    /**
+     * Convert the given range of columns to a 2d array with shape [size, lastColumnInclusive - firstColumn + 1].
+     * String columns are converted to their dictionary codes.
+     *
+     * @param firstColumn         First column to include
+     * @param lastColumnInclusive Last column to include
+     * @param dataType            Data type of the returned array
+     */
+    public INDArray toArray(int firstColumn, int lastColumnInclusive, DataType dataType) {
+        Preconditions.checkArgument(firstColumn >= 0 && lastColumnInclusive < columns.size() && firstColumn <= lastColumnInclusive,
+                "Invalid column range: [%s, %s] with %s columns", firstColumn, lastColumnInclusive, columns.size());
+        int n = lastColumnInclusive - firstColumn + 1;
+        long[] shape = {size, n};
+        if (dataType == DataType.DOUBLE) {
+            double[] buffer = new double[size * n];
+            for (int c = 0; c < n; c++) {
+                columns.get(firstColumn + c).copyTo(buffer, c, n);
+            }
+            return Nd4j.create(buffer, shape, 'c');
+        }
+        float[] buffer = new float[size * n];
+        for (int c = 0; c < n; c++) {
+            columns.get(firstColumn + c).copyTo(buffer, c, n);
+        }
+        INDArray out = Nd4j.create(buffer, shape, 'c');
+        return dataType == DataType.FLOAT ? out : out.castTo(dataType);
+    }
+
+    /**
+     * Convert the given column to a one-hot 2d array with shape [size, numClasses]. The value of each row (or the
+     * dictionary code, for String columns) is used as the class index.
+     */
+    public INDArray toOneHot(int column, int numClasses, DataType dataType) {
+        BatchColumn c = columns.get(column);
+        float[] buffer = new float[size * numClasses];
+        for (int i = 0; i < size; i++) {
+            int idx = (int) c.getDouble(i);
+            if (idx < 0 || idx >= numClasses) {
+                throw new IllegalStateException("Cannot convert value to one-hot: class index " + idx + " (row " + i +
+                        ", column " + column + ") is not in range 0 to " + (numClasses - 1) + " inclusive");
+            }
+            buffer[i * numClasses + idx] = 1.0f;
+        }
+        INDArray out = Nd4j.create(buffer, new long[]{size, numClasses}, 'c');
+        return dataType == DataType.FLOAT ? out : out.castTo(dataType);
+    }
+}
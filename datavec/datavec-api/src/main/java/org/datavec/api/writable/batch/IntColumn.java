@@ -0,0 +1,89 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.writable.batch;
+
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.Writable;
+
+import java.util.Arrays;
+
+public class IntColumn extends BatchColumn {
+
+    private int[] values;
+
+    public IntColumn(int initialCapacity) {
+        values = new int[initialCapacity];
+    }
+
+    public void append(int value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, grow(size));
+        values[size++] = value;
+    }
+
+    @Override
+    public void appendWritable(Writable value) {
+        append(value.toInt());
+    }
+
+    @Override
+    public void appendDefault() {
+        append(0);
+    }
+
+    @Override
+    public BatchColumn select(int[] rows) {
+        IntColumn out = new IntColumn(rows.length);
+        for (int r : rows) {
+            checkRow(r);
+            out.append(values[r]);
+        }
+        return out;
+    }
+
+    @Override
+    public void append(String value) {
+        append(Integer.parseInt(value));
+    }
+
+    public int getInt(int row) {
+        checkRow(row);
+        return values[row];
+    }
+
+    @Override
+    public double getDouble(int row) {
+        return getInt(row);
+    }
+
+    @Override
+    public Writable getWritable(int row) {
+        return new IntWritable(getInt(row));
+    }
+
+    @Override
+    public void copyTo(float[] dst, int offset, int stride) {
+        for (int i = 0; i < size; i++) {
+            dst[offset + i * stride] = values[i];
+        }
+    }
+}
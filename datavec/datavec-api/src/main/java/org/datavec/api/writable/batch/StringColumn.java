@@ -0,0 +1,159 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.writable.batch;
+
+import lombok.NonNull;
+import org.datavec.api.writable.Text;
+import org.datavec.api.writable.Writable;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A dictionary-encoded String column: each value is stored as an int code into a {@link Dictionary}.<br>
+ * The dictionary is usually shared by all batches from the same reader, so that codes are consistent between batches.
+ * The numeric value of an entry ({@link #getDouble(int)}) is its code - for categorical columns with a fixed dictionary,
+ * this is the index of the category.
+ */
+public class StringColumn extends BatchColumn {
+
+    private final Dictionary dictionary;
+    private int[] codes;
+
+    public StringColumn(int initialCapacity, @NonNull Dictionary dictionary) {
+        this.codes = new int[initialCapacity];
+        this.dictionary = dictionary;
+    }
+
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    public void appendCode(int code) {
+        if (size == codes.length)
+            codes = Arrays.copyOf(codes, grow(size));
+        codes[size++] = code;
+    }
+
+    @Override
+    public void append(String value) {
+        appendCode(dictionary.encode(value));
+    }
+
+    @Override
+    public void appendWritable(Writable value) {
+        append(value.toString());
+    }
+
+    @Override
+    public void appendDefault() {
+        appendCode(-1);
+    }
+
+    @Override
+    public BatchColumn select(int[] rows) {
+        StringColumn out = new StringColumn(rows.length, dictionary);
+        for (int r : rows) {
+            checkRow(r);
+            out.appendCode(codes[r]);
+        }
+        return out;
+    }
+
+    public int getCode(int row) {
+        checkRow(row);
+        return codes[row];
+    }
+
+    public String getString(int row) {
+        return dictionary.decode(getCode(row));
+    }
+
+    @Override
+    public double getDouble(int row) {
+        return getCode(row);
+    }
+
+    @Override
+    public Writable getWritable(int row) {
+        return new Text(getString(row));
+    }
+
+    @Override
+    public void copyTo(float[] dst, int offset, int stride) {
+        for (int i = 0; i < size; i++) {
+            dst[offset + i * stride] = codes[i];
+        }
+    }
+
+    /**
+     * Mapping between String values and int codes. A fixed dictionary (for example, the states of a categorical column)
+     * rejects values that it does not contain; otherwise new values are assigned the next code.
+     */
+    public static class Dictionary implements Serializable {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final boolean fixed;
+
+        /**
+         * Create an empty dictionary, that adds new values as they are encountered
+         */
+        public Dictionary() {
+            this.fixed = false;
+        }
+
+        /**
+         * Create a fixed dictionary with the given values
+         */
+        public Dictionary(@NonNull List<String> values) {
+            for (String s : values) {
+                codes.put(s, this.values.size());
+                this.values.add(s);
+            }
+            this.fixed = true;
+        }
+
+        public int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                if (fixed)
+                    throw new IllegalStateException("Value \"" + value + "\" is not in the dictionary: " + values);
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        public String decode(int code) {
+            return values.get(code);
+        }
+
+        public int size() {
+            return values.size();
+        }
+
+        public boolean isFixed() {
+            return fixed;
+        }
+    }
+}
@@ -24,15 +24,21 @@ import org.datavec.api.records.Record;
 import org.datavec.api.records.metadata.RecordMetaData;
 import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
 import org.datavec.api.records.reader.impl.csv.CSVRegexRecordReader;
+import org.datavec.api.records.reader.impl.csv.ColumnarCSVRecordReader;
 import org.datavec.api.records.writer.impl.FileRecordWriter;
 import org.datavec.api.records.writer.impl.csv.CSVRecordWriter;
 import org.datavec.api.split.FileSplit;
 import org.datavec.api.split.InputStreamInputSplit;
 import org.datavec.api.split.StringSplit;
 import org.datavec.api.split.partition.NumberOfRecordsPartitioner;
+import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.IntWritable;
 import org.datavec.api.writable.Text;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
+import org.datavec.api.writable.batch.DoubleColumn;
+import org.datavec.api.writable.batch.FloatColumn;
+import org.datavec.api.writable.batch.StringColumn;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -101,6 +107,40 @@ class CSVRecordReaderTest extends BaseND4JTest {
         }
     }
 
+    @Test
+    @DisplayName("Test Columnar Batch")
+    void testColumnarBatch() throws Exception {
+        Schema schema = new Schema.Builder().addColumnsDouble("f%d", 0, 2).addColumnFloat("f3")
+                .addColumnCategorical("label", "0", "1", "2").build();
+        CSVRecordReader rr = new CSVRecordReader(0, ',');
+        rr.initialize(new FileSplit(new ClassPathResource("datavec-api/iris.dat").getFile()));
+        ColumnarCSVRecordReader columnar = new ColumnarCSVRecordReader(0, ',', schema);
+        columnar.initialize(new FileSplit(new ClassPathResource("datavec-api/iris.dat").getFile()));
+        int count = 0;
+        while (columnar.hasNext()) {
+            List<List<Writable>> batch = columnar.next(32);
+            assertTrue(batch instanceof ColumnarRecordBatch);
+            ColumnarRecordBatch b = (ColumnarRecordBatch) batch;
+            assertEquals(5, b.numColumns());
+            assertTrue(b.getColumn(0) instanceof DoubleColumn);
+            assertTrue(b.getColumn(3) instanceof FloatColumn);
+            assertTrue(b.getColumn(4) instanceof StringColumn);
+            for (int i = 0; i < b.size(); i++) {
+                List<Writable> expected = rr.next();
+                List<Writable> actual = b.get(i);
+                for (int j = 0; j < 3; j++) {
+                    assertEquals(expected.get(j).toDouble(), b.getColumn(j).getDouble(i), 0.0);
+                }
+                assertEquals(expected.get(3).toFloat(), ((FloatColumn) b.getColumn(3)).getFloat(i), 0.0f);
+                assertEquals(expected.get(4).toInt(), ((StringColumn) b.getColumn(4)).getCode(i));
+                assertEquals(expected.get(4).toString(), actual.get(4).toString());
+                count++;
+            }
+        }
+        assertFalse(rr.hasNext());
+        assertEquals(150, count);
+    }
+
     @Test
     @DisplayName("Test Reset With Skip Lines")
     void testResetWithSkipLines() throws Exception {
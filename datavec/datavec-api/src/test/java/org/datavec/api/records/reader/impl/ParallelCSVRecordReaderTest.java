@@ -0,0 +1,158 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.records.reader.impl;
+
+import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
+import org.datavec.api.records.reader.impl.csv.ParallelCSVRecordReader;
+import org.datavec.api.split.FileSplit;
+import org.datavec.api.split.StringSplit;
+import org.datavec.api.writable.Writable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.common.tests.BaseND4JTest;
+import org.nd4j.common.tests.tags.TagNames;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Parallel CSV Record Reader Test")
+@Tag(TagNames.JAVA_ONLY)
+@Tag(TagNames.FILE_IO)
+class ParallelCSVRecordReaderTest extends BaseND4JTest {
+
+    @TempDir
+    public Path testDir;
+
+    @Test
+    @DisplayName("Test Ordered Matches CSV Record Reader")
+    void testOrderedMatchesCSVRecordReader() throws Exception {
+        File f = writeFile("data.csv", false);
+        CSVRecordReader expRR = new CSVRecordReader(1, ',');
+        expRR.initialize(new FileSplit(f));
+        List<List<String>> expected = readAll(expRR);
+        assertEquals(2000, expected.size());
+
+        for (boolean quotedNewlines : new boolean[]{true, false}) {
+            for (boolean mmap : new boolean[]{true, false}) {
+                ParallelCSVRecordReader rr = new ParallelCSVRecordReader.Builder().skipNumLines(1).numThreads(4)
+                        .chunkSize(1000).quotedNewlines(quotedNewlines).memoryMapped(mmap).build();
+                rr.initialize(new FileSplit(f));
+                for (int i = 0; i < 2; i++) {
+                    assertEquals(expected, readAll(rr), "quotedNewlines=" + quotedNewlines + ", mmap=" + mmap);
+                    rr.reset();
+                }
+                rr.close();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test Quoted Newlines")
+    void testQuotedNewlines() throws Exception {
+        File f = writeFile("quoted.csv", true);
+        ParallelCSVRecordReader rr = new ParallelCSVRecordReader.Builder().skipNumLines(1).numThreads(3)
+                .chunkSize(500).build();
+        rr.initialize(new FileSplit(f));
+        List<List<String>> actual = readAll(rr);
+        rr.close();
+
+        assertEquals(2000, actual.size());
+        for (int i = 0; i < actual.size(); i++) {
+            List<String> l = actual.get(i);
+            assertEquals(3, l.size());
+            assertEquals(String.valueOf(i), l.get(0));
+            assertEquals(i % 7 == 0 ? "multi\nline," + i : "value" + i, l.get(1));
+        }
+    }
+
+    @Test
+    @DisplayName("Test Unordered")
+    void testUnordered() throws Exception {
+        File f1 = writeFile("a.csv", true);
+        File f2 = writeFile("b.csv", true);
+        ParallelCSVRecordReader rr = new ParallelCSVRecordReader.Builder().skipNumLines(1).numThreads(4)
+                .chunkSize(700).ordered(false).build();
+        rr.initialize(new FileSplit(testDir.toFile(), new String[]{"csv"}));
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (List<String> l : readAll(rr)) {
+            String key = l.get(0);
+            counts.put(key, counts.containsKey(key) ? counts.get(key) + 1 : 1);
+        }
+        rr.close();
+        assertEquals(2000, counts.size());
+        for (Integer c : counts.values()) {
+            assertEquals(2, (int) c);
+        }
+    }
+
+    @Test
+    @DisplayName("Test Non File Split")
+    void testNonFileSplit() throws Exception {
+        //Not a file split: falls back to sequential reading
+        ParallelCSVRecordReader rr = new ParallelCSVRecordReader(2);
+        rr.initialize(new StringSplit("1,2,3"));
+        assertTrue(rr.hasNext());
+        assertEquals(Arrays.asList("1", "2", "3"), toStrings(rr.next()));
+        assertFalse(rr.hasNext());
+    }
+
+    private File writeFile(String name, boolean quotedNewlines) throws IOException {
+        StringBuilder sb = new StringBuilder("id,value,x\n");
+        for (int i = 0; i < 2000; i++) {
+            sb.append(i).append(',');
+            if (quotedNewlines && i % 7 == 0) {
+                sb.append("\"multi\nline,").append(i).append('"');
+            } else {
+                sb.append("value").append(i);
+            }
+            sb.append(',').append(i * 0.5).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        File f = new File(testDir.toFile(), name);
+        Files.write(f.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+
+    private static List<List<String>> readAll(CSVRecordReader rr) {
+        List<List<String>> out = new ArrayList<>();
+        while (rr.hasNext()) {
+            out.add(toStrings(rr.next()));
+        }
+        return out;
+    }
+
+    private static List<String> toStrings(List<Writable> l) {
+        List<String> out = new ArrayList<>(l.size());
+        for (Writable w : l) {
+            out.add(w.toString());
+        }
+        return out;
+    }
+}
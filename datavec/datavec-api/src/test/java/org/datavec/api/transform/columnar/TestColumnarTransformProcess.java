@@ -0,0 +1,286 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.api.transform.columnar;
+
+import org.datavec.api.records.Record;
+import org.datavec.api.records.reader.impl.collection.CollectionRecordReader;
+import org.datavec.api.records.reader.impl.transform.TransformProcessRecordReader;
+import org.datavec.api.transform.MathOp;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.condition.BooleanCondition;
+import org.datavec.api.transform.condition.Condition;
+import org.datavec.api.transform.condition.ConditionOp;
+import org.datavec.api.transform.condition.column.CategoricalColumnCondition;
+import org.datavec.api.transform.condition.column.DoubleColumnCondition;
+import org.datavec.api.transform.condition.column.IntegerColumnCondition;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.filter.FilterInvalidValues;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.doubletransform.BaseDoubleTransform;
+import org.datavec.api.transform.transform.doubletransform.Log2Normalizer;
+import org.datavec.api.transform.transform.doubletransform.MinMaxNormalizer;
+import org.datavec.api.writable.*;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.BaseND4JTest;
+import org.nd4j.common.tests.tags.TagNames;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag(TagNames.JAVA_ONLY)
+@Tag(TagNames.FILE_IO)
+public class TestColumnarTransformProcess extends BaseND4JTest {
+
+    private static Schema schema() {
+        return new Schema.Builder()
+                .addColumnInteger("i")
+                .addColumnDouble("d")
+                .addColumnCategorical("c", "x", "y", "z")
+                .addColumnString("s")
+                .addColumnLong("l")
+                .addColumnDouble("d2")
+                .build();
+    }
+
+    private static TransformProcess transformProcess() {
+        return new TransformProcess.Builder(schema())
+                .doubleMathOp("d", MathOp.Multiply, 2.0)
+                .transform(new MinMaxNormalizer("d", 0, 2))
+                .transform(new Log2Normalizer("d", 0.5, 0, 1))
+                .doubleMathOp("d2", MathOp.Add, 1.0)
+                .filter(new ConditionFilter(new BooleanCondition(BooleanCondition.Type.AND, new Condition[]{
+                        new IntegerColumnCondition("i", ConditionOp.LessThan, 10),
+                        new CategoricalColumnCondition("c", ConditionOp.Equal, "y")})))
+                .conditionalReplaceValueTransform("l", new LongWritable(-1),
+                        new DoubleColumnCondition("d2", ConditionOp.GreaterThan, 50))
+                .appendStringColumnTransform("s", "_x")
+                .removeColumns("d2")
+                .duplicateColumns(Collections.singletonList("i"), Collections.singletonList("i2"))
+                .integerMathOp("i2", MathOp.Add, 3)
+                .filter(new FilterInvalidValues("i"))
+                .categoricalToOneHot("c")
+                .reorderColumns("s", "i")
+                .build();
+    }
+
+    private static List<List<Writable>> data(int n) {
+        Random r = new Random(12345);
+        String[] states = {"x", "y", "z"};
+        List<List<Writable>> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            out.add(Arrays.<Writable>asList(new IntWritable(r.nextInt(100)), new DoubleWritable(r.nextDouble()),
+                    new Text(states[r.nextInt(3)]), new Text("s" + r.nextInt(5)), new LongWritable(r.nextLong()),
+                    new DoubleWritable(r.nextInt(100))));
+        }
+        return out;
+    }
+
+    @Test
+    public void testCompile() {
+        ColumnarTransformProcess ctp = ColumnarTransformProcess.compile(transformProcess());
+        String s = ctp.toString();
+        //All 4 double ops fused into one step; the custom filter executed row by row
+        assertTrue(s.startsWith("ColumnarTransformProcess(FusedDouble["), s);
+        assertTrue(s.contains("Row[FilterInvalidValues"), s);
+        assertEquals(transformProcess().getFinalSchema(), ctp.getFinalSchema());
+    }
+
+    @Test
+    public void testSameAsTransformProcess() {
+        TransformProcess tp = transformProcess();
+        ColumnarTransformProcess ctp = ColumnarTransformProcess.compile(tp);
+        List<List<Writable>> in = data(1000);
+
+        List<List<Writable>> exp = new ArrayList<>();
+        for (List<Writable> l : in) {
+            List<Writable> out = tp.execute(l);
+            if (out != null)
+                exp.add(out);
+        }
+        assertTrue(exp.size() < in.size());
+
+        List<List<Writable>> act = new ArrayList<>();
+        for (int i = 0; i < in.size(); i += 64) {
+            for (List<Writable> l : ctp.execute(in.subList(i, Math.min(in.size(), i + 64)))) {
+                act.add(l);
+            }
+        }
+        assertSameValues(exp, act);
+
+        //Text input (as from a CSV reader) should be converted to the schema types
+        List<List<Writable>> text = new ArrayList<>();
+        for (List<Writable> l : in) {
+            List<Writable> t = new ArrayList<>();
+            for (Writable w : l) {
+                t.add(new Text(w.toString()));
+            }
+            text.add(t);
+        }
+        act = new ArrayList<>();
+        for (List<Writable> l : ctp.execute(text)) {
+            act.add(l);
+        }
+        assertSameValues(exp, act);
+
+        //Via TransformProcessRecordReader: only the record prefetched by hasNext() is transformed row by row
+        AtomicInteger rowByRow = new AtomicInteger();
+        CollectionRecordReader crr = new CollectionRecordReader(in) {
+            @Override
+            public Record nextRecord() {
+                rowByRow.incrementAndGet();
+                return super.nextRecord();
+            }
+        };
+        TransformProcessRecordReader rr = new TransformProcessRecordReader(crr, tp, true);
+        act = new ArrayList<>();
+        int batches = 0;
+        while (rr.hasNext()) {
+            for (List<Writable> l : rr.next(100)) {
+                act.add(l);
+            }
+            batches++;
+        }
+        assertSameValues(exp, act);
+        assertTrue(rowByRow.get() < 2 * batches, "Records transformed row by row: " + rowByRow.get());
+    }
+
+    @Test
+    public void testRecordReaderWritableTypes() {
+        //Text values, as from a CSV reader: the columnar plan converts these to the schema types
+        List<List<Writable>> in = new ArrayList<>();
+        for (List<Writable> l : data(100)) {
+            List<Writable> text = new ArrayList<>();
+            for (Writable w : l) {
+                text.add(new Text(w.toString()));
+            }
+            in.add(text);
+        }
+        TransformProcess tp = new TransformProcess.Builder(schema())
+                .removeColumns("s")
+                .build();
+
+        TransformProcessRecordReader rr = new TransformProcessRecordReader(new CollectionRecordReader(in), tp, true);
+        int count = 0;
+        while (rr.hasNext()) {
+            List<List<Writable>> batch = rr.next(10);
+            //Including the record prefetched by hasNext(), all records in the batch have the same Writable types
+            for (List<Writable> l : batch) {
+                for (int j = 0; j < l.size(); j++) {
+                    assertEquals(batch.get(0).get(j).getClass(), l.get(j).getClass());
+                }
+            }
+            count += batch.size();
+        }
+        assertEquals(100, count);
+    }
+
+    @Test
+    public void testFilteredValuesNotTransformed() {
+        //Negative values are filtered out before the (fused) transform, which fails on them
+        TransformProcess tp = new TransformProcess.Builder(schema())
+                .filter(new ConditionFilter(new DoubleColumnCondition("d", ConditionOp.LessThan, 0.0)))
+                .transform(new NonNegativeSqrtTransform("d"))
+                .build();
+        ColumnarTransformProcess ctp = ColumnarTransformProcess.compile(tp);
+        assertTrue(ctp.toString().contains("FusedDouble["), ctp.toString());
+
+        List<List<Writable>> in = new ArrayList<>(data(10));
+        in.get(3).set(1, new DoubleWritable(-1.0));
+        List<List<Writable>> exp = new ArrayList<>();
+        for (List<Writable> l : in) {
+            List<Writable> out = tp.execute(l);
+            if (out != null)
+                exp.add(out);
+        }
+        assertEquals(9, exp.size());
+        List<List<Writable>> act = new ArrayList<>();
+        for (List<Writable> l : ctp.execute(in)) {
+            act.add(l);
+        }
+        assertSameValues(exp, act);
+    }
+
+    @Test
+    public void testInvalidInput() {
+        TransformProcess tp = transformProcess();
+        ColumnarTransformProcess ctp = ColumnarTransformProcess.compile(tp);
+        List<List<Writable>> in = new ArrayList<>(data(5));
+        in.set(2, Arrays.<Writable>asList(new Text("zz"), new Text("1"), new Text("x"), new Text("a"), new Text("1"),
+                new Text("1")));
+        //Same exception as row by row execution
+        assertThrows(NumberFormatException.class, () -> ctp.execute(in));
+    }
+
+    @Test
+    public void testUnsupported() {
+        TransformProcess seq = new TransformProcess.Builder(schema())
+                .convertToSequence("s", new org.datavec.api.transform.sequence.comparator.NumericalColumnComparator("l"))
+                .build();
+        assertThrows(UnsupportedOperationException.class, () -> ColumnarTransformProcess.compile(seq));
+    }
+
+    private static class NonNegativeSqrtTransform extends BaseDoubleTransform {
+
+        NonNegativeSqrtTransform(String column) {
+            super(column);
+        }
+
+        @Override
+        public Writable map(Writable writable) {
+            double d = writable.toDouble();
+            if (d < 0) {
+                throw new IllegalArgumentException("Negative value: " + d);
+            }
+            return new DoubleWritable(Math.sqrt(d));
+        }
+
+        @Override
+        public Object map(Object input) {
+            return Math.sqrt(((Number) input).doubleValue());
+        }
+
+        @Override
+        public String toString() {
+            return "NonNegativeSqrtTransform(" + columnName + ")";
+        }
+    }
+
+    private static void assertSameValues(List<List<Writable>> exp, List<List<Writable>> act) {
+        //Values may have a different Writable type: compare as double where possible
+        assertEquals(exp.size(), act.size());
+        for (int i = 0; i < exp.size(); i++) {
+            List<Writable> e = exp.get(i);
+            List<Writable> a = act.get(i);
+            assertEquals(e.size(), a.size());
+            for (int j = 0; j < e.size(); j++) {
+                if (e.get(j) instanceof Text) {
+                    assertEquals(e.get(j).toString(), a.get(j).toString());
+                } else {
+                    assertEquals(e.get(j).toDouble(), a.get(j).toDouble(), 1e-9);
+                }
+            }
+        }
+    }
+}
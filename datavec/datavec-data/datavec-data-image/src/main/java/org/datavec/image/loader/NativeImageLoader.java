@@ -39,6 +39,8 @@ import org.nd4j.common.util.ArrayUtil;
 
 import java.io.*;
 import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
 
 import org.bytedeco.leptonica.*;
 import org.bytedeco.opencv.opencv_core.*;
@@ -60,6 +62,13 @@ public class NativeImageLoader extends BaseImageLoader {
 
     boolean direct = !Loader.getPlatform().startsWith("android");
 
+    //Reuse the buffers for the encoded image bytes between images. These are not thread safe, so this is only enabled
+    // for loaders owned by a single thread (see ParallelImageLoader)
+    boolean reuseReadBuffers = false;
+    private transient byte[] readBuffer;
+    private transient BytePointer readPointer;
+    private transient Random transformRandom;
+
     /**
      * Loads images with no scaling or conversion.
      */
@@ -294,13 +303,50 @@ public class NativeImageLoader extends BaseImageLoader {
      * @throws IOException
      */
     private Mat streamToMat(InputStream is) throws IOException {
-        byte[] buffer = IOUtils.toByteArray(is);
-        Mat bufferMat = null;
-        if (buffer.length <= 0) {
+        if (!reuseReadBuffers) {
+            byte[] buffer = IOUtils.toByteArray(is);
+            if (buffer.length <= 0) {
+                throw new IOException("Could not decode image from input stream: input stream was empty (no data)");
+            }
+            return new Mat(buffer);
+        }
+
+        if (readBuffer == null) {
+            readBuffer = new byte[MIN_BUFFER_STEP_SIZE];
+        }
+        int length = 0;
+        while (true) {
+            if (length == readBuffer.length) {
+                readBuffer = Arrays.copyOf(readBuffer, readBuffer.length + Math.max(MIN_BUFFER_STEP_SIZE, readBuffer.length / 2));
+            }
+            int n = is.read(readBuffer, length, readBuffer.length - length);
+            if (n < 0) {
+                break;
+            }
+            length += n;
+        }
+        if (length <= 0) {
             throw new IOException("Could not decode image from input stream: input stream was empty (no data)");
         }
-        bufferMat = new Mat(buffer);
-        return bufferMat;
+        if (readPointer == null || readPointer.capacity() < length) {
+            if (readPointer != null) {
+                readPointer.deallocate();
+            }
+            readPointer = new BytePointer(readBuffer.length);
+        }
+        readPointer.position(0).put(readBuffer, 0, length);
+        //Wraps the reused buffer: the returned Mat is only valid until the next call
+        return new Mat(1, length, CV_8UC1, readPointer);
+    }
+
+    /**
+     * Set the Random to use for the ImageTransform (if any), instead of the transform's own Random. This allows
+     * augmentation to be deterministic per image, independent of the order in which images are loaded.
+     *
+     * @param random Random to use for the next images, or null to use the transform's own Random
+     */
+    public void setImageTransformRandom(Random random) {
+        this.transformRandom = random;
     }
 
     public Image asImageMatrix(String filename) throws IOException {
@@ -564,7 +610,8 @@ public class NativeImageLoader extends BaseImageLoader {
     protected INDArray transformImage(Mat image, INDArray ret) throws IOException {
         if (imageTransform != null && converter != null) {
             ImageWritable writable = new ImageWritable(converter.convert(image));
-            writable = imageTransform.transform(writable);
+            writable = transformRandom != null ? imageTransform.transform(writable, transformRandom)
+                    : imageTransform.transform(writable);
             image = converter.convert(writable.getFrame());
         }
         Mat image2 = null, image3 = null, image4 = null;
@@ -0,0 +1,192 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.image.loader;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.image.data.ImageWritable;
+import org.datavec.image.transform.ImageTransform;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Decodes (and optionally transforms) a batch of images on a pool of threads, directly into a preallocated NCHW batch
+ * array.<br>
+ * Each thread has its own {@link NativeImageLoader} - and hence its own converter and buffers - created from the
+ * given prototype. {@link ImageTransform}s are generally not thread safe, so the transform is handled as follows:<br>
+ * - If a transform supplier is provided: each thread uses its own transform, created by the supplier<br>
+ * - Otherwise, the prototype's transform is shared by all threads, with only one thread executing it at a time.
+ * Decoding, color conversion and scaling are still done in parallel.<br>
+ * If a seed is provided for each image, the transform uses a Random created from that seed, so that the augmentation
+ * of each image is the same regardless of the number of threads and the order in which images are loaded.
+ */
+@Slf4j
+public class ParallelImageLoader implements Closeable {
+
+    private final NativeImageLoader prototype;
+    private final int numThreads;
+    private final Supplier<ImageTransform> transformSupplier;
+    private final ImageTransform sharedTransform;
+    private final ExecutorService executor;
+    private final ThreadLocal<NativeImageLoader> loaders;
+
+    /**
+     * @param prototype         Loader to copy (height, width, channels, cropping and transform)
+     * @param numThreads        Number of threads to use
+     * @param transformSupplier Supplier for the transform to use on each thread. May be null: the prototype's
+     *                          transform is then shared between threads
+     */
+    public ParallelImageLoader(NativeImageLoader prototype, int numThreads, Supplier<ImageTransform> transformSupplier) {
+        Preconditions.checkArgument(numThreads > 0, "Number of threads must be positive, got %s", numThreads);
+        this.prototype = prototype;
+        this.numThreads = numThreads;
+        this.transformSupplier = transformSupplier;
+        this.sharedTransform = prototype.imageTransform == null ? null : new LockedImageTransform(prototype.imageTransform);
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r, "ImageDecode-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        this.loaders = ThreadLocal.withInitial(this::newLoader);
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    private NativeImageLoader newLoader() {
+        NativeImageLoader l = new NativeImageLoader(prototype);
+        //Each loader is only used by its own thread
+        l.reuseReadBuffers = true;
+        if (transformSupplier != null) {
+            l.imageTransform = transformSupplier.get();
+        } else {
+            l.imageTransform = sharedTransform;
+        }
+        return l;
+    }
+
+    /**
+     * Load the given images into the batch array.
+     *
+     * @param files Images to load
+     * @param batch Array to load the images into, with shape [files.size(), channels, height, width]
+     * @param seeds Seed for the transform of each image. May be null (transforms use their own Random)
+     */
+    public void asMatrixView(List<File> files, INDArray batch, long[] seeds) {
+        Preconditions.checkArgument(seeds == null || seeds.length == files.size(),
+                "Number of seeds (%s) must equal number of files (%s)", (seeds == null ? 0 : seeds.length), files.size());
+        //Views are created on the caller thread; workers only write into them
+        List<Future<?>> futures = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            final File f = files.get(i);
+            final INDArray view = batch.tensorAlongDimension(i, 1, 2, 3);
+            final Random random = seeds == null ? null : new Random(seeds[i]);
+            futures.add(executor.submit(() -> {
+                NativeImageLoader l = loaders.get();
+                l.setImageTransformRandom(random);
+                try {
+                    l.asMatrixView(f, view);
+                } finally {
+                    l.setImageTransformRandom(null);
+                }
+                return null;
+            }));
+        }
+
+        RuntimeException error = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while loading images", e);
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = new RuntimeException("Image file failed during load: " + files.get(i).getAbsolutePath(),
+                            e.getCause());
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Executes the underlying transform with only one thread at a time
+     */
+    private static class LockedImageTransform implements ImageTransform {
+        private final ImageTransform transform;
+
+        private LockedImageTransform(ImageTransform transform) {
+            this.transform = transform;
+        }
+
+        @Override
+        public ImageWritable transform(ImageWritable image) {
+            synchronized (transform) {
+                return copy(transform.transform(image));
+            }
+        }
+
+        @Override
+        public ImageWritable transform(ImageWritable image, Random random) {
+            synchronized (transform) {
+                return copy(transform.transform(image, random));
+            }
+        }
+
+        private static ImageWritable copy(ImageWritable image) {
+            //The output may use buffers of the transform (or its converter), which the next call may reuse
+            return image == null || image.getFrame() == null ? image : new ImageWritable(image.getFrame().clone());
+        }
+
+        @Override
+        public float[] query(float... coordinates) {
+            synchronized (transform) {
+                return transform.query(coordinates);
+            }
+        }
+
+        @Override
+        public ImageWritable getCurrentImage() {
+            synchronized (transform) {
+                return transform.getCurrentImage();
+            }
+        }
+    }
+}
@@ -44,6 +44,7 @@ import org.datavec.api.writable.batch.NDArrayRecordBatch;
 import org.datavec.image.loader.BaseImageLoader;
 import org.datavec.image.loader.ImageLoader;
 import org.datavec.image.loader.NativeImageLoader;
+import org.datavec.image.loader.ParallelImageLoader;
 import org.datavec.image.transform.ImageTransform;
 import org.nd4j.linalg.api.concurrency.AffinityManager;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -52,6 +53,7 @@ import org.nd4j.linalg.factory.Nd4j;
 import java.io.*;
 import java.net.URI;
 import java.util.*;
+import java.util.function.Supplier;
 
 @Slf4j
 public abstract class BaseImageRecordReader extends BaseRecordReader {
@@ -78,6 +80,16 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
     protected boolean logLabelCountOnInit = true;
     @Getter @Setter
     protected boolean nchw_channels_first = true;
+    //Parallel decoding and deterministic augmentation, for next(int)
+    @Getter
+    protected int numDecodeThreads = 1;
+    @Getter
+    protected transient Supplier<ImageTransform> imageTransformSupplier;
+    @Getter @Setter
+    protected Long augmentationSeed;
+    protected long epoch;
+    protected long exampleCount;
+    protected transient ParallelImageLoader parallelLoader;
 
     public final static String HEIGHT = NAME_SPACE + ".height";
     public final static String WIDTH = NAME_SPACE + ".width";
@@ -127,6 +139,9 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
 
     @Override
     public void initialize(InputSplit split) throws IOException {
+        closeParallelLoader();
+        epoch = 0;
+        exampleCount = 0;
         if (imageLoader == null) {
             imageLoader = new NativeImageLoader(height, width, channels, imageTransform);
         }
@@ -244,7 +259,19 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
                 return next();
             try {
                 invokeListeners(image);
-                INDArray array = imageLoader.asMatrix(image);
+                long example = exampleCount++;
+                INDArray array;
+                if (augmentationSeed != null && imageLoader instanceof NativeImageLoader) {
+                    NativeImageLoader loader = (NativeImageLoader) imageLoader;
+                    loader.setImageTransformRandom(new Random(exampleSeed(example)));
+                    try {
+                        array = loader.asMatrix(image);
+                    } finally {
+                        loader.setImageTransformRandom(null);
+                    }
+                } else {
+                    array = imageLoader.asMatrix(image);
+                }
                 if(!nchw_channels_first){
                     array = array.permute(0,2,3,1);     //NCHW to NHWC
                 }
@@ -337,15 +364,37 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
             cnt++;
         }
 
+        long[] seeds = null;
+        if (augmentationSeed != null) {
+            seeds = new long[cnt];
+            for (int i = 0; i < cnt; i++) {
+                seeds[i] = exampleSeed(exampleCount + i);
+            }
+        }
+        exampleCount += cnt;
+
         INDArray features = Nd4j.createUninitialized(new long[] {cnt, channels, height, width}, 'c');
         Nd4j.getAffinityManager().tagLocation(features, AffinityManager.Location.HOST);
-        for (int i = 0; i < cnt; i++) {
-            try {
-                ((NativeImageLoader) imageLoader).asMatrixView(currBatch.get(i),
-                        features.tensorAlongDimension(i, 1, 2, 3));
-            } catch (Exception e) {
-                System.out.println("Image file failed during load: " + currBatch.get(i).getAbsolutePath());
-                throw new RuntimeException(e);
+        if (numDecodeThreads > 1 && cnt > 1) {
+            if (parallelLoader == null) {
+                parallelLoader = new ParallelImageLoader((NativeImageLoader) imageLoader, numDecodeThreads,
+                        imageTransformSupplier);
+            }
+            parallelLoader.asMatrixView(currBatch, features, seeds);
+        } else {
+            NativeImageLoader loader = (NativeImageLoader) imageLoader;
+            for (int i = 0; i < cnt; i++) {
+                try {
+                    if (seeds != null) {
+                        loader.setImageTransformRandom(new Random(seeds[i]));
+                    }
+                    loader.asMatrixView(currBatch.get(i), features.tensorAlongDimension(i, 1, 2, 3));
+                } catch (Exception e) {
+                    System.out.println("Image file failed during load: " + currBatch.get(i).getAbsolutePath());
+                    throw new RuntimeException(e);
+                } finally {
+                    loader.setImageTransformRandom(null);
+                }
             }
         }
         if(!nchw_channels_first){
@@ -400,7 +449,52 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
 
     @Override
     public void close() throws IOException {
-        //No op
+        closeParallelLoader();
+    }
+
+    /**
+     * Set the number of threads used to decode (and transform) images in {@link #next(int)}. With more than 1 thread,
+     * the images of each batch are loaded in parallel, directly into the batch array - see {@link ParallelImageLoader}.
+     * Default: 1 (images are loaded on the calling thread).
+     *
+     * @param numDecodeThreads Number of threads
+     */
+    public void setNumDecodeThreads(int numDecodeThreads) {
+        Preconditions.checkArgument(numDecodeThreads > 0, "Number of decode threads must be > 0: got %s", numDecodeThreads);
+        closeParallelLoader();
+        this.numDecodeThreads = numDecodeThreads;
+    }
+
+    /**
+     * Set a supplier for the ImageTransform to use on each decode thread, when {@link #getNumDecodeThreads()} > 1.
+     * The supplier should return a new transform, equivalent to the image transform of this reader, on each call.
+     * If not set, the image transform of this reader is shared between the decode threads, and only one thread
+     * executes it at a time.
+     *
+     * @param imageTransformSupplier Supplier for the per-thread image transforms. May be null
+     */
+    public void setImageTransformSupplier(Supplier<ImageTransform> imageTransformSupplier) {
+        closeParallelLoader();
+        this.imageTransformSupplier = imageTransformSupplier;
+    }
+
+    protected void closeParallelLoader() {
+        if (parallelLoader != null) {
+            parallelLoader.close();
+            parallelLoader = null;
+        }
+    }
+
+    /**
+     * When {@link #getAugmentationSeed()} is set, the image transform is applied to each image with a Random created
+     * from this seed: which depends only on the augmentation seed, the epoch (number of resets) and the index of the
+     * image in the epoch - not on the number of threads, or on whether images are loaded one at a time or in batches.
+     */
+    protected long exampleSeed(long example) {
+        long h = augmentationSeed + 0x9E3779B97F4A7C15L * (epoch + 1) + 0xC2B2AE3D27D4EB4FL * example;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
     }
 
     @Override
@@ -469,6 +563,8 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
         if (inputSplit == null)
             throw new UnsupportedOperationException("Cannot reset without first initializing");
         inputSplit.reset();
+        epoch++;
+        exampleCount = 0;
         if (iter != null) {
             iter = new FileFromPathIterator(inputSplit.locationsPathIterator());
         } else if (record != null) {
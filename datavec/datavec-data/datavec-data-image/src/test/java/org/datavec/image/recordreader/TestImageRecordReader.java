@@ -36,6 +36,7 @@ import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.NDArrayWritable;
 import org.datavec.api.writable.Writable;
 import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.datavec.image.transform.FlipImageTransform;
 
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -46,6 +47,7 @@ import org.nd4j.common.tests.tags.TagNames;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.common.io.ClassPathResource;
 
 import java.io.*;
@@ -556,5 +558,68 @@ public class TestImageRecordReader {
             assertArrayEquals(new long[]{1, 32, 32, 3}, arr.shape());
         }
     }
-}
 
+    @Test
+    public void testParallelDecode(@TempDir Path testDir) throws Exception {
+        File f0 = testDir.toFile();
+        new ClassPathResource("datavec-data-image/testimages/").copyDirectory(f0);
+
+        //Random flips: with an augmentation seed, the same images should be flipped the same way regardless of the
+        // number of threads, and for single images vs. batches
+        ImageRecordReader serial = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator(),
+                new FlipImageTransform(new Random(1)));
+        serial.setAugmentationSeed(12345L);
+        serial.initialize(new FileSplit(f0, new Random(12345)));
+
+        ImageRecordReader parallel = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator(),
+                new FlipImageTransform(new Random(2)));
+        parallel.setAugmentationSeed(12345L);
+        parallel.setNumDecodeThreads(4);
+        parallel.initialize(new FileSplit(f0, new Random(12345)));
+
+        ImageRecordReader perThread = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator(),
+                new FlipImageTransform(new Random(3)));
+        perThread.setAugmentationSeed(12345L);
+        perThread.setNumDecodeThreads(3);
+        perThread.setImageTransformSupplier(() -> new FlipImageTransform(new Random(4)));
+        perThread.initialize(new FileSplit(f0, new Random(12345)));
+
+        List<INDArray> single = new ArrayList<>();
+        while (serial.hasNext()) {
+            single.add(((NDArrayWritable) serial.next().get(0)).get());
+        }
+        assertEquals(6, single.size());
+
+        for (int epoch = 0; epoch < 2; epoch++) {
+            serial.reset();
+            parallel.reset();
+            perThread.reset();
+            for (int b = 0; b < 2; b++) {
+                INDArray s = ((NDArrayRecordBatch) serial.next(3)).getArrays().get(0);
+                INDArray p = ((NDArrayRecordBatch) parallel.next(3)).getArrays().get(0);
+                INDArray t = ((NDArrayRecordBatch) perThread.next(3)).getArrays().get(0);
+                assertEquals(s, p);
+                assertEquals(s, t);
+            }
+            assertFalse(parallel.hasNext());
+        }
+
+        //Single images vs. batches, same epoch
+        serial.setAugmentationSeed(100L);
+        serial.initialize(new FileSplit(f0, new Random(12345)));
+        List<INDArray> single2 = new ArrayList<>();
+        while (serial.hasNext()) {
+            single2.add(((NDArrayWritable) serial.next().get(0)).get());
+        }
+        parallel.setAugmentationSeed(100L);
+        parallel.initialize(new FileSplit(f0, new Random(12345)));
+        INDArray batch = ((NDArrayRecordBatch) parallel.next(6)).getArrays().get(0);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(single2.get(i), batch.get(NDArrayIndex.interval(i, i, true), NDArrayIndex.all(),
+                    NDArrayIndex.all(), NDArrayIndex.all()));
+        }
+        serial.close();
+        parallel.close();
+        perThread.close();
+    }
+}
@@ -30,6 +30,7 @@ import org.apache.arrow.vector.FieldVector;
 import org.datavec.api.transform.DataAction;
 import org.datavec.api.transform.Transform;
 import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.columnar.ColumnarTransformProcess;
 import org.datavec.api.transform.filter.Filter;
 import org.datavec.api.transform.join.Join;
 import org.datavec.api.transform.ops.IAggregableReduceOp;
@@ -51,6 +52,7 @@ import org.datavec.local.transforms.sequence.*;
 import org.datavec.local.transforms.transform.LocalTransformFunction;
 import org.datavec.local.transforms.transform.SequenceSplitFunction;
 import org.datavec.local.transforms.transform.filter.LocalFilterFunction;
+import org.nd4j.common.base.Preconditions;
 import org.nd4j.common.function.Function;
 import org.nd4j.common.function.FunctionalUtils;
 import org.nd4j.common.primitives.Pair;
@@ -58,6 +60,7 @@ import org.nd4j.common.primitives.Pair;
 import java.util.*;
 import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
 
@@ -94,6 +97,46 @@ public class LocalTransformExecutor {
         return execute(filteredSequence, null, transformProcess).getFirst();
     }
 
+    /**
+     * Execute the specified TransformProcess with the given input data, using a {@link ColumnarTransformProcess}:
+     * the input is split into batches of the given size, each of which is executed column-wise, in parallel.
+     * The order of the records is preserved.<br>
+     * Note: this method can only be used if the TransformProcess is supported by
+     * {@link ColumnarTransformProcess#compile(TransformProcess)} - i.e., has non-sequence data, and no sequence,
+     * reduce, join or sort operations
+     *
+     * @param inputWritables   Input data to process
+     * @param transformProcess TransformProcess to execute
+     * @param batchSize        Number of records per batch
+     * @return Processed data
+     */
+    public static List<List<Writable>> executeColumnar(List<List<Writable>> inputWritables,
+                                                       TransformProcess transformProcess, int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "Batch size must be positive, got %s", batchSize);
+        ColumnarTransformProcess ctp = ColumnarTransformProcess.compile(transformProcess);
+
+        List<List<Writable>> filteredSequence = inputWritables.parallelStream()
+                .filter(input -> input.size() == transformProcess.getInitialSchema().numColumns()).collect(toList());
+        if(filteredSequence.size() != inputWritables.size()) {
+            log.warn("Filtered out " + (inputWritables.size() - filteredSequence.size()) + " values");
+        }
+
+        int numBatches = (filteredSequence.size() + batchSize - 1) / batchSize;
+        List<List<List<Writable>>> results = IntStream.range(0, numBatches).parallel()
+                .mapToObj(i -> ctp.execute(filteredSequence.subList(i * batchSize,
+                        Math.min(filteredSequence.size(), (i + 1) * batchSize))))
+                .collect(toList());
+
+        List<List<Writable>> out = new ArrayList<>(filteredSequence.size());
+        for (List<List<Writable>> l : results) {
+            //Not addAll: record batches don't support toArray()
+            for (List<Writable> record : l) {
+                out.add(record);
+            }
+        }
+        return out;
+    }
+
     /**
      * Execute the specified TransformProcess with the given input data<br>
      * Note: this method can only be used if the TransformProcess
@@ -0,0 +1,528 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.local.transforms;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.datavec.api.records.reader.RecordReader;
+import org.datavec.api.records.writer.RecordWriter;
+import org.datavec.api.transform.DataAction;
+import org.datavec.api.transform.Transform;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.filter.Filter;
+import org.datavec.api.transform.join.Join;
+import org.datavec.api.transform.ops.IAggregableReduceOp;
+import org.datavec.api.transform.rank.CalculateSortedRank;
+import org.datavec.api.transform.reduce.IAssociativeReducer;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.schema.SequenceSchema;
+import org.datavec.api.writable.LongWritable;
+import org.datavec.api.writable.Text;
+import org.datavec.api.writable.Writable;
+import org.datavec.local.transforms.join.ExecuteJoinFromCoGroupFlatMapFunction;
+import org.datavec.local.transforms.reduce.MapToPairForReducerFunction;
+import org.datavec.local.transforms.streaming.ExternalSorter;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.common.primitives.Pair;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Executes a {@link TransformProcess} (or a {@link Join}) on data from a {@link RecordReader}, writing the results to a
+ * {@link RecordWriter}, without holding the full data set in memory - unlike {@link LocalTransformExecutor}, which
+ * requires all data (and each intermediate result) as a {@code List<List<Writable>>}.<br>
+ * <br>
+ * - Transforms and filters are pipelined: each record passes through all consecutive transforms and filters, one
+ * record at a time<br>
+ * - Reductions, CalculateSortedRank and joins use an external merge sort ({@link ExternalSorter}): records are buffered
+ * up to the memory budget, then sorted and spilled to disk, and the sorted runs are merged. Reductions and joins sort
+ * by key, so that only the records (joins) or the reduction state (reductions) for one key are in memory at a time<br>
+ * <br>
+ * Limitations: only non-sequence data is supported (no ConvertToSequence, ConvertFromSequence or SequenceSplit).
+ * The order of the output records of reductions and joins is by key, which may differ from
+ * {@link LocalTransformExecutor}. Keys are compared by their String values, as for reductions in
+ * LocalTransformExecutor.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * {@code
+ * StreamingLocalTransformExecutor exec = new StreamingLocalTransformExecutor.Builder()
+ *         .memoryBudgetBytes(512L * 1024 * 1024)
+ *         .tempDirectory(new File("/data/tmp"))
+ *         .build();
+ * long written = exec.execute(recordReader, transformProcess, recordWriter);
+ * }
+ * </pre>
+ */
+@Slf4j
+public class StreamingLocalTransformExecutor {
+
+    private static final Comparator<List<Writable>> KEY_COMPARATOR =
+            (a, b) -> ((Text) a.get(0)).compareTo((Text) b.get(0));
+
+    private final long memoryBudgetBytes;
+    private final File tempDirectory;
+    private final int maxMergeRuns;
+
+    private StreamingLocalTransformExecutor(Builder builder) {
+        this.memoryBudgetBytes = builder.memoryBudgetBytes;
+        this.tempDirectory = builder.tempDirectory;
+        this.maxMergeRuns = builder.maxMergeRuns;
+    }
+
+    /**
+     * Execute the TransformProcess on all records from the given reader, and write the results to the given writer.
+     * The reader must be initialized; the writer must be initialized, and is not closed by this method.
+     *
+     * @param input            Input records
+     * @param transformProcess TransformProcess to execute. Must have non-sequence input and output
+     * @param output           Writer for the output records
+     * @return Number of records written
+     */
+    public long execute(RecordReader input, TransformProcess transformProcess, RecordWriter output) throws IOException {
+        if (transformProcess.getInitialSchema() instanceof SequenceSchema
+                || transformProcess.getFinalSchema() instanceof SequenceSchema) {
+            throw new IllegalStateException("Cannot execute TransformProcess with sequence data: only non-sequence input " +
+                    "and output is supported by StreamingLocalTransformExecutor");
+        }
+
+        File dir = createWorkingDirectory();
+        List<ExternalSorter> sorters = new ArrayList<>();
+        try {
+            //As per LocalTransformExecutor: skip records with the wrong number of values
+            final int numColumns = transformProcess.getInitialSchema().numColumns();
+            final long[] skipped = new long[1];
+            Iterator<List<Writable>> iter = filter(new RecordReaderIterator(input), r -> {
+                if (r.size() != numColumns) {
+                    skipped[0]++;
+                    return false;
+                }
+                return true;
+            });
+
+            int step = 0;
+            for (DataAction d : transformProcess.getActionList()) {
+                if (d.getTransform() != null) {
+                    final Transform t = d.getTransform();
+                    iter = map(iter, t::map);
+                } else if (d.getFilter() != null) {
+                    final Filter f = d.getFilter();
+                    iter = filter(iter, r -> !f.removeExample(r));
+                } else if (d.getReducer() != null) {
+                    //Records for each key are only reduced as the output is iterated, not in reduce(...) itself
+                    final int reduceStep = step + 1;
+                    iter = onExhausted(reduce(iter, d.getReducer(), dir, sorters), () -> log.info(
+                            "Completed reduction (step {} of {})", reduceStep, transformProcess.getActionList().size()));
+                } else if (d.getCalculateSortedRank() != null) {
+                    iter = sortedRank(iter, d.getCalculateSortedRank(), dir, sorters);
+                    log.info("Completed sort (step {} of {})", step + 1, transformProcess.getActionList().size());
+                } else {
+                    throw new UnsupportedOperationException("Action not supported by StreamingLocalTransformExecutor: "
+                            + d + " - only transforms, filters, reductions and CalculateSortedRank are supported");
+                }
+                step++;
+            }
+
+            long count = write(iter, output);
+            if (skipped[0] > 0) {
+                log.warn("Filtered out " + skipped[0] + " values");
+            }
+            return count;
+        } finally {
+            for (ExternalSorter s : sorters) {
+                s.close();
+            }
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    /**
+     * Execute a join on all records from the given readers, and write the results to the given writer. The readers must
+     * be initialized; the writer must be initialized, and is not closed by this method.<br>
+     * Both inputs are sorted by key (spilling to disk as required); all records for a single key (from both inputs)
+     * must fit in memory.
+     *
+     * @param join   Join to execute
+     * @param left   Left data for join
+     * @param right  Right data for join
+     * @param output Writer for the joined records
+     * @return Number of records written
+     */
+    public long executeJoin(Join join, RecordReader left, RecordReader right, RecordWriter output) throws IOException {
+        File dir = createWorkingDirectory();
+        List<ExternalSorter> sorters = new ArrayList<>();
+        try {
+            Iterator<List<Writable>> l = sortByKey(new RecordReaderIterator(left),
+                    columnIndexes(join.getLeftSchema(), join.getJoinColumnsLeft()), dir, sorters);
+            Iterator<List<Writable>> r = sortByKey(new RecordReaderIterator(right),
+                    columnIndexes(join.getRightSchema(), join.getJoinColumnsRight()), dir, sorters);
+            return write(new MergeJoinIterator(join, l, r), output);
+        } finally {
+            for (ExternalSorter s : sorters) {
+                s.close();
+            }
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    private File createWorkingDirectory() throws IOException {
+        if (tempDirectory == null) {
+            return Files.createTempDirectory("datavec_streaming_").toFile();
+        }
+        return Files.createTempDirectory(tempDirectory.toPath(), "datavec_streaming_").toFile();
+    }
+
+    private static long write(Iterator<List<Writable>> iter, RecordWriter output) throws IOException {
+        long count = 0;
+        while (iter.hasNext()) {
+            output.write(iter.next());
+            count++;
+        }
+        return count;
+    }
+
+    private Iterator<List<Writable>> reduce(Iterator<List<Writable>> iter, final IAssociativeReducer reducer, File dir,
+                                            List<ExternalSorter> sorters) throws IOException {
+        if (reducer.getKeyColumns() == null) {
+            //Global reduction: no need to sort
+            if (!iter.hasNext()) {
+                return Collections.emptyIterator();
+            }
+            IAggregableReduceOp<List<Writable>, List<Writable>> op = reducer.aggregableReducer();
+            while (iter.hasNext()) {
+                op.accept(iter.next());
+            }
+            return Collections.singletonList(op.get()).iterator();
+        }
+
+        //Same key as LocalTransformExecutor, prepended to each record
+        final MapToPairForReducerFunction keyFn = new MapToPairForReducerFunction(reducer);
+        ExternalSorter sorter = newSorter(KEY_COMPARATOR, dir, sorters);
+        while (iter.hasNext()) {
+            Pair<String, List<Writable>> p = keyFn.apply(iter.next());
+            List<Writable> keyed = new ArrayList<>(p.getSecond().size() + 1);
+            keyed.add(new Text(p.getFirst()));
+            keyed.addAll(p.getSecond());
+            sorter.add(keyed);
+        }
+        log.debug("Sorted {} records for reduction into {} runs", sorter.size(), sorter.numRuns());
+
+        final PeekingIterator sorted = new PeekingIterator(sorter.sortedIterator());
+        return new Iterator<List<Writable>>() {
+            @Override
+            public boolean hasNext() {
+                return sorted.hasNext();
+            }
+
+            @Override
+            public List<Writable> next() {
+                List<Writable> first = sorted.next();
+                Writable key = first.get(0);
+                IAggregableReduceOp<List<Writable>, List<Writable>> op = reducer.aggregableReducer();
+                op.accept(first.subList(1, first.size()));
+                while (sorted.hasNext() && key.equals(sorted.peek().get(0))) {
+                    List<Writable> l = sorted.next();
+                    op.accept(l.subList(1, l.size()));
+                }
+                return op.get();
+            }
+        };
+    }
+
+    private Iterator<List<Writable>> sortedRank(Iterator<List<Writable>> iter, CalculateSortedRank csr, File dir,
+                                                List<ExternalSorter> sorters) throws IOException {
+        final Comparator<Writable> comparator = csr.getComparator();
+        final int sortColumnIdx = csr.getInputSchema().getIndexOfColumn(csr.getSortOnColumn());
+        final boolean ascending = csr.isAscending();
+        ExternalSorter sorter = newSorter((a, b) -> {
+            int c = comparator.compare(a.get(sortColumnIdx), b.get(sortColumnIdx));
+            return ascending ? c : -c;
+        }, dir, sorters);
+        while (iter.hasNext()) {
+            sorter.add(iter.next());
+        }
+        log.debug("Sorted {} records for CalculateSortedRank into {} runs", sorter.size(), sorter.numRuns());
+
+        final Iterator<List<Writable>> sorted = sorter.sortedIterator();
+        return new Iterator<List<Writable>>() {
+            private long rank = 0;
+
+            @Override
+            public boolean hasNext() {
+                return sorted.hasNext();
+            }
+
+            @Override
+            public List<Writable> next() {
+                List<Writable> out = new ArrayList<>(sorted.next());
+                out.add(new LongWritable(rank++));
+                return out;
+            }
+        };
+    }
+
+    private Iterator<List<Writable>> sortByKey(Iterator<List<Writable>> iter, int[] keyColumns, File dir,
+                                               List<ExternalSorter> sorters) throws IOException {
+        ExternalSorter sorter = newSorter(KEY_COMPARATOR, dir, sorters);
+        StringBuilder sb = new StringBuilder();
+        while (iter.hasNext()) {
+            List<Writable> l = iter.next();
+            //Length-prefixed, so that keys with multiple columns can't collide
+            sb.setLength(0);
+            for (int c : keyColumns) {
+                String s = l.get(c).toString();
+                sb.append(s.length()).append(':').append(s);
+            }
+            List<Writable> keyed = new ArrayList<>(l.size() + 1);
+            keyed.add(new Text(sb.toString()));
+            keyed.addAll(l);
+            sorter.add(keyed);
+        }
+        return sorter.sortedIterator();
+    }
+
+    private ExternalSorter newSorter(Comparator<List<Writable>> comparator, File dir, List<ExternalSorter> sorters) {
+        ExternalSorter s = new ExternalSorter(comparator, memoryBudgetBytes, maxMergeRuns, dir);
+        sorters.add(s);
+        return s;
+    }
+
+    private static int[] columnIndexes(Schema schema, String[] columns) {
+        int[] idxs = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            idxs[i] = schema.getIndexOfColumn(columns[i]);
+        }
+        return idxs;
+    }
+
+    private static Iterator<List<Writable>> onExhausted(final Iterator<List<Writable>> iter, final Runnable fn) {
+        return new Iterator<List<Writable>>() {
+            private boolean done = false;
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = iter.hasNext();
+                if (!hasNext && !done) {
+                    done = true;
+                    fn.run();
+                }
+                return hasNext;
+            }
+
+            @Override
+            public List<Writable> next() {
+                return iter.next();
+            }
+        };
+    }
+
+    private static Iterator<List<Writable>> map(final Iterator<List<Writable>> iter,
+                                                final Function<List<Writable>, List<Writable>> fn) {
+        return new Iterator<List<Writable>>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public List<Writable> next() {
+                return fn.apply(iter.next());
+            }
+        };
+    }
+
+    private static Iterator<List<Writable>> filter(final Iterator<List<Writable>> iter,
+                                                   final Predicate<List<Writable>> keep) {
+        return new Iterator<List<Writable>>() {
+            private List<Writable> next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && iter.hasNext()) {
+                    List<Writable> l = iter.next();
+                    if (keep.test(l)) {
+                        next = l;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public List<Writable> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No next element");
+                }
+                List<Writable> out = next;
+                next = null;
+                return out;
+            }
+        };
+    }
+
+    private static class RecordReaderIterator implements Iterator<List<Writable>> {
+        private final RecordReader reader;
+
+        private RecordReaderIterator(RecordReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return reader.hasNext();
+        }
+
+        @Override
+        public List<Writable> next() {
+            return reader.next();
+        }
+    }
+
+    private static class PeekingIterator implements Iterator<List<Writable>> {
+        private final Iterator<List<Writable>> iter;
+        private List<Writable> peeked;
+
+        private PeekingIterator(Iterator<List<Writable>> iter) {
+            this.iter = iter;
+        }
+
+        List<Writable> peek() {
+            if (peeked == null) {
+                peeked = iter.next();
+            }
+            return peeked;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peeked != null || iter.hasNext();
+        }
+
+        @Override
+        public List<Writable> next() {
+            if (peeked != null) {
+                List<Writable> out = peeked;
+                peeked = null;
+                return out;
+            }
+            return iter.next();
+        }
+    }
+
+    /**
+     * Sort-merge join over two inputs sorted by key (as the first value of each record). The records for one key are
+     * joined using the same function as {@link LocalTransformExecutor#executeJoin(Join, List, List)}
+     */
+    private static class MergeJoinIterator implements Iterator<List<Writable>> {
+        private final ExecuteJoinFromCoGroupFlatMapFunction joinFn;
+        private final PeekingIterator left;
+        private final PeekingIterator right;
+        private Iterator<List<Writable>> current = Collections.emptyIterator();
+
+        private MergeJoinIterator(Join join, Iterator<List<Writable>> left, Iterator<List<Writable>> right) {
+            this.joinFn = new ExecuteJoinFromCoGroupFlatMapFunction(join);
+            this.left = new PeekingIterator(left);
+            this.right = new PeekingIterator(right);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && (left.hasNext() || right.hasNext())) {
+                Text key;
+                if (!left.hasNext()) {
+                    key = (Text) right.peek().get(0);
+                } else if (!right.hasNext()) {
+                    key = (Text) left.peek().get(0);
+                } else {
+                    Text l = (Text) left.peek().get(0);
+                    Text r = (Text) right.peek().get(0);
+                    key = l.compareTo(r) <= 0 ? l : r;
+                }
+                List<List<Writable>> leftGroup = group(left, key);
+                List<List<Writable>> rightGroup = group(right, key);
+                current = joinFn.call(Pair.of(Collections.<Writable>singletonList(key),
+                        Pair.of(leftGroup, rightGroup))).iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public List<Writable> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No next element");
+            }
+            return current.next();
+        }
+
+        private static List<List<Writable>> group(PeekingIterator iter, Text key) {
+            List<List<Writable>> out = new ArrayList<>();
+            while (iter.hasNext() && key.equals(iter.peek().get(0))) {
+                List<Writable> l = iter.next();
+                out.add(l.subList(1, l.size()));
+            }
+            return out;
+        }
+    }
+
+    public static class Builder {
+        private long memoryBudgetBytes = Runtime.getRuntime().maxMemory() / 4;
+        private File tempDirectory;
+        private int maxMergeRuns = 64;
+
+        /**
+         * Maximum (estimated) size of the records to buffer in memory, for each reduction, sort or join input, before
+         * spilling to disk. Default: 1/4 of the maximum heap size
+         */
+        public Builder memoryBudgetBytes(long memoryBudgetBytes) {
+            Preconditions.checkArgument(memoryBudgetBytes > 0, "Memory budget must be positive, got %s", memoryBudgetBytes);
+            this.memoryBudgetBytes = memoryBudgetBytes;
+            return this;
+        }
+
+        /**
+         * Directory for the files spilled to disk. Default: the system temporary directory
+         */
+        public Builder tempDirectory(File tempDirectory) {
+            this.tempDirectory = tempDirectory;
+            return this;
+        }
+
+        /**
+         * Maximum number of sorted runs to merge at once (i.e., the maximum number of spill files open at once).
+         * Default: 64
+         */
+        public Builder maxMergeRuns(int maxMergeRuns) {
+            Preconditions.checkArgument(maxMergeRuns >= 2, "Maximum number of runs to merge must be at least 2, got %s",
+                    maxMergeRuns);
+            this.maxMergeRuns = maxMergeRuns;
+            return this;
+        }
+
+        public StreamingLocalTransformExecutor build() {
+            return new StreamingLocalTransformExecutor(this);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.local.transforms.streaming;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.writable.Text;
+import org.datavec.api.writable.Writable;
+import org.nd4j.common.base.Preconditions;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * External merge sort for records: records are buffered in memory up to the given memory budget, then sorted and
+ * written to disk as a sorted run. Once all records have been added, the runs are merged (in multiple passes, if there
+ * are more than the maximum number of runs to merge at once).<br>
+ * If all records fit in the memory budget, nothing is written to disk.<br>
+ * The sort is stable: records that compare as equal are returned in the order they were added.<br>
+ * Memory use is estimated from the number and type of values in each record, not measured.
+ */
+@Slf4j
+public class ExternalSorter implements Closeable {
+
+    private final Comparator<List<Writable>> comparator;
+    private final long memoryBudgetBytes;
+    private final int maxMergeRuns;
+    private final File directory;
+
+    private List<List<Writable>> buffer = new ArrayList<>();
+    private long bufferBytes;
+    private final List<SpillFile> runs = new ArrayList<>();
+    private long numRecords;
+    private boolean sorted;
+
+    /**
+     * @param comparator        Comparator for the records
+     * @param memoryBudgetBytes Maximum (estimated) size of the records to keep in memory
+     * @param maxMergeRuns      Maximum number of runs to merge at once
+     * @param directory         Directory for the sorted runs
+     */
+    public ExternalSorter(Comparator<List<Writable>> comparator, long memoryBudgetBytes, int maxMergeRuns,
+                          File directory) {
+        Preconditions.checkArgument(memoryBudgetBytes > 0, "Memory budget must be positive, got %s", memoryBudgetBytes);
+        Preconditions.checkArgument(maxMergeRuns >= 2, "Maximum number of runs to merge must be at least 2, got %s",
+                maxMergeRuns);
+        this.comparator = comparator;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.maxMergeRuns = maxMergeRuns;
+        this.directory = directory;
+    }
+
+    /**
+     * Add a record. Must not be called after {@link #sortedIterator()}
+     */
+    public void add(List<Writable> record) throws IOException {
+        Preconditions.checkState(!sorted, "Cannot add records after sortedIterator() has been called");
+        buffer.add(record);
+        numRecords++;
+        bufferBytes += estimateBytes(record);
+        if (bufferBytes >= memoryBudgetBytes) {
+            spill();
+        }
+    }
+
+    /**
+     * @return Number of records added
+     */
+    public long size() {
+        return numRecords;
+    }
+
+    /**
+     * @return Number of sorted runs written to disk so far
+     */
+    public int numRuns() {
+        return runs.size();
+    }
+
+    /**
+     * @return All added records, in sorted order. The files for the sorted runs are deleted once all records have been
+     * returned, or when this sorter is closed
+     */
+    public Iterator<List<Writable>> sortedIterator() throws IOException {
+        Preconditions.checkState(!sorted, "sortedIterator() may only be called once");
+        sorted = true;
+        if (runs.isEmpty()) {
+            buffer.sort(comparator);
+            List<List<Writable>> b = buffer;
+            buffer = null;
+            return b.iterator();
+        }
+
+        spill();
+        buffer = null;
+        List<SpillFile> current = new ArrayList<>(runs);
+        while (current.size() > maxMergeRuns) {
+            //Merge consecutive runs, to keep the sort stable
+            List<SpillFile> next = new ArrayList<>();
+            for (int i = 0; i < current.size(); i += maxMergeRuns) {
+                List<SpillFile> group = current.subList(i, Math.min(current.size(), i + maxMergeRuns));
+                if (group.size() == 1) {
+                    next.add(group.get(0));
+                    continue;
+                }
+                SpillFile merged = new SpillFile(directory);
+                runs.add(merged);
+                try (SpillFile.Writer w = merged.writer()) {
+                    Iterator<List<Writable>> iter = new MergeIterator(group, comparator);
+                    while (iter.hasNext()) {
+                        w.write(iter.next());
+                    }
+                }
+                for (SpillFile f : group) {
+                    f.delete();
+                }
+                next.add(merged);
+            }
+            log.debug("Merged {} sorted runs into {}", current.size(), next.size());
+            current = next;
+        }
+        return new MergeIterator(current, comparator);
+    }
+
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        buffer.sort(comparator);
+        SpillFile f = new SpillFile(directory);
+        try (SpillFile.Writer w = f.writer()) {
+            for (List<Writable> l : buffer) {
+                w.write(l);
+            }
+        }
+        runs.add(f);
+        log.debug("Wrote sorted run {} with {} records ({} bytes estimated)", runs.size(), buffer.size(), bufferBytes);
+        buffer.clear();
+        bufferBytes = 0;
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+        for (SpillFile f : runs) {
+            f.delete();
+        }
+    }
+
+    /**
+     * @return Estimated number of bytes used by the record on the heap
+     */
+    public static long estimateBytes(List<Writable> record) {
+        long bytes = 32 + 8L * record.size();
+        for (Writable w : record) {
+            if (w instanceof Text) {
+                bytes += 40 + ((Text) w).getLength();
+            } else {
+                bytes += 24;
+            }
+        }
+        return bytes;
+    }
+
+    private static class MergeIterator implements Iterator<List<Writable>> {
+        private final List<SpillFile> files;
+        private final PriorityQueue<Head> queue;
+
+        private MergeIterator(List<SpillFile> files, final Comparator<List<Writable>> comparator) throws IOException {
+            this.files = new ArrayList<>(files);
+            //Ties are broken on the run index: earlier runs contain earlier records
+            this.queue = new PriorityQueue<>(Math.max(1, files.size()), (a, b) -> {
+                int c = comparator.compare(a.record, b.record);
+                return c != 0 ? c : Integer.compare(a.run, b.run);
+            });
+            for (int i = 0; i < files.size(); i++) {
+                SpillFile.Reader r = files.get(i).reader();
+                if (r.hasNext()) {
+                    queue.add(new Head(i, r, r.next()));
+                }
+            }
+            if (queue.isEmpty()) {
+                deleteFiles();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public List<Writable> next() {
+            Head h = queue.poll();
+            if (h == null) {
+                throw new NoSuchElementException("No more records");
+            }
+            List<Writable> out = h.record;
+            if (h.reader.hasNext()) {
+                h.record = h.reader.next();
+                queue.add(h);
+            } else if (queue.isEmpty()) {
+                deleteFiles();
+            }
+            return out;
+        }
+
+        private void deleteFiles() {
+            for (SpillFile f : files) {
+                f.delete();
+            }
+        }
+    }
+
+    private static class Head {
+        private final int run;
+        private final SpillFile.Reader reader;
+        private List<Writable> record;
+
+        private Head(int run, SpillFile.Reader reader, List<Writable> record) {
+            this.run = run;
+            this.reader = reader;
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.local.transforms.streaming;
+
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.WritableFactory;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A temporary file of records, written and read sequentially. Each record is stored as the number of values followed
+ * by each value with its type, as per {@link WritableFactory#writeWithType(Writable, DataOutput)}
+ */
+public class SpillFile {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File file;
+    private long numRecords;
+
+    /**
+     * @param directory Directory to create the file in
+     */
+    public SpillFile(File directory) throws IOException {
+        this.file = File.createTempFile("spill_", ".bin", directory);
+        this.file.deleteOnExit();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return Number of records written to the file
+     */
+    public long getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * Open the file for writing, replacing any existing content
+     */
+    public Writer writer() throws IOException {
+        numRecords = 0;
+        return new Writer();
+    }
+
+    /**
+     * Open the file for reading. The reader is closed automatically once all records have been read
+     */
+    public Reader reader() throws IOException {
+        return new Reader();
+    }
+
+    /**
+     * Delete the file
+     */
+    public void delete() {
+        file.delete();
+    }
+
+    public class Writer implements Closeable {
+        private final DataOutputStream out;
+
+        private Writer() throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        }
+
+        public void write(List<Writable> record) throws IOException {
+            WritableFactory f = WritableFactory.getInstance();
+            out.writeInt(record.size());
+            for (Writable w : record) {
+                f.writeWithType(w, out);
+            }
+            numRecords++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    public class Reader implements Iterator<List<Writable>>, Closeable {
+        private final DataInputStream in;
+        private long remaining;
+
+        private Reader() throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+            remaining = numRecords;
+            if (remaining == 0) {
+                in.close();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public List<Writable> next() {
+            if (remaining <= 0) {
+                throw new NoSuchElementException("No more records in spill file " + file);
+            }
+            try {
+                WritableFactory f = WritableFactory.getInstance();
+                int n = in.readInt();
+                List<Writable> out = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    out.add(f.readWithType(in));
+                }
+                if (--remaining == 0) {
+                    in.close();
+                }
+                return out;
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading spill file " + file, e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            remaining = 0;
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.datavec.local.transforms.transform;
+
+import org.datavec.api.records.reader.impl.collection.CollectionRecordReader;
+import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
+import org.datavec.api.records.writer.impl.csv.CSVRecordWriter;
+import org.datavec.api.split.FileSplit;
+import org.datavec.api.split.partition.NumberOfRecordsPartitioner;
+import org.datavec.api.transform.MathOp;
+import org.datavec.api.transform.ReduceOp;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.condition.ConditionOp;
+import org.datavec.api.transform.condition.column.IntegerColumnCondition;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.join.Join;
+import org.datavec.api.transform.reduce.Reducer;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.*;
+import org.datavec.api.writable.comparator.LongWritableComparator;
+import org.datavec.local.transforms.LocalTransformExecutor;
+import org.datavec.local.transforms.StreamingLocalTransformExecutor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.common.tests.tags.TagNames;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Streaming Execution Test")
+@Tag(TagNames.FILE_IO)
+@Tag(TagNames.JAVA_ONLY)
+class StreamingExecutionTest {
+
+    @TempDir
+    Path testDir;
+
+    private StreamingLocalTransformExecutor executor() {
+        //Small budget and fan-in, to force spilling and multiple merge passes
+        return new StreamingLocalTransformExecutor.Builder()
+                .memoryBudgetBytes(4096)
+                .maxMergeRuns(3)
+                .tempDirectory(testDir.toFile())
+                .build();
+    }
+
+    private static List<List<Writable>> data(int n) {
+        Random r = new Random(12345);
+        List<List<Writable>> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            out.add(Arrays.<Writable>asList(new IntWritable(r.nextInt(50)), new Text("text" + r.nextInt(10)),
+                    new LongWritable(r.nextInt(1000))));
+        }
+        return out;
+    }
+
+    private static Schema schema() {
+        return new Schema.Builder().addColumnInteger("key").addColumnString("text").addColumnLong("value").build();
+    }
+
+    private List<List<String>> read(File f) throws Exception {
+        CSVRecordReader rr = new CSVRecordReader();
+        rr.initialize(new FileSplit(f));
+        List<List<String>> out = new ArrayList<>();
+        while (rr.hasNext()) {
+            out.add(toStrings(rr.next()));
+        }
+        rr.close();
+        return out;
+    }
+
+    private static List<String> toStrings(List<Writable> l) {
+        List<String> out = new ArrayList<>();
+        for (Writable w : l) {
+            out.add(w.toString());
+        }
+        return out;
+    }
+
+    private static List<List<String>> toStringsSorted(List<List<Writable>> l) {
+        List<List<String>> out = new ArrayList<>();
+        for (List<Writable> r : l) {
+            out.add(toStrings(r));
+        }
+        out.sort(Comparator.comparing(Object::toString));
+        return out;
+    }
+
+    private CSVRecordWriter writer(File f) throws Exception {
+        CSVRecordWriter w = new CSVRecordWriter();
+        w.initialize(new FileSplit(f), new NumberOfRecordsPartitioner());
+        return w;
+    }
+
+    @Test
+    @DisplayName("Test Transform Filter Reduce")
+    void testTransformFilterReduce() throws Exception {
+        TransformProcess tp = new TransformProcess.Builder(schema())
+                .longMathOp("value", MathOp.Multiply, 2)
+                .filter(new ConditionFilter(new IntegerColumnCondition("key", ConditionOp.LessThan, 5)))
+                .reduce(new Reducer.Builder(ReduceOp.TakeFirst).keyColumns("key").sumColumns("value")
+                        .countUniqueColumns("text").build())
+                .build();
+        List<List<Writable>> in = data(2000);
+
+        File out = testDir.resolve("out.csv").toFile();
+        CSVRecordWriter w = writer(out);
+        long count = executor().execute(new CollectionRecordReader(in), tp, w);
+        w.close();
+
+        List<List<String>> exp = toStringsSorted(LocalTransformExecutor.execute(in, tp));
+        List<List<String>> act = read(out);
+        act.sort(Comparator.comparing(Object::toString));
+        assertEquals(45, count);
+        assertEquals(exp, act);
+    }
+
+    @Test
+    @DisplayName("Test Calculate Sorted Rank")
+    void testCalculateSortedRank() throws Exception {
+        TransformProcess tp = new TransformProcess.Builder(schema())
+                .calculateSortedRank("rank", "value", new LongWritableComparator(), false)
+                .build();
+        List<List<Writable>> in = data(2000);
+
+        File out = testDir.resolve("out.csv").toFile();
+        CSVRecordWriter w = writer(out);
+        executor().execute(new CollectionRecordReader(in), tp, w);
+        w.close();
+
+        //Sort is stable, so the order should be the same
+        List<List<String>> exp = new ArrayList<>();
+        for (List<Writable> l : LocalTransformExecutor.execute(in, tp)) {
+            exp.add(toStrings(l));
+        }
+        assertEquals(exp, read(out));
+    }
+
+    @Test
+    @DisplayName("Test Join")
+    void testJoin() throws Exception {
+        Schema right = new Schema.Builder().addColumnInteger("key").addColumnDouble("amount").build();
+        List<List<Writable>> left = data(500);
+        List<List<Writable>> rightData = new ArrayList<>();
+        for (int i = 25; i < 75; i++) {
+            rightData.add(Arrays.<Writable>asList(new IntWritable(i), new DoubleWritable(i / 2.0)));
+            rightData.add(Arrays.<Writable>asList(new IntWritable(i), new DoubleWritable(-i)));
+        }
+
+        for (Join.JoinType type : Join.JoinType.values()) {
+            Join join = new Join.Builder(type).setJoinColumns("key").setSchemas(schema(), right).build();
+            File out = testDir.resolve("join_" + type + ".csv").toFile();
+            CSVRecordWriter w = writer(out);
+            executor().executeJoin(join, new CollectionRecordReader(left), new CollectionRecordReader(rightData), w);
+            w.close();
+
+            List<List<String>> exp = toStringsSorted(LocalTransformExecutor.executeJoin(join, left, rightData));
+            List<List<String>> act = read(out);
+            act.sort(Comparator.comparing(Object::toString));
+            assertEquals(exp, act, type.toString());
+        }
+    }
+}
@@ -35,9 +35,11 @@ import org.datavec.api.util.ndarray.RecordConverter;
 import org.datavec.api.writable.IntWritable;
 import org.datavec.api.writable.NDArrayWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.datavec.api.writable.batch.NDArrayRecordBatch;
 import org.deeplearning4j.datasets.datavec.exception.ZeroLengthSequenceException;
 import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.MultiDataSet;
 import org.nd4j.linalg.dataset.api.MultiDataSetPreProcessor;
@@ -125,6 +127,7 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
         //First: load the next values from the RR / SeqRRs
         Map<String, List<List<Writable>>> nextRRVals = new HashMap<>();
         Map<String, List<INDArray>> nextRRValsBatched = null;
+        Map<String, ColumnarRecordBatch> nextRRValsColumnar = null;
         Map<String, List<List<List<Writable>>>> nextSeqRRVals = new HashMap<>();
         List<RecordMetaDataComposableMap> nextMetas =
                         (collectMetaData ? new ArrayList<RecordMetaDataComposableMap>() : null);
@@ -136,6 +139,15 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
                 //Batch case, for efficiency: ImageRecordReader etc
                 List<List<Writable>> batchWritables = rr.next(num);
 
+                if(batchWritables instanceof ColumnarRecordBatch){
+                    //ColumnarCSVRecordReader etc case: converted with one bulk copy per array, in convertColumnar
+                    if (nextRRValsColumnar == null) {
+                        nextRRValsColumnar = new HashMap<>();
+                    }
+                    nextRRValsColumnar.put(entry.getKey(), (ColumnarRecordBatch) batchWritables);
+                    continue;
+                }
+
                 List<INDArray> batch;
                 if(batchWritables instanceof NDArrayRecordBatch){
                     //ImageRecordReader etc case
@@ -203,7 +215,7 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
             nextSeqRRVals.put(entry.getKey(), writables);
         }
 
-        return nextMultiDataSet(nextRRVals, nextRRValsBatched, nextSeqRRVals, nextMetas);
+        return nextMultiDataSet(nextRRVals, nextRRValsBatched, nextRRValsColumnar, nextSeqRRVals, nextMetas);
     }
 
     //Filter out the required columns before conversion. This is to avoid trying to convert String etc columns
@@ -269,6 +281,14 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
                     Map<String, List<INDArray>> nextRRValsBatched,
                     Map<String, List<List<List<Writable>>>> nextSeqRRVals,
                     List<RecordMetaDataComposableMap> nextMetas) {
+        return nextMultiDataSet(nextRRVals, nextRRValsBatched, null, nextSeqRRVals, nextMetas);
+    }
+
+    private MultiDataSet nextMultiDataSet(Map<String, List<List<Writable>>> nextRRVals,
+                    Map<String, List<INDArray>> nextRRValsBatched,
+                    Map<String, ColumnarRecordBatch> nextRRValsColumnar,
+                    Map<String, List<List<List<Writable>>>> nextSeqRRVals,
+                    List<RecordMetaDataComposableMap> nextMetas) {
         int minExamples = Integer.MAX_VALUE;
         for (List<List<Writable>> exampleData : nextRRVals.values()) {
             minExamples = Math.min(minExamples, exampleData.size());
@@ -284,6 +304,11 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
                 }
             }
         }
+        if (nextRRValsColumnar != null) {
+            for (ColumnarRecordBatch batch : nextRRValsColumnar.values()) {
+                minExamples = Math.min(minExamples, batch.size());
+            }
+        }
         for (List<List<List<Writable>>> exampleData : nextSeqRRVals.values()) {
             minExamples = Math.min(minExamples, exampleData.size());
         }
@@ -318,14 +343,14 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
         }
         long rngSeed = (timeSeriesRandomOffset ? timeSeriesRandomOffsetRng.nextLong() : -1);
         Pair<INDArray[], INDArray[]> features = convertFeaturesOrLabels(new INDArray[inputs.size()],
-                        new INDArray[inputs.size()], inputs, minExamples, nextRRVals, nextRRValsBatched, nextSeqRRVals,
+                        new INDArray[inputs.size()], inputs, minExamples, nextRRVals, nextRRValsBatched, nextRRValsColumnar, nextSeqRRVals,
                         longestTS, longestSequence, rngSeed);
 
 
         //Third: create the outputs/labels
         Pair<INDArray[], INDArray[]> labels = convertFeaturesOrLabels(new INDArray[outputs.size()],
                         new INDArray[outputs.size()], outputs, minExamples, nextRRVals, nextRRValsBatched,
-                        nextSeqRRVals, longestTS, longestSequence, rngSeed);
+                        nextRRValsColumnar, nextSeqRRVals, longestTS, longestSequence, rngSeed);
 
 
 
@@ -341,14 +366,17 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
 
     private Pair<INDArray[], INDArray[]> convertFeaturesOrLabels(INDArray[] featuresOrLabels, INDArray[] masks,
                     List<SubsetDetails> subsetDetails, int minExamples, Map<String, List<List<Writable>>> nextRRVals,
-                    Map<String, List<INDArray>> nextRRValsBatched,
+                    Map<String, List<INDArray>> nextRRValsBatched, Map<String, ColumnarRecordBatch> nextRRValsColumnar,
                     Map<String, List<List<List<Writable>>>> nextSeqRRVals, int longestTS, int[] longestSequence,
                     long rngSeed) {
         boolean hasMasks = false;
         int i = 0;
 
         for (SubsetDetails d : subsetDetails) {
-            if (nextRRValsBatched != null && nextRRValsBatched.containsKey(d.readerName)) {
+            if (nextRRValsColumnar != null && nextRRValsColumnar.containsKey(d.readerName)) {
+                //Columnar batch: bulk copy from the primitive columns
+                featuresOrLabels[i] = convertColumnar(nextRRValsColumnar.get(d.readerName), d);
+            } else if (nextRRValsBatched != null && nextRRValsBatched.containsKey(d.readerName)) {
                 //Standard reader, but batch ops
                 featuresOrLabels[i] = convertWritablesBatched(nextRRValsBatched.get(d.readerName), d);
             } else if (nextRRVals.containsKey(d.readerName)) {
@@ -371,6 +399,17 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
         return new Pair<>(featuresOrLabels, hasMasks ? masks : null);
     }
 
+    private INDArray convertColumnar(ColumnarRecordBatch batch, SubsetDetails details) {
+        //Same data types as convertWritablesBatched: float for values, default floating point type for one-hot
+        if (details.entireReader) {
+            return batch.toArray(DataType.FLOAT);
+        } else if (details.oneHot) {
+            return batch.toOneHot(details.subsetStart, details.oneHotNumClasses, Nd4j.defaultFloatingPointType());
+        } else {
+            return batch.toArray(details.subsetStart, details.subsetEndInclusive, DataType.FLOAT);
+        }
+    }
+
     private INDArray convertWritablesBatched(List<INDArray> list, SubsetDetails details) {
         INDArray arr;
         if (details.entireReader) {
@@ -129,7 +129,8 @@ public class IteratorDataSetIterator implements DataSetIterator {
 
     @Override
     public boolean resetSupported() {
-        return false;
+        //Resettable only if wrapping a resettable DataSetIterator - for example, when re-batching another iterator
+        return iterator instanceof DataSetIterator && ((DataSetIterator) iterator).resetSupported();
     }
 
     @Override
@@ -139,7 +140,11 @@ public class IteratorDataSetIterator implements DataSetIterator {
 
     @Override
     public void reset() {
-        throw new UnsupportedOperationException("Reset not supported");
+        if (!resetSupported())
+            throw new UnsupportedOperationException("Reset not supported");
+        ((DataSetIterator) iterator).reset();
+        queued.clear();
+        cursor = 0;
     }
 
     @Override
@@ -0,0 +1,49 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.nn.api.layers;
+
+import org.deeplearning4j.nn.api.Layer;
+
+/**
+ * A layer with parameters whose gradients are sparse row-wise - for example, embedding layers, where only the rows of
+ * the weight matrix for the indices present in the minibatch have a non-zero gradient.<br>
+ * For sparse parameters, only the rows returned by {@link #getSparseGradientRows(String)} are non-zero in the gradient
+ * view array, and the updater is applied to those rows only (see {@link org.nd4j.linalg.learning.SparseGradientUpdater}).
+ * Sparse parameters are placed in their own updater block.
+ */
+public interface SparseGradientLayer extends Layer {
+
+    /**
+     * @param paramName Name of the parameter
+     * @return True if the gradient of the specified parameter is sparse row-wise. Must not change after the layer
+     * has been initialized
+     */
+    boolean isSparseGradient(String paramName);
+
+    /**
+     * @param paramName Name of the parameter
+     * @return Indices (sorted, without duplicates) of the rows of the parameter with a non-zero gradient, as computed
+     * by the last call to {@link #backpropGradient(org.nd4j.linalg.api.ndarray.INDArray, org.deeplearning4j.nn.workspace.LayerWorkspaceMgr)}.
+     * Null if the gradient of the parameter is not sparse, or has not been computed
+     */
+    int[] getSparseGradientRows(String paramName);
+}
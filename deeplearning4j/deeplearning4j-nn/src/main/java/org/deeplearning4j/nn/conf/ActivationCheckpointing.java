@@ -0,0 +1,104 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.nn.conf;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import org.nd4j.common.base.Preconditions;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Configuration for activation (gradient) checkpointing.<br>
+ * With activation checkpointing, the layers of the network are split into consecutive segments (in forward pass order -
+ * i.e., topological order for ComputationGraph). During the forward pass for training, only the activations at the
+ * boundaries between segments (the checkpoints) are retained; all other activations are discarded. During backprop,
+ * the forward pass is recomputed for one segment at a time, from the last segment to the first. Hence the memory
+ * required for the activations is approximately that of the checkpoints plus that of the largest segment, instead of
+ * that of the whole network - at the cost of one additional forward pass per iteration.<br>
+ * Segments can be defined in one of two ways:<br>
+ * - {@link #everyNLayers(int)}: a checkpoint after every N layers (or graph vertices, for ComputationGraph)<br>
+ * - {@link #atLayers(String...)}: a checkpoint after each of the specified layers (or graph vertices)<br>
+ * For ComputationGraph, all activations that are used in a later segment are retained as checkpoints, including skip
+ * connections that cross a segment boundary. Checkpoints are best placed where the graph has a single activation
+ * crossing the boundary: after each residual block of a ResNet, for example.<br>
+ * Random operations (such as dropout) are repeated identically when the forward pass is recomputed. Activation
+ * checkpointing is not used with truncated BPTT.
+ */
+@Data
+@NoArgsConstructor
+public class ActivationCheckpointing implements Serializable, Cloneable {
+
+    private int everyNLayers;
+    private List<String> checkpointLayers;
+
+    /**
+     * @param n Number of layers (or graph vertices) in each segment
+     */
+    public static ActivationCheckpointing everyNLayers(int n) {
+        Preconditions.checkArgument(n > 0, "Number of layers per segment must be positive, got %s", n);
+        ActivationCheckpointing c = new ActivationCheckpointing();
+        c.setEveryNLayers(n);
+        return c;
+    }
+
+    /**
+     * @param layerNames Names of the layers (or graph vertices) to retain the activations of, as checkpoints
+     */
+    public static ActivationCheckpointing atLayers(@NonNull String... layerNames) {
+        Preconditions.checkArgument(layerNames.length > 0, "At least one layer name must be provided");
+        ActivationCheckpointing c = new ActivationCheckpointing();
+        c.setCheckpointLayers(new ArrayList<>(Arrays.asList(layerNames)));
+        return c;
+    }
+
+    /**
+     * Get the segment boundaries for the specified layers or vertices
+     *
+     * @param orderedNames Names of the layers (or non-input graph vertices) in forward pass order
+     * @return For each layer or vertex, whether a segment ends after it (i.e., whether its output is a checkpoint)
+     */
+    public boolean[] segmentEnds(@NonNull List<String> orderedNames) {
+        boolean[] out = new boolean[orderedNames.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (everyNLayers > 0 && (i + 1) % everyNLayers == 0)
+                    || (checkpointLayers != null && checkpointLayers.contains(orderedNames.get(i)));
+        }
+        return out;
+    }
+
+    @Override
+    public ActivationCheckpointing clone() {
+        try {
+            ActivationCheckpointing c = (ActivationCheckpointing) super.clone();
+            if (checkpointLayers != null)
+                c.checkpointLayers = new ArrayList<>(checkpointLayers);
+            return c;
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
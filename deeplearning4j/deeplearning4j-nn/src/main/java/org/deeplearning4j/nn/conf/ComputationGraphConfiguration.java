@@ -79,6 +79,14 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
     @Setter
     protected DataType dataType = DataType.FLOAT;   //Default to float for 1.0.0-beta3 and earlier nets
 
+    @Getter
+    @Setter
+    protected MixedPrecision mixedPrecision;        //Null: mixed precision training is not used
+
+    @Getter
+    @Setter
+    protected ActivationCheckpointing activationCheckpointing;  //Null: all activations are retained for backprop
+
     protected boolean validateOutputLayerConfig = true;     //Default for 1.0.0-beta3 and earlier nets
 
     /**
@@ -334,11 +342,50 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
         conf.defaultConfiguration.cacheMode = this.cacheMode;
         conf.validateOutputLayerConfig = this.validateOutputLayerConfig;
         conf.dataType = this.dataType;
+        conf.mixedPrecision = (this.mixedPrecision == null ? null : this.mixedPrecision.clone());
+        conf.activationCheckpointing = (this.activationCheckpointing == null ? null : this.activationCheckpointing.clone());
 
         return conf;
     }
 
 
+    /**
+     * Create a copy of this configuration that contains only the vertices required to calculate the specified outputs,
+     * i.e., the specified vertices and all of their ancestors. The network inputs are unchanged (including any that are
+     * not required), so the resulting network accepts the same input arrays as this network.
+     *
+     * @param outputs Names of the vertices to use as network outputs. These need not be outputs of this network
+     * @return Configuration with the specified outputs
+     */
+    public ComputationGraphConfiguration subgraph(@NonNull String... outputs) {
+        Preconditions.checkArgument(outputs.length > 0, "At least one output must be specified");
+        Set<String> required = new HashSet<>();
+        Deque<String> toProcess = new ArrayDeque<>();
+        for (String s : outputs) {
+            Preconditions.checkArgument(vertices.containsKey(s), "Invalid output: \"%s\" is not a vertex in the network. " +
+                    "Vertices: %s", s, vertices.keySet());
+            toProcess.add(s);
+        }
+        while (!toProcess.isEmpty()) {
+            String next = toProcess.removeFirst();
+            if (!required.add(next))
+                continue;
+            List<String> in = vertexInputs.get(next);
+            if (in != null) {
+                for (String s : in) {
+                    if (vertices.containsKey(s))
+                        toProcess.add(s);
+                }
+            }
+        }
+
+        ComputationGraphConfiguration conf = clone();
+        conf.vertices.keySet().retainAll(required);
+        conf.vertexInputs.keySet().retainAll(required);
+        conf.networkOutputs = new ArrayList<>(Arrays.asList(outputs));
+        return conf;
+    }
+
     /**
      * Check the configuration, make sure it is valid
      *
@@ -703,8 +750,10 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             memoryReportMap.put(s, mr);
         }
 
-        return new NetworkMemoryReport(memoryReportMap, ComputationGraphConfiguration.class, "ComputationGraph",
-                inputTypes);
+        NetworkMemoryReport report = new NetworkMemoryReport(memoryReportMap, ComputationGraphConfiguration.class,
+                "ComputationGraph", inputTypes);
+        report.setActivationCheckpointing(activationCheckpointing);
+        return report;
     }
 
     @Data
@@ -722,6 +771,7 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
         protected List<InputType> networkInputTypes = new ArrayList<>();
         protected List<String> networkOutputs = new ArrayList<>();
         protected BackpropType backpropType = BackpropType.Standard;
+        protected ActivationCheckpointing activationCheckpointing;
         protected int tbpttFwdLength = DEFAULT_TBPTT_LENGTH;
         protected int tbpttBackLength = DEFAULT_TBPTT_LENGTH;
 
@@ -752,6 +802,7 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             this.backpropType = clonedConf.getBackpropType();
             this.tbpttFwdLength = clonedConf.getTbpttFwdLength();
             this.tbpttBackLength = clonedConf.getTbpttBackLength();
+            this.activationCheckpointing = clonedConf.getActivationCheckpointing();
             this.globalConfiguration = globalConfiguration;
             //this.getGlobalConfiguration().setSeed(clonedConf.getDefaultConfiguration().getSeed());
         }
@@ -781,6 +832,18 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             return this;
         }
 
+        /**
+         * Activation checkpointing for training: retain only the activations at segment boundaries during the forward
+         * pass, and recompute the other activations during backprop. This reduces the memory required for training,
+         * at the cost of an additional forward pass. See {@link ActivationCheckpointing} for details.
+         *
+         * @param activationCheckpointing Activation checkpointing configuration. Null (default): not used
+         */
+        public GraphBuilder activationCheckpointing(ActivationCheckpointing activationCheckpointing) {
+            this.activationCheckpointing = activationCheckpointing;
+            return this;
+        }
+
         /**
          * When doing truncated BPTT: how many steps of forward pass should we do
          * before doing (truncated) backprop?<br>
@@ -1201,6 +1264,8 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             conf.cacheMode = globalConfiguration.cacheMode;
             conf.validateOutputLayerConfig = validateOutputConfig;
             conf.dataType = globalConfiguration.dataType;
+            conf.mixedPrecision = globalConfiguration.mixedPrecision;
+            conf.activationCheckpointing = activationCheckpointing;
 
             conf.defaultConfiguration = globalConfiguration.build();
 
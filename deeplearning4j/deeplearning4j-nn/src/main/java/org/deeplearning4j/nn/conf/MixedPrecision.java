@@ -0,0 +1,146 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.nn.conf;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.nd4j.common.base.Preconditions;
+
+import java.io.Serializable;
+
+/**
+ * Configuration for mixed precision training, with dynamic loss scaling. See
+ * {@link NeuralNetConfiguration.Builder#mixedPrecision(org.nd4j.linalg.api.buffer.DataType, MixedPrecision)}.<br>
+ * The network parameters, activations and gradients use the (half precision) network data type, while the updater
+ * keeps an FP32 master copy of the parameters, and FP32 updater state.<br>
+ * To avoid underflow of small gradient values in half precision, the error signal from the output layers is
+ * multiplied by the loss scale before backpropagation, and the gradients are divided by it (in FP32) before the
+ * updater is applied. If the gradients overflow (contain infinite or NaN values), the parameter update is skipped
+ * and the loss scale is multiplied by the backoff factor. After growthInterval consecutive steps without overflow,
+ * the loss scale is multiplied by the growth factor.<br>
+ * For HALF (FP16) networks the loss scale is limited to 32768 (2^15) regardless of the configured range, as larger
+ * values are not representable in FP16 (maximum value 65504) and would make every scaled gradient infinite.
+ */
+@Data
+@NoArgsConstructor
+public class MixedPrecision implements Serializable, Cloneable {
+
+    private double initialLossScale = 32768.0;
+    private double growthFactor = 2.0;
+    private double backoffFactor = 0.5;
+    private int growthInterval = 2000;
+    private double minLossScale = 1.0;
+    private double maxLossScale = 32768.0;
+
+    private MixedPrecision(Builder builder) {
+        this.initialLossScale = builder.initialLossScale;
+        this.growthFactor = builder.growthFactor;
+        this.backoffFactor = builder.backoffFactor;
+        this.growthInterval = builder.growthInterval;
+        this.minLossScale = builder.minLossScale;
+        this.maxLossScale = builder.maxLossScale;
+    }
+
+    @Override
+    public MixedPrecision clone() {
+        try {
+            return (MixedPrecision) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class Builder {
+        private double initialLossScale = 32768.0;
+        private double growthFactor = 2.0;
+        private double backoffFactor = 0.5;
+        private int growthInterval = 2000;
+        private double minLossScale = 1.0;
+        private double maxLossScale = 32768.0;
+
+        /**
+         * @param initialLossScale Loss scale at the start of training. Default: 32768 (2^15)
+         */
+        public Builder initialLossScale(double initialLossScale) {
+            this.initialLossScale = initialLossScale;
+            return this;
+        }
+
+        /**
+         * @param growthFactor Factor to multiply the loss scale by, after growthInterval steps without overflow. Default: 2
+         */
+        public Builder growthFactor(double growthFactor) {
+            this.growthFactor = growthFactor;
+            return this;
+        }
+
+        /**
+         * @param backoffFactor Factor to multiply the loss scale by, when the gradients overflow. Default: 0.5
+         */
+        public Builder backoffFactor(double backoffFactor) {
+            this.backoffFactor = backoffFactor;
+            return this;
+        }
+
+        /**
+         * @param growthInterval Number of consecutive steps without overflow before the loss scale is increased.
+         *                       Default: 2000
+         */
+        public Builder growthInterval(int growthInterval) {
+            this.growthInterval = growthInterval;
+            return this;
+        }
+
+        /**
+         * Use a fixed loss scale: the loss scale is neither increased nor decreased, but steps with overflow are
+         * still skipped
+         *
+         * @param lossScale Loss scale to use
+         */
+        public Builder fixedLossScale(double lossScale) {
+            this.initialLossScale = lossScale;
+            this.growthFactor = 1.0;
+            this.backoffFactor = 1.0;
+            return this;
+        }
+
+        /**
+         * @param minLossScale Minimum loss scale. Default: 1
+         * @param maxLossScale Maximum loss scale. Default: 32768 (2^15). Note that for HALF networks, values above
+         *                     32768 are not used
+         */
+        public Builder lossScaleRange(double minLossScale, double maxLossScale) {
+            this.minLossScale = minLossScale;
+            this.maxLossScale = maxLossScale;
+            return this;
+        }
+
+        public MixedPrecision build() {
+            Preconditions.checkState(initialLossScale > 0 && minLossScale > 0 && minLossScale <= maxLossScale,
+                    "Invalid loss scale configuration: initial loss scale %s, range [%s, %s]", initialLossScale, minLossScale, maxLossScale);
+            Preconditions.checkState(growthFactor >= 1.0 && backoffFactor > 0 && backoffFactor <= 1.0 && growthInterval > 0,
+                    "Invalid loss scale configuration: growth factor must be >= 1, backoff factor in range (0,1] and growth" +
+                            " interval > 0. Got growth factor %s, backoff factor %s, growth interval %s", growthFactor, backoffFactor, growthInterval);
+            return new MixedPrecision(this);
+        }
+    }
+}
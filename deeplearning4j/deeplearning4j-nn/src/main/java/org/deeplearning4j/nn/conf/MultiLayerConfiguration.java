@@ -81,6 +81,18 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
     @Setter
     protected DataType dataType = DataType.FLOAT;   //Default to float for deserialization of beta3 and earlier nets
 
+    @Getter
+    @Setter
+    protected MixedPrecision mixedPrecision;        //Null: mixed precision training is not used
+
+    @Getter
+    @Setter
+    protected ActivationCheckpointing activationCheckpointing;  //Null: all activations are retained for backprop
+
+    @Getter
+    @Setter
+    protected boolean pipelinedUpdates = false;
+
     //Counter for the number of parameter updates so far
     // This is important for learning rate schedules, for example, and is stored here to ensure it is persisted
     // for Spark and model serialization
@@ -392,6 +404,9 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             clone.cacheMode = this.cacheMode;
             clone.validateOutputLayerConfig = this.validateOutputLayerConfig;
             clone.dataType = this.dataType;
+            clone.mixedPrecision = (this.mixedPrecision == null ? null : this.mixedPrecision.clone());
+            clone.activationCheckpointing = (this.activationCheckpointing == null ? null : this.activationCheckpointing.clone());
+            clone.pipelinedUpdates = this.pipelinedUpdates;
 
             return clone;
 
@@ -434,7 +449,9 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             inputType = confs.get(i).getLayer().getOutputType(i, inputType);
         }
 
-        return new NetworkMemoryReport(memoryReportMap, MultiLayerConfiguration.class, "MultiLayerNetwork", inputType);
+        NetworkMemoryReport report = new NetworkMemoryReport(memoryReportMap, MultiLayerConfiguration.class, "MultiLayerNetwork", inputType);
+        report.setActivationCheckpointing(activationCheckpointing);
+        return report;
     }
 
     /**
@@ -478,6 +495,9 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
         protected boolean validateOutputConfig = true;
         protected boolean validateTbpttConfig = true;
         protected DataType dataType;
+        protected MixedPrecision mixedPrecision;
+        protected ActivationCheckpointing activationCheckpointing;
+        protected boolean pipelinedUpdates = false;
         protected boolean overrideNinUponBuild = true;
 
 
@@ -643,6 +663,43 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             return this;
         }
 
+        /**
+         * Mixed precision training configuration. Null (default): mixed precision training is not used.
+         * See {@link NeuralNetConfiguration.Builder#mixedPrecision(DataType, MixedPrecision)}
+         */
+        public Builder mixedPrecision(MixedPrecision mixedPrecision){
+            this.mixedPrecision = mixedPrecision;
+            return this;
+        }
+
+        /**
+         * Activation checkpointing for training: retain only the activations at segment boundaries during the forward
+         * pass, and recompute the other activations during backprop. This reduces the memory required for training,
+         * at the cost of an additional forward pass. See {@link ActivationCheckpointing} for details.
+         *
+         * @param activationCheckpointing Activation checkpointing configuration. Null (default): not used
+         */
+        public Builder activationCheckpointing(ActivationCheckpointing activationCheckpointing){
+            this.activationCheckpointing = activationCheckpointing;
+            return this;
+        }
+
+        /**
+         * Pipelined updates for training: if true, the updater for each block of layers is applied on a background thread
+         * as soon as backprop has calculated the gradients for those layers, overlapping the updater with the backprop
+         * calculation for the earlier layers. All updates are complete before the next forward pass.<br>
+         * Only used when fitting with the StochasticGradientDescent optimization algorithm and standard backprop (not
+         * truncated BPTT, mixed precision or activation checkpointing); otherwise the updates are applied after backprop
+         * as normal. Note that when enabled, the network score is calculated before backprop, and the gradients seen by
+         * TrainingListener.onBackwardPass and onGradientCalculation are the updates (after the updater has been applied).
+         *
+         * @param pipelinedUpdates Whether to use pipelined updates. Default: false
+         */
+        public Builder pipelinedUpdates(boolean pipelinedUpdates){
+            this.pipelinedUpdates = pipelinedUpdates;
+            return this;
+        }
+
 
         public MultiLayerConfiguration build() {
             //Validate BackpropType setting
@@ -750,6 +807,9 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             conf.inferenceWorkspaceMode = inferenceWorkspaceMode;
             conf.cacheMode = cacheMode;
             conf.dataType = dataType;
+            conf.mixedPrecision = mixedPrecision;
+            conf.activationCheckpointing = activationCheckpointing;
+            conf.pipelinedUpdates = pipelinedUpdates;
 
             Nd4j.getRandom().setSeed(conf.getConf(0).getSeed());
 
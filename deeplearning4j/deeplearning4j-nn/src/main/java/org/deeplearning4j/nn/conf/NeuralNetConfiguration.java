@@ -211,6 +211,18 @@ public class NeuralNetConfiguration implements Serializable, Cloneable {
             return this;
         }
 
+        @Override
+        public ListBuilder activationCheckpointing(ActivationCheckpointing activationCheckpointing) {
+            super.activationCheckpointing(activationCheckpointing);
+            return this;
+        }
+
+        @Override
+        public ListBuilder pipelinedUpdates(boolean pipelinedUpdates) {
+            super.pipelinedUpdates(pipelinedUpdates);
+            return this;
+        }
+
         @Override
         public ListBuilder tBPTTLength(int bpttLength) {
             super.tBPTTLength(bpttLength);
@@ -331,6 +343,9 @@ public class NeuralNetConfiguration implements Serializable, Cloneable {
                     .inferenceWorkspaceMode(wsmTest).confs(list).validateOutputLayerConfig(validateOutputConfig)
                     .overrideNinUponBuild(overrideNinUponBuild)
                     .dataType(globalConfig.dataType)
+                    .mixedPrecision(mixedPrecision != null ? mixedPrecision : globalConfig.mixedPrecision)
+                    .activationCheckpointing(activationCheckpointing)
+                    .pipelinedUpdates(pipelinedUpdates)
                     .build();
         }
 
@@ -485,6 +500,7 @@ public class NeuralNetConfiguration implements Serializable, Cloneable {
         protected boolean setIWM = false;
         protected CacheMode cacheMode = CacheMode.NONE;
         protected DataType dataType = DataType.FLOAT;
+        protected MixedPrecision mixedPrecision;
 
         protected ConvolutionMode convolutionMode = ConvolutionMode.Truncate;
         protected ConvolutionLayer.AlgoMode cudnnAlgoMode = ConvolutionLayer.AlgoMode.PREFER_FASTEST;
@@ -1144,12 +1160,41 @@ public class NeuralNetConfiguration implements Serializable, Cloneable {
 
         /**
          * Set the DataType for the network parameters and activations. Must be a floating point type: {@link DataType#DOUBLE},
-         * {@link DataType#FLOAT} or {@link DataType#HALF}.<br>
+         * {@link DataType#FLOAT}, {@link DataType#HALF} or {@link DataType#BFLOAT16}.<br>
          */
         public Builder dataType(@NonNull DataType dataType){
-            Preconditions.checkState(dataType == DataType.DOUBLE || dataType == DataType.FLOAT || dataType == DataType.HALF,
-                    "Data type must be a floating point type: one of DOUBLE, FLOAT, or HALF. Got datatype: %s", dataType);
+            Preconditions.checkState(dataType == DataType.DOUBLE || dataType == DataType.FLOAT || dataType == DataType.HALF
+                            || dataType == DataType.BFLOAT16,
+                    "Data type must be a floating point type: one of DOUBLE, FLOAT, HALF or BFLOAT16. Got datatype: %s", dataType);
+            this.dataType = dataType;
+            return this;
+        }
+
+        /**
+         * Use mixed precision training with the default loss scaling configuration.
+         * See {@link #mixedPrecision(DataType, MixedPrecision)}
+         *
+         * @param dataType Half precision data type for the network parameters and activations: HALF or BFLOAT16
+         */
+        public Builder mixedPrecision(@NonNull DataType dataType) {
+            return mixedPrecision(dataType, new MixedPrecision());
+        }
+
+        /**
+         * Use mixed precision training: the forward and backward passes are done in the specified half precision data
+         * type (which is also used for the network parameters, activations and gradients), while the updater keeps
+         * an FP32 master copy of the parameters and FP32 updater state. Dynamic loss scaling is used to avoid gradient
+         * underflow, and parameter updates are skipped when the gradients overflow - see {@link MixedPrecision}.<br>
+         * Compared to training in FP32, this roughly halves the memory required for activations.
+         *
+         * @param dataType       Half precision data type for the network parameters and activations: HALF or BFLOAT16
+         * @param mixedPrecision Loss scaling configuration
+         */
+        public Builder mixedPrecision(@NonNull DataType dataType, @NonNull MixedPrecision mixedPrecision) {
+            Preconditions.checkState(dataType == DataType.HALF || dataType == DataType.BFLOAT16,
+                    "Mixed precision training requires HALF or BFLOAT16 data type, got %s", dataType);
             this.dataType = dataType;
+            this.mixedPrecision = mixedPrecision;
             return this;
         }
 
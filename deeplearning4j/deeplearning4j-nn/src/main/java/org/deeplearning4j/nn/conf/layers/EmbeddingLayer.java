@@ -48,10 +48,12 @@ import java.util.Map;
 public class EmbeddingLayer extends FeedForwardLayer {
 
     private boolean hasBias = true; //Default for pre-0.9.2 implementations
+    private boolean sparseGradients = false;
 
     private EmbeddingLayer(Builder builder) {
         super(builder);
         this.hasBias = builder.hasBias;
+        this.sparseGradients = builder.sparseGradients;
         initializeConstraints(builder);
     }
 
@@ -107,6 +109,12 @@ public class EmbeddingLayer extends FeedForwardLayer {
          */
         private boolean hasBias = false;
 
+        /**
+         * If true: use sparse (row-wise) gradients and lazy updates for the embedding weights. Default: false.
+         * See {@link #sparseGradients(boolean)}
+         */
+        private boolean sparseGradients = false;
+
         public Builder(){
             //Default to Identity activation - i.e., don't inherit.
             //For example, if user sets ReLU as global default, they very likely don't intend to use it for Embedding layer also
@@ -124,6 +132,22 @@ public class EmbeddingLayer extends FeedForwardLayer {
             return this;
         }
 
+        /**
+         * If true: use sparse (row-wise) gradients for the embedding weights. Only the rows of the weight gradient
+         * for the indices present in the minibatch are reset and computed, and the updater (Sgd, Adam, AdaGrad or
+         * NoOp) is applied lazily to those rows only - hence the cost of a parameter update scales with the number
+         * of distinct indices in the minibatch, rather than with the vocabulary size. Note that with lazy updates, the
+         * updater state (such as Adam momentum) of rows not present in the minibatch is not decayed.<br>
+         * Sparse gradients are not used if regularization (l1/l2/weight decay) is configured for the weights, or if
+         * the updater does not support sparse updates. Default: false
+         *
+         * @param sparseGradients Whether to use sparse gradients for the weights of this layer
+         */
+        public Builder sparseGradients(boolean sparseGradients) {
+            this.sparseGradients = sparseGradients;
+            return this;
+        }
+
         @Override
         public Builder weightInit(IWeightInit weightInit) {
             if(weightInit instanceof WeightInitEmbedding){
@@ -52,6 +52,7 @@ public class EmbeddingSequenceLayer extends FeedForwardLayer {
     private boolean hasBias = false;
     private boolean inferInputLength = false; // use input length as provided by input data
     private RNNFormat outputFormat = RNNFormat.NCW;       //Default value for older deserialized models
+    private boolean sparseGradients = false;
 
     private EmbeddingSequenceLayer(Builder builder) {
         super(builder);
@@ -59,6 +60,7 @@ public class EmbeddingSequenceLayer extends FeedForwardLayer {
         this.inputLength = builder.inputLength;
         this.inferInputLength = builder.inferInputLength;
         this.outputFormat = builder.outputFormat;
+        this.sparseGradients = builder.sparseGradients;
         initializeConstraints(builder);
     }
 
@@ -171,6 +173,12 @@ public class EmbeddingSequenceLayer extends FeedForwardLayer {
 
         private RNNFormat outputFormat = RNNFormat.NCW;       //Default value for older deserialized models
 
+        /**
+         * If true: use sparse (row-wise) gradients and lazy updates for the embedding weights. Default: false.
+         * See {@link #sparseGradients(boolean)}
+         */
+        private boolean sparseGradients = false;
+
         public Builder outputDataFormat(RNNFormat format){
             this.outputFormat = format;
             return this;
@@ -209,6 +217,22 @@ public class EmbeddingSequenceLayer extends FeedForwardLayer {
             return this;
         }
 
+        /**
+         * If true: use sparse (row-wise) gradients for the embedding weights. Only the rows of the weight gradient
+         * for the indices present in the minibatch are reset and computed, and the updater (Sgd, Adam, AdaGrad or
+         * NoOp) is applied lazily to those rows only - hence the cost of a parameter update scales with the number
+         * of distinct indices in the minibatch, rather than with the vocabulary size. Note that with lazy updates, the
+         * updater state (such as Adam momentum) of rows not present in the minibatch is not decayed.<br>
+         * Sparse gradients are not used if regularization (l1/l2/weight decay) is configured for the weights, or if
+         * the updater does not support sparse updates. Default: false
+         *
+         * @param sparseGradients Whether to use sparse gradients for the weights of this layer
+         */
+        public Builder sparseGradients(boolean sparseGradients) {
+            this.setSparseGradients(sparseGradients);
+            return this;
+        }
+
         @Override
         public Builder weightInit(IWeightInit weightInit) {
             this.setWeightInitFn(weightInit);
@@ -23,6 +23,8 @@ package org.deeplearning4j.nn.conf.memory;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
+import org.deeplearning4j.nn.conf.ActivationCheckpointing;
 import org.deeplearning4j.nn.conf.CacheMode;
 import org.deeplearning4j.nn.conf.inputs.InputType;
 import org.nd4j.linalg.api.buffer.DataBuffer;
@@ -30,8 +32,10 @@ import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Getter
@@ -44,6 +48,12 @@ public class NetworkMemoryReport extends MemoryReport {
     private final Class<?> modelClass;
     private final String modelName;
     private final InputType[] networkInputTypes;
+    /**
+     * Activation checkpointing configuration for the network, if any. When set, the activation memory estimate for
+     * training accounts for the activations being retained only at the checkpoints and for one segment at a time
+     */
+    @Setter
+    private ActivationCheckpointing activationCheckpointing;
 
     public NetworkMemoryReport(
                     @NonNull @JsonProperty("layerAndVertexReports") Map<String, MemoryReport> layerAndVertexReports,
@@ -79,12 +89,19 @@ public class NetworkMemoryReport extends MemoryReport {
         long maxWorking = 0;
         long maxWorkingFixed = 0;
         long maxWorkingVariable = 0;
+        boolean checkpointed = isCheckpointed(memoryUseMode);
+        if (checkpointed) {
+            totalBytes += checkpointedActivationBytes(minibatchSize, cacheMode, dataType);
+        }
         for (MemoryReport lmr : layerAndVertexReports.values()) {
 
             for (MemoryType mt : MemoryType.values()) {
                 if (mt == MemoryType.WORKING_MEMORY_FIXED || mt == MemoryType.WORKING_MEMORY_VARIABLE) {
                     continue;
                 }
+                if (checkpointed && mt == MemoryType.ACTIVATIONS) {
+                    continue;
+                }
                 totalBytes += lmr.getMemoryBytes(mt, minibatchSize, memoryUseMode, cacheMode, dataType);
             }
 
@@ -107,6 +124,9 @@ public class NetworkMemoryReport extends MemoryReport {
     @Override
     public long getMemoryBytes(MemoryType memoryType, int minibatchSize, MemoryUseMode memoryUseMode,
                     CacheMode cacheMode, DataType dataType) {
+        if (memoryType == MemoryType.ACTIVATIONS && isCheckpointed(memoryUseMode)) {
+            return checkpointedActivationBytes(minibatchSize, cacheMode, dataType);
+        }
         long totalBytes = 0;
         for (MemoryReport lmr : layerAndVertexReports.values()) {
 
@@ -122,6 +142,34 @@ public class NetworkMemoryReport extends MemoryReport {
         return totalBytes;
     }
 
+    private boolean isCheckpointed(MemoryUseMode memoryUseMode) {
+        return memoryUseMode == MemoryUseMode.TRAINING && activationCheckpointing != null;
+    }
+
+    /**
+     * Activation memory for training with activation checkpointing: the checkpointed activations, plus the activations
+     * of the largest segment (which are recomputed during backprop). Activations of vertices crossing segment boundaries
+     * other than the checkpoints themselves (i.e., skip connections) are not accounted for.
+     */
+    private long checkpointedActivationBytes(int minibatchSize, CacheMode cacheMode, DataType dataType) {
+        List<String> names = new ArrayList<>(layerAndVertexReports.keySet());
+        boolean[] segmentEnds = activationCheckpointing.segmentEnds(names);
+        long checkpointBytes = 0;
+        long segmentBytes = 0;
+        long maxSegmentBytes = 0;
+        for (int i = 0; i < names.size(); i++) {
+            long bytes = layerAndVertexReports.get(names.get(i)).getMemoryBytes(MemoryType.ACTIVATIONS, minibatchSize,
+                    MemoryUseMode.TRAINING, cacheMode, dataType);
+            segmentBytes += bytes;
+            if (segmentEnds[i] && i < names.size() - 1) {
+                checkpointBytes += bytes;
+                maxSegmentBytes = Math.max(maxSegmentBytes, segmentBytes);
+                segmentBytes = 0;
+            }
+        }
+        return checkpointBytes + Math.max(maxSegmentBytes, segmentBytes);
+    }
+
     @Override
     public String toString() {
 
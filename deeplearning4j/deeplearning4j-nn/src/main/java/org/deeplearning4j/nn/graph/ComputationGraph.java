@@ -54,6 +54,8 @@ import org.deeplearning4j.nn.layers.FrozenLayer;
 import org.deeplearning4j.nn.layers.FrozenLayerWithBackprop;
 import org.deeplearning4j.nn.layers.recurrent.BidirectionalLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.updater.BaseMultiLayerUpdater;
+import org.deeplearning4j.nn.updater.LossScaler;
 import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
 import org.deeplearning4j.nn.workspace.ArrayType;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
@@ -109,7 +111,11 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
     protected ComputationGraphConfiguration configuration;
     protected boolean initCalled = false;
     protected transient Solver solver; //Used to call optimizers during backprop
+    @Getter
+    protected transient LossScaler lossScaler; //Mixed precision training only: see NeuralNetConfiguration.Builder.mixedPrecision
     protected INDArray flattenedParams; //Params for all layers are a view/subset of this array
+    protected boolean paramsReadOnly = false; //Params are shared with other networks: see cloneSharingParameters()
+    protected transient volatile ConcurrentReplicas<ComputationGraph> concurrentReplicas; //Per thread replicas, if concurrent output is enabled: see setConcurrentOutput()
     @Getter
     protected transient INDArray flattenedGradients; //Gradients for all layers are a view/subset of this array
     @Getter
@@ -689,6 +695,13 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
             gv.setOutputVertex(true);
         }
 
+        MixedPrecision mixedPrecision = configuration.getMixedPrecision();
+        if (mixedPrecision != null && lossScaler == null) {
+            Preconditions.checkState(netDtype == DataType.HALF || netDtype == DataType.BFLOAT16, "Mixed precision training" +
+                    " requires the network datatype to be HALF or BFLOAT16, got %s", netDtype);
+            lossScaler = new LossScaler(mixedPrecision, netDtype);
+        }
+
         // now we init solver & optimizer
         if (solver == null) {
             try (MemoryWorkspace wsO = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
@@ -908,6 +921,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
     }
 
     private void pretrainLayerHelper(String layerName, MultiDataSetIterator iter, int numEpochs){
+        assertParamsWritable("pretrain layer");
         if (flattenedGradients == null) {
             initGradientsView();
         }
@@ -1056,6 +1070,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
      * @param multi Training data (MultiDataSetIterator)
      */
     public synchronized void fit(MultiDataSetIterator multi) {
+        assertParamsWritable("fit network");
         if (flattenedGradients == null) {
             initGradientsView();
         }
@@ -1124,6 +1139,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
     }
 
     private synchronized void fitHelper(INDArray[] inputs, INDArray[] labels, INDArray[] featureMaskArrays, INDArray[] labelMaskArrays) {
+        assertParamsWritable("fit network");
         if (numParams() == 0) {
             return; //Edge case: net with no params: fitting is a no-op
         }
@@ -1371,6 +1387,15 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         FwdPassType fwdType = (tbptt ? FwdPassType.RNN_ACTIVATE_WITH_STORED_STATE : FwdPassType.STANDARD);
         synchronizeIterEpochCounts();
 
+        int[] segmentStarts = (tbptt ? null : checkpointSegmentStarts());
+        if (segmentStarts != null && segmentStarts.length > 1) {
+            computeGradientAndScoreCheckpointed(workspaceMgr, segmentStarts);
+            for (GraphVertex gv : vertices) {
+                gv.clear();
+            }
+            return;
+        }
+
         //Calculate activations (which are stored in each layer, and used in backprop)
         try(MemoryWorkspace wsAllActivations = workspaceMgr.notifyScopeEntered(ArrayType.ACTIVATIONS)) {
             Map<String, INDArray> activations = ffToLayerActivationsInWS(true, -1, getOutputLayerIndices(),
@@ -1390,29 +1415,11 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
             double r = calcRegularizationScore(true);
 
             score = 0.0;
-            int outNum = 0;
-            for (String s : configuration.getNetworkOutputs()) {
-                GraphVertex gv = verticesMap.get(s);
-                if(gv instanceof LayerVertex) {
-                    //At this point: the input to the output layer might not be set on the layer itself - just the vertex
-                    LayerVertex lv = (LayerVertex) gv;
-                    if(!lv.isSetLayerInput()) {
-                        lv.applyPreprocessorAndSetInput(workspaceMgr);
-                    }
-                }
-                Layer vertexLayer = gv.getLayer();
-                if (vertexLayer instanceof FrozenLayerWithBackprop) {
-                    vertexLayer = ((FrozenLayerWithBackprop) vertexLayer).getInsideLayer();
-                }
-                vertexLayer.setMaskArray((labelMaskArrays == null) ? null : labelMaskArrays[outNum]);
-
-                try(MemoryWorkspace ws = workspaceMgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) {
-                    score += ((IOutputLayer) vertexLayer).computeScore(r, true, workspaceMgr);
-                }
+            for (int outNum = 0; outNum < configuration.getNetworkOutputs().size(); outNum++) {
+                score += computeOutputScore(outNum, r, workspaceMgr);
 
                 //Only want to add l1/l2 component once...
                 r = 0.0;
-                outNum++;
             }
 
             //Listeners
@@ -1430,6 +1437,249 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         }
     }
 
+    /**
+     * Compute the score for the specified network output. The input to the output layer (on the vertex) and the labels
+     * must already have been set - i.e., backprop must have been done for the output layer.
+     *
+     * @param outNum         Index of the network output
+     * @param fullNetRegTerm Regularization score to add (should be added for only one of the outputs)
+     * @param workspaceMgr   Workspace manager
+     * @return Score for the output
+     */
+    protected double computeOutputScore(int outNum, double fullNetRegTerm, LayerWorkspaceMgr workspaceMgr) {
+        GraphVertex gv = verticesMap.get(configuration.getNetworkOutputs().get(outNum));
+        if(gv instanceof LayerVertex) {
+            //At this point: the input to the output layer might not be set on the layer itself - just the vertex
+            LayerVertex lv = (LayerVertex) gv;
+            if(!lv.isSetLayerInput()) {
+                lv.applyPreprocessorAndSetInput(workspaceMgr);
+            }
+        }
+        Layer vertexLayer = gv.getLayer();
+        if (vertexLayer instanceof FrozenLayerWithBackprop) {
+            vertexLayer = ((FrozenLayerWithBackprop) vertexLayer).getInsideLayer();
+        }
+        vertexLayer.setMaskArray((labelMaskArrays == null) ? null : labelMaskArrays[outNum]);
+
+        try(MemoryWorkspace ws = workspaceMgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) {
+            return ((IOutputLayer) vertexLayer).computeScore(fullNetRegTerm, true, workspaceMgr);
+        }
+    }
+
+    /**
+     * @return Position (in topological order) of the first vertex of each activation checkpointing segment, or null if
+     * activation checkpointing is not used
+     */
+    protected int[] checkpointSegmentStarts() {
+        ActivationCheckpointing checkpointing = configuration.getActivationCheckpointing();
+        if (checkpointing == null)
+            return null;
+        List<String> names = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < topologicalOrder.length; i++) {
+            GraphVertex gv = vertices[topologicalOrder[i]];
+            if (!gv.isInputVertex()) {
+                names.add(gv.getVertexName());
+                positions.add(i);
+            }
+        }
+        boolean[] segmentEnds = checkpointing.segmentEnds(names);
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int i = 0; i < segmentEnds.length - 1; i++) {
+            if (segmentEnds[i])
+                starts.add(positions.get(i) + 1);
+        }
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Compute the gradient and score using activation checkpointing: see {@link ActivationCheckpointing}.<br>
+     * During the forward pass, only the activations that are used by a later segment are retained (detached). Backprop
+     * is then done one segment at a time, from the last to the first: the forward pass for the segment is recomputed from
+     * the retained activations (in the activations workspace, which is reused for each segment), followed by backprop
+     * for the vertices of the segment. The RNG is seeded identically for both forward passes of a segment, so dropout
+     * masks etc are the same.
+     *
+     * @param workspaceMgr  Workspace manager
+     * @param segmentStarts Position (in topological order) of the first vertex of each segment
+     */
+    protected void computeGradientAndScoreCheckpointed(LayerWorkspaceMgr workspaceMgr, int[] segmentStarts) {
+        if (flattenedGradients == null) {
+            initGradientsView();
+        }
+        if (configuration.getTrainingWorkspaceMode() != WorkspaceMode.NONE) {
+            if (inputs[0].isAttached()) {
+                //Don't leverage out of async DataMultiSetIterator workspaces
+                workspaceMgr.setNoLeverageOverride(inputs[0].data().getParentWorkspace().getId());
+            }
+            if (configuration.getCacheMode() != CacheMode.NONE) {
+                workspaceMgr.setWorkspace(ArrayType.FF_CACHE, WS_ALL_LAYERS_ACT, WS_ALL_LAYERS_ACT_CONFIG);
+            }
+        }
+
+        int nSegments = segmentStarts.length;
+        long[] seeds = new long[nSegments + 1];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = Nd4j.getRandom().nextLong();
+        }
+        int[] positions = new int[topologicalOrder.length];
+        for (int i = 0; i < topologicalOrder.length; i++) {
+            positions[topologicalOrder[i]] = i;
+        }
+        int[] outputLayerIdxs = getOutputLayerIndices();
+
+        //Forward pass: retain only the activations used in later segments
+        Map<Integer, INDArray> checkpoints = new HashMap<>();
+        for (int s = 0; s < nSegments - 1; s++) {
+            int toPos = segmentStarts[s + 1] - 1;
+            try (MemoryWorkspace ws = workspaceMgr.notifyScopeEntered(ArrayType.ACTIVATIONS)) {
+                Nd4j.getRandom().setSeed(seeds[s]);
+                Map<Integer, INDArray> activations = ffSegmentInWS(segmentStarts[s], toPos, outputLayerIdxs,
+                        positions, checkpoints, workspaceMgr);
+                for (Map.Entry<Integer, INDArray> e : activations.entrySet()) {
+                    VertexIndices[] outputsTo = vertices[e.getKey()].getOutputVertices();
+                    if (outputsTo == null || vertices[e.getKey()].isInputVertex())
+                        continue;
+                    for (VertexIndices v : outputsTo) {
+                        if (positions[v.getVertexIndex()] > toPos) {
+                            checkpoints.put(e.getKey(), e.getValue().detach());
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        if (!trainingListeners.isEmpty()) {
+            Map<String, INDArray> checkpointsByName = new HashMap<>();
+            for (Map.Entry<Integer, INDArray> e : checkpoints.entrySet()) {
+                checkpointsByName.put(vertices[e.getKey()].getVertexName(), e.getValue());
+            }
+            for (TrainingListener tl : trainingListeners) {
+                tl.onForwardPass(this, checkpointsByName);
+            }
+        }
+
+        //Backward pass: recompute the activations of each segment, then backprop through it
+        LinkedList<Triple<String, INDArray, Character>> gradients = new LinkedList<>();
+        boolean[] setVertexEpsilon = new boolean[topologicalOrder.length];
+        double r = calcRegularizationScore(true);
+        score = 0.0;
+        for (int s = nSegments - 1; s >= 0; s--) {
+            int fromPos = segmentStarts[s];
+            int toPos = (s == nSegments - 1 ? topologicalOrder.length - 1 : segmentStarts[s + 1] - 1);
+            try (MemoryWorkspace ws = workspaceMgr.notifyScopeEntered(ArrayType.ACTIVATIONS)) {
+                Nd4j.getRandom().setSeed(seeds[s]);
+                ffSegmentInWS(fromPos, toPos, outputLayerIdxs, positions, checkpoints, workspaceMgr);
+                calcBackpropGradients(false, fromPos, toPos, setVertexEpsilon, gradients, null);
+
+                List<String> networkOutputs = configuration.getNetworkOutputs();
+                for (int outNum = 0; outNum < networkOutputs.size(); outNum++) {
+                    int pos = positions[verticesMap.get(networkOutputs.get(outNum)).getVertexIndex()];
+                    if (pos >= fromPos && pos <= toPos) {
+                        score += computeOutputScore(outNum, r, workspaceMgr);
+                        //Only want to add l1/l2 component once...
+                        r = 0.0;
+                    }
+                }
+            }
+        }
+        Nd4j.getRandom().setSeed(seeds[nSegments]);
+
+        //Gradients were added in the order we need them in for flattening (same as params order)
+        Gradient gradient = new DefaultGradient(flattenedGradients);
+        for (Triple<String, INDArray, Character> tr : gradients) {
+            gradient.setGradientFor(tr.getFirst(), tr.getSecond(), tr.getThird());
+        }
+        this.gradient = gradient;
+
+        if (!trainingListeners.isEmpty()) {
+            try (MemoryWorkspace workspace = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                for (TrainingListener tl : trainingListeners) {
+                    tl.onBackwardPass(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Feed-forward (training mode) for the vertices in the specified range of the topological order, for activation
+     * checkpointing. Inputs to these vertices from vertices in earlier segments are taken from the network inputs or
+     * the checkpoints. Requires that WS_ALL_LAYERS_ACT is open if using workspaces.
+     *
+     * @param fromPos      First position (in topological order) to do the forward pass for
+     * @param toPos        Last position (in topological order) to do the forward pass for
+     * @param excludeIdxs  Vertices to exclude from the forward pass (output layers)
+     * @param positions    Position in the topological order, by vertex index
+     * @param checkpoints  Retained (detached) activations from earlier segments, by vertex index
+     * @param workspaceMgr Workspace manager
+     * @return Activations of the vertices in the range, by vertex index
+     */
+    protected Map<Integer, INDArray> ffSegmentInWS(int fromPos, int toPos, int[] excludeIdxs, int[] positions,
+                                                   Map<Integer, INDArray> checkpoints, LayerWorkspaceMgr workspaceMgr) {
+        boolean noWS = configuration.getTrainingWorkspaceMode() == WorkspaceMode.NONE;
+        setLayerMaskArrays(inputMaskArrays, labelMaskArrays);
+
+        //Set the inputs from earlier segments
+        Map<Integer, INDArray> segmentInputs = new HashMap<>();
+        for (int i = fromPos; i <= toPos; i++) {
+            GraphVertex current = vertices[topologicalOrder[i]];
+            VertexIndices[] inputsFrom = current.getInputVertices();
+            if (current.isInputVertex() || inputsFrom == null)
+                continue;
+            for (int j = 0; j < inputsFrom.length; j++) {
+                int fromIdx = inputsFrom[j].getVertexIndex();
+                if (positions[fromIdx] >= fromPos)
+                    continue;
+                INDArray in = segmentInputs.get(fromIdx);
+                if (in == null) {
+                    if (vertices[fromIdx].isInputVertex()) {
+                        in = inputs[fromIdx];
+                    } else {
+                        in = checkpoints.get(fromIdx);
+                        Preconditions.checkState(in != null, "No checkpoint for vertex \"%s\"", vertices[fromIdx].getVertexName());
+                        if (!noWS) {
+                            in = workspaceMgr.dup(ArrayType.INPUT, in);
+                        }
+                    }
+                    segmentInputs.put(fromIdx, in);
+                }
+                current.setInput(j, in, workspaceMgr);
+            }
+        }
+
+        Map<Integer, INDArray> activations = new HashMap<>();
+        for (int i = fromPos; i <= toPos; i++) {
+            GraphVertex current = vertices[topologicalOrder[i]];
+            int vIdx = current.getVertexIndex();
+            if (excludeIdxs != null && ArrayUtils.contains(excludeIdxs, vIdx)) {
+                continue;
+            }
+
+            try (MemoryWorkspace wsFFWorking = workspaceMgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) {
+                INDArray out;
+                if (current.isInputVertex()) {
+                    out = inputs[vIdx];
+                } else {
+                    out = current.doForward(true, workspaceMgr);
+                    validateArrayWorkspaces(workspaceMgr, out, ArrayType.ACTIVATIONS, current.getVertexName(), false, "Feed forward (checkpointing)");
+                }
+                activations.put(vIdx, out);
+
+                VertexIndices[] inputsTo = current.getOutputVertices();
+                if (inputsTo != null) {
+                    for (VertexIndices v : inputsTo) {
+                        //Vertices in later segments get their inputs from the checkpoints
+                        if (positions[v.getVertexIndex()] <= toPos) {
+                            vertices[v.getVertexIndex()].setInput(v.getVertexEdgeNumber(), out, workspaceMgr);
+                        }
+                    }
+                }
+            }
+        }
+        return activations;
+    }
+
 
     /**
      * Conduct forward pass using a single input array. Note that this method can only be used with ComputationGraphs
@@ -1712,12 +1962,18 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
      * @param <T> T extends Object
      * @return T instance produced by OutputAdapter
      */
-    public synchronized <T> T output(@NonNull INDArray[] inputs, INDArray[] inputMasks, INDArray[] labelMasks, @NonNull OutputAdapter<T> outputAdapter) {
-        try (val ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(WS_ALL_LAYERS_ACT_CONFIG, WS_OUTPUT_MEM)) {
-            if (outputAdapter instanceof ModelAdapter)
-                return ((ModelAdapter<T>) outputAdapter).apply(this, inputs, inputMasks, labelMasks);
-            else
-                return outputAdapter.apply(output(false, inputs, inputMasks, labelMasks, ws));
+    public <T> T output(@NonNull INDArray[] inputs, INDArray[] inputMasks, INDArray[] labelMasks, @NonNull OutputAdapter<T> outputAdapter) {
+        ComputationGraph replica = concurrentReplica();
+        if (replica != null)
+            return replica.output(inputs, inputMasks, labelMasks, outputAdapter);
+
+        synchronized (this) {
+            try (val ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(WS_ALL_LAYERS_ACT_CONFIG, WS_OUTPUT_MEM)) {
+                if (outputAdapter instanceof ModelAdapter)
+                    return ((ModelAdapter<T>) outputAdapter).apply(this, inputs, inputMasks, labelMasks);
+                else
+                    return outputAdapter.apply(output(false, inputs, inputMasks, labelMasks, ws));
+            }
         }
     }
 
@@ -1738,16 +1994,22 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
      * @param outputWorkspace May be null. If not null: the workspace MUST be opened before calling this method.
      * @return Network output activations
      */
-    public synchronized INDArray[] output(boolean train, @NonNull INDArray[] input, INDArray[] inputMasks, INDArray[] labelMasks, MemoryWorkspace outputWorkspace){
-        try {
-            setLayerMaskArrays(inputMasks, labelMasks);
-            INDArray[] out = outputOfLayersDetached(train, FwdPassType.STANDARD, getOutputLayerIndices(), input, inputMasks, labelMasks, true, false, outputWorkspace);
-            clearLayerMaskArrays();
-            clearLayersStates();
-            return out;
-        } catch (OutOfMemoryError e){
-            CrashReportingUtil.writeMemoryCrashDump(this, e);
-            throw e;
+    public INDArray[] output(boolean train, @NonNull INDArray[] input, INDArray[] inputMasks, INDArray[] labelMasks, MemoryWorkspace outputWorkspace){
+        ComputationGraph replica = train ? null : concurrentReplica();
+        if (replica != null)
+            return replica.output(false, input, inputMasks, labelMasks, outputWorkspace);
+
+        synchronized (this) {
+            try {
+                setLayerMaskArrays(inputMasks, labelMasks);
+                INDArray[] out = outputOfLayersDetached(train, FwdPassType.STANDARD, getOutputLayerIndices(), input, inputMasks, labelMasks, true, false, outputWorkspace);
+                clearLayerMaskArrays();
+                clearLayersStates();
+                return out;
+            } catch (OutOfMemoryError e) {
+                CrashReportingUtil.writeMemoryCrashDump(this, e);
+                throw e;
+            }
         }
     }
 
@@ -1790,13 +2052,20 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
      * @param input       Input to the network
      * @return            Output from the network
      */
-    public synchronized INDArray[] output(boolean train, boolean clearInputs, INDArray... input){
-        boolean detachedInputs = !clearInputs;  //If !clearInputs, then inputs should be detached (otherwise: will be out of scope)
-        try {
-            return outputOfLayersDetached(train, FwdPassType.STANDARD, getOutputLayerIndices(), input, null, null, clearInputs, detachedInputs, null);
-        } catch (OutOfMemoryError e){
-            CrashReportingUtil.writeMemoryCrashDump(this, e);
-            throw e;
+    public INDArray[] output(boolean train, boolean clearInputs, INDArray... input){
+        //Inputs that are not cleared are used later (external errors backprop) - hence must be set on this network
+        ComputationGraph replica = !train && clearInputs ? concurrentReplica() : null;
+        if (replica != null)
+            return replica.output(false, true, input);
+
+        synchronized (this) {
+            boolean detachedInputs = !clearInputs;  //If !clearInputs, then inputs should be detached (otherwise: will be out of scope)
+            try {
+                return outputOfLayersDetached(train, FwdPassType.STANDARD, getOutputLayerIndices(), input, null, null, clearInputs, detachedInputs, null);
+            } catch (OutOfMemoryError e) {
+                CrashReportingUtil.writeMemoryCrashDump(this, e);
+                throw e;
+            }
         }
     }
 
@@ -2618,6 +2887,46 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
         }
 
+        LinkedList<Triple<String, INDArray, Character>> gradients = new LinkedList<>();
+        boolean[] setVertexEpsilon = new boolean[topologicalOrder.length]; //If true: already set epsilon for this vertex; later epsilons should be *added* to the existing one, not set
+        calcBackpropGradients(truncatedBPTT, 0, topologicalOrder.length - 1, setVertexEpsilon, gradients, externalEpsilons);
+
+        //Now, add the gradients in the order we need them in for flattening (same as params order)
+        Gradient gradient = new DefaultGradient(flattenedGradients);
+        for (Triple<String, INDArray, Character> tr : gradients) {
+            gradient.setGradientFor(tr.getFirst(), tr.getSecond(), tr.getThird());
+        }
+
+        this.gradient = gradient;
+
+        if(truncatedBPTT && clearTbpttState){
+            rnnClearPreviousState();
+        }
+
+        //Clear inputs and epsilons:
+        if(clearLayers) {
+            for (GraphVertex gv : vertices) {
+                gv.clear();
+            }
+        }
+    }
+
+    /**
+     * Do backprop for the vertices in the specified range of the topological order. The forward pass for these vertices
+     * must have been done already. Used for standard backprop (all vertices), and for activation checkpointing (one
+     * segment at a time, from the last segment to the first).<br>
+     * Epsilons for vertices before the range (i.e., in earlier segments) are detached, so they remain valid after the
+     * activations workspace has been closed.
+     *
+     * @param truncatedBPTT    false: normal backprop. true: calculate gradients using truncated BPTT for RNN layers
+     * @param fromPos          First position (in topological order) to do backprop for
+     * @param toPos            Last position (in topological order) to do backprop for
+     * @param setVertexEpsilon Whether the epsilon has been set for each vertex (by vertex index). Updated by this method
+     * @param gradients        List of gradients to add the gradients for these vertices to
+     * @param externalEpsilons External errors. May be null
+     */
+    protected void calcBackpropGradients(boolean truncatedBPTT, int fromPos, int toPos, boolean[] setVertexEpsilon,
+                                         LinkedList<Triple<String, INDArray, Character>> gradients, INDArray[] externalEpsilons) {
         //Position in array: index of vertex. Value at position: the step (in topological order) that the activation
         // gradients of the specified vertex have been consumed by
         //Put another way: this is the step that it's safe to deallocate the layer's activation gradients by closing the
@@ -2657,15 +2966,13 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         List<MemoryWorkspace>[] closeAtEndIteraton = (List<MemoryWorkspace>[])new List[topologicalOrder.length];
 
         //Do backprop, in reverse topological order
-        LinkedList<Triple<String, INDArray, Character>> gradients = new LinkedList<>();
-        boolean[] setVertexEpsilon = new boolean[topologicalOrder.length]; //If true: already set epsilon for this vertex; later epsilons should be *added* to the existing one, not set
         MemoryWorkspace initialWorkspace = Nd4j.getMemoryManager().getCurrentWorkspace();
 
         boolean traceLog = log.isTraceEnabled();
 
         Throwable t = null;
         try {
-            for (int i = topologicalOrder.length - 1; i >= 0; i--) {
+            for (int i = toPos; i >= fromPos; i--) {
                 boolean hitFrozen = false;
                 GraphVertex current = vertices[topologicalOrder[i]];
                 int vIdx = current.getVertexIndex();
@@ -2762,6 +3069,11 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                 // close these workspaces, the "current" workspace may be set to the incorrect one
                 wsActivationGrads.setPreviousWorkspace(initialWorkspace);
 
+                if (!noWS && toPos < topologicalOrder.length - 1 && current.getEpsilon() != null && !current.getEpsilon().isAttached()) {
+                    //Activation checkpointing: epsilon was set (and detached) during backprop of a later segment
+                    current.setEpsilon(workspaceMgr.dup(ArrayType.ACTIVATION_GRAD, current.getEpsilon()));
+                }
+
                 int closeableAt = vertexActGradsFullyConsumedByStep[vIdx];
                 if (closeableAt >= 0) {
                     if (closeAtEndIteraton[closeableAt] == null) {
@@ -2776,6 +3088,12 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                     pair = current.doBackward(truncatedBPTT, workspaceMgr);
                     epsilons = pair.getSecond();
 
+                    if (lossScaler != null && current.isOutputVertex() && current.hasLayer()
+                            && current.getLayer() instanceof IOutputLayer) {
+                        //Mixed precision: scale the error signal, to avoid underflow of small gradients in half precision
+                        lossScaler.scale(pair.getFirst(), epsilons);
+                    }
+
                     //Validate workspace location for the activation gradients:
                     //validateArrayWorkspaces(LayerWorkspaceMgr mgr, INDArray array, ArrayType arrayType, String vertexName, boolean isInputVertex, String op){
                     for (INDArray epsilon : epsilons) {
@@ -2840,6 +3158,14 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                     log.trace("Completed backprop: {} (\"{}\") - {}", i, vertexName, current.getClass().getSimpleName());
                 }
             }
+
+            //Epsilons for vertices in earlier segments (activation checkpointing) must outlive the workspaces
+            for (int i = 0; i < fromPos; i++) {
+                GraphVertex gv = vertices[topologicalOrder[i]];
+                if (setVertexEpsilon[gv.getVertexIndex()] && gv.getEpsilon() != null) {
+                    gv.setEpsilon(gv.getEpsilon().detach());
+                }
+            }
         } catch (Throwable t2){
             t = t2;
         } finally {
@@ -2865,24 +3191,6 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
             }
         }
 
-        //Now, add the gradients in the order we need them in for flattening (same as params order)
-        Gradient gradient = new DefaultGradient(flattenedGradients);
-        for (Triple<String, INDArray, Character> tr : gradients) {
-            gradient.setGradientFor(tr.getFirst(), tr.getSecond(), tr.getThird());
-        }
-
-        this.gradient = gradient;
-
-        if(truncatedBPTT && clearTbpttState){
-            rnnClearPreviousState();
-        }
-
-        //Clear inputs and epsilons:
-        if(clearLayers) {
-            for (GraphVertex gv : vertices) {
-                gv.clear();
-            }
-        }
     }
 
     @Override
@@ -2909,6 +3217,149 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         return cg;
     }
 
+    /**
+     * Clone the ComputationGraph for inference, sharing the parameters with this network instead of copying them.<br>
+     * The returned network has its own vertices (and hence activations, workspaces and RNN state), so it can be used
+     * concurrently with this network - but the parameters array is the same instance. Memory for the parameters is
+     * therefore used only once, however many clones are created.<br>
+     * The returned network is read-only (see {@link #isParamsReadOnly()}): methods that modify the parameters (fit,
+     * setParams, etc) throw an exception. Note that this network is NOT made read-only: it should not be trained or
+     * otherwise modified while clones are in use, as changes are visible to all clones. The updater state is not cloned.
+     *
+     * @return A network with a copy of the configuration, sharing the parameters of this network
+     */
+    public ComputationGraph cloneSharingParameters() {
+        synchronized (this) {
+            if (!initCalled)
+                init();
+        }
+        ComputationGraph cg = new ComputationGraph(configuration.clone());
+        cg.init(params(), false);
+        cg.paramsReadOnly = true;
+        return cg;
+    }
+
+    /**
+     * Create a network for inference that contains only the vertices required to calculate the specified outputs
+     * (see {@link ComputationGraphConfiguration#subgraph(String...)}). Only the parameters of those vertices are copied
+     * to the new network - hence, when this network's parameters are memory mapped (see
+     * {@link org.deeplearning4j.util.ModelSerializer#writeModelMappable(Model, File, boolean)}), the parameters of
+     * other vertices are never read. The updater state is not copied.
+     *
+     * @param outputs Names of the vertices to use as outputs of the new network. These need not be outputs of this
+     *                network
+     * @return A network with the same inputs as this network, and the specified outputs
+     */
+    public ComputationGraph subgraph(@NonNull String... outputs) {
+        if (!initCalled)
+            init();
+        ComputationGraphConfiguration conf = configuration.subgraph(outputs);
+        DataType netDtype = conf.getDataType();
+        long numParams = 0;
+        for (org.deeplearning4j.nn.conf.graph.GraphVertex v : conf.getVertices().values()) {
+            v.setDataType(netDtype);
+            numParams += v.numParams(true);
+        }
+
+        ComputationGraph cg = new ComputationGraph(conf);
+        try (MemoryWorkspace ws = Nd4j.getWorkspaceManager().scopeOutOfWorkspaces()) {
+            cg.init(numParams > 0 ? Nd4j.createUninitialized(netDtype, 1, numParams) : null, false);
+        }
+        Map<String, INDArray> current = paramTable();
+        for (Map.Entry<String, INDArray> e : cg.paramTable().entrySet()) {
+            e.getValue().assign(current.get(e.getKey()));
+        }
+        return cg;
+    }
+
+    /**
+     * @return True if the parameters of this network are read-only, for example because they are shared with other
+     * networks via {@link #cloneSharingParameters()}
+     */
+    public boolean isParamsReadOnly() {
+        return paramsReadOnly;
+    }
+
+    /**
+     * Set whether the parameters of this network are read-only. When read-only, methods that modify the parameters
+     * (fit, pretrain, setParams, setParamTable, setParam) throw an IllegalStateException instead.<br>
+     * Note that this does not prevent direct in-place modification of the arrays returned by {@link #params()} or
+     * {@link #paramTable()}, which are views of the parameters.
+     *
+     * @param paramsReadOnly Whether the parameters should be read-only
+     */
+    public void setParamsReadOnly(boolean paramsReadOnly) {
+        this.paramsReadOnly = paramsReadOnly;
+    }
+
+    protected void assertParamsWritable(String operation) {
+        if (paramsReadOnly)
+            throw new IllegalStateException("Cannot " + operation + ": network parameters are read-only (shared with other " +
+                    "networks, see cloneSharingParameters()). Use clone() to create a network with a copy of the parameters");
+    }
+
+    /**
+     * Enable or disable concurrent inference. When enabled, inference (i.e., output with train=false) may be called
+     * by any number of threads at the same time without locking: each calling thread uses its own lightweight replica
+     * of this network (see {@link #cloneSharingParameters()}), created on the first call from that thread. The
+     * replicas hold the per-call layer state (inputs, masks, helper state, etc) and use the calling thread's
+     * workspaces, but share the parameters of this network - hence the memory for the parameters is used only once.
+     * <br>
+     * Training and other methods that use the layer state (rnnTimeStep, feedForward, etc) are still synchronized,
+     * and must not be called concurrently with inference as parameter changes are visible to all replicas.
+     * The replicas are held until {@link #clearConcurrentReplicas()}, {@link #close()} or until concurrent inference
+     * is disabled. This setting is not saved or serialized with the network. Default: disabled
+     *
+     * @param concurrentOutput Whether inference calls should run concurrently
+     */
+    public void setConcurrentOutput(boolean concurrentOutput) {
+        clearConcurrentReplicas();
+        this.concurrentReplicas = concurrentOutput ? new ConcurrentReplicas<ComputationGraph>() : null;
+    }
+
+    /**
+     * Release the per thread replicas used for concurrent inference (see {@link #setConcurrentOutput(boolean)}), for
+     * example when the network is no longer used for inference, or the threads that used it are shut down. Concurrent
+     * inference remains enabled: threads create a new replica on their next call
+     */
+    public void clearConcurrentReplicas() {
+        ConcurrentReplicas<ComputationGraph> replicas = concurrentReplicas;
+        if (replicas != null)
+            replicas.clear();
+    }
+
+    /**
+     * @return Number of per thread replicas currently held for concurrent inference (0 if it is not enabled)
+     */
+    public int getNumConcurrentReplicas() {
+        ConcurrentReplicas<ComputationGraph> replicas = concurrentReplicas;
+        return replicas == null ? 0 : replicas.size();
+    }
+
+    /**
+     * @return True if concurrent inference is enabled - see {@link #setConcurrentOutput(boolean)}
+     */
+    public boolean isConcurrentOutput() {
+        return concurrentReplicas != null;
+    }
+
+    /**
+     * @return The replica of this network for concurrent inference in the current thread, or null if concurrent
+     * inference is not enabled
+     */
+    protected ComputationGraph concurrentReplica() {
+        ConcurrentReplicas<ComputationGraph> replicas = concurrentReplicas;
+        if (replicas == null)
+            return null;
+        ComputationGraph r = replicas.get();
+        if (r == null || r.params() != params()) {
+            //First call from this thread, or the parameters array has been replaced (init, etc) since replica creation
+            r = cloneSharingParameters();
+            replicas.set(r);
+        }
+        return r;
+    }
+
 
     public double calcRegularizationScore(boolean backpropParamsOnly){
         double scoreSum = 0.0;
@@ -3330,9 +3781,11 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
     public void setParams(INDArray params) {
         if (params == flattenedParams)
             return; //No op
+        assertParamsWritable("set parameters");
 
         if (this.flattenedParams != null && this.flattenedParams.length() == params.length()) {
             this.flattenedParams.assign(params);
+            resetMasterParams();
             return;
         }
 
@@ -3349,6 +3802,20 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
             layer.setParams(get);
             idx += range;
         }
+        resetMasterParams();
+    }
+
+    /**
+     * Mixed precision training only: reset the updater's FP32 master copy of the parameters after the parameters have
+     * been set externally
+     */
+    protected void resetMasterParams() {
+        if (lossScaler != null) {
+            Updater u = getUpdater(false);
+            if (u instanceof BaseMultiLayerUpdater) {
+                ((BaseMultiLayerUpdater<?>) u).resetMasterParams();
+            }
+        }
     }
 
     @Override
@@ -3457,6 +3924,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
     @Override
     public void setParamTable(@NonNull Map<String, INDArray> paramTable) {
+        assertParamsWritable("set parameter table");
         Map<String,INDArray> m = paramTable();
         Preconditions.checkArgument(paramTable.keySet().equals(m.keySet()), "Cannot set param table: parameter set keys are not equal");
         Map<String,INDArray> current = paramTable();
@@ -3475,17 +3943,20 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
             INDArray arrNew = paramTable.get(s);
             arrCurrent.assign(arrNew);
         }
+        resetMasterParams();
     }
 
     @Override
     public void setParam(String key, INDArray val) {
         //        throw new UnsupportedOperationException("Not implemented");
+        assertParamsWritable("set parameter");
         int idx = key.lastIndexOf('_');
         if (idx == -1)
             throw new IllegalStateException("Invalid param key: not have layer separator: \"" + key + "\"");
         String layerName = key.substring(0, idx);
         String paramType = key.substring(idx + 1);
         getLayer(layerName).setParam(paramType, val);
+        resetMasterParams();
     }
 
     @Override
@@ -4894,6 +5365,8 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
      */
     @Override
     public void close(){
+        clearConcurrentReplicas();
+
         //Close the INDArray and dealloc
         if(flattenedParams.closeable())
             flattenedParams.close();
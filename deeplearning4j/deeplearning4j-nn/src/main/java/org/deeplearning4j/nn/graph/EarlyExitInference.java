@@ -0,0 +1,491 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.nn.graph;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+import org.deeplearning4j.nn.graph.vertex.GraphVertex;
+import org.deeplearning4j.nn.graph.vertex.VertexIndices;
+import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.workspace.WorkspaceUtils;
+
+import java.util.*;
+
+/**
+ * Early-exit (cascaded) inference for a {@link ComputationGraph} classifier with one or more auxiliary output heads.<br>
+ * Each exit is a vertex (usually an auxiliary output layer, trained jointly with the main output) with a confidence
+ * threshold. The forward pass runs in topological order; when an exit vertex has been computed, any examples whose
+ * maximum predicted probability is at least the exit's threshold are finished, and only the remaining examples are
+ * passed through the deeper vertices. Exits are checked in topological order.<br>
+ * Only the vertices that the exits and the final output depend on are computed; other outputs of the graph are skipped.
+ * The final output is the one network output that is not an exit, unless set explicitly.<br>
+ * Per-exit counts, the fraction of vertex computation performed (relative to a full forward pass over all examples),
+ * and wall-clock time are available per call via {@link Result}, cumulatively via {@link #getExitRates()} and
+ * {@link #getComputeFraction()}, and via {@link Listener}s.<br>
+ * Usage:<br>
+ * <pre>
+ * {@code EarlyExitInference ee = new EarlyExitInference.Builder(net)
+ *     .exit("aux1", 0.95)
+ *     .exit("aux2", 0.9)
+ *     .build();
+ * INDArray out = ee.output(features);
+ * }
+ * </pre>
+ * The exits and the final output must be feed forward layers (usually output layers) with the same number of outputs.
+ * Feature masks are not supported. Inference is done without workspaces.
+ */
+@Slf4j
+public class EarlyExitInference {
+
+    /**
+     * Listener called after each {@link #output(INDArray...)} / {@link #outputWithExits(INDArray...)} call
+     */
+    public interface Listener {
+
+        void onOutput(EarlyExitInference inference, Result result);
+    }
+
+    /**
+     * Result of an early-exit forward pass
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        /** Output for each example, from the exit (or final output) the example left the network at */
+        private INDArray output;
+        /** Exit index for each example - in the order the exits were added - or numExits for the final output */
+        private int[] exitIndex;
+        /** Number of examples leaving at each exit; the last entry is the final output */
+        private long[] exitCounts;
+        /** Vertex-examples computed, relative to a full forward pass of all examples through the same vertices */
+        private double computeFraction;
+        /** Wall-clock time for the forward pass, in nanoseconds */
+        private long timeNanos;
+    }
+
+    private final ComputationGraph graph;
+    private final String[] exitNames;
+    private final double[] thresholds;
+    private final String finalOutput;
+    private final List<Listener> listeners;
+
+    //Exit index for each vertex index (-1 if not an exit), and whether each vertex needs to be computed
+    private final int[] exitForVertex;
+    private final boolean[] required;
+    private final int finalOutputIdx;
+    private final int finalPosition;
+    private final int numComputedVertices;
+
+    private final long[] totalExitCounts;
+    private double totalComputed;
+    private double totalFull;
+    private long totalNanos;
+
+    protected EarlyExitInference(Builder builder) {
+        this.graph = builder.graph;
+        this.exitNames = builder.exitNames.toArray(new String[0]);
+        this.thresholds = new double[exitNames.length];
+        for (int i = 0; i < thresholds.length; i++) {
+            thresholds[i] = builder.thresholds.get(i);
+        }
+        this.listeners = new ArrayList<>(builder.listeners);
+
+        String f = builder.finalOutput;
+        if (f == null) {
+            List<String> outputs = new ArrayList<>(graph.getConfiguration().getNetworkOutputs());
+            outputs.removeAll(builder.exitNames);
+            Preconditions.checkState(outputs.size() == 1, "Cannot infer the final output: network outputs that are " +
+                    "not exits: %s. Set the final output explicitly with Builder.finalOutput(String)", outputs);
+            f = outputs.get(0);
+        }
+        this.finalOutput = f;
+        Preconditions.checkState(graph.getVertex(finalOutput) != null, "Final output vertex \"%s\" not found in network", finalOutput);
+        Preconditions.checkState(!builder.exitNames.contains(finalOutput), "Final output \"%s\" cannot also be an exit", finalOutput);
+        finalOutputIdx = graph.getVertex(finalOutput).getVertexIndex();
+
+        GraphVertex[] vertices = graph.getVertices();
+        exitForVertex = new int[vertices.length];
+        Arrays.fill(exitForVertex, -1);
+        for (int i = 0; i < exitNames.length; i++) {
+            GraphVertex v = graph.getVertex(exitNames[i]);
+            Preconditions.checkState(v != null, "Exit vertex \"%s\" not found in network", exitNames[i]);
+            Preconditions.checkState(!v.isInputVertex(), "Exit vertex \"%s\" cannot be a network input", exitNames[i]);
+            exitForVertex[v.getVertexIndex()] = i;
+        }
+
+        //Mark the vertices that the exits and the final output depend on
+        required = new boolean[vertices.length];
+        Deque<Integer> toProcess = new ArrayDeque<>();
+        toProcess.add(finalOutputIdx);
+        for (String s : exitNames) {
+            toProcess.add(graph.getVertex(s).getVertexIndex());
+        }
+        while (!toProcess.isEmpty()) {
+            int idx = toProcess.pop();
+            if (required[idx])
+                continue;
+            required[idx] = true;
+            VertexIndices[] in = vertices[idx].getInputVertices();
+            if (in != null) {
+                for (VertexIndices vi : in) {
+                    toProcess.add(vi.getVertexIndex());
+                }
+            }
+        }
+
+        int[] topo = graph.topologicalSortOrder();
+        int fp = -1;
+        for (int i = 0; i < topo.length; i++) {
+            if (topo[i] == finalOutputIdx)
+                fp = i;
+        }
+        finalPosition = fp;
+        int count = 0;
+        for (int i = 0; i < vertices.length; i++) {
+            if (required[i] && !vertices[i].isInputVertex())
+                count++;
+        }
+        numComputedVertices = count;
+        for (int i = 0; i < topo.length; i++) {
+            int e = exitForVertex[topo[i]];
+            Preconditions.checkState(e < 0 || i < finalPosition, "Exit \"%s\" is computed after the final output \"%s\"" +
+                    " in topological order, and hence cannot save any computation", e < 0 ? "" : exitNames[e], finalOutput);
+        }
+
+        //Outputs of the exits and the final output are combined, hence must have the same shape (apart from the minibatch
+        // dimension). Checked here rather than when combining, so that misconfiguration does not depend on the data
+        long[] finalShape = outputShape(finalOutput);
+        for (String s : exitNames) {
+            long[] exitShape = outputShape(s);
+            Preconditions.checkState(Arrays.equals(exitShape, finalShape), "Output of exit \"%s\" with shape %s is not " +
+                    "compatible with output of final output \"%s\" with shape %s: exits and the final output must have the " +
+                    "same output shape (apart from the minibatch dimension)", s, exitShape, finalOutput, finalShape);
+        }
+
+        totalExitCounts = new long[exitNames.length + 1];
+    }
+
+    /**
+     * @return Output shape (excluding the minibatch dimension) of the specified exit or final output vertex
+     */
+    private long[] outputShape(String vertexName) {
+        GraphVertex v = graph.getVertex(vertexName);
+        org.deeplearning4j.nn.conf.layers.Layer l = v.hasLayer() ? v.getLayer().conf().getLayer() : null;
+        Preconditions.checkState(l instanceof FeedForwardLayer, "Vertex \"%s\" is not a feed forward layer: exits and " +
+                "the final output must be feed forward layers (usually output layers)", vertexName);
+        FeedForwardLayer ffl = (FeedForwardLayer) l;
+        InputType outputType;
+        try {
+            outputType = ffl.getOutputType(-1, InputType.feedForward(ffl.getNIn()));
+        } catch (IllegalStateException e) {
+            //For example, RnnOutputLayer and CnnLossLayer, which have rank 3 and 4 outputs
+            throw new IllegalStateException("Vertex \"" + vertexName + "\" does not have a feed forward (rank 2) output: " +
+                    "exits and the final output must be feed forward layers (usually output layers)", e);
+        }
+        return outputType.getShape(false);
+    }
+
+    /**
+     * Get the network output, with each example taken from the first exit it is confident at (or the final output)
+     *
+     * @param input Network inputs
+     * @return Output, same shape as the final output of the network
+     */
+    public INDArray output(INDArray... input) {
+        return outputWithExits(input).getOutput();
+    }
+
+    /**
+     * As per {@link #output(INDArray...)}, but also returns the exit used for each example and the per-exit statistics
+     *
+     * @param input Network inputs
+     */
+    public Result outputWithExits(@NonNull INDArray... input) {
+        Preconditions.checkArgument(input.length == graph.getNumInputArrays(), "Invalid number of input arrays: network has " +
+                "%s inputs, got %s input arrays", graph.getNumInputArrays(), input.length);
+        long start = System.nanoTime();
+        long n = input[0].size(0);
+        Preconditions.checkArgument(n > 0, "Cannot perform inference on an empty minibatch");
+
+        //Original example indices of the examples that are still being processed
+        long[] active = new long[(int) n];
+        for (int i = 0; i < active.length; i++) {
+            active[i] = i;
+        }
+        List<INDArray> chunks = new ArrayList<>();
+        List<long[]> chunkRows = new ArrayList<>();
+        int[] exitIndex = new int[(int) n];
+        long[] exitCounts = new long[exitNames.length + 1];
+        double computed = 0;
+        double full = (double) n * numComputedVertices;
+
+        synchronized (graph) {
+            WorkspaceUtils.assertNoWorkspacesOpen("Expected no workspace active before call to early exit output");
+            LayerWorkspaceMgr mgr = LayerWorkspaceMgr.noWorkspaces(graph.helperWorkspaces);
+            graph.setInputs(input);
+            graph.setLayerMaskArrays(null, null);
+            GraphVertex[] vertices = graph.getVertices();
+            List<String> networkInputs = graph.getConfiguration().getNetworkInputs();
+            int[] topo = graph.topologicalSortOrder();
+
+            try {
+                for (int i = 0; i <= finalPosition && active.length > 0; i++) {
+                    GraphVertex current = vertices[topo[i]];
+                    int vIdx = current.getVertexIndex();
+                    if (!required[vIdx])
+                        continue;
+
+                    INDArray out;
+                    if (current.isInputVertex()) {
+                        out = graph.getInput(networkInputs.indexOf(current.getVertexName()));
+                    } else {
+                        out = current.doForward(false, mgr);
+                        computed += active.length;
+                    }
+
+                    VertexIndices[] outputsTo = current.getOutputVertices();
+                    if (outputsTo != null) {
+                        for (VertexIndices v : outputsTo) {
+                            vertices[v.getVertexIndex()].setInput(v.getVertexEdgeNumber(), out, mgr);
+                        }
+                    }
+
+                    int e = exitForVertex[vIdx];
+                    if (vIdx == finalOutputIdx) {
+                        chunks.add(out);
+                        chunkRows.add(active);
+                        for (long r : active) {
+                            exitIndex[(int) r] = exitNames.length;
+                        }
+                        exitCounts[exitNames.length] += active.length;
+                    } else if (e >= 0) {
+                        Preconditions.checkState(out.rank() == 2, "Exit \"%s\" must have rank 2 output (probabilities), " +
+                                "got output with shape %ndShape", exitNames[e], out);
+                        double[] maxProb = out.max(1).toDoubleVector();
+                        int countExit = 0;
+                        for (double d : maxProb) {
+                            if (d >= thresholds[e])
+                                countExit++;
+                        }
+                        if (countExit == 0)
+                            continue;
+
+                        long[] exitRows = new long[countExit];
+                        long[] exitPos = new long[countExit];
+                        long[] keepRows = new long[active.length - countExit];
+                        long[] keepPos = new long[keepRows.length];
+                        int ei = 0;
+                        int ki = 0;
+                        for (int r = 0; r < maxProb.length; r++) {
+                            if (maxProb[r] >= thresholds[e]) {
+                                exitRows[ei] = active[r];
+                                exitPos[ei++] = r;
+                                exitIndex[(int) active[r]] = e;
+                            } else {
+                                keepRows[ki] = active[r];
+                                keepPos[ki++] = r;
+                            }
+                        }
+                        chunks.add(rows(out, exitPos));
+                        chunkRows.add(exitRows);
+                        exitCounts[e] += countExit;
+                        active = keepRows;
+
+                        if (keepPos.length > 0) {
+                            //Only the remaining examples continue through the deeper vertices. The network inputs
+                            // are also updated, as the minibatch size is taken from them (preprocessors, etc)
+                            INDArray[] activeInputs = new INDArray[input.length];
+                            for (int k = 0; k < input.length; k++) {
+                                activeInputs[k] = rows(input[k], active);
+                            }
+                            graph.setInputs(activeInputs);
+                            Map<INDArray, INDArray> sliced = new IdentityHashMap<>();
+                            for (int j = i + 1; j <= finalPosition; j++) {
+                                GraphVertex later = vertices[topo[j]];
+                                INDArray[] in = later.getInputs();
+                                if (!required[later.getVertexIndex()] || later.isInputVertex() || in == null)
+                                    continue;
+                                for (int k = 0; k < in.length; k++) {
+                                    if (in[k] == null)
+                                        continue;
+                                    INDArray s = sliced.get(in[k]);
+                                    if (s == null) {
+                                        s = rows(in[k], keepPos);
+                                        sliced.put(in[k], s);
+                                    }
+                                    later.setInput(k, s, mgr);
+                                }
+                            }
+                        }
+                    }
+                }
+            } finally {
+                graph.clearLayersStates();
+                graph.setInputs(input);
+            }
+        }
+
+        //Reassemble the outputs in the original example order
+        INDArray all = chunks.size() == 1 ? chunks.get(0) : Nd4j.concat(0, chunks.toArray(new INDArray[0]));
+        long[] order = new long[(int) n];
+        int pos = 0;
+        for (long[] r : chunkRows) {
+            for (long orig : r) {
+                order[(int) orig] = pos++;
+            }
+        }
+        INDArray output = chunks.size() == 1 && chunkRows.get(0).length == n ? all : rows(all, order);
+
+        long time = System.nanoTime() - start;
+        Result result = new Result(output, exitIndex, exitCounts, full == 0 ? 1.0 : computed / full, time);
+        synchronized (this) {
+            for (int i = 0; i < exitCounts.length; i++) {
+                totalExitCounts[i] += exitCounts[i];
+            }
+            totalComputed += computed;
+            totalFull += full;
+            totalNanos += time;
+        }
+        for (Listener l : listeners) {
+            l.onOutput(this, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return Names of the exit vertices, in the order they were added
+     */
+    public List<String> getExitNames() {
+        return Collections.unmodifiableList(Arrays.asList(exitNames));
+    }
+
+    /**
+     * @return Total number of examples that left at each exit (last entry: the final output) since creation or the
+     * last {@link #resetStats()}
+     */
+    public synchronized long[] getExitCounts() {
+        return totalExitCounts.clone();
+    }
+
+    /**
+     * @return Fraction of examples that left at each exit (last entry: the final output)
+     */
+    public synchronized double[] getExitRates() {
+        long total = 0;
+        for (long l : totalExitCounts)
+            total += l;
+        double[] out = new double[totalExitCounts.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = total == 0 ? 0.0 : totalExitCounts[i] / (double) total;
+        }
+        return out;
+    }
+
+    /**
+     * @return Vertex computation performed, relative to running every example through all (required) vertices. The
+     * estimated saving is 1 - computeFraction; note that vertices are weighted equally, regardless of their cost
+     */
+    public synchronized double getComputeFraction() {
+        return totalFull == 0 ? 1.0 : totalComputed / totalFull;
+    }
+
+    /**
+     * @return Total wall-clock time spent in the forward pass, in nanoseconds
+     */
+    public synchronized long getTotalTimeNanos() {
+        return totalNanos;
+    }
+
+    public synchronized void resetStats() {
+        Arrays.fill(totalExitCounts, 0);
+        totalComputed = 0;
+        totalFull = 0;
+        totalNanos = 0;
+    }
+
+    private static INDArray rows(INDArray arr, long[] rows) {
+        INDArrayIndex[] idx = new INDArrayIndex[arr.rank()];
+        idx[0] = NDArrayIndex.indices(rows);
+        for (int i = 1; i < idx.length; i++) {
+            idx[i] = NDArrayIndex.all();
+        }
+        return arr.get(idx);
+    }
+
+    public static class Builder {
+        private final ComputationGraph graph;
+        private final List<String> exitNames = new ArrayList<>();
+        private final List<Double> thresholds = new ArrayList<>();
+        private final List<Listener> listeners = new ArrayList<>();
+        private String finalOutput;
+
+        /**
+         * @param graph Network to perform inference with. Must be initialized
+         */
+        public Builder(@NonNull ComputationGraph graph) {
+            this.graph = graph;
+        }
+
+        /**
+         * Add an exit. Examples with maximum predicted probability at this vertex of at least the threshold will not be
+         * processed any further
+         *
+         * @param vertexName Name of the exit vertex - usually an auxiliary output layer with softmax activation
+         * @param threshold  Confidence threshold, in (0, 1]
+         */
+        public Builder exit(@NonNull String vertexName, double threshold) {
+            Preconditions.checkArgument(threshold > 0.0 && threshold <= 1.0, "Threshold must be in (0, 1]: got %s", threshold);
+            Preconditions.checkArgument(!exitNames.contains(vertexName), "Exit \"%s\" has already been added", vertexName);
+            exitNames.add(vertexName);
+            thresholds.add(threshold);
+            return this;
+        }
+
+        /**
+         * @param finalOutput Name of the final output vertex. Only required if the network has more than one output
+         *                    that is not an exit
+         */
+        public Builder finalOutput(@NonNull String finalOutput) {
+            this.finalOutput = finalOutput;
+            return this;
+        }
+
+        public Builder listeners(Listener... listeners) {
+            this.listeners.addAll(Arrays.asList(listeners));
+            return this;
+        }
+
+        public EarlyExitInference build() {
+            Preconditions.checkState(exitNames.size() > 0, "At least one exit must be added");
+            return new EarlyExitInference(this);
+        }
+    }
+}
@@ -26,20 +26,33 @@ import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.exception.ND4JArraySizeException;
 import org.nd4j.common.primitives.Pair;
 import org.deeplearning4j.exception.DL4JInvalidInputException;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.layers.BaseLayer;
 import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.scatter.ScatterUpdate;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.learning.SparseGradientUpdater;
+import org.nd4j.linalg.learning.regularization.Regularization;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
 import org.deeplearning4j.nn.workspace.ArrayType;
 
+import java.util.Arrays;
+import java.util.List;
+
 @Slf4j
-public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingLayer> {
+public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingLayer> implements SparseGradientLayer {
     private static final int[] DIM_1 = new int[]{1};
 
+    private int[] sparseGradientRows;
+    private INDArray sparseGradientView;
+    private INDArray zeroRows;
+
     public EmbeddingLayer(NeuralNetConfiguration conf, DataType dataType) {
         super(conf, dataType);
     }
@@ -55,16 +68,19 @@ public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.
             delta.muliColumnVector(maskArray.castTo(dataType));
         }
 
-        INDArray weightGradients = gradientViews.get(DefaultParamInitializer.WEIGHT_KEY);
-        weightGradients.assign(0);
-
-        long[] indexes = new long[(int) input.length()];
+        int[] indexes = new int[(int) input.length()];
         for (int i = 0; i < indexes.length; i++) {
             indexes[i] = input.getInt(i, 0);
         }
 
+        INDArray weightGradients = gradientViews.get(DefaultParamInitializer.WEIGHT_KEY);
+        boolean sparse = isSparseGradient(DefaultParamInitializer.WEIGHT_KEY);
+        zeroRows = zeroGradient(weightGradients, sparse && sparseGradientView == weightGradients ? sparseGradientRows : null, zeroRows);
+
         INDArray indices = Nd4j.createFromArray(indexes);
-        Nd4j.scatterUpdate(org.nd4j.linalg.api.ops.impl.scatter.ScatterUpdate.UpdateOp.ADD, weightGradients, indices, delta, DIM_1);
+        Nd4j.scatterUpdate(ScatterUpdate.UpdateOp.ADD, weightGradients, indices, delta, DIM_1);
+        sparseGradientRows = sparse ? uniqueRows(indexes) : null;
+        sparseGradientView = sparse ? weightGradients : null;
 
 
         Gradient ret = new DefaultGradient();
@@ -137,6 +153,68 @@ public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.
         return layerConf().hasBias();
     }
 
+    @Override
+    public boolean isSparseGradient(String paramName) {
+        return isSparseGradient(layerConf().isSparseGradients(), layerConf(), paramName);
+    }
+
+    @Override
+    public int[] getSparseGradientRows(String paramName) {
+        return DefaultParamInitializer.WEIGHT_KEY.equals(paramName) ? sparseGradientRows : null;
+    }
+
+    /**
+     * Sparse gradients are used for the weights only, if enabled in the configuration, if there is no regularization
+     * (which would make the gradient dense) and if the updater supports row-wise updates
+     */
+    static boolean isSparseGradient(boolean enabled, org.deeplearning4j.nn.conf.layers.BaseLayer conf, String paramName) {
+        if (!enabled || !DefaultParamInitializer.WEIGHT_KEY.equals(paramName))
+            return false;
+        List<Regularization> r = conf.getRegularizationByParam(paramName);
+        return (r == null || r.isEmpty()) && SparseGradientUpdater.isSupported(conf.getUpdaterByParam(paramName));
+    }
+
+    /**
+     * Zero the weight gradient before adding the gradients for the current minibatch.
+     *
+     * @param weightGradients Weight gradient view
+     * @param previousRows    If non-null: the only rows that may be non-zero (rows of the previous sparse gradient).
+     *                        If null: the full array is zeroed
+     * @param zeroRows        Buffer of zeros from the previous call (may be null), reused if it has enough rows
+     * @return The buffer of zeros to pass to the next call
+     */
+    static INDArray zeroGradient(INDArray weightGradients, int[] previousRows, INDArray zeroRows) {
+        if (previousRows == null) {
+            weightGradients.assign(0);
+        } else if (previousRows.length > 0) {
+            if (zeroRows == null || zeroRows.size(0) < previousRows.length || zeroRows.dataType() != weightGradients.dataType()
+                    || zeroRows.size(1) != weightGradients.size(1)) {
+                //Allocated outside of any workspace, as it is kept between iterations
+                try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                    long n = Math.max(previousRows.length, zeroRows == null ? 0 : 2 * zeroRows.size(0));
+                    zeroRows = Nd4j.zeros(weightGradients.dataType(), n, weightGradients.size(1));
+                }
+            }
+            INDArray zeros = zeroRows.get(NDArrayIndex.interval(0, previousRows.length), NDArrayIndex.all());
+            Nd4j.scatterUpdate(ScatterUpdate.UpdateOp.ASSIGN, weightGradients, Nd4j.createFromArray(previousRows), zeros, DIM_1);
+        }
+        return zeroRows;
+    }
+
+    /**
+     * @return Sorted copy of the indexes, without duplicates
+     */
+    static int[] uniqueRows(int[] indexes) {
+        int[] sorted = Arrays.copyOf(indexes, indexes.length);
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (n == 0 || sorted[i] != sorted[n - 1])
+                sorted[n++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+
     @Override
     public boolean isPretrainLayer() {
         return false;
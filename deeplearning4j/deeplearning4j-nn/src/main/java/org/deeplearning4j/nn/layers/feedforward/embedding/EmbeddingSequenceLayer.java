@@ -23,6 +23,7 @@ package org.deeplearning4j.nn.layers.feedforward.embedding;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.deeplearning4j.exception.DL4JInvalidInputException;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.RNNFormat;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
@@ -42,7 +43,7 @@ import java.util.Arrays;
 import static org.nd4j.linalg.api.shape.Shape.hasDefaultStridesForShape;
 
 @Slf4j
-public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingSequenceLayer> {
+public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingSequenceLayer> implements SparseGradientLayer {
     private static final int[] WEIGHT_DIM = new int[]{1};
 
     public EmbeddingSequenceLayer(NeuralNetConfiguration conf, DataType dataType) {
@@ -50,6 +51,9 @@ public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf
     }
 
     private int[] indexes;
+    private int[] sparseGradientRows;
+    private INDArray sparseGradientView;
+    private INDArray zeroRows;
 
     @Override
     public Pair<Gradient, INDArray> backpropGradient(INDArray epsilon, LayerWorkspaceMgr workspaceMgr) {
@@ -82,13 +86,16 @@ public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf
         delta = delta.reshape('c',inputLength * numSamples, nOut);
 
         INDArray weightGradients = gradientViews.get(DefaultParamInitializer.WEIGHT_KEY);
-        weightGradients.assign(0);
+        boolean sparse = isSparseGradient(DefaultParamInitializer.WEIGHT_KEY);
+        zeroRows = EmbeddingLayer.zeroGradient(weightGradients, sparse && sparseGradientView == weightGradients ? sparseGradientRows : null, zeroRows);
 
         if (!hasDefaultStridesForShape(input))
             input = workspaceMgr.dup(ArrayType.ACTIVATIONS, input, 'f');
 
         INDArray indices = Nd4j.createFromArray(indexes);
         Nd4j.scatterUpdate(org.nd4j.linalg.api.ops.impl.scatter.ScatterUpdate.UpdateOp.ADD, weightGradients, indices, delta, WEIGHT_DIM);
+        sparseGradientRows = sparse ? EmbeddingLayer.uniqueRows(indexes) : null;
+        sparseGradientView = sparse ? weightGradients : null;
 
         Gradient ret = new DefaultGradient();
         ret.gradientForVariable().put(DefaultParamInitializer.WEIGHT_KEY, weightGradients);
@@ -202,6 +209,16 @@ public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf
         return layerConf().hasBias();
     }
 
+    @Override
+    public boolean isSparseGradient(String paramName) {
+        return EmbeddingLayer.isSparseGradient(layerConf().isSparseGradients(), layerConf(), paramName);
+    }
+
+    @Override
+    public int[] getSparseGradientRows(String paramName) {
+        return DefaultParamInitializer.WEIGHT_KEY.equals(paramName) ? sparseGradientRows : null;
+    }
+
     @Override
     public boolean isPretrainLayer() {
         return false;
@@ -0,0 +1,349 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.layers.recurrent;
+
+import org.deeplearning4j.config.DL4JSystemProperties;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.BaseLayer;
+import org.deeplearning4j.nn.gradient.DefaultGradient;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.layers.HelperUtils;
+import org.deeplearning4j.nn.workspace.ArrayType;
+import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
+import org.nd4j.common.primitives.Pair;
+import org.nd4j.linalg.activations.IActivation;
+import org.nd4j.linalg.activations.impl.*;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.DynamicCustomOp;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastMulOp;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.nd4j.linalg.indexing.NDArrayIndex.*;
+
+/**
+ * CPU {@link LSTMHelper} that executes the whole sequence with libnd4j's fused {@code lstmLayer} and {@code lstmLayer_bp}
+ * ops, instead of the per time step loop in {@link LSTMHelpers}. Used for both {@link LSTM} and {@link GravesLSTM}
+ * (peephole connections), on the CPU backend. Like the other platform helpers it is created by {@link HelperUtils}, so is
+ * only used when helpers are enabled ({@link DL4JSystemProperties#DISABLE_HELPER_PROPERTY} set to false).<br>
+ * Configurations the ops can't express return null from {@link #activate}, which makes {@link LSTMHelpers} use the
+ * built-in implementation instead: backwards direction (bidirectional layers), activation functions without an
+ * lstmLayer equivalent, and mask arrays that aren't of the form [1,...,1,0,...,0] for each example.
+ * Masks of that form are passed to the op as sequence lengths.<br>
+ * The op uses a different gate order to DL4J ([input gate, forget, block input, output] vs. DL4J's
+ * [block input, forget, output, input gate]), so the weights are reordered before each call and the gradients
+ * reordered back after.
+ */
+public class FusedLSTMHelper implements LSTMHelper {
+    //lstmLayer data format 2: [bS, nIn, sL] - i.e., DL4J's NCW
+    private static final int DATA_FORMAT_NCW = 2;
+    private static final int DIRECTION_FWD = 0;
+
+    //Gate block i of the lstmLayer op weights/biases is gate block GATE_ORDER[i] of the DL4J params
+    private static final int[] GATE_ORDER = {3, 1, 0, 2};
+    //Peephole weights: lstmLayer order is [input gate, forget, output]; these are the DL4J recurrent weight columns
+    // (after the first 4*nOut) for each: [wGG, wFF, wOO]
+    private static final int[] PEEPHOLE_ORDER = {2, 0, 1};
+
+    public FusedLSTMHelper(DataType dataType) {
+
+    }
+
+    @Override
+    public boolean checkSupported(IActivation gateActivationFn, IActivation activationFn, boolean hasPeepholeConnections) {
+        int gateAct = activationCode(gateActivationFn);
+        return (gateAct == 2 || gateAct == 7) && activationCode(activationFn) >= 0;
+    }
+
+    @Override
+    public FwdPassReturn activate(Layer layer, NeuralNetConfiguration conf, IActivation gateActivationFn, INDArray input,
+                                  INDArray recurrentWeights, INDArray inputWeights, INDArray biases, boolean training,
+                                  INDArray prevOutputActivations, INDArray prevMemCellState, boolean forBackprop,
+                                  boolean forwards, String inputWeightKey, INDArray maskArray,
+                                  boolean hasPeepholeConnections, LayerWorkspaceMgr workspaceMgr) {
+        IActivation afn = ((BaseLayer) conf.getLayer()).getActivationFn();
+        if (!forwards || input.rank() != 3 || !checkSupported(gateActivationFn, afn, hasPeepholeConnections))
+            return null;
+
+        INDArray seqLen = null;
+        if (maskArray != null) {
+            if (!isPrefixMask(maskArray))
+                return null;
+            if (maskArray.minNumber().doubleValue() < 1.0)
+                seqLen = maskArray.sum(1).castTo(DataType.INT);
+        }
+
+        long nOut = recurrentWeights.size(0);
+        long miniBatch = input.size(0);
+        long tsLength = input.size(2);
+        DataType dt = inputWeights.dataType();
+
+        INDArray out = workspaceMgr.create(ArrayType.ACTIVATIONS, dt, new long[]{miniBatch, nOut, tsLength}, 'c');
+        INDArray lastAct = workspaceMgr.createUninitialized(ArrayType.FF_WORKING_MEM, dt, new long[]{miniBatch, nOut}, 'c');
+        INDArray lastMemCell = workspaceMgr.createUninitialized(ArrayType.FF_WORKING_MEM, dt, new long[]{miniBatch, nOut}, 'c');
+
+        List<INDArray> in = opWeights(input, inputWeights, recurrentWeights, biases, hasPeepholeConnections, workspaceMgr,
+                ArrayType.FF_WORKING_MEM);
+        in.add(4, prevOutputActivations);
+        in.add(5, prevMemCellState);
+        if (seqLen != null)
+            in.add(4, seqLen);
+
+        Nd4j.exec(opBuilder("lstmLayer", gateActivationFn, afn, seqLen != null, hasPeepholeConnections, true, true)
+                .addInputs(in.toArray(new INDArray[0]))
+                .addOutputs(out, lastAct, lastMemCell)
+                .build());
+
+        if (seqLen != null) {
+            //DL4J zeros the state at masked steps, whereas lstmLayer returns the state at the last unmasked step
+            INDArray lastStepMask = maskArray.getColumn(tsLength - 1, true);
+            lastAct.muliColumnVector(lastStepMask);
+            lastMemCell.muliColumnVector(lastStepMask);
+        }
+
+        FwdPassReturn ret = new FwdPassReturn();
+        ret.fwdPassOutput = out;
+        ret.lastAct = lastAct;
+        ret.lastMemCell = lastMemCell;
+        ret.prevAct = prevOutputActivations;
+        ret.prevMemCell = prevMemCellState;
+        ret.fused = true;
+        ret.biases = biases;
+        ret.maskArray = maskArray;
+        return ret;
+    }
+
+    @Override
+    public Pair<Gradient, INDArray> backpropGradient(NeuralNetConfiguration conf, IActivation gateActivationFn, INDArray input,
+                                                     INDArray recurrentWeights, INDArray inputWeights, INDArray epsilon,
+                                                     boolean truncatedBPTT, int tbpttBackwardLength, FwdPassReturn fwdPass,
+                                                     boolean forwards, String inputWeightKey, String recurrentWeightKey,
+                                                     String biasWeightKey, Map<String, INDArray> gradientViews,
+                                                     INDArray maskArray, boolean hasPeepholeConnections,
+                                                     LayerWorkspaceMgr workspaceMgr) {
+        if (!fwdPass.fused)
+            return null;    //Forward pass was done by the built-in implementation
+
+        IActivation afn = ((BaseLayer) conf.getLayer()).getActivationFn();
+        long nOut = recurrentWeights.size(0);
+        long nIn = inputWeights.size(0);
+        long miniBatch = input.size(0);
+        long tsLength = input.size(2);
+        DataType dt = inputWeights.dataType();
+
+        if (fwdPass.maskArray != null) {
+            //Output at masked steps is always 0, hence no gradient flows back from those steps
+            INDArray masked = workspaceMgr.createUninitialized(ArrayType.BP_WORKING_MEM, dt, epsilon.shape(), 'c');
+            Nd4j.getExecutioner().exec(new BroadcastMulOp(epsilon, fwdPass.maskArray.castTo(dt), masked, 0, 2));
+            epsilon = masked;
+        }
+
+        //Truncated BPTT with a backward length shorter than the input: gradients come only from the last
+        // tbpttBackwardLength steps, starting from the state after the earlier steps
+        long start = 0;
+        INDArray hI = fwdPass.prevAct;
+        INDArray cI = fwdPass.prevMemCell;
+        List<INDArray> weights = opWeights(input, inputWeights, recurrentWeights, fwdPass.biases, hasPeepholeConnections,
+                workspaceMgr, ArrayType.BP_WORKING_MEM);
+        if (truncatedBPTT && tbpttBackwardLength < tsLength) {
+            start = tsLength - tbpttBackwardLength;
+            INDArray hStart = workspaceMgr.createUninitialized(ArrayType.BP_WORKING_MEM, dt, new long[]{miniBatch, nOut}, 'c');
+            INDArray cStart = workspaceMgr.createUninitialized(ArrayType.BP_WORKING_MEM, dt, new long[]{miniBatch, nOut}, 'c');
+            List<INDArray> in = new ArrayList<>(weights);
+            in.set(0, input.get(all(), all(), interval(0, start)));
+            in.add(4, hI);
+            in.add(5, cI);
+            Nd4j.exec(opBuilder("lstmLayer", gateActivationFn, afn, false, hasPeepholeConnections, false, true)
+                    .addInputs(in.toArray(new INDArray[0]))
+                    .addOutputs(hStart, cStart)
+                    .build());
+            hI = hStart;
+            cI = cStart;
+
+            weights.set(0, input.get(all(), all(), interval(start, tsLength)));
+            epsilon = epsilon.get(all(), all(), interval(start, tsLength));
+        }
+
+        List<INDArray> in = new ArrayList<>(weights);
+        in.add(4, hI);
+        in.add(5, cI);
+        in.add(epsilon);
+
+        INDArray dLdx = workspaceMgr.createUninitialized(start == 0 ? ArrayType.ACTIVATION_GRAD : ArrayType.BP_WORKING_MEM, dt,
+                new long[]{miniBatch, nIn, tsLength - start}, 'c');
+        INDArray dLdWx = workspaceMgr.createUninitialized(ArrayType.BP_WORKING_MEM, dt, new long[]{nIn, 4 * nOut}, 'c');
+        INDArray dLdWr = workspaceMgr.createUninitialized(ArrayType.BP_WORKING_MEM, dt, new long[]{nOut, 4 * nOut}, 'c');
+        INDArray dLdb = workspaceMgr.createUninitialized(ArrayType.BP_WORKING_MEM, dt, new long[]{4 * nOut}, 'c');
+        INDArray dLdhI = workspaceMgr.createUninitialized(ArrayType.BP_WORKING_MEM, dt, new long[]{miniBatch, nOut}, 'c');
+        INDArray dLdcI = workspaceMgr.createUninitialized(ArrayType.BP_WORKING_MEM, dt, new long[]{miniBatch, nOut}, 'c');
+        List<INDArray> outputs = new ArrayList<>();
+        Collections.addAll(outputs, dLdx, dLdWx, dLdWr, dLdb, dLdhI, dLdcI);
+        INDArray dLdWp = null;
+        if (hasPeepholeConnections) {
+            dLdWp = workspaceMgr.createUninitialized(ArrayType.BP_WORKING_MEM, dt, new long[]{3 * nOut}, 'c');
+            outputs.add(dLdWp);
+        }
+
+        Nd4j.exec(opBuilder("lstmLayer_bp", gateActivationFn, afn, false, hasPeepholeConnections, true, false)
+                .addInputs(in.toArray(new INDArray[0]))
+                .addOutputs(outputs.toArray(new INDArray[0]))
+                .build());
+
+        INDArray iwGradientsOut = gradientViews.get(inputWeightKey);
+        INDArray rwGradientsOut = gradientViews.get(recurrentWeightKey);
+        INDArray bGradientsOut = gradientViews.get(biasWeightKey);
+        fromOpGateOrder(dLdWx, iwGradientsOut, nOut);
+        fromOpGateOrder(dLdWr, rwGradientsOut, nOut);
+        fromOpGateOrder(dLdb.reshape(1, 4 * nOut), bGradientsOut, nOut);
+        if (hasPeepholeConnections) {
+            for (int i = 0; i < 3; i++) {
+                rwGradientsOut.get(all(), point(4 * nOut + PEEPHOLE_ORDER[i])).assign(dLdWp.get(interval(i * nOut, (i + 1) * nOut)));
+            }
+        }
+
+        INDArray epsilonNext = dLdx;
+        if (start > 0) {
+            epsilonNext = workspaceMgr.create(ArrayType.ACTIVATION_GRAD, dt, new long[]{miniBatch, nIn, tsLength}, 'c');
+            epsilonNext.get(all(), all(), interval(start, tsLength)).assign(dLdx);
+        }
+
+        Gradient retGradient = new DefaultGradient();
+        retGradient.gradientForVariable().put(inputWeightKey, iwGradientsOut);
+        retGradient.gradientForVariable().put(recurrentWeightKey, rwGradientsOut);
+        retGradient.gradientForVariable().put(biasWeightKey, bGradientsOut);
+
+        return new Pair<>(retGradient, epsilonNext);
+    }
+
+    /**
+     * lstmLayer/lstmLayer_bp inputs, in op order, excluding the initial states: [x, Wx, Wr, b] plus Wp if the layer has
+     * peephole connections
+     */
+    protected static List<INDArray> opWeights(INDArray input, INDArray inputWeights, INDArray recurrentWeights,
+                                              INDArray biases, boolean hasPeepholeConnections,
+                                              LayerWorkspaceMgr workspaceMgr, ArrayType arrayType) {
+        long nOut = recurrentWeights.size(0);
+        List<INDArray> l = new ArrayList<>();
+        l.add(input);
+        l.add(toOpGateOrder(inputWeights, nOut, workspaceMgr, arrayType));
+        l.add(toOpGateOrder(recurrentWeights.get(all(), interval(0, 4 * nOut)), nOut, workspaceMgr, arrayType));
+        l.add(toOpGateOrder(biases.reshape(1, 4 * nOut), nOut, workspaceMgr, arrayType).reshape(4 * nOut));
+        if (hasPeepholeConnections) {
+            INDArray wp = workspaceMgr.createUninitialized(arrayType, recurrentWeights.dataType(), new long[]{3 * nOut}, 'c');
+            for (int i = 0; i < 3; i++) {
+                wp.get(interval(i * nOut, (i + 1) * nOut)).assign(recurrentWeights.get(all(), point(4 * nOut + PEEPHOLE_ORDER[i])));
+            }
+            l.add(wp);
+        }
+        return l;
+    }
+
+    protected static DynamicCustomOp.DynamicCustomOpsBuilder opBuilder(String opName, IActivation gateActivationFn,
+                                                                       IActivation afn, boolean hasSeqLen,
+                                                                       boolean hasPeepholeConnections, boolean fullSequence,
+                                                                       boolean lastStep) {
+        int gateAct = activationCode(gateActivationFn);
+        int act = activationCode(afn);
+        return DynamicCustomOp.builder(opName)
+                .addIntegerArguments(DATA_FORMAT_NCW, DIRECTION_FWD, gateAct, act, act)     //Cell and output activation are the same in DL4J
+                .addFloatingPointArguments(0.0)                                             //No cell clipping
+                .addBooleanArguments(
+                        true,                       //Has biases
+                        hasSeqLen,
+                        true,                       //Has initial output
+                        true,                       //Has initial cell state
+                        hasPeepholeConnections,
+                        fullSequence,               //Full sequence output (or gradient, for lstmLayer_bp)
+                        lastStep,                   //Output at last step
+                        lastStep);                  //Cell state at last step
+    }
+
+    protected static INDArray toOpGateOrder(INDArray dl4jOrder, long nOut, LayerWorkspaceMgr workspaceMgr, ArrayType arrayType) {
+        INDArray out = workspaceMgr.createUninitialized(arrayType, dl4jOrder.dataType(), new long[]{dl4jOrder.size(0), 4 * nOut}, 'c');
+        for (int i = 0; i < 4; i++) {
+            out.get(all(), interval(i * nOut, (i + 1) * nOut))
+                    .assign(dl4jOrder.get(all(), interval(GATE_ORDER[i] * nOut, (GATE_ORDER[i] + 1) * nOut)));
+        }
+        return out;
+    }
+
+    protected static void fromOpGateOrder(INDArray opOrder, INDArray dl4jOrder, long nOut) {
+        for (int i = 0; i < 4; i++) {
+            dl4jOrder.get(all(), interval(GATE_ORDER[i] * nOut, (GATE_ORDER[i] + 1) * nOut))
+                    .assign(opOrder.get(all(), interval(i * nOut, (i + 1) * nOut)));
+        }
+    }
+
+    /**
+     * @return True if each example's mask is of the form [1,...,1,0,...,0] - i.e., can be expressed as a sequence length
+     */
+    protected static boolean isPrefixMask(INDArray maskArray) {
+        if (maskArray.rank() != 2)
+            return false;
+        if (maskArray.mul(maskArray.rsub(1.0)).amaxNumber().doubleValue() != 0.0)
+            return false;   //Not binary
+        long tsLength = maskArray.size(1);
+        if (tsLength == 1)
+            return true;
+        INDArray diff = maskArray.get(all(), interval(1, tsLength)).sub(maskArray.get(all(), interval(0, tsLength - 1)));
+        return diff.maxNumber().doubleValue() <= 0.0;
+    }
+
+    /**
+     * @return lstmLayer activation code for the given activation function, or -1 if the op has no equivalent
+     */
+    protected static int activationCode(IActivation activation) {
+        Class<?> c = activation.getClass();
+        if (c == ActivationTanH.class) {
+            return 0;
+        } else if (c == ActivationReLU.class) {
+            ActivationReLU r = (ActivationReLU) activation;
+            boolean standard = r.getMax() == null && (r.getThreshold() == null || r.getThreshold() == 0.0)
+                    && (r.getNegativeSlope() == null || r.getNegativeSlope() == 0.0);
+            return standard ? 1 : -1;
+        } else if (c == ActivationSigmoid.class) {
+            return 2;
+        } else if (c == ActivationHardSigmoid.class) {
+            return 7;
+        } else if (c == ActivationSoftSign.class) {
+            return 9;
+        } else if (c == ActivationSoftPlus.class) {
+            return 10;
+        }
+        return -1;
+    }
+
+    @Override
+    public Map<String, Long> helperMemoryUse() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public boolean checkSupported() {
+        return true;
+    }
+}
@@ -46,6 +46,11 @@ public class FwdPassReturn {
     //Last 2: needed only for TBPTT
     public INDArray prevAct;
     public INDArray prevMemCell;
+    //Next 3: set only when the forward pass was done by FusedLSTMHelper. No per time step arrays are kept in that case,
+    // as the lstmLayer_bp op recomputes the gate activations itself
+    public boolean fused;
+    public INDArray biases;
+    public INDArray maskArray;
 
     /**
      * This method is OPTIONAL, and written mostly for future use
@@ -50,7 +50,7 @@ public class LSTM extends BaseRecurrentLayer<org.deeplearning4j.nn.conf.layers.L
 
     void initializeHelper() {
         helper = HelperUtils.createHelper(CUDNN_LSTM_CLASS_NAME,
-                "",
+                FusedLSTMHelper.class.getName(),
                 LSTMHelper.class, layerConf().getLayerName(), dataType
         );
     }
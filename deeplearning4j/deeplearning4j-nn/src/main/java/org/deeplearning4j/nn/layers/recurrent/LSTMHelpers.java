@@ -429,7 +429,7 @@ public class LSTMHelpers {
                     final IActivation gateActivationFn, INDArray input, final INDArray recurrentWeights, //Shape: [hiddenLayerSize,4*hiddenLayerSize+3]; order: [wI,wF,wO,wG,wFF,wOO,wGG]
                     final INDArray inputWeights, //Shape: [n^(L-1),4*hiddenLayerSize]; order: [wi,wf,wo,wg]
                     final INDArray epsilon, final boolean truncatedBPTT, final int tbpttBackwardLength,
-                    final FwdPassReturn fwdPass, final boolean forwards, final String inputWeightKey,
+                    FwdPassReturn fwdPass, final boolean forwards, final String inputWeightKey,
                     final String recurrentWeightKey, final String biasWeightKey,
                     final Map<String, INDArray> gradientViews, INDArray maskArray, //Input mask: should only be used with bidirectional RNNs + variable length
                     final boolean hasPeepholeConnections, //True for GravesLSTM, false for LSTM
@@ -525,6 +525,13 @@ public class LSTMHelpers {
             }
         }
 
+        if (fwdPass.fused) {
+            //Forward pass was done by FusedLSTMHelper, which doesn't keep the per time step arrays needed here
+            fwdPass = activateHelper(layer, conf, gateActivationFn, input, recurrentWeights, inputWeights, fwdPass.biases,
+                    true, fwdPass.prevAct, fwdPass.prevMemCell, true, forwards, inputWeightKey, fwdPass.maskArray,
+                    hasPeepholeConnections, null, CacheMode.NONE, workspaceMgr, isHelperAllowFallback);
+        }
+
         boolean sigmoidGates = gateActivationFn instanceof ActivationSigmoid;
         IActivation afn = ((org.deeplearning4j.nn.conf.layers.BaseLayer) conf.getLayer()).getActivationFn();
 
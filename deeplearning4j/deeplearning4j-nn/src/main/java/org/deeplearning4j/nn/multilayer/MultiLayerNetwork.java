@@ -50,13 +50,18 @@ import org.deeplearning4j.nn.layers.FrozenLayerWithBackprop;
 import org.deeplearning4j.nn.layers.LayerHelper;
 import org.deeplearning4j.nn.layers.recurrent.BidirectionalLayer;
 import org.deeplearning4j.nn.layers.wrapper.BaseWrapperLayer;
+import org.deeplearning4j.nn.updater.BaseMultiLayerUpdater;
+import org.deeplearning4j.nn.updater.LossScaler;
+import org.deeplearning4j.nn.updater.PipelinedUpdater;
 import org.deeplearning4j.nn.updater.UpdaterCreator;
 import org.deeplearning4j.nn.workspace.ArrayType;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
 import org.deeplearning4j.optimize.Solver;
 import org.deeplearning4j.optimize.api.ConvexOptimizer;
 import org.deeplearning4j.optimize.api.TrainingListener;
+import org.deeplearning4j.optimize.solvers.StochasticGradientDescent;
 import org.deeplearning4j.optimize.solvers.accumulation.GradientsAccumulator;
+import org.deeplearning4j.optimize.stepfunctions.NegativeGradientStepFunction;
 import org.deeplearning4j.util.*;
 import org.nd4j.adapters.OutputAdapter;
 import org.nd4j.common.base.Preconditions;
@@ -124,6 +129,8 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
     @Setter
     protected boolean initDone = false;
     protected INDArray flattenedParams; //Params for all layers are a view/subset of this array
+    protected boolean paramsReadOnly = false; //Params are shared with other networks: see cloneSharingParameters()
+    protected transient volatile ConcurrentReplicas<MultiLayerNetwork> concurrentReplicas; //Per thread replicas, if concurrent output is enabled: see setConcurrentOutput()
     @Getter
     protected transient INDArray flattenedGradients; //Gradients for all layers are a view/subset of this array
     @Getter
@@ -135,6 +142,9 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
     protected int layerIndex; //For Layer.get/setIndex()
 
     protected transient Solver solver; //Used to call optimizers during backprop
+    @Getter
+    protected transient LossScaler lossScaler; //Mixed precision training only: see NeuralNetConfiguration.Builder.mixedPrecision
+    protected transient PipelinedUpdater pipelinedUpdater; //Non-null only during backprop with pipelined updates
     //Workspaces for CUDNN. Pass to LayerWorkspaceMgr for re-use in cudnn helpers
     @Getter
     protected transient Map<String,Pointer> helperWorkspaces = new HashMap<>();
@@ -387,6 +397,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      * @param features Training data array
      */
     public void pretrainLayer(int layerIdx, INDArray features) {
+        assertParamsWritable("pretrain layer");
         setInput(features);
         setLayerMaskArrays(null, null);
 
@@ -541,6 +552,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      */
     @Override
     public void setParamTable(Map<String, INDArray> paramTable) {
+        assertParamsWritable("set parameter table");
         Map<String, INDArray> currParamTable = paramTable();
         if (!currParamTable.keySet().equals(paramTable.keySet())) {
             throw new IllegalArgumentException("Cannot set param table: parameter keys do not match.\n" + "Current: "
@@ -563,6 +575,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
             INDArray toSet = paramTable.get(s);
             curr.assign(toSet);
         }
+        resetMasterParams();
     }
 
     /**
@@ -573,6 +586,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      */
     @Override
     public void setParam(String key, INDArray val) {
+        assertParamsWritable("set parameter");
         //Set params for MultiLayerNetwork sub layers.
         int idx = key.indexOf('_');
         if (idx == -1)
@@ -581,6 +595,20 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         String newKey = key.substring(idx + 1);
 
         layers[layerIdx].setParam(newKey, val);
+        resetMasterParams();
+    }
+
+    /**
+     * Mixed precision training only: reset the updater's FP32 master copy of the parameters after the parameters have
+     * been set externally
+     */
+    protected void resetMasterParams() {
+        if (lossScaler != null) {
+            Updater u = getUpdater(false);
+            if (u instanceof BaseMultiLayerUpdater) {
+                ((BaseMultiLayerUpdater<?>) u).resetMasterParams();
+            }
+        }
     }
 
     /**
@@ -735,6 +763,13 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
             }
         }
 
+        MixedPrecision mixedPrecision = layerWiseConfigurations.getMixedPrecision();
+        if (mixedPrecision != null && lossScaler == null) {
+            Preconditions.checkState(netDtype == DataType.HALF || netDtype == DataType.BFLOAT16, "Mixed precision training" +
+                    " requires the network datatype to be HALF or BFLOAT16, got %s", netDtype);
+            lossScaler = new LossScaler(mixedPrecision, netDtype);
+        }
+
         // now we init solver & optimizer
         if (solver == null) {
             try (MemoryWorkspace wsO = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
@@ -1090,7 +1125,23 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      */
     protected synchronized List<INDArray> ffToLayerActivationsInWs(int layerIndex, @NonNull FwdPassType fwdPassType, boolean storeLastForTBPTT,
                                                                    @NonNull INDArray input, INDArray fMask, INDArray lMask){
-        setInput(input);
+        return ffToLayerActivationsInWs(0, layerIndex, fwdPassType, storeLastForTBPTT, input, fMask, lMask);
+    }
+
+    /**
+     * As per {@link #ffToLayerActivationsInWs(int, FwdPassType, boolean, INDArray, INDArray, INDArray)}, but starting
+     * the forward pass at the specified layer. Used for activation checkpointing.
+     *
+     * @param fromLayer         Index of the first layer to do the forward pass for
+     * @param layerIndex        Index (inclusive) to stop forward pass at
+     * @param input             Input to layer fromLayer (before any input preprocessor for that layer)
+     */
+    protected synchronized List<INDArray> ffToLayerActivationsInWs(int fromLayer, int layerIndex, @NonNull FwdPassType fwdPassType,
+                                                                   boolean storeLastForTBPTT, @NonNull INDArray input,
+                                                                   INDArray fMask, INDArray lMask){
+        if (fromLayer == 0) {
+            setInput(input);
+        }
         setLayerMaskArrays(fMask, lMask);
 
         LayerWorkspaceMgr workspaceMgr;
@@ -1120,12 +1171,17 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         }
         workspaceMgr.setHelperWorkspacePointers(helperWorkspaces);
 
+        if (fromLayer > 0 && layerWiseConfigurations.getTrainingWorkspaceMode() != WorkspaceMode.NONE) {
+            //Checkpointed (detached) activations: layer inputs are expected to be in the activations workspace
+            input = workspaceMgr.dup(ArrayType.INPUT, input);
+        }
+
         List<INDArray> out = new ArrayList<>();
         out.add(workspaceMgr.leverageTo(ArrayType.INPUT, input));    //Probably unnecessary usually
 
         boolean traceLog = log.isTraceEnabled();
 
-        for( int i = 0; i <=layerIndex; i++) {
+        for( int i = fromLayer; i <=layerIndex; i++) {
             try(MemoryWorkspace wsFFWorking = workspaceMgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)){
                 if (getLayerWiseConfigurations().getInputPreProcess(i) != null) {
                     input = getLayerWiseConfigurations().getInputPreProcess(i).preProcess(input, getInputMiniBatchSize(), workspaceMgr);
@@ -1526,6 +1582,116 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         return false;
     }
 
+    /**
+     * Clone the MultiLayerNetwork for inference, sharing the parameters with this network instead of copying them.<br>
+     * The returned network has its own layers (and hence activations, workspaces and RNN state), so it can be used
+     * concurrently with this network - but the parameters array is the same instance. Memory for the parameters is
+     * therefore used only once, however many clones are created.<br>
+     * The returned network is read-only (see {@link #isParamsReadOnly()}): methods that modify the parameters (fit,
+     * setParams, etc) throw an exception. Note that this network is NOT made read-only: it should not be trained or
+     * otherwise modified while clones are in use, as changes are visible to all clones. The updater state is not cloned.
+     *
+     * @return A network with a copy of the configuration, sharing the parameters of this network
+     */
+    public MultiLayerNetwork cloneSharingParameters() {
+        synchronized (this) {
+            if (!initCalled)
+                init();
+        }
+        MultiLayerNetwork ret = new MultiLayerNetwork(this.layerWiseConfigurations.clone());
+        ret.init(this.params(), false);
+        ret.paramsReadOnly = true;
+        return ret;
+    }
+
+    /**
+     * @return True if the parameters of this network are read-only, for example because they are shared with other
+     * networks via {@link #cloneSharingParameters()}
+     */
+    public boolean isParamsReadOnly() {
+        return paramsReadOnly;
+    }
+
+    /**
+     * Set whether the parameters of this network are read-only. When read-only, methods that modify the parameters
+     * (fit, pretrain, setParams, setParamTable, setParam) throw an IllegalStateException instead.<br>
+     * Note that this does not prevent direct in-place modification of the arrays returned by {@link #params()} or
+     * {@link #paramTable()}, which are views of the parameters.
+     *
+     * @param paramsReadOnly Whether the parameters should be read-only
+     */
+    public void setParamsReadOnly(boolean paramsReadOnly) {
+        this.paramsReadOnly = paramsReadOnly;
+    }
+
+    protected void assertParamsWritable(String operation) {
+        if (paramsReadOnly)
+            throw new IllegalStateException("Cannot " + operation + ": network parameters are read-only (shared with other " +
+                    "networks, see cloneSharingParameters()). Use clone() to create a network with a copy of the parameters");
+    }
+
+    /**
+     * Enable or disable concurrent inference. When enabled, inference (i.e., output with train=false) may be called
+     * by any number of threads at the same time without locking: each calling thread uses its own lightweight replica
+     * of this network (see {@link #cloneSharingParameters()}), created on the first call from that thread. The
+     * replicas hold the per-call layer state (inputs, masks, helper state, etc) and use the calling thread's
+     * workspaces, but share the parameters of this network - hence the memory for the parameters is used only once.
+     * <br>
+     * Training and other methods that use the layer state (rnnTimeStep, feedForward, etc) are still synchronized,
+     * and must not be called concurrently with inference as parameter changes are visible to all replicas.
+     * The replicas are held until {@link #clearConcurrentReplicas()}, {@link #close()} or until concurrent inference
+     * is disabled. This setting is not saved or serialized with the network. Default: disabled
+     *
+     * @param concurrentOutput Whether inference calls should run concurrently
+     */
+    public void setConcurrentOutput(boolean concurrentOutput) {
+        clearConcurrentReplicas();
+        this.concurrentReplicas = concurrentOutput ? new ConcurrentReplicas<MultiLayerNetwork>() : null;
+    }
+
+    /**
+     * Release the per thread replicas used for concurrent inference (see {@link #setConcurrentOutput(boolean)}), for
+     * example when the network is no longer used for inference, or the threads that used it are shut down. Concurrent
+     * inference remains enabled: threads create a new replica on their next call
+     */
+    public void clearConcurrentReplicas() {
+        ConcurrentReplicas<MultiLayerNetwork> replicas = concurrentReplicas;
+        if (replicas != null)
+            replicas.clear();
+    }
+
+    /**
+     * @return Number of per thread replicas currently held for concurrent inference (0 if it is not enabled)
+     */
+    public int getNumConcurrentReplicas() {
+        ConcurrentReplicas<MultiLayerNetwork> replicas = concurrentReplicas;
+        return replicas == null ? 0 : replicas.size();
+    }
+
+    /**
+     * @return True if concurrent inference is enabled - see {@link #setConcurrentOutput(boolean)}
+     */
+    public boolean isConcurrentOutput() {
+        return concurrentReplicas != null;
+    }
+
+    /**
+     * @return The replica of this network for concurrent inference in the current thread, or null if concurrent
+     * inference is not enabled
+     */
+    protected MultiLayerNetwork concurrentReplica() {
+        ConcurrentReplicas<MultiLayerNetwork> replicas = concurrentReplicas;
+        if (replicas == null)
+            return null;
+        MultiLayerNetwork r = replicas.get();
+        if (r == null || r.params() != params()) {
+            //First call from this thread, or the parameters array has been replaced (init, etc) since replica creation
+            r = cloneSharingParameters();
+            replicas.set(r);
+        }
+        return r;
+    }
+
 
     /**
      * @deprecated To be removed. Use {@link #params()} instead
@@ -1560,6 +1726,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         if (flattenedParams == params) {
             return; //No op
         }
+        assertParamsWritable("set parameters");
 
         if (flattenedParams != null && params.length() == flattenedParams.length()) {
             if (params != flattenedParams) {
@@ -1579,6 +1746,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                 idx += range;
             }
         }
+        resetMasterParams();
     }
 
     @Override
@@ -1681,6 +1849,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
     }
 
     private synchronized void fitHelper(DataSetIterator iterator){
+        assertParamsWritable("fit network");
         // we're wrapping all iterators into AsyncDataSetIterator to provide background prefetch - where appropriate
         DataSetIterator iter;
         boolean destructable = false;
@@ -1861,6 +2030,20 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      */
     protected Pair<Gradient, INDArray> calcBackpropGradients(INDArray epsilon, boolean withOutputLayer, boolean tbptt,
                                                              boolean returnInputActGrad) {
+        return calcBackpropGradients(epsilon, withOutputLayer, tbptt, returnInputActGrad, 0, layers.length - 1);
+    }
+
+    /**
+     * As per {@link #calcBackpropGradients(INDArray, boolean, boolean, boolean)}, but only for the specified range of
+     * layers. Used for activation checkpointing.
+     *
+     * @param fromLayer Index of the first (lowest) layer to calculate gradients for
+     * @param toLayer   Index of the last (highest) layer to calculate gradients for. If less than the index of the
+     *                  output layer, epsilon is the error at the output of this layer
+     * @return Gradients and the error (epsilon) at the input of layer fromLayer
+     */
+    protected Pair<Gradient, INDArray> calcBackpropGradients(INDArray epsilon, boolean withOutputLayer, boolean tbptt,
+                                                             boolean returnInputActGrad, int fromLayer, int toLayer) {
         if (flattenedGradients == null) {
             initGradientsView();
         }
@@ -1946,7 +2129,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
 
         Throwable t = null;
         try {
-            for (int i = layers.length - 1; i >= 0; i--) {
+            for (int i = toLayer; i >= fromLayer; i--) {
                 if (layers[i] instanceof FrozenLayer) {
                     break;
                 }
@@ -1979,7 +2162,12 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                     wsActGradTemp.setPreviousWorkspace(initialWorkspace);
                     wsBPWorking.setPreviousWorkspace(initialWorkspace);
 
-                    INDArray eps = (i == layers.length - 1 ? epsilon : currPair.getRight());  //eps is null for OutputLayer
+                    INDArray eps = (i == toLayer ? epsilon : currPair.getRight());  //eps is null for OutputLayer
+                    if (i == toLayer && toLayer < layers.length - 1 && eps != null && !eps.isAttached()
+                            && layerWiseConfigurations.getTrainingWorkspaceMode() != WorkspaceMode.NONE) {
+                        //Activation checkpointing: epsilon from the next segment is detached
+                        eps = workspaceMgr.dup(ArrayType.ACTIVATION_GRAD, eps);
+                    }
 
                     if (!tbptt) {
                         //Standard case
@@ -1994,6 +2182,11 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                         }
                     }
 
+                    if (withOutputLayer && i == layers.length - 1 && lossScaler != null) {
+                        //Mixed precision: scale the error signal, to avoid underflow of small gradients in half precision
+                        lossScaler.scale(currPair.getFirst(), currPair.getSecond());
+                    }
+
                     if (currPair.getSecond() != null) {
                         //Edge case: may be null for Embedding layer, for example
                         validateArrayWorkspaces(workspaceMgr, currPair.getSecond(), ArrayType.ACTIVATION_GRAD, i,
@@ -2016,7 +2209,12 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                         }
                     }
 
-                    if (i == 0) {
+                    if (pipelinedUpdater != null) {
+                        //Parameters of this layer are no longer required for backprop: update them concurrently
+                        pipelinedUpdater.layerDone(i, currPair.getFirst());
+                    }
+
+                    if (i == fromLayer) {
                         if (returnInputActGrad && currPair.getSecond() != null) {
                             currPair.setSecond(currPair.getSecond().detach());
                         } else {
@@ -2087,7 +2285,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
             gradient.setGradientFor(triple.getFirst(), triple.getSecond(), triple.getThird());
         }
 
-        return new Pair<>(gradient, currPair.getSecond());
+        return new Pair<>(gradient, currPair == null ? null : currPair.getSecond());
     }
 
     protected void doTruncatedBPTT(INDArray input, INDArray labels, INDArray featuresMaskArray,
@@ -2308,6 +2506,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
     }
 
     private void fitHelper(INDArray features, INDArray labels, INDArray featuresMask, INDArray labelsMask){
+        assertParamsWritable("fit network");
         if(numParams() == 0) {
             //No op: can't fit a network with 0 parameters
             return;
@@ -2450,12 +2649,18 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      * @param outputWorkspace May be null. If not null: the workspace MUST be opened before calling this method.
      * @return The output/activations from the network (either detached or in the specified workspace if provided)
      */
-    public synchronized INDArray output(INDArray input, boolean train, INDArray featuresMask, INDArray labelsMask, MemoryWorkspace outputWorkspace) {
-        try {
-            return outputOfLayerDetached(train, FwdPassType.STANDARD, layers.length - 1, input, featuresMask, labelsMask, outputWorkspace);
-        } catch (OutOfMemoryError e) {
-            CrashReportingUtil.writeMemoryCrashDump(this, e);
-            throw e;
+    public INDArray output(INDArray input, boolean train, INDArray featuresMask, INDArray labelsMask, MemoryWorkspace outputWorkspace) {
+        MultiLayerNetwork replica = train ? null : concurrentReplica();
+        if (replica != null)
+            return replica.output(input, false, featuresMask, labelsMask, outputWorkspace);
+
+        synchronized (this) {
+            try {
+                return outputOfLayerDetached(train, FwdPassType.STANDARD, layers.length - 1, input, featuresMask, labelsMask, outputWorkspace);
+            } catch (OutOfMemoryError e) {
+                CrashReportingUtil.writeMemoryCrashDump(this, e);
+                throw e;
+            }
         }
     }
 
@@ -2471,12 +2676,18 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      * @param <T> T extends Object
      * @return T instance produced by OutputAdapter
      */
-    public synchronized <T> T output(@NonNull INDArray inputs, INDArray inputMasks, INDArray labelMasks, @NonNull OutputAdapter<T> outputAdapter) {
-        try (val ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(WS_ALL_LAYERS_ACT_CONFIG, WS_OUTPUT_MEM)) {
-            if (outputAdapter instanceof ModelAdapter)
-                return ((ModelAdapter<T>) outputAdapter).apply(this, new INDArray[]{inputs}, new INDArray[]{ inputMasks}, new INDArray[]{labelMasks});
-            else
-                return outputAdapter.apply(output(inputs, false, inputMasks, labelMasks, ws));
+    public <T> T output(@NonNull INDArray inputs, INDArray inputMasks, INDArray labelMasks, @NonNull OutputAdapter<T> outputAdapter) {
+        MultiLayerNetwork replica = concurrentReplica();
+        if (replica != null)
+            return replica.output(inputs, inputMasks, labelMasks, outputAdapter);
+
+        synchronized (this) {
+            try (val ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(WS_ALL_LAYERS_ACT_CONFIG, WS_OUTPUT_MEM)) {
+                if (outputAdapter instanceof ModelAdapter)
+                    return ((ModelAdapter<T>) outputAdapter).apply(this, new INDArray[]{inputs}, new INDArray[]{inputMasks}, new INDArray[]{labelMasks});
+                else
+                    return outputAdapter.apply(output(inputs, false, inputMasks, labelMasks, ws));
+            }
         }
     }
 
@@ -2741,10 +2952,43 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
 
     @Override
     public void computeGradientAndScore(LayerWorkspaceMgr layerWorkspaceMgr){
-        computeGradientAndScore();
+        //Called by the optimizer during fitting: the updates may be applied during backprop
+        computeGradientAndScore(getPipelinedUpdaterForFit());
     }
 
     public void computeGradientAndScore() {
+        computeGradientAndScore((PipelinedUpdater) null);
+    }
+
+    /**
+     * @return The pipelined updater to use for fitting, if pipelined updates are enabled and can be used with the current
+     * configuration and optimizer; null otherwise. See {@link MultiLayerConfiguration.Builder#pipelinedUpdates(boolean)}
+     */
+    protected PipelinedUpdater getPipelinedUpdaterForFit() {
+        if (!layerWiseConfigurations.isPipelinedUpdates() || solver == null || lossScaler != null
+                || layerWiseConfigurations.getBackpropType() == BackpropType.TruncatedBPTT
+                || layerWiseConfigurations.getActivationCheckpointing() != null) {
+            return null;
+        }
+        ConvexOptimizer o = solver.getOptimizer();
+        if (!(o instanceof StochasticGradientDescent) || o.getGradientsAccumulator() != null
+                || !(o.getStepFunction() instanceof NegativeGradientStepFunction)) {
+            return null;
+        }
+        Updater u = getUpdater();
+        if (!(u instanceof BaseMultiLayerUpdater) || ((BaseMultiLayerUpdater<?>) u).getMasterParams() != null) {
+            return null;
+        }
+        return ((BaseMultiLayerUpdater<?>) u).getPipelinedUpdater();
+    }
+
+    /**
+     * Compute the gradient and score, optionally applying the updates during backprop
+     *
+     * @param pipelinedUpdater If non-null: used to apply the updates (and update the parameters) for each layer as soon
+     *                         as its gradients have been calculated
+     */
+    protected void computeGradientAndScore(PipelinedUpdater pipelinedUpdater) {
 
         if (!(getOutputLayer() instanceof IOutputLayer)) {
             throw new DL4JException(
@@ -2778,6 +3022,13 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         FwdPassType fwdType = (tbptt ? FwdPassType.RNN_ACTIVATE_WITH_STORED_STATE : FwdPassType.STANDARD);
         synchronizeIterEpochCounts();
 
+        int[] segmentStarts = (tbptt ? null : checkpointSegmentStarts());
+        if (segmentStarts != null && segmentStarts.length > 1) {
+            computeGradientAndScoreCheckpointed(mgr, segmentStarts);
+            getOutputLayer().clearNoiseWeightParams();
+            return;
+        }
+
         //Calculate activations (which are stored in each layer, and used in backprop)
         try(MemoryWorkspace ws = mgr.notifyScopeEntered(ArrayType.ACTIVATIONS)) {
             //First: do a feed-forward through the network
@@ -2797,14 +3048,34 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                 //Validate activations location
             }
             getOutputLayer().setInput(inputToOutputLayer, mgr);
-            //Then: compute gradients
-            Pair<Gradient, INDArray> pair = calcBackpropGradients(null, true, false, false);
-            this.gradient = (pair == null ? null : pair.getFirst());
-
-            //Calculate score
-            try(MemoryWorkspace wsFF = mgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) {
-                double r = calcRegularizationScore(true);
-                score = ((IOutputLayer) getOutputLayer()).computeScore(r, true, mgr);
+            if (pipelinedUpdater != null) {
+                //Pipelined updates: parameters are modified during backprop, hence calculate the score first
+                ((IOutputLayer) getOutputLayer()).setLabels(labels);
+                try(MemoryWorkspace wsFF = mgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) {
+                    double r = calcRegularizationScore(true);
+                    score = ((IOutputLayer) getOutputLayer()).computeScore(r, true, mgr);
+                }
+
+                pipelinedUpdater.begin(getIterationCount(), getEpochCount(), batchSize());
+                this.pipelinedUpdater = pipelinedUpdater;
+                try {
+                    Pair<Gradient, INDArray> pair = calcBackpropGradients(null, true, false, false);
+                    this.gradient = (pair == null ? null : pair.getFirst());
+                    pipelinedUpdater.awaitCompletion();
+                } finally {
+                    pipelinedUpdater.cancel();
+                    this.pipelinedUpdater = null;
+                }
+            } else {
+                //Then: compute gradients
+                Pair<Gradient, INDArray> pair = calcBackpropGradients(null, true, false, false);
+                this.gradient = (pair == null ? null : pair.getFirst());
+
+                //Calculate score
+                try(MemoryWorkspace wsFF = mgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) {
+                    double r = calcRegularizationScore(true);
+                    score = ((IOutputLayer) getOutputLayer()).computeScore(r, true, mgr);
+                }
             }
 
             //Listeners
@@ -2821,6 +3092,126 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         getOutputLayer().clearNoiseWeightParams();
     }
 
+    /**
+     * @return Index of the first layer of each activation checkpointing segment, or null if activation checkpointing
+     * is not used. The output layer is always part of the last segment
+     */
+    protected int[] checkpointSegmentStarts() {
+        ActivationCheckpointing checkpointing = layerWiseConfigurations.getActivationCheckpointing();
+        if (checkpointing == null || layers.length < 3)
+            return null;
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < layers.length - 1; i++) {
+            names.add(layers[i].conf().getLayer().getLayerName());
+        }
+        boolean[] segmentEnds = checkpointing.segmentEnds(names);
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int i = 0; i < segmentEnds.length - 1; i++) {
+            if (segmentEnds[i])
+                starts.add(i + 1);
+        }
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Compute the gradient and score using activation checkpointing: see {@link ActivationCheckpointing}.<br>
+     * During the forward pass, only the input to each segment is retained (detached). Backprop is then done one segment
+     * at a time, from the last to the first: the forward pass for the segment is recomputed from its input (in the
+     * activations workspace, which is reused for each segment), followed by backprop for the layers of the segment.
+     * The RNG is seeded identically for both forward passes of a segment, so dropout masks etc are the same.
+     *
+     * @param mgr           Workspace manager for the score calculation
+     * @param segmentStarts Index of the first layer of each segment
+     */
+    protected void computeGradientAndScoreCheckpointed(LayerWorkspaceMgr mgr, int[] segmentStarts) {
+        int nSegments = segmentStarts.length;
+        long[] seeds = new long[nSegments + 1];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = Nd4j.getRandom().nextLong();
+        }
+
+        //Forward pass: retain only the input to each segment
+        List<INDArray> checkpoints = new ArrayList<>();
+        checkpoints.add(input);
+        for (int s = 0; s < nSegments - 1; s++) {
+            try (MemoryWorkspace ws = mgr.notifyScopeEntered(ArrayType.ACTIVATIONS)) {
+                Nd4j.getRandom().setSeed(seeds[s]);
+                List<INDArray> activations = ffToLayerActivationsInWs(segmentStarts[s], segmentStarts[s + 1] - 1,
+                        FwdPassType.STANDARD, false, checkpoints.get(s), mask, null);
+                checkpoints.add(activations.get(activations.size() - 1).detach());
+            }
+        }
+        if (!trainingListeners.isEmpty()) {
+            for (TrainingListener tl : trainingListeners) {
+                tl.onForwardPass(this, checkpoints);
+            }
+        }
+
+        //Backward pass: recompute the activations of each segment, then backprop through it
+        List<Gradient> segmentGradients = new ArrayList<>();
+        INDArray epsilon = null;
+        for (int s = nSegments - 1; s >= 0; s--) {
+            boolean lastSegment = (s == nSegments - 1);
+            int fromLayer = segmentStarts[s];
+            int toLayer = (lastSegment ? layers.length - 1 : segmentStarts[s + 1] - 1);
+            Pair<Gradient, INDArray> pair;
+            try (MemoryWorkspace ws = mgr.notifyScopeEntered(ArrayType.ACTIVATIONS)) {
+                Nd4j.getRandom().setSeed(seeds[s]);
+                List<INDArray> activations = ffToLayerActivationsInWs(fromLayer, lastSegment ? toLayer - 1 : toLayer,
+                        FwdPassType.STANDARD, false, checkpoints.get(s), mask, null);
+                if (lastSegment) {
+                    INDArray inputToOutputLayer = activations.get(activations.size() - 1);
+                    if (layerWiseConfigurations.getInputPreProcess(toLayer) != null) {
+                        inputToOutputLayer = layerWiseConfigurations.getInputPreProcess(toLayer)
+                                .preProcess(inputToOutputLayer, getInputMiniBatchSize(), mgr);
+                    }
+                    getOutputLayer().setInput(inputToOutputLayer, mgr);
+                }
+
+                pair = calcBackpropGradients(epsilon, lastSegment, false, s > 0, fromLayer, toLayer);
+                if (pair == null) {
+                    this.gradient = null;
+                    return;
+                }
+
+                if (lastSegment) {
+                    try (MemoryWorkspace wsFF = mgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) {
+                        double r = calcRegularizationScore(true);
+                        score = ((IOutputLayer) getOutputLayer()).computeScore(r, true, mgr);
+                    }
+                }
+            }
+            segmentGradients.add(pair.getFirst());
+            epsilon = pair.getSecond();
+
+            boolean hitFrozen = false;
+            for (int i = fromLayer; i <= toLayer; i++) {
+                hitFrozen |= layers[i] instanceof FrozenLayer;
+            }
+            if (hitFrozen || epsilon == null)
+                break;
+        }
+        Nd4j.getRandom().setSeed(seeds[nSegments]);
+
+        //Gradients in the same order as for standard backprop: output layer first
+        Gradient g = new DefaultGradient(flattenedGradients);
+        for (Gradient sg : segmentGradients) {
+            for (Map.Entry<String, INDArray> e : sg.gradientForVariable().entrySet()) {
+                g.setGradientFor(e.getKey(), e.getValue(), sg.flatteningOrderForVariable(e.getKey()));
+            }
+        }
+        this.gradient = g;
+
+        if (!trainingListeners.isEmpty()) {
+            try (MemoryWorkspace workspace = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                for (TrainingListener tl : trainingListeners) {
+                    tl.onBackwardPass(this);
+                }
+            }
+        }
+    }
+
     /**
      * Clear the inputs. Clears optimizer state.
      */
@@ -4131,6 +4522,8 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      */
     @Override
     public void close(){
+        clearConcurrentReplicas();
+
         //Close the INDArray and dealloc
         if(flattenedParams.closeable())
             flattenedParams.close();
@@ -4139,6 +4532,9 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
             flattenedGradients.close();
 
         Updater u = getUpdater(false);
+        if(u instanceof BaseMultiLayerUpdater) {
+            ((BaseMultiLayerUpdater<?>) u).closePipelinedUpdater();
+        }
         if(u != null && u.getStateViewArray() != null) {
             INDArray state = u.getStateViewArray();
             if(state.closeable())
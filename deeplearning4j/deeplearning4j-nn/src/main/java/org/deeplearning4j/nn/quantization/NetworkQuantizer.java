@@ -0,0 +1,214 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.nn.quantization;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.deeplearning4j.nn.params.LSTMParamInitializer;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.evaluation.IEvaluation;
+import org.nd4j.evaluation.classification.Evaluation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.quantization.PerChannelQuantizedArray;
+import org.nd4j.linalg.quantization.QuantizationReport;
+
+import java.util.*;
+
+/**
+ * Post-training int8 quantization for MultiLayerNetwork and ComputationGraph.<br>
+ * The weights of dense, output, convolution and LSTM layers are quantized to INT8 with per-output-channel scales
+ * (see {@link PerChannelQuantizedArray}). The quantized network returned by {@link #quantize(Model)} is a copy of the
+ * original network with the dequantized weights, hence it reproduces the accuracy of int8 weights, but has the same
+ * memory use and latency as the original network. The INT8 weights themselves are available from
+ * {@link #getQuantizedWeights()}, keyed by layer index for MultiLayerNetwork and by layer name for ComputationGraph.<br>
+ * Activations are not quantized: DL4J layers have no equivalent of the fake quantization ops used by
+ * SameDiffQuantizer.<br>
+ * Usage:
+ * <pre>
+ * {@code
+ * NetworkQuantizer q = NetworkQuantizer.builder().build();
+ * MultiLayerNetwork quantized = (MultiLayerNetwork) q.quantize(net);
+ * QuantizationReport r = q.evaluate(net, quantized, testIter);
+ * }
+ * </pre>
+ */
+@Slf4j
+public class NetworkQuantizer {
+
+    @Getter
+    private Map<String, PerChannelQuantizedArray> quantizedWeights;
+
+    protected NetworkQuantizer(Builder builder) {
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Quantize the weights of the specified network
+     *
+     * @param model MultiLayerNetwork or ComputationGraph to quantize. Not modified
+     * @return Quantized copy of the network (same type as the original network)
+     */
+    public Model quantize(@NonNull Model model) {
+        Model out;
+        Layer[] layers;
+        if (model instanceof MultiLayerNetwork) {
+            out = ((MultiLayerNetwork) model).clone();
+            layers = ((MultiLayerNetwork) out).getLayers();
+        } else if (model instanceof ComputationGraph) {
+            out = ((ComputationGraph) model).clone();
+            layers = ((ComputationGraph) out).getLayers();
+        } else {
+            throw new IllegalArgumentException("Only MultiLayerNetwork and ComputationGraph models can be quantized, got " + model.getClass().getName());
+        }
+
+        quantizedWeights = new LinkedHashMap<>();
+        for (int i = 0; i < layers.length; i++) {
+            Layer l = layers[i];
+            //Same keys as the network's parameter table: layer index for MultiLayerNetwork, layer name for ComputationGraph
+            String layerName = out instanceof MultiLayerNetwork ? String.valueOf(i) : l.conf().getLayer().getLayerName();
+            for (Map.Entry<String, Integer> e : weightChannelDimensions(l.conf().getLayer()).entrySet()) {
+                INDArray w = l.getParam(e.getKey());
+                if (w == null || !w.dataType().isFPType())
+                    continue;
+                PerChannelQuantizedArray q = PerChannelQuantizedArray.quantize(w, e.getValue());
+                w.assign(q.dequantize());
+                quantizedWeights.put(layerName + "_" + e.getKey(), q);
+            }
+        }
+
+        log.info("Quantized {} weight arrays", quantizedWeights.size());
+        return out;
+    }
+
+    /**
+     * Evaluate the quantized network against the original network, using {@link Evaluation}
+     *
+     * @see #evaluate(Model, Model, DataSetIterator, IEvaluation, IEvaluation)
+     */
+    public QuantizationReport evaluate(@NonNull Model original, @NonNull Model quantized, @NonNull DataSetIterator data) {
+        return evaluate(original, quantized, data, new Evaluation(), new Evaluation());
+    }
+
+    /**
+     * Evaluate the accuracy and latency of the quantized network against the original network
+     *
+     * @param original      Original network
+     * @param quantized     Quantized network, as returned by {@link #quantize(Model)}
+     * @param data          Evaluation data. Must support resetting
+     * @param originalEval  Evaluation for the original network
+     * @param quantizedEval Evaluation for the quantized network (same type as originalEval)
+     * @return Report
+     */
+    public QuantizationReport evaluate(@NonNull Model original, @NonNull Model quantized, @NonNull DataSetIterator data,
+                                       @NonNull IEvaluation originalEval, @NonNull IEvaluation quantizedEval) {
+        Preconditions.checkState(quantizedWeights != null, "Network has not been quantized yet");
+        double origMs = evaluate(original, data, originalEval);
+        data.reset();
+        double quantMs = evaluate(quantized, data, quantizedEval);
+
+        long origBytes = 0;
+        long quantBytes = 0;
+        for (PerChannelQuantizedArray q : quantizedWeights.values()) {
+            origBytes += q.getValues().length() * q.getDataType().width();
+            quantBytes += q.sizeBytes();
+        }
+        //The quantized network holds the dequantized weights, so the INT8 size is only an estimate
+        return new QuantizationReport(originalEval, quantizedEval, origMs, quantMs, origBytes, quantBytes, quantizedWeights.size(),
+                parameterBytes(original), parameterBytes(quantized), true);
+    }
+
+    protected static long parameterBytes(Model model) {
+        INDArray p = model.params();
+        return p == null ? 0 : p.length() * p.dataType().width();
+    }
+
+    protected double evaluate(Model model, DataSetIterator data, IEvaluation eval) {
+        if (!data.hasNext() && data.resetSupported())
+            data.reset();
+        long totalNanos = 0;
+        int timedBatches = 0;
+        int batches = 0;
+        while (data.hasNext()) {
+            DataSet ds = data.next();
+            long start = System.nanoTime();
+            INDArray out;
+            if (model instanceof MultiLayerNetwork) {
+                out = ((MultiLayerNetwork) model).output(ds.getFeatures(), false, ds.getFeaturesMaskArray(), ds.getLabelsMaskArray());
+            } else {
+                INDArray[] fMask = ds.getFeaturesMaskArray() == null ? null : new INDArray[]{ds.getFeaturesMaskArray()};
+                INDArray[] lMask = ds.getLabelsMaskArray() == null ? null : new INDArray[]{ds.getLabelsMaskArray()};
+                out = ((ComputationGraph) model).output(false, new INDArray[]{ds.getFeatures()}, fMask, lMask)[0];
+            }
+            long end = System.nanoTime();
+            if (batches++ > 0) {
+                //First batch is warmup
+                totalNanos += end - start;
+                timedBatches++;
+            }
+            eval.eval(ds.getLabels(), out, ds.getLabelsMaskArray());
+        }
+        return timedBatches == 0 ? 0.0 : totalNanos / (double) timedBatches / 1e6;
+    }
+
+    /**
+     * @return Weight parameters to quantize for the specified layer configuration, with the channel dimension of each
+     */
+    protected static Map<String, Integer> weightChannelDimensions(org.deeplearning4j.nn.conf.layers.Layer layer) {
+        if (layer instanceof org.deeplearning4j.nn.conf.layers.misc.FrozenLayer)
+            layer = ((org.deeplearning4j.nn.conf.layers.misc.FrozenLayer) layer).getLayer();
+
+        if (layer instanceof DenseLayer || layer instanceof BaseOutputLayer) {
+            //[nIn, nOut]
+            return Collections.singletonMap(DefaultParamInitializer.WEIGHT_KEY, 1);
+        } else if (layer.getClass() == ConvolutionLayer.class || layer instanceof Convolution2D
+                || layer instanceof Convolution1DLayer || layer instanceof Convolution3D) {
+            //[nOut, nIn, kernel...]
+            return Collections.singletonMap(DefaultParamInitializer.WEIGHT_KEY, 0);
+        } else if (layer instanceof AbstractLSTM) {
+            //[nIn, 4*nOut] and [nOut, 4*nOut]
+            Map<String, Integer> m = new LinkedHashMap<>();
+            m.put(LSTMParamInitializer.INPUT_WEIGHT_KEY, 1);
+            m.put(LSTMParamInitializer.RECURRENT_WEIGHT_KEY, 1);
+            return m;
+        }
+        return Collections.emptyMap();
+    }
+
+    public static class Builder {
+
+        public NetworkQuantizer build() {
+            return new NetworkQuantizer(this);
+        }
+    }
+}
@@ -0,0 +1,490 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.nn.transferlearning;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.common.util.ND4JFileUtils;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Caches the output of the frozen part of a model (as produced by {@link TransferLearningHelper#featurize(DataSet)})
+ * in a memory-mapped file, so that the unfrozen part of the model can be trained for multiple epochs without running
+ * the frozen layers again for examples that have already been seen.<br>
+ * Examples are keyed by their example metadata ({@link DataSet#getExampleMetaData()}) when the source iterator provides
+ * it - the metadata objects must then implement equals/hashCode. The source may then return the examples in any order,
+ * or a different subset of the examples, every epoch. Otherwise examples are keyed by their position in the epoch, and
+ * the source iterator must return the same examples in the same order every epoch: the raw features and labels are
+ * checked against a checksum of the cached example at that position, and an exception is thrown on mismatch.<br>
+ * The source iterator is read every epoch, but the frozen layers are only run for examples that are not cached yet.
+ * The cache is invalidated (and rebuilt from the source iterator on the next epoch) whenever the parameters of the
+ * frozen layers change.<br>
+ * Usage:<br>
+ * <pre>
+ * {@code TransferLearningHelper helper = new TransferLearningHelper(net, frozenTill);
+ * try (FrozenFeatureCache cache = new FrozenFeatureCache(helper)) {
+ *     cache.fit(trainIter, numEpochs);
+ * }
+ * }
+ * </pre>
+ * All examples must have the same featurized shape (apart from the minibatch dimension). This class is not thread safe.
+ */
+@Slf4j
+public class FrozenFeatureCache implements Closeable {
+
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private final TransferLearningHelper helper;
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    private final Map<Object, Long> index = new HashMap<>();
+    private final Map<Object, Long> checksums = new HashMap<>();
+    private Boolean metadataKeys;
+    private boolean complete;
+    private long nextSlot;
+    private long fingerprint;
+
+    //Record layout - features, labels, features mask, labels mask - fixed by the first minibatch written
+    private long[][] shapes;
+    private DataType[] dataTypes;
+    private long[] rowBytes;
+    private long recordBytes;
+    private long recordsPerSegment;
+
+    /**
+     * Create a cache backed by a temporary file in the default temporary directory
+     *
+     * @param helper Transfer learning helper for the model to train
+     */
+    public FrozenFeatureCache(@NonNull TransferLearningHelper helper) {
+        this(helper, ND4JFileUtils.getTempDir());
+    }
+
+    /**
+     * Create a cache backed by a temporary file in the specified directory
+     *
+     * @param helper    Transfer learning helper for the model to train
+     * @param directory Directory for the cache file. The file is deleted on {@link #close()}
+     */
+    public FrozenFeatureCache(@NonNull TransferLearningHelper helper, @NonNull File directory) {
+        this.helper = helper;
+        try {
+            this.file = File.createTempFile("frozenFeatures", ".bin", directory);
+            this.file.deleteOnExit();
+            this.raf = new RandomAccessFile(file, "rw");
+            this.raf.setLength(0);
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating frozen feature cache file in " + directory.getAbsolutePath(), e);
+        }
+        this.channel = raf.getChannel();
+        this.fingerprint = frozenParamsFingerprint();
+    }
+
+    /**
+     * Fit the unfrozen part of the model for one epoch, using cached features where available
+     *
+     * @param iter Training data (raw, not featurized)
+     */
+    public void fit(@NonNull DataSetIterator iter) {
+        helper.fitFeaturized(iterator(iter));
+    }
+
+    /**
+     * Fit the unfrozen part of the model for the specified number of epochs, using cached features where available
+     *
+     * @param iter      Training data (raw, not featurized)
+     * @param numEpochs Number of epochs
+     */
+    public void fit(@NonNull DataSetIterator iter, int numEpochs) {
+        Preconditions.checkArgument(numEpochs > 0, "Number of epochs must be positive: got %s", numEpochs);
+        for (int i = 0; i < numEpochs; i++) {
+            fit(iter);
+        }
+    }
+
+    /**
+     * Returns an iterator over the featurized version of the given data - from the cache where possible, or by
+     * featurizing (and caching) the source data otherwise. The cache is checked against the current frozen parameters
+     * when this method is called.
+     *
+     * @param source Source data (raw, not featurized)
+     */
+    public DataSetIterator iterator(@NonNull DataSetIterator source) {
+        long fp = frozenParamsFingerprint();
+        if (fp != fingerprint) {
+            if (nextSlot > 0) {
+                log.info("Parameters of frozen layers have changed - invalidating {} cached examples", index.size());
+            }
+            invalidate();
+            fingerprint = fp;
+        }
+        return new CachingIterator(source);
+    }
+
+    /**
+     * Discard all cached features
+     */
+    public void invalidate() {
+        index.clear();
+        checksums.clear();
+        metadataKeys = null;
+        segments.clear();
+        complete = false;
+        nextSlot = 0;
+        shapes = null;
+    }
+
+    /**
+     * @return Number of examples currently in the cache
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return True if a full epoch is cached, and hence later epochs will not run the frozen layers
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public void close() {
+        invalidate();
+        try {
+            channel.close();
+            raf.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Error closing frozen feature cache file " + file.getAbsolutePath(), e);
+        }
+        if (!file.delete()) {
+            log.warn("Could not delete frozen feature cache file {}", file.getAbsolutePath());
+        }
+    }
+
+    protected long frozenParamsFingerprint() {
+        CRC32 crc = new CRC32();
+        for (INDArray p : helper.frozenParams()) {
+            crc.update(hostBytes(p.dup('c')));
+        }
+        return crc.getValue();
+    }
+
+    private DataSet lookup(DataSet raw, long firstPosition) {
+        int n = raw.numExamples();
+        List<Serializable> meta = raw.getExampleMetaData();
+        boolean useMeta = meta != null && meta.size() == n;
+        if (metadataKeys == null) {
+            metadataKeys = useMeta;
+        } else if (metadataKeys != useMeta) {
+            throw new IllegalStateException("Cannot use frozen feature cache: examples were cached " + (metadataKeys ? "with" : "without")
+                            + " example metadata, but the current minibatch has " + (useMeta ? "" : "no ") + "example metadata");
+        }
+
+        long[] rowChecksums = useMeta ? null : rowChecksums(raw);
+        Object[] keys = new Object[n];
+        long[] slots = new long[n];
+        boolean allCached = shapes != null;
+        for (int i = 0; i < n; i++) {
+            keys[i] = useMeta ? meta.get(i) : Long.valueOf(firstPosition + i);
+            Long s = index.get(keys[i]);
+            if (s != null && !useMeta && checksums.get(keys[i]) != rowChecksums[i]) {
+                throw new IllegalStateException("Example at position " + keys[i] + " of the source iterator differs from the " +
+                                "cached example at that position. Without example metadata, the source must return the same " +
+                                "examples in the same order every epoch: use a separate FrozenFeatureCache for each data set");
+            }
+            slots[i] = s == null ? -1 : s;
+            allCached &= s != null;
+        }
+
+        DataSet out;
+        if (allCached) {
+            out = read(slots);
+        } else {
+            out = helper.featurize(raw);
+            write(out, keys, slots);
+            if (!useMeta) {
+                for (int i = 0; i < n; i++) {
+                    checksums.put(keys[i], rowChecksums[i]);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return Checksum of the raw features and labels of each example
+     */
+    private static long[] rowChecksums(DataSet raw) {
+        int n = raw.numExamples();
+        CRC32[] crc = new CRC32[n];
+        for (int i = 0; i < n; i++) {
+            crc[i] = new CRC32();
+        }
+        for (INDArray arr : new INDArray[]{raw.getFeatures(), raw.getLabels()}) {
+            if (arr == null)
+                continue;
+            INDArray a = arr.isView() || arr.ordering() != 'c' ? arr.dup('c') : arr;
+            ByteBuffer bb = hostBytes(a);
+            int rowBytes = (int) ((a.length() / n) * a.dataType().width());
+            for (int i = 0; i < n; i++) {
+                ByteBuffer row = bb.duplicate();
+                row.position(i * rowBytes);
+                row.limit((i + 1) * rowBytes);
+                crc[i].update(row);
+            }
+        }
+        long[] out = new long[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = crc[i].getValue();
+        }
+        return out;
+    }
+
+    private void write(DataSet ds, Object[] keys, long[] slots) {
+        INDArray[] arrays = {ds.getFeatures(), ds.getLabels(), ds.getFeaturesMaskArray(), ds.getLabelsMaskArray()};
+        if (shapes == null) {
+            initLayout(arrays);
+        }
+        ByteBuffer[] src = new ByteBuffer[arrays.length];
+        for (int j = 0; j < arrays.length; j++) {
+            if ((arrays[j] == null) != (shapes[j] == null) || (arrays[j] != null && (arrays[j].dataType() != dataTypes[j]
+                            || !Arrays.equals(shapes[j], Arrays.copyOfRange(arrays[j].shape(), 1, arrays[j].rank()))))) {
+                throw new IllegalStateException("Cannot cache featurized minibatch: all minibatches must have the same " +
+                                "per-example shapes, data types and masks. Got features " + Arrays.toString(ds.getFeatures().shape())
+                                + ", labels " + Arrays.toString(ds.getLabels().shape()) + " - expected per-example shapes "
+                                + Arrays.toString(shapes[0]) + " and " + Arrays.toString(shapes[1]));
+            }
+            if (arrays[j] != null) {
+                INDArray a = arrays[j].isView() || arrays[j].ordering() != 'c' ? arrays[j].dup('c') : arrays[j];
+                src[j] = hostBytes(a);
+            }
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] < 0) {
+                slots[i] = nextSlot++;
+                index.put(keys[i], slots[i]);
+            }
+            ByteBuffer dst = record(slots[i]);
+            for (int j = 0; j < src.length; j++) {
+                if (src[j] == null)
+                    continue;
+                ByteBuffer row = src[j].duplicate();
+                row.position((int) (i * rowBytes[j]));
+                row.limit((int) ((i + 1) * rowBytes[j]));
+                dst.put(row);
+            }
+        }
+    }
+
+    private DataSet read(long[] slots) {
+        INDArray[] out = new INDArray[shapes.length];
+        ByteBuffer[] dst = new ByteBuffer[shapes.length];
+        try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+            for (int j = 0; j < shapes.length; j++) {
+                if (shapes[j] == null)
+                    continue;
+                long[] shape = new long[shapes[j].length + 1];
+                shape[0] = slots.length;
+                System.arraycopy(shapes[j], 0, shape, 1, shapes[j].length);
+                out[j] = Nd4j.createUninitialized(dataTypes[j], shape, 'c');
+                dst[j] = hostBytes(out[j]);
+            }
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            ByteBuffer rec = record(slots[i]);
+            for (int j = 0; j < dst.length; j++) {
+                if (dst[j] == null)
+                    continue;
+                ByteBuffer row = rec.duplicate();
+                row.limit((int) (row.position() + rowBytes[j]));
+                dst[j].position((int) (i * rowBytes[j]));
+                dst[j].put(row);
+                rec.position(row.limit());
+            }
+        }
+        for (INDArray arr : out) {
+            if (arr != null)
+                Nd4j.getAffinityManager().tagLocation(arr, AffinityManager.Location.HOST);
+        }
+        return new DataSet(out[0], out[1], out[2], out[3]);
+    }
+
+    private void initLayout(INDArray[] arrays) {
+        shapes = new long[arrays.length][];
+        dataTypes = new DataType[arrays.length];
+        rowBytes = new long[arrays.length];
+        recordBytes = 0;
+        for (int j = 0; j < arrays.length; j++) {
+            if (arrays[j] == null)
+                continue;
+            shapes[j] = Arrays.copyOfRange(arrays[j].shape(), 1, arrays[j].rank());
+            dataTypes[j] = arrays[j].dataType();
+            rowBytes[j] = (arrays[j].length() / arrays[j].size(0)) * dataTypes[j].width();
+            recordBytes += rowBytes[j];
+        }
+        recordsPerSegment = Math.max(1, SEGMENT_BYTES / recordBytes);
+        Preconditions.checkState(recordsPerSegment * recordBytes <= Integer.MAX_VALUE,
+                        "Featurized examples of %s bytes are too large to cache", recordBytes);
+    }
+
+    private ByteBuffer record(long slot) {
+        int segment = (int) (slot / recordsPerSegment);
+        while (segments.size() <= segment) {
+            long segmentBytes = recordsPerSegment * recordBytes;
+            try {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, segments.size() * segmentBytes, segmentBytes));
+            } catch (IOException e) {
+                throw new RuntimeException("Error mapping frozen feature cache file " + file.getAbsolutePath(), e);
+            }
+        }
+        ByteBuffer b = segments.get(segment).duplicate();
+        b.position((int) ((slot % recordsPerSegment) * recordBytes));
+        return b;
+    }
+
+    /**
+     * @return The host-side bytes of the given c-order, non-view array, positioned at the start of the array
+     */
+    private static ByteBuffer hostBytes(INDArray arr) {
+        Nd4j.getAffinityManager().ensureLocation(arr, AffinityManager.Location.HOST);
+        ByteBuffer bb = arr.data().asNio().duplicate();
+        bb.position(0);
+        bb.limit((int) (arr.length() * arr.dataType().width()));
+        return bb;
+    }
+
+    /**
+     * Featurizes the source iterator via the cache: the frozen layers are only run for minibatches with examples that
+     * are not cached yet
+     */
+    private class CachingIterator implements DataSetIterator {
+        private final DataSetIterator source;
+        private DataSetPreProcessor preProcessor;
+        private long position;
+
+        private CachingIterator(DataSetIterator source) {
+            this.source = source;
+            reset();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (source.hasNext()) {
+                return true;
+            }
+            if (position > 0) {
+                complete = true;
+            }
+            return false;
+        }
+
+        @Override
+        public DataSet next() {
+            if (!hasNext())
+                throw new NoSuchElementException("No next element");
+            DataSet raw = source.next();
+            DataSet ds = lookup(raw, position);
+            position += raw.numExamples();
+            if (preProcessor != null)
+                preProcessor.preProcess(ds);
+            return ds;
+        }
+
+        @Override
+        public DataSet next(int num) {
+            throw new UnsupportedOperationException("Not supported");
+        }
+
+        @Override
+        public int inputColumns() {
+            return source.inputColumns();
+        }
+
+        @Override
+        public int totalOutcomes() {
+            return source.totalOutcomes();
+        }
+
+        @Override
+        public boolean resetSupported() {
+            return source.resetSupported();
+        }
+
+        @Override
+        public boolean asyncSupported() {
+            //Featurizing uses the original model, and the cache is not thread safe
+            return false;
+        }
+
+        @Override
+        public void reset() {
+            position = 0;
+            if (source.resetSupported())
+                source.reset();
+        }
+
+        @Override
+        public int batch() {
+            return source.batch();
+        }
+
+        @Override
+        public void setPreProcessor(DataSetPreProcessor preProcessor) {
+            this.preProcessor = preProcessor;
+        }
+
+        @Override
+        public DataSetPreProcessor getPreProcessor() {
+            return preProcessor;
+        }
+
+        @Override
+        public List<String> getLabels() {
+            return source.getLabels();
+        }
+    }
+}
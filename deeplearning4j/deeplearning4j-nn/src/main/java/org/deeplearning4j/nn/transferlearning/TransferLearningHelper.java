@@ -158,6 +158,33 @@ public class TransferLearningHelper {
         }
     }
 
+    /**
+     * Returns the parameters of the frozen layers/vertices - i.e., the part of the original model that
+     * {@link #featurize(DataSet)} runs the input through. Layers without parameters are skipped.
+     */
+    public List<INDArray> frozenParams() {
+        List<INDArray> out = new ArrayList<>();
+        if (isGraph) {
+            for (GraphVertex gv : origGraph.getVertices()) {
+                if (!gv.hasLayer())
+                    continue;
+                GraphVertex inSubset = unFrozenSubsetGraph.getVertex(gv.getVertexName());
+                if (inSubset == null || inSubset.isInputVertex()) {
+                    INDArray p = gv.getLayer().params();
+                    if (p != null && !p.isEmpty())
+                        out.add(p);
+                }
+            }
+        } else {
+            for (int i = 0; i <= frozenInputLayer; i++) {
+                INDArray p = origMLN.getLayer(i).params();
+                if (p != null && !p.isEmpty())
+                    out.add(p);
+            }
+        }
+        return out;
+    }
+
     /**
      * Runs through the comp graph and saves off a new model that is simply the "unfrozen" part of the origModel
      * This "unfrozen" model is then used for training with featurized data
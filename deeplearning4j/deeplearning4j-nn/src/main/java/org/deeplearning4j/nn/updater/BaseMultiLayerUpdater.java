@@ -28,6 +28,7 @@ import org.deeplearning4j.nn.conf.GradientNormalization;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.CustomOp;
@@ -39,6 +40,8 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.deeplearning4j.nn.workspace.ArrayType;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
+import org.deeplearning4j.optimize.api.StepFunction;
+import org.nd4j.linalg.learning.SparseGradientUpdater;
 import org.nd4j.linalg.learning.config.IUpdater;
 
 import java.util.*;
@@ -52,6 +55,15 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
     protected INDArray updaterStateViewArray;
     protected boolean initializedMinibatchDivision;
     protected List<INDArray> gradientsForMinibatchDivision;
+    //Mixed precision training only: FP32 master copies of the (half precision) network parameters and gradients
+    protected INDArray masterParams;
+    protected INDArray masterGradients;
+    protected Map<Trainable, INDArray> masterLayerGradientViews;
+    protected Gradient masterGradient;
+    protected boolean masterGradientsInUse;
+    protected PipelinedUpdater pipelinedUpdater;
+    protected List<UpdaterBlock> sparseGradientBlocks = new ArrayList<>();
+    protected Map<UpdaterBlock, int[]> stepSparseRows;
 
     public BaseMultiLayerUpdater(T network) {
         this(network, null);
@@ -72,16 +84,26 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
         // (yet identical) ops.
         Trainable lastLayer = null;
         String lastVariable = null;
+        boolean lastSparse = false;
         UpdaterBlock currentBlock = null;
         updaterBlocks = new ArrayList<>();
 
 
         INDArray paramsView = network.params();
         INDArray gradientView = getFlattenedGradientsView();
+        if (getLossScaler() != null && paramsView != null) {
+            //Mixed precision: the updaters (and their state) operate on FP32 copies of the parameters and gradients
+            masterParams = paramsView.castTo(DataType.FLOAT);
+            masterGradients = Nd4j.create(DataType.FLOAT, gradientView.shape());
+            masterLayerGradientViews = new IdentityHashMap<>();
+            paramsView = masterParams;
+            gradientView = masterGradients;
+        }
         int paramsViewSoFar = 0;
         int currentUpdaterOffset = 0;
         for (int i = 0; i < layers.length; i++) {
             Map<String, INDArray> layerParamTable = layers[i].paramTable(false);
+            int layerParamsStart = paramsViewSoFar;
             if (layerParamTable != null) {
                 List<String> variables = new ArrayList<>(layerParamTable.keySet()); //Is from a set, but iteration order should be fixed per layer as it's a from a LinkedHashSet
                 for (int j = 0; j < variables.size(); j++) {
@@ -101,7 +123,9 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
                     }
 
                     //First: decide whether to add to the existing updater block, or create a new one
-                    if (currentBlock == null || !UpdaterUtils.updaterConfigurationsEquals(lastLayer, lastVariable,
+                    //Parameters with sparse gradients always get their own block, so the updater can be applied row-wise
+                    boolean sparse = UpdaterBlock.getSparseGradientLayer(layers[i], var) != null;
+                    if (currentBlock == null || sparse || lastSparse || !UpdaterUtils.updaterConfigurationsEquals(lastLayer, lastVariable,
                                     layers[i], var)) {
 
                         if (paramsViewSoFar + paramSizeThisVariable > Integer.MAX_VALUE || paramsViewSoFar + paramSizeThisVariable > Integer.MAX_VALUE)
@@ -131,11 +155,16 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
 
                     lastLayer = layers[i];
                     lastVariable = variables.get(j);
+                    lastSparse = sparse;
                     updaterStateSize += updaterStateSizeThisVariable;
                     paramsViewSoFar += paramSizeThisVariable;
                     currentUpdaterOffset += updaterStateSizeThisVariable;
                 }
             }
+            if (masterLayerGradientViews != null && paramsViewSoFar > layerParamsStart) {
+                masterLayerGradientViews.put(layers[i], masterGradients.get(NDArrayIndex.interval(0, 0, true),
+                        NDArrayIndex.interval(layerParamsStart, paramsViewSoFar)));
+            }
         }
 
         //Initialize the updater state, if required
@@ -145,7 +174,7 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
             updaterRequiresInit = false;
         } else if (updaterStateSize > 0) {
             //May be 0 if all SGD or NONE updaters, for example
-            updaterStateViewArray = Nd4j.createUninitialized(network.params().dataType(), new long[] {1, updaterStateSize}, Nd4j.order());
+            updaterStateViewArray = Nd4j.createUninitialized(paramsView.dataType(), new long[] {1, updaterStateSize}, Nd4j.order());
             updaterRequiresInit = true;
         }
 
@@ -172,6 +201,9 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
             }
 
             ub.init();
+            if (ub.isSparseGradientBlock()) {
+                sparseGradientBlocks.add(ub);
+            }
 
             updaterViewSoFar += viewStateSize;
             paramsViewSoFar += gradSize;
@@ -200,6 +232,51 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
      */
     protected abstract boolean isMiniBatch();
 
+    /**
+     * @return The loss scaler for the model, if mixed precision training is used; null otherwise
+     */
+    protected LossScaler getLossScaler() {
+        return null;
+    }
+
+    /**
+     * Mixed precision training only: reset the FP32 master copy of the parameters from the (half precision) network
+     * parameters. Should be called when the network parameters are modified other than by this updater.
+     * No op if mixed precision training is not used.
+     */
+    public synchronized void resetMasterParams() {
+        if (masterParams != null) {
+            masterParams.assign(getParams());
+        }
+    }
+
+    /**
+     * @return The pipelined updater for this updater, used to apply the updates during backprop. Created if required
+     */
+    public synchronized PipelinedUpdater getPipelinedUpdater() {
+        if (pipelinedUpdater == null) {
+            pipelinedUpdater = new PipelinedUpdater(this);
+        }
+        return pipelinedUpdater;
+    }
+
+    /**
+     * Shut down the background thread of the pipelined updater, if one has been created
+     */
+    public synchronized void closePipelinedUpdater() {
+        if (pipelinedUpdater != null) {
+            pipelinedUpdater.close();
+        }
+    }
+
+    /**
+     * @return True if the updates for the last gradient calculation have already been applied to the parameters by the
+     * pipelined updater, in which case the step function must not be applied again. Resets the flag.
+     */
+    public boolean consumePipelinedStep() {
+        return pipelinedUpdater != null && pipelinedUpdater.consumeStepApplied();
+    }
+
     /**
      * Set the view array. Note that this does an assign operation - the provided array is not stored internally.
      *
@@ -257,12 +334,54 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
      * @param batchSize The current minibatch size (number of examples)
      */
     public synchronized void update(Gradient gradient, int iteration, int epoch, int batchSize, LayerWorkspaceMgr workspaceMgr) {
+        if (pipelinedUpdater != null && pipelinedUpdater.isStepApplied()) {
+            //Updater (and parameter update) was already applied during backprop
+            return;
+        }
 
         //First: check if gradient is standard or external...
         //In a MultiLayerNetwork, the INDArray returned by .gradient() is always the standard full view array
         // hence should be the same object under normal circumstances
         boolean isExternal = gradient.gradient() != getFlattenedGradientsView();
 
+        //Mixed precision: unscale the gradients into the FP32 master gradients, or skip the step if they overflowed
+        //Sparse gradients: only the non-zero rows of those parameters are copied, updated and applied
+        Map<UpdaterBlock, int[]> sparseRows = isExternal ? Collections.<UpdaterBlock, int[]>emptyMap() : getSparseGradientRows();
+        stepSparseRows = null;
+        masterGradientsInUse = masterGradients != null && !isExternal;
+        if (masterGradientsInUse) {
+            LossScaler lossScaler = getLossScaler();
+            double lossScale = lossScaler.getLossScale();
+            List<INDArray> master = getDenseSubsets(masterGradients, sparseRows);
+            List<INDArray> grad = getDenseSubsets(gradient.gradient(), sparseRows);
+            double sum = 0.0;
+            for (int i = 0; i < master.size(); i++) {
+                master.get(i).assign(grad.get(i));
+                sum += master.get(i).sumNumber().doubleValue();
+            }
+            List<INDArray> masterRows = new ArrayList<>();
+            for (Map.Entry<UpdaterBlock, int[]> e : sparseRows.entrySet()) {
+                INDArray rows = SparseGradientUpdater.gatherRows(e.getKey().asParamShape(gradient.gradient(), true), e.getValue())
+                        .castTo(masterGradients.dataType());
+                sum += rows.sumNumber().doubleValue();
+                masterRows.add(rows);
+            }
+            boolean overflow = !Double.isFinite(sum);
+            lossScaler.update(overflow);
+            if (overflow) {
+                gradient.gradient().assign(0);
+                return;
+            }
+            for (INDArray m : master) {
+                m.divi(lossScale);
+            }
+            int i = 0;
+            for (Map.Entry<UpdaterBlock, int[]> e : sparseRows.entrySet()) {
+                SparseGradientUpdater.scatterRows(e.getKey().asParamShape(masterGradients, true), e.getValue(), masterRows.get(i++).divi(lossScale));
+            }
+            gradient = getMasterGradient();
+        }
+
         //Split up the gradients on a per-layer basis, for pre-apply
         Map<String, Gradient> layerGradients = new HashMap<>();
 
@@ -322,6 +441,126 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
                 }
             }
         }
+
+        if (masterGradientsInUse) {
+            //Apply the update to the master parameters here: the network applies the (zeroed) half precision
+            // gradient, which is a no-op
+            List<INDArray> mp = getDenseSubsets(masterParams, sparseRows);
+            List<INDArray> mg = getDenseSubsets(masterGradients, sparseRows);
+            List<INDArray> p = getDenseSubsets(getParams(), sparseRows);
+            List<INDArray> g = getDenseSubsets(getFlattenedGradientsView(), sparseRows);
+            for (int i = 0; i < mp.size(); i++) {
+                mp.get(i).subi(mg.get(i));
+                p.get(i).assign(mp.get(i));
+                g.get(i).assign(0);
+            }
+            for (Map.Entry<UpdaterBlock, int[]> e : sparseRows.entrySet()) {
+                UpdaterBlock ub = e.getKey();
+                int[] r = e.getValue();
+                INDArray masterParamsAll = ub.asParamShape(masterParams, true);
+                INDArray rows = SparseGradientUpdater.gatherRows(masterParamsAll, r)
+                        .subi(SparseGradientUpdater.gatherRows(ub.asParamShape(masterGradients, true), r));
+                SparseGradientUpdater.scatterRows(masterParamsAll, r, rows);
+                INDArray paramsAll = ub.asParamShape(getParams(), true);
+                SparseGradientUpdater.scatterRows(paramsAll, r, rows.castTo(paramsAll.dataType()));
+                INDArray gradAll = ub.asParamShape(getFlattenedGradientsView(), true);
+                SparseGradientUpdater.scatterRows(gradAll, r, Nd4j.zeros(gradAll.dataType(), r.length, gradAll.size(1)));
+            }
+        }
+
+        if (!sparseRows.isEmpty()) {
+            stepSparseRows = sparseRows;
+        }
+    }
+
+    /**
+     * Apply the step function to the parameters, after {@link #update(Gradient, int, int, int, LayerWorkspaceMgr)}.
+     * For parameters with sparse (row-wise) gradients, only the updated rows of the parameters are modified - hence
+     * the cost of the step is not proportional to the size of those parameters.
+     *
+     * @param stepFunction Step function to apply
+     * @param params       Parameters to update
+     * @param gradient     The updated gradient (i.e., the update) to apply
+     */
+    public void applyStep(StepFunction stepFunction, INDArray params, INDArray gradient) {
+        Map<UpdaterBlock, int[]> sparseRows = stepSparseRows;
+        stepSparseRows = null;
+        if (sparseRows == null || params != getParams() || gradient != getFlattenedGradientsView()) {
+            stepFunction.step(params, gradient);
+            return;
+        }
+
+        List<INDArray> p = getDenseSubsets(params, sparseRows);
+        List<INDArray> g = getDenseSubsets(gradient, sparseRows);
+        for (int i = 0; i < p.size(); i++) {
+            stepFunction.step(p.get(i), g.get(i));
+        }
+        for (Map.Entry<UpdaterBlock, int[]> e : sparseRows.entrySet()) {
+            UpdaterBlock ub = e.getKey();
+            INDArray paramsAll = ub.asParamShape(params, true);
+            INDArray rows = SparseGradientUpdater.gatherRows(paramsAll, e.getValue());
+            stepFunction.step(rows, SparseGradientUpdater.gatherRows(ub.asParamShape(gradient, true), e.getValue()));
+            SparseGradientUpdater.scatterRows(paramsAll, e.getValue(), rows);
+        }
+    }
+
+    /**
+     * @return The updater blocks with sparse gradients, and the non-zero rows of the gradient computed by the last
+     * backprop. Blocks for which the rows are not available are excluded, and are processed as dense gradients
+     */
+    protected Map<UpdaterBlock, int[]> getSparseGradientRows() {
+        if (sparseGradientBlocks.isEmpty())
+            return Collections.emptyMap();
+        Map<UpdaterBlock, int[]> out = new LinkedHashMap<>();
+        for (UpdaterBlock ub : sparseGradientBlocks) {
+            int[] rows = ub.getSparseGradientRows();
+            if (rows != null)
+                out.put(ub, rows);
+        }
+        return out;
+    }
+
+    /**
+     * @param from    Full network flattened array (parameters, gradients, etc)
+     * @param exclude Updater blocks to exclude
+     * @return Views of the subsets of the array, excluding the parameters of the specified updater blocks
+     */
+    protected List<INDArray> getDenseSubsets(INDArray from, Map<UpdaterBlock, ?> exclude) {
+        if (exclude.isEmpty())
+            return Collections.singletonList(from);
+        List<INDArray> out = new ArrayList<>();
+        long start = 0;
+        for (UpdaterBlock ub : updaterBlocks) {
+            if (!exclude.containsKey(ub))
+                continue;
+            if (ub.getParamOffsetStart() > start)
+                out.add(from.get(NDArrayIndex.interval(0, 0, true), NDArrayIndex.interval(start, ub.getParamOffsetStart())));
+            start = ub.getParamOffsetEnd();
+        }
+        if (start < from.length())
+            out.add(from.get(NDArrayIndex.interval(0, 0, true), NDArrayIndex.interval(start, from.length())));
+        return out;
+    }
+
+    /**
+     * @return The gradient for the FP32 master gradients array, with the same keys as the network gradient
+     */
+    protected Gradient getMasterGradient() {
+        if (masterGradient == null) {
+            Map<Trainable, String> names = new IdentityHashMap<>();
+            for (Map.Entry<String, Trainable> e : layersByName.entrySet()) {
+                names.put(e.getValue(), e.getKey());
+            }
+            masterGradient = new DefaultGradient(masterGradients);
+            for (UpdaterBlock ub : updaterBlocks) {
+                for (UpdaterBlock.ParamState ps : ub.getLayersAndVariablesInBlock()) {
+                    if (ps.getGradView() != null) {
+                        masterGradient.setGradientFor(names.get(ps.getLayer()) + "_" + ps.getParamName(), ps.getGradView());
+                    }
+                }
+            }
+        }
+        return masterGradient;
     }
 
     protected void divideByMinibatch(boolean isExternal, Gradient gradient, int batchSize){
@@ -330,7 +569,7 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
         // shouldn't be modified
 
         if(!initializedMinibatchDivision){
-            gradientsForMinibatchDivision = getMinibatchDivisionSubsets(getFlattenedGradientsView());
+            gradientsForMinibatchDivision = getMinibatchDivisionSubsets(masterGradients != null ? masterGradients : getFlattenedGradientsView());
             initializedMinibatchDivision = true;
         }
 
@@ -343,6 +582,21 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
         for(INDArray arr : toDivide){
             arr.divi(batchSize);
         }
+
+        //Sparse gradients are excluded from the subsets above: only divide the non-zero rows
+        INDArray from = isExternal ? gradient.gradient() : (masterGradients != null ? masterGradients : getFlattenedGradientsView());
+        for(UpdaterBlock ub : sparseGradientBlocks){
+            UpdaterBlock.ParamState ps = ub.getLayersAndVariablesInBlock().get(0);
+            if(!ps.getLayer().updaterDivideByMinibatch(ps.getParamName()))
+                continue;
+            INDArray arr = ub.asParamShape(from, true);
+            int[] rows = isExternal ? null : ub.getSparseGradientRows();
+            if(rows == null){
+                arr.divi(batchSize);
+            } else {
+                SparseGradientUpdater.scatterRows(arr, rows, SparseGradientUpdater.gatherRows(arr, rows).divi(batchSize));
+            }
+        }
     }
 
     protected List<INDArray> getMinibatchDivisionSubsets(INDArray from){
@@ -354,7 +608,7 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
             Set<String> layerParams = t.paramTable(false).keySet();
             Map<String,INDArray> paramTable = t.paramTable(false);
             for(String s : layerParams) {
-                if(t.updaterDivideByMinibatch(s)){
+                if(t.updaterDivideByMinibatch(s) && !isSparseGradient(t, s)){
                     long l = paramTable.get(s).length();
                     currentEnd += l;
                 } else {
@@ -378,6 +632,15 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
         return out;
     }
 
+    private boolean isSparseGradient(Trainable t, String paramName) {
+        for (UpdaterBlock ub : sparseGradientBlocks) {
+            UpdaterBlock.ParamState ps = ub.getLayersAndVariablesInBlock().get(0);
+            if (ps.getLayer() == t && ps.getParamName().equals(paramName))
+                return true;
+        }
+        return false;
+    }
+
     protected boolean isSingleLayerUpdater() {
         return false;
     }
@@ -401,7 +664,8 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
             return; //no op
 
         final double threshold = layer.getConfig().getGradientNormalizationThreshold();
-        INDArray layerGradientView = layer.getGradientsViewArray();
+        INDArray layerGradientView = (masterGradientsInUse && masterLayerGradientViews.containsKey(layer) ?
+                masterLayerGradientViews.get(layer) : layer.getGradientsViewArray());
 
         switch (normalization) {
             case RenormalizeL2PerLayer:
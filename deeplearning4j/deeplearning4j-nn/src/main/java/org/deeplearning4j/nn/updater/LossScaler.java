@@ -0,0 +1,105 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.nn.updater;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.nn.conf.MixedPrecision;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.Serializable;
+
+/**
+ * Dynamic loss scaling state for mixed precision training. See {@link MixedPrecision} for details.<br>
+ * The network multiplies the error signal of the output layers by {@link #getLossScale()} during backprop; the updater
+ * divides the gradients by the loss scale and calls {@link #update(boolean)} once per iteration.
+ */
+@Getter
+public class LossScaler implements Serializable {
+
+    /**
+     * Maximum loss scale for HALF (FP16) networks: the largest power of 2 that is representable in FP16 (maximum
+     * value 65504). Larger loss scales would make every scaled gradient infinite
+     */
+    public static final double MAX_HALF_LOSS_SCALE = 32768.0;
+
+    private final MixedPrecision config;
+    private final double maxLossScale;
+    private double lossScale;
+    private long stepsSinceOverflow;
+    private long skippedSteps;
+    private boolean lastStepSkipped;
+
+    /**
+     * @param config   Mixed precision configuration
+     * @param dataType Data type of the network parameters and gradients
+     */
+    public LossScaler(@NonNull MixedPrecision config, @NonNull DataType dataType) {
+        this.config = config;
+        this.maxLossScale = dataType == DataType.HALF ? Math.min(MAX_HALF_LOSS_SCALE, config.getMaxLossScale()) : config.getMaxLossScale();
+        this.lossScale = Math.min(maxLossScale, Math.max(config.getMinLossScale(), config.getInitialLossScale()));
+    }
+
+    /**
+     * Scale the gradients and the epsilon (error signal) of an output layer by the current loss scale, in-place
+     *
+     * @param gradient Output layer parameter gradients. May be null
+     * @param epsilons Output layer epsilons. Individual arrays may be null
+     */
+    public void scale(Gradient gradient, INDArray... epsilons) {
+        if (gradient != null) {
+            for (INDArray g : gradient.gradientForVariable().values()) {
+                g.muli(lossScale);
+            }
+        }
+        if (epsilons != null) {
+            for (INDArray e : epsilons) {
+                if (e != null)
+                    e.muli(lossScale);
+            }
+        }
+    }
+
+    /**
+     * Update the loss scale after an iteration
+     *
+     * @param overflow True if the (scaled) gradients contained infinite or NaN values - i.e., the step was skipped
+     */
+    public void update(boolean overflow) {
+        lastStepSkipped = overflow;
+        if (overflow) {
+            skippedSteps++;
+            stepsSinceOverflow = 0;
+            lossScale = Math.min(maxLossScale, Math.max(config.getMinLossScale(), lossScale * config.getBackoffFactor()));
+        } else if (++stepsSinceOverflow >= config.getGrowthInterval()) {
+            stepsSinceOverflow = 0;
+            lossScale = Math.min(maxLossScale, lossScale * config.getGrowthFactor());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LossScaler(lossScale=" + lossScale + ", skippedSteps=" + skippedSteps + ")";
+    }
+}
@@ -74,6 +74,11 @@ public class MultiLayerUpdater extends BaseMultiLayerUpdater<MultiLayerNetwork>
         return network.conf().isMiniBatch();
     }
 
+    @Override
+    protected LossScaler getLossScaler() {
+        return network.getLossScaler();
+    }
+
     @Override
     public Updater clone() {
         return new MultiLayerUpdater(network, null);
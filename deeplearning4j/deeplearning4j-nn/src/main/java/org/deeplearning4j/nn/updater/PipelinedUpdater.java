@@ -0,0 +1,276 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.nn.updater;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Trainable;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.api.memory.enums.AllocationPolicy;
+import org.nd4j.linalg.api.memory.enums.LearningPolicy;
+import org.nd4j.linalg.api.memory.enums.ResetPolicy;
+import org.nd4j.linalg.api.memory.enums.SpillPolicy;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Applies the updater for a {@link BaseMultiLayerUpdater} (and the resulting parameter update) on a background thread,
+ * one {@link UpdaterBlock} at a time, while backprop is still running for the earlier layers.<br>
+ * Usage, for one iteration:<br>
+ * 1. {@link #begin(int, int, int)} before backprop<br>
+ * 2. {@link #layerDone(int, Gradient)} as soon as backprop has calculated the gradients for each layer, from the last
+ * layer to the first. The updater blocks for all layers that have been completed are then submitted for execution<br>
+ * 3. {@link #awaitCompletion()} after backprop, before the parameters are used again (score calculation, listeners or
+ * the next forward pass)<br>
+ * Each updater block is processed as per {@link BaseMultiLayerUpdater#update(Gradient, int, int, int, org.deeplearning4j.nn.workspace.LayerWorkspaceMgr)}:
+ * division by the minibatch size and gradient normalization (per layer), the updater (per block), followed by the
+ * parameter update (params -= update). The parameter update is applied here, hence the optimizer must not apply the
+ * step function again: see {@link #consumeStepApplied()}.<br>
+ * Backprop for a layer does not use the parameters of any of the later layers, hence these can safely be updated
+ * concurrently with backprop for the earlier layers.
+ */
+@Slf4j
+public class PipelinedUpdater implements Closeable {
+    public static final String WS_PIPELINED_UPDATER = "WS_PIPELINED_UPDATER";
+    protected static final WorkspaceConfiguration WS_PIPELINED_UPDATER_CONFIG = WorkspaceConfiguration.builder()
+            .initialSize(0)
+            .overallocationLimit(0.02)
+            .policyLearning(LearningPolicy.OVER_TIME)
+            .cyclesBeforeInitialization(2)
+            .policyReset(ResetPolicy.BLOCK_LEFT)
+            .policySpill(SpillPolicy.REALLOCATE)
+            .policyAllocation(AllocationPolicy.OVERALLOCATE)
+            .build();
+
+    protected final BaseMultiLayerUpdater<?> updater;
+    protected final Trainable[] layers;
+    protected final List<UpdaterBlock> blocks;
+    protected final int[] blockFirstLayer;                       //Index of the first layer with parameters in each block
+    protected final Map<Trainable, List<UpdaterBlock.ParamState>> layerParams = new IdentityHashMap<>();
+    protected final List<Future<?>> futures = new ArrayList<>();
+    protected ExecutorService executor;
+
+    @Getter
+    protected boolean active;
+    protected boolean stepApplied;
+    protected int iteration;
+    protected int epoch;
+    protected int batchSize;
+    protected int lowestLayerDone;
+    protected int nextBlock;                                     //Blocks [nextBlock, numBlocks) have been submitted
+
+    public PipelinedUpdater(BaseMultiLayerUpdater<?> updater) {
+        this.updater = updater;
+        this.layers = updater.getOrderedLayers();
+        this.blocks = updater.getUpdaterBlocks();
+
+        Map<Trainable, Integer> layerIdxs = new IdentityHashMap<>();
+        for (int i = 0; i < layers.length; i++) {
+            layerIdxs.put(layers[i], i);
+        }
+        blockFirstLayer = new int[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            List<UpdaterBlock.ParamState> l = blocks.get(i).getLayersAndVariablesInBlock();
+            blockFirstLayer[i] = layerIdxs.get(l.get(0).getLayer());
+            for (UpdaterBlock.ParamState ps : l) {
+                layerParams.computeIfAbsent(ps.getLayer(), k -> new ArrayList<>()).add(ps);
+            }
+        }
+    }
+
+    /**
+     * Start the pipelined update for one iteration
+     *
+     * @param iteration Current iteration count
+     * @param epoch     Current epoch count
+     * @param batchSize Minibatch size
+     */
+    public void begin(int iteration, int epoch, int batchSize) {
+        if (active) {
+            throw new IllegalStateException("Pipelined update has already been started for iteration " + this.iteration);
+        }
+        if (executor == null) {
+            Integer deviceId = Nd4j.getAffinityManager().getDeviceForCurrentThread();
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(() -> {
+                    Nd4j.getAffinityManager().unsafeSetDevice(deviceId);
+                    r.run();
+                }, "PipelinedUpdater");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        this.iteration = iteration;
+        this.epoch = epoch;
+        this.batchSize = batchSize;
+        this.lowestLayerDone = layers.length;
+        this.nextBlock = blocks.size();
+        this.stepApplied = false;
+        this.active = true;
+    }
+
+    /**
+     * Notify that backprop has calculated the gradients for the specified layer. Layers must be notified in reverse
+     * order (from the last layer to the first); layers without backprop may be skipped.
+     *
+     * @param layerIdx      Index of the layer, as per {@link BaseMultiLayerUpdater#getOrderedLayers()}
+     * @param layerGradient Gradient for the layer, as used for gradient normalization. May be null
+     */
+    public void layerDone(int layerIdx, Gradient layerGradient) {
+        if (!active)
+            return;
+        //Ensure the gradient calculation is complete before another thread uses it
+        Nd4j.getExecutioner().commit();
+        for (int i = lowestLayerDone - 1; i >= layerIdx; i--) {
+            submitLayer(i, i == layerIdx ? layerGradient : null);
+        }
+        lowestLayerDone = Math.min(lowestLayerDone, layerIdx);
+        while (nextBlock > 0 && blockFirstLayer[nextBlock - 1] >= lowestLayerDone) {
+            nextBlock--;
+            submitBlock(blocks.get(nextBlock));
+        }
+    }
+
+    /**
+     * Submit the updates for any remaining layers, and wait for all updates to complete
+     */
+    public void awaitCompletion() {
+        if (!active)
+            return;
+        try {
+            layerDone(0, null);
+            waitForAll();
+            stepApplied = true;
+        } finally {
+            active = false;
+        }
+    }
+
+    /**
+     * Cancel the pipelined update after an exception during backprop: waits for any submitted updates, without
+     * submitting the remaining updates. The parameters and updater state may be partially updated.
+     */
+    public void cancel() {
+        if (!active)
+            return;
+        active = false;
+        try {
+            waitForAll();
+        } catch (Throwable t) {
+            log.warn("Exception in pipelined updater after cancellation", t);
+        }
+    }
+
+    /**
+     * @return True if the updates for the last iteration have been applied to the parameters (hence the optimizer
+     * should not apply the step function). Resets the flag.
+     */
+    public boolean consumeStepApplied() {
+        boolean b = stepApplied;
+        stepApplied = false;
+        return b;
+    }
+
+    /**
+     * @return True if the updates for the last iteration have been applied to the parameters, and this has not yet
+     * been consumed by the optimizer
+     */
+    public boolean isStepApplied() {
+        return stepApplied;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    protected void submitLayer(int layerIdx, Gradient layerGradient) {
+        Trainable layer = layers[layerIdx];
+        List<UpdaterBlock.ParamState> params = layerParams.get(layer);
+        if (params == null)
+            return;
+        boolean divide = updater.isMiniBatch();
+        int iter = iteration;
+        int bs = batchSize;
+        futures.add(executor.submit(() -> {
+            if (divide) {
+                for (UpdaterBlock.ParamState ps : params) {
+                    if (ps.getGradView() != null && layer.updaterDivideByMinibatch(ps.getParamName()))
+                        ps.getGradView().divi(bs);
+                }
+            }
+            if (layerGradient != null) {
+                updater.preApply(layer, layerGradient, iter);
+            }
+        }));
+    }
+
+    protected void submitBlock(UpdaterBlock ub) {
+        if (ub.skipDueToPretrainConfig(false))
+            return;
+        int iter = iteration;
+        int ep = epoch;
+        futures.add(executor.submit(() -> {
+            try (MemoryWorkspace ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(WS_PIPELINED_UPDATER_CONFIG, WS_PIPELINED_UPDATER)) {
+                ub.update(iter, ep);
+            }
+            for (UpdaterBlock.ParamState ps : ub.getLayersAndVariablesInBlock()) {
+                if (ps.getParamView() != null)
+                    ps.getParamView().subi(ps.getGradView());
+            }
+            Nd4j.getExecutioner().commit();
+        }));
+    }
+
+    protected void waitForAll() {
+        Throwable t = null;
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                if (t == null)
+                    t = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (t == null)
+                    t = e;
+            }
+        }
+        futures.clear();
+        if (t != null) {
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            throw new RuntimeException("Error applying pipelined updates", t);
+        }
+    }
+}
@@ -25,17 +25,22 @@ import lombok.Data;
 import lombok.val;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Trainable;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.BaseLayer;
+import org.deeplearning4j.nn.graph.vertex.GraphVertex;
 import org.deeplearning4j.nn.layers.FrozenLayer;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.shape.Shape;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.learning.GradientUpdater;
+import org.nd4j.linalg.learning.SparseGradientUpdater;
 import org.nd4j.linalg.learning.regularization.Regularization;
 import org.nd4j.linalg.ops.transforms.Transforms;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @Data
@@ -154,6 +159,10 @@ public class UpdaterBlock {
             return;
         }
 
+        //Sparse (row-wise) gradients: apply the updater to the non-zero rows only. No regularization by definition
+        if (!externalGradient && applySparseUpdater(iteration, epoch))
+            return;
+
         //Pre-updater regularization: l1 and l2
         applyRegularizationAllVariables(Regularization.ApplyStep.BEFORE_UPDATER, iteration, epoch, externalGradient, fullNetworkGradientView, fullNetworkParamsArray);
 
@@ -164,6 +173,72 @@ public class UpdaterBlock {
         applyRegularizationAllVariables(Regularization.ApplyStep.POST_UPDATER, iteration, epoch, externalGradient, fullNetworkGradientView, fullNetworkParamsArray);
     }
 
+    /**
+     * Apply the updater row-wise, if this block consists of a single parameter with a sparse gradient
+     *
+     * @return True if the sparse update was applied; false if the dense update should be used instead
+     */
+    protected boolean applySparseUpdater(int iteration, int epoch) {
+        int[] rows = getSparseGradientRows();
+        if (rows == null)
+            return false;
+        ((SparseGradientUpdater) gradientUpdater).applyUpdaterRows(asParamShape(gradientView, false), rows, iteration, epoch);
+        return true;
+    }
+
+    /**
+     * @return True if this block consists of a single parameter with a sparse (row-wise) gradient, and the updater
+     * can be applied to the non-zero rows only
+     */
+    public boolean isSparseGradientBlock() {
+        if (layersAndVariablesInBlock.size() != 1 || !(getGradientUpdater() instanceof SparseGradientUpdater))
+            return false;
+        ParamState p = layersAndVariablesInBlock.get(0);
+        return getSparseGradientLayer(p.getLayer(), p.getParamName()) != null;
+    }
+
+    /**
+     * @return The rows of the parameter with a non-zero gradient, as computed by the last backprop, if this is a
+     * sparse gradient block (see {@link #isSparseGradientBlock()}); null otherwise
+     */
+    public int[] getSparseGradientRows() {
+        if (!isSparseGradientBlock())
+            return null;
+        ParamState p = layersAndVariablesInBlock.get(0);
+        return getSparseGradientLayer(p.getLayer(), p.getParamName()).getSparseGradientRows(p.getParamName());
+    }
+
+    /**
+     * Get a view of the (single) parameter of this block with the shape of the parameter
+     *
+     * @param arr       Parameters, gradients etc: either the full network flattened array, or the subset for this block
+     * @param fullArray True if arr is the full network flattened array; false if it is the subset for this block
+     */
+    public INDArray asParamShape(INDArray arr, boolean fullArray) {
+        ParamState p = layersAndVariablesInBlock.get(0);
+        INDArray param = p.getLayer().paramTable(false).get(p.getParamName());
+        INDArray subset = fullArray ? arr.get(NDArrayIndex.interval(0, 0, true), NDArrayIndex.interval(paramOffsetStart, paramOffsetEnd)) : arr;
+        INDArray out = Shape.newShapeNoCopy(subset, param.shape(), param.ordering() == 'f');
+        if (out == null)
+            throw new IllegalStateException("Could not get a view of shape " + Arrays.toString(param.shape()) + " for parameter \""
+                    + p.getParamName() + "\"");
+        return out;
+    }
+
+    /**
+     * @param layer     Layer or graph vertex
+     * @param paramName Parameter name
+     * @return The layer, if the gradient for the specified parameter is sparse row-wise; null otherwise
+     */
+    public static SparseGradientLayer getSparseGradientLayer(Trainable layer, String paramName) {
+        Trainable t = layer;
+        if (t instanceof GraphVertex && ((GraphVertex) t).hasLayer())
+            t = ((GraphVertex) t).getLayer();
+        if (t instanceof SparseGradientLayer && ((SparseGradientLayer) t).isSparseGradient(paramName))
+            return (SparseGradientLayer) t;
+        return null;
+    }
+
     protected void applyRegularizationAllVariables(Regularization.ApplyStep applyStep, int iteration, int epoch, boolean externalGradient, INDArray fullNetworkGradientView,
                                                    INDArray fullNetworkParamsArray) {
         for (ParamState p : layersAndVariablesInBlock) {
@@ -26,6 +26,7 @@ import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.updater.BaseMultiLayerUpdater;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
 import org.deeplearning4j.optimize.api.StepFunction;
 import org.deeplearning4j.optimize.api.TrainingListener;
@@ -86,6 +87,13 @@ public class StochasticGradientDescent extends BaseOptimizer {
             accumulator.applyUpdate(stepFunction, params, gradient.gradient(), true);
 
             // if there's no update available - just go on then
+        } else if (updater instanceof BaseMultiLayerUpdater && ((BaseMultiLayerUpdater<?>) updater).consumePipelinedStep()) {
+            //Pipelined updates: the parameters have already been updated during backprop
+        } else if (model instanceof ComputationGraph && computationGraphUpdater != null) {
+            //Sparse gradients: only the updated rows of those parameters are modified
+            computationGraphUpdater.applyStep(stepFunction, params, gradient.gradient());
+        } else if (updater instanceof BaseMultiLayerUpdater) {
+            ((BaseMultiLayerUpdater<?>) updater).applyStep(stepFunction, params, gradient.gradient());
         } else {
             // if accumulator isn't used - we just to for direct updates application
             stepFunction.step(params, gradient.gradient());
@@ -0,0 +1,91 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.util;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per thread replicas of a network, for concurrent inference (see
+ * {@link org.deeplearning4j.nn.multilayer.MultiLayerNetwork#setConcurrentOutput(boolean)}).<br>
+ * Each thread looks up its own replica without locking. All replicas are also tracked, so that {@link #clear()} can
+ * release them from any thread: with a plain ThreadLocal, the replica for a thread would only be released when that
+ * thread terminates - which for pooled (server) threads may be never.
+ *
+ * @param <T> Network type
+ */
+public class ConcurrentReplicas<T> {
+
+    private final ThreadLocal<Ref<T>> local = new ThreadLocal<>();
+    private final Set<Ref<T>> refs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @return The replica for the current thread, or null if none has been set (or it has been cleared)
+     */
+    public T get() {
+        Ref<T> ref = local.get();
+        return ref == null ? null : ref.replica;
+    }
+
+    /**
+     * Set the replica for the current thread
+     */
+    public void set(T replica) {
+        Ref<T> ref = local.get();
+        if (ref == null) {
+            ref = new Ref<>();
+            local.set(ref);
+        }
+        //Set before tracking: a concurrent clear() either releases the replica or leaves it tracked
+        ref.replica = replica;
+        refs.add(ref);
+    }
+
+    /**
+     * Release the replicas of all threads. Threads create a new replica on their next call, if required
+     */
+    public void clear() {
+        Iterator<Ref<T>> iter = refs.iterator();
+        while (iter.hasNext()) {
+            Ref<T> ref = iter.next();
+            iter.remove();
+            ref.replica = null;
+        }
+    }
+
+    /**
+     * @return Number of replicas currently held, over all threads
+     */
+    public int size() {
+        int count = 0;
+        for (Ref<T> ref : refs) {
+            if (ref.replica != null)
+                count++;
+        }
+        return count;
+    }
+
+    private static class Ref<T> {
+        private volatile T replica;
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.javacpp.Pointer;
+import org.deeplearning4j.datasets.iterator.IteratorDataSetIterator;
+import org.deeplearning4j.nn.conf.CacheMode;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.memory.MemoryReport;
+import org.deeplearning4j.nn.conf.memory.MemoryType;
+import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.common.util.ArrayUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks the largest minibatch size that fits within a memory budget when training a {@link MultiLayerNetwork}.<br>
+ * The size is first estimated from the network's memory report ({@link MultiLayerConfiguration#getMemoryReport(InputType)}),
+ * then validated with a short trial - a few fit calls on a copy of the network, using the actual workspace sizes
+ * afterwards. If the trial exceeds the budget (or fails to allocate), the minibatch size is reduced and the trial
+ * repeated. Note that the trial measures all workspaces of the current thread, not only those used by the network:
+ * run the tuner on a thread without other workspaces (or with workspaces that training will also hold) for an accurate
+ * measurement.<br>
+ * By default the budget is the off-heap memory still available under JavaCPP's limit ({@code Pointer.maxBytes()}),
+ * counting memory already held by workspaces as available (training reuses it). On CUDA this is host memory - set
+ * {@link Builder#memoryBudgetBytes(long)} explicitly to tune for device memory.<br>
+ * Usage:
+ * <pre>
+ * {@code MinibatchSizeTuner.Result r = new MinibatchSizeTuner.Builder().build().tune(net, trainIter);
+ *  net.fit(MinibatchSizeTuner.rebatch(trainIter, r.getMinibatchSize()), numEpochs);}
+ * </pre>
+ */
+@Slf4j
+public class MinibatchSizeTuner {
+
+    private final long memoryBudgetBytes;
+    private final double safetyFactor;
+    private final int minMinibatchSize;
+    private final int maxMinibatchSize;
+    private final int trialIterations;
+    private final int maxTrials;
+
+    protected MinibatchSizeTuner(Builder builder) {
+        this.memoryBudgetBytes = builder.memoryBudgetBytes;
+        this.safetyFactor = builder.safetyFactor;
+        this.minMinibatchSize = builder.minMinibatchSize;
+        this.maxMinibatchSize = builder.maxMinibatchSize;
+        this.trialIterations = builder.trialIterations;
+        this.maxTrials = builder.maxTrials;
+    }
+
+    /**
+     * Tune the minibatch size using the first DataSet of the iterator as the trial data. The iterator is reset
+     * afterwards, if it supports resetting.
+     *
+     * @param net  Network to tune the minibatch size for. Not modified.
+     * @param iter Training data
+     */
+    public Result tune(@NonNull MultiLayerNetwork net, @NonNull DataSetIterator iter) {
+        if (!iter.hasNext() && iter.resetSupported())
+            iter.reset();
+        Preconditions.checkState(iter.hasNext(), "Cannot tune minibatch size: iterator has no data");
+        DataSet sample = iter.next();
+        if (iter.resetSupported())
+            iter.reset();
+        return tune(net, InputType.inferInputType(sample.getFeatures()), sample);
+    }
+
+    /**
+     * Tune the minibatch size using random trial data of the given input type, and random labels of the network's
+     * output shape. Use {@link #tune(MultiLayerNetwork, InputType, DataSet)} with real data for loss functions with
+     * other label shapes or ranges (sparse MCXENT, for example).
+     *
+     * @param net       Network to tune the minibatch size for. Not modified.
+     * @param inputType Network input type
+     */
+    public Result tune(@NonNull MultiLayerNetwork net, @NonNull InputType inputType) {
+        return tune(net, inputType, null);
+    }
+
+    /**
+     * Tune the minibatch size.
+     *
+     * @param net       Network to tune the minibatch size for. Not modified.
+     * @param inputType Network input type
+     * @param sample    Example data for the trial; examples are repeated as necessary to reach the trial minibatch
+     *                  size. May be null, in which case random data is used.
+     */
+    public Result tune(@NonNull MultiLayerNetwork net, @NonNull InputType inputType, DataSet sample) {
+        MultiLayerConfiguration conf = net.getLayerWiseConfigurations();
+        MemoryReport report = conf.getMemoryReport(inputType);
+        CacheMode cacheMode = conf.getCacheMode() == null ? CacheMode.NONE : conf.getCacheMode();
+        DataType dataType = conf.getDataType();
+
+        long budget = memoryBudgetBytes > 0 ? memoryBudgetBytes : availableBytes();
+        long target = (long) (budget * safetyFactor);
+
+        //Memory is linear in the minibatch size. Parameters, gradients and updater state are already allocated
+        long required1 = requiredBytes(report, 1, cacheMode, dataType);
+        long perExample = requiredBytes(report, 2, cacheMode, dataType) - required1;
+        long fixed = required1 - perExample;
+        int minibatch;
+        if (perExample <= 0) {
+            minibatch = maxMinibatchSize;
+        } else {
+            long fit = (target - fixed) / perExample;
+            minibatch = (int) Math.max(minMinibatchSize, Math.min(maxMinibatchSize, fit));
+            if (fit < minMinibatchSize) {
+                log.warn("Estimated memory for minimum minibatch size {} ({} bytes) exceeds target of {} bytes",
+                        minMinibatchSize, fixed + minMinibatchSize * perExample, target);
+            }
+        }
+        long estimated = fixed + minibatch * perExample;
+        log.info("Memory budget {} bytes (target {}), estimated {} bytes fixed + {} bytes per example: initial minibatch size {}",
+                budget, target, fixed, perExample, minibatch);
+
+        if (sample == null) {
+            List<InputType> types = conf.getLayerActivationTypes(inputType);
+            sample = randomData(inputType, types.get(types.size() - 1), dataType);
+        }
+
+        long measured = -1;
+        int measuredMinibatch = -1;
+        int trials = 0;
+        while (trials < maxTrials) {
+            trials++;
+            measured = trial(net, repeat(sample, minibatch));
+            measuredMinibatch = minibatch;
+            if (measured >= 0 && measured <= target) {
+                break;
+            }
+
+            int next;
+            if (measured < 0) {
+                next = minibatch / 2;      //Failed to allocate
+            } else {
+                next = (int) Math.min(minibatch - 1, (long) (minibatch * (target / (double) measured)));
+            }
+            log.info("Trial with minibatch size {} {}: retrying with {}", minibatch,
+                    measured < 0 ? "failed to allocate" : "used " + measured + " bytes", Math.max(next, minMinibatchSize));
+            if (minibatch <= minMinibatchSize) {
+                log.warn("Minimum minibatch size {} exceeds memory target of {} bytes", minMinibatchSize, target);
+                break;
+            }
+            minibatch = Math.max(next, minMinibatchSize);
+            estimated = fixed + minibatch * perExample;
+        }
+        if (measuredMinibatch != minibatch) {
+            //Trials ran out after reducing the minibatch size: the last measurement is for a larger size
+            measured = -1;
+        }
+
+        return new Result(minibatch, budget, estimated, measured, trials);
+    }
+
+    /**
+     * Re-batch the given iterator to return DataSets with the tuned minibatch size (splitting and merging the
+     * iterator's DataSets as required). Resetting is supported if the underlying iterator supports it.
+     */
+    public static DataSetIterator rebatch(@NonNull DataSetIterator iter, int minibatchSize) {
+        return new IteratorDataSetIterator(iter, minibatchSize);
+    }
+
+    /**
+     * @return Measured bytes for a few fit calls on a copy of the network, or -1 if allocation failed. This is the
+     * size of all workspaces of the current thread afterwards (or if none, the change in off-heap memory)
+     */
+    protected long trial(MultiLayerNetwork net, DataSet ds) {
+        MultiLayerNetwork copy = net.clone();
+        long before = Pointer.totalBytes();
+        try {
+            for (int i = 0; i < trialIterations; i++) {
+                copy.fit(ds);
+            }
+            long workspaces = workspaceBytes();
+            return workspaces > 0 ? workspaces : Pointer.totalBytes() - before;
+        } catch (OutOfMemoryError e) {
+            log.debug("Trial failed to allocate", e);
+            return -1;
+        } finally {
+            copy.close();
+        }
+    }
+
+    protected static long requiredBytes(MemoryReport report, int minibatch, CacheMode cacheMode, DataType dataType) {
+        long total = report.getTotalMemoryBytes(minibatch, MemoryUseMode.TRAINING, cacheMode, dataType);
+        for (MemoryType t : new MemoryType[]{MemoryType.PARAMETERS, MemoryType.PARAMATER_GRADIENTS, MemoryType.UPDATER_STATE}) {
+            total -= report.getMemoryBytes(t, minibatch, MemoryUseMode.TRAINING, cacheMode, dataType);
+        }
+        return total;
+    }
+
+    /**
+     * @return Off-heap bytes still available under JavaCPP's limit, with workspace memory counted as available
+     */
+    protected static long availableBytes() {
+        long max = Pointer.maxBytes();
+        if (max <= 0)
+            max = Pointer.maxPhysicalBytes();
+        Preconditions.checkState(max > 0, "Cannot determine off-heap memory limit: set memoryBudgetBytes explicitly");
+        return max - Pointer.totalBytes() + workspaceBytes();
+    }
+
+    protected static long workspaceBytes() {
+        long sum = 0;
+        for (MemoryWorkspace ws : Nd4j.getWorkspaceManager().getAllWorkspacesForCurrentThread()) {
+            sum += ws.getCurrentSize();
+        }
+        return sum;
+    }
+
+    protected static DataSet repeat(DataSet sample, int minibatch) {
+        int n = sample.numExamples();
+        if (n == minibatch)
+            return sample;
+        List<DataSet> l = new ArrayList<>();
+        for (int i = 0; i < (minibatch + n - 1) / n; i++) {
+            l.add(sample);
+        }
+        DataSet merged = l.size() == 1 ? sample : DataSet.merge(l);
+        return merged.numExamples() == minibatch ? merged : (DataSet) merged.getRange(0, minibatch);
+    }
+
+    protected static DataSet randomData(InputType inputType, InputType outputType, DataType dataType) {
+        return new DataSet(Nd4j.rand(dataType, ArrayUtil.combine(new long[]{1}, inputType.getShape(false))),
+                Nd4j.rand(dataType, ArrayUtil.combine(new long[]{1}, outputType.getShape(false))));
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        /** Largest minibatch size that fits in the memory budget */
+        private int minibatchSize;
+        /** Memory budget used for tuning, in bytes */
+        private long budgetBytes;
+        /** Memory estimated from the network memory report for the minibatch size, in bytes */
+        private long estimatedBytes;
+        /** Memory measured in the trial of the returned minibatch size, in bytes. -1 if allocation failed, or if the
+         * returned size was not tried (no trials, or the trials ran out after reducing the size) */
+        private long measuredBytes;
+        /** Number of trials run */
+        private int trials;
+    }
+
+    public static class Builder {
+        private long memoryBudgetBytes = -1;
+        private double safetyFactor = 0.8;
+        private int minMinibatchSize = 1;
+        private int maxMinibatchSize = 4096;
+        private int trialIterations = 2;
+        private int maxTrials = 5;
+
+        /**
+         * Memory budget in bytes. If not set (default), the off-heap memory available under JavaCPP's limit is used
+         */
+        public Builder memoryBudgetBytes(long memoryBudgetBytes) {
+            this.memoryBudgetBytes = memoryBudgetBytes;
+            return this;
+        }
+
+        /**
+         * Fraction of the budget to use, leaving headroom for memory not covered by the memory report or the trial
+         * (data pipeline, evaluation, etc). Default: 0.8
+         */
+        public Builder safetyFactor(double safetyFactor) {
+            Preconditions.checkArgument(safetyFactor > 0 && safetyFactor <= 1, "Safety factor must be in range (0,1], got %s", safetyFactor);
+            this.safetyFactor = safetyFactor;
+            return this;
+        }
+
+        public Builder minMinibatchSize(int minMinibatchSize) {
+            Preconditions.checkArgument(minMinibatchSize > 0, "Minimum minibatch size must be positive, got %s", minMinibatchSize);
+            this.minMinibatchSize = minMinibatchSize;
+            return this;
+        }
+
+        public Builder maxMinibatchSize(int maxMinibatchSize) {
+            Preconditions.checkArgument(maxMinibatchSize > 0, "Maximum minibatch size must be positive, got %s", maxMinibatchSize);
+            this.maxMinibatchSize = maxMinibatchSize;
+            return this;
+        }
+
+        /**
+         * Number of fit calls per trial. Workspaces settle to their final size after the first couple of iterations.
+         * Default: 2
+         */
+        public Builder trialIterations(int trialIterations) {
+            Preconditions.checkArgument(trialIterations > 0, "Trial iterations must be positive, got %s", trialIterations);
+            this.trialIterations = trialIterations;
+            return this;
+        }
+
+        /**
+         * Maximum number of trials, each with a smaller minibatch size than the last. 0 to use the memory report
+         * estimate only. Default: 5
+         */
+        public Builder maxTrials(int maxTrials) {
+            Preconditions.checkArgument(maxTrials >= 0, "Max trials must be non-negative, got %s", maxTrials);
+            this.maxTrials = maxTrials;
+            return this;
+        }
+
+        public MinibatchSizeTuner build() {
+            Preconditions.checkState(minMinibatchSize <= maxMinibatchSize, "Minimum minibatch size (%s) must not exceed maximum (%s)",
+                    minMinibatchSize, maxMinibatchSize);
+            return new MinibatchSizeTuner(this);
+        }
+    }
+}
@@ -27,6 +27,8 @@ import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.bytedeco.javacpp.BytePointer;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.nn.api.Updater;
@@ -35,6 +37,10 @@ import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.memory.pointers.PagedPointer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
 import org.nd4j.linalg.dataset.api.preprocessor.DataNormalization;
@@ -43,13 +49,22 @@ import org.nd4j.linalg.dataset.api.preprocessor.serializer.NormalizerSerializer;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.heartbeat.reports.Task;
 import org.nd4j.common.primitives.Pair;
+import org.nd4j.common.primitives.Triple;
+import org.nd4j.common.util.ArrayUtil;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
@@ -64,6 +79,18 @@ public class ModelSerializer {
     public static final String COEFFICIENTS_BIN = "coefficients.bin";
     public static final String NO_PARAMS_MARKER = "noParams.marker";
     public static final String PREPROCESSOR_BIN = "preprocessor.bin";
+    public static final String COEFFICIENTS_RAW = "coefficients.raw";
+    public static final String COEFFICIENTS_RAW_HEADER = "coefficients.raw.properties";
+    /**
+     * Alignment (in bytes, within the file) of the parameters written by {@link #writeModelMappable(Model, File, boolean)}
+     */
+    public static final int COEFFICIENTS_RAW_ALIGNMENT = 64;
+
+    private static final int RAW_CHUNK_SIZE = 8 * 1024 * 1024;
+    // Memory mapped regions, kept reachable for as long as the parameter buffer that uses them. Buffers are tracked by
+    // identity: DataBuffer equals/hashCode are based on contents, and buffers restored from the same file are equal
+    private static final Set<MappedRegion> MAPPED_REGIONS = Collections.newSetFromMap(new ConcurrentHashMap<MappedRegion, Boolean>());
+    private static final ReferenceQueue<DataBuffer> MAPPED_REGIONS_QUEUE = new ReferenceQueue<>();
 
     private ModelSerializer() {}
 
@@ -134,7 +161,44 @@ public class ModelSerializer {
      */
     public static void writeModel(@NonNull Model model, @NonNull OutputStream stream, boolean saveUpdater,DataNormalization dataNormalization)
             throws IOException {
-        ZipOutputStream zipfile = new ZipOutputStream(new CloseShieldOutputStream(stream));
+        writeModel(model, stream, saveUpdater, dataNormalization, false);
+    }
+
+    /**
+     * Write a model to a file, in a format that allows the parameters to be memory mapped instead of copied when the
+     * model is restored using {@link #restoreMultiLayerNetwork(File, boolean)} or {@link #restoreComputationGraph(File, boolean)}.
+     * The parameters are stored uncompressed in native byte order (in {@link #COEFFICIENTS_RAW} instead of
+     * {@link #COEFFICIENTS_BIN}), aligned to {@link #COEFFICIENTS_RAW_ALIGNMENT} bytes within the file.<br>
+     * Models in this format can also be restored from an InputStream (the parameters are then copied), but not by
+     * older versions of DL4J. If the parameters cannot be memory mapped when restoring from a file (see
+     * {@link #isMemoryMapped(INDArray)}), they are copied and the reason is logged.
+     *
+     * @param model       the model to write
+     * @param file        the file to write to
+     * @param saveUpdater whether to save the updater or not
+     * @throws IOException
+     */
+    public static void writeModelMappable(@NonNull Model model, @NonNull File file, boolean saveUpdater) throws IOException {
+        writeModelMappable(model, file, saveUpdater, null);
+    }
+
+    /**
+     * See {@link #writeModelMappable(Model, File, boolean)}
+     *
+     * @param dataNormalization the normalizer to save (may be null)
+     */
+    public static void writeModelMappable(@NonNull Model model, @NonNull File file, boolean saveUpdater, DataNormalization dataNormalization)
+            throws IOException {
+        try (BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
+            writeModel(model, stream, saveUpdater, dataNormalization, true);
+        }
+    }
+
+    private static void writeModel(Model model, OutputStream stream, boolean saveUpdater, DataNormalization dataNormalization,
+                                   boolean rawParams) throws IOException {
+        //Offsets within the file are required to memory map the parameters: stream must start at the start of the file
+        CountingOutputStream counting = new CountingOutputStream(new CloseShieldOutputStream(stream));
+        ZipOutputStream zipfile = new ZipOutputStream(counting);
 
         // Save configuration as JSON
         String json = "";
@@ -149,19 +213,23 @@ public class ModelSerializer {
         zipfile.write(json.getBytes());
 
         // Save parameters as binary
-        ZipEntry coefficients = new ZipEntry(COEFFICIENTS_BIN);
-        zipfile.putNextEntry(coefficients);
         DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(zipfile));
         INDArray params = model.params();
-        if(params != null) {
-            try {
-                Nd4j.write(model.params(), dos);
-            } finally {
-                dos.flush();
-            }
+        if(params != null && rawParams) {
+            writeRawParams(params, zipfile, counting);
         } else {
-            ZipEntry noParamsMarker = new ZipEntry(NO_PARAMS_MARKER);
-            zipfile.putNextEntry(noParamsMarker);
+            ZipEntry coefficients = new ZipEntry(COEFFICIENTS_BIN);
+            zipfile.putNextEntry(coefficients);
+            if (params != null) {
+                try {
+                    Nd4j.write(model.params(), dos);
+                } finally {
+                    dos.flush();
+                }
+            } else {
+                ZipEntry noParamsMarker = new ZipEntry(NO_PARAMS_MARKER);
+                zipfile.putNextEntry(noParamsMarker);
+            }
         }
 
         if (saveUpdater) {
@@ -196,6 +264,259 @@ public class ModelSerializer {
         zipfile.close();
     }
 
+    private static void writeRawParams(INDArray params, ZipOutputStream zipfile, CountingOutputStream counting) throws IOException {
+        INDArray p = params;
+        if (p.isView() || p.ordering() != 'c' || p.data().length() != p.length())
+            p = p.dup('c');
+        Nd4j.getAffinityManager().ensureLocation(p, AffinityManager.Location.HOST);
+        long numBytes = p.length() * p.dataType().width();
+
+        //STORED entries require the CRC before the data is written
+        CRC32 crc = new CRC32();
+        for (long pos = 0; pos < numBytes; pos += RAW_CHUNK_SIZE) {
+            crc.update(nativeBytes(p, pos, (int) Math.min(RAW_CHUNK_SIZE, numBytes - pos)));
+        }
+
+        ZipEntry entry = new ZipEntry(COEFFICIENTS_RAW);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(numBytes);
+        entry.setCompressedSize(numBytes);
+        entry.setCrc(crc.getValue());
+
+        //Pad the local file header with an extra field (0xD935, as used by zipalign) so that the data is aligned.
+        //Local header: 30 bytes + name + extra fields (+ 20 bytes for the ZIP64 extra field, for entries >= 4GB)
+        zipfile.closeEntry();
+        long headerOffset = counting.getByteCount();
+        long dataStart = headerOffset + 30 + COEFFICIENTS_RAW.getBytes(StandardCharsets.UTF_8).length + 4
+                + (numBytes >= 0xFFFFFFFFL ? 20 : 0);
+        int padding = (int) ((COEFFICIENTS_RAW_ALIGNMENT - dataStart % COEFFICIENTS_RAW_ALIGNMENT) % COEFFICIENTS_RAW_ALIGNMENT);
+        byte[] extra = new byte[4 + padding];
+        extra[0] = (byte) 0x35;
+        extra[1] = (byte) 0xD9;
+        extra[2] = (byte) padding;
+        entry.setExtra(extra);
+
+        zipfile.putNextEntry(entry);
+        long dataOffset = counting.getByteCount();
+        byte[] buffer = new byte[(int) Math.min(RAW_CHUNK_SIZE, numBytes)];
+        for (long pos = 0; pos < numBytes; pos += RAW_CHUNK_SIZE) {
+            int n = (int) Math.min(RAW_CHUNK_SIZE, numBytes - pos);
+            nativeBytes(p, pos, n).get(buffer, 0, n);
+            zipfile.write(buffer, 0, n);
+        }
+        zipfile.closeEntry();
+
+        Properties header = new Properties();
+        header.setProperty("dataType", p.dataType().name());
+        header.setProperty("shape", Arrays.toString(p.shape()));
+        header.setProperty("byteOrder", ByteOrder.nativeOrder().toString());
+        header.setProperty("headerOffset", String.valueOf(headerOffset));
+        header.setProperty("dataOffset", String.valueOf(dataOffset));
+        zipfile.putNextEntry(new ZipEntry(COEFFICIENTS_RAW_HEADER));
+        header.store(zipfile, null);
+    }
+
+    /**
+     * @return Direct ByteBuffer for the specified bytes of the array's (host) memory. The array must not be a view
+     */
+    private static ByteBuffer nativeBytes(INDArray arr, long byteOffset, int numBytes) {
+        return new PagedPointer(arr.data().addressPointer(), numBytes, byteOffset).asBytePointer().asByteBuffer();
+    }
+
+    /**
+     * Keep the memory mapped region reachable until the buffer that uses it has been garbage collected
+     */
+    private static void retainMapping(DataBuffer buffer, MappedByteBuffer mapped, long address) {
+        Reference<? extends DataBuffer> r;
+        while ((r = MAPPED_REGIONS_QUEUE.poll()) != null) {
+            MAPPED_REGIONS.remove(r);
+        }
+        MAPPED_REGIONS.add(new MappedRegion(buffer, mapped, address));
+    }
+
+    /**
+     * Whether the data of the specified array is memory mapped from a model file - for example, the parameters of a
+     * model saved with {@link #writeModelMappable(Model, File, boolean)} and restored from the file. Parameters are
+     * copied instead if the file is not writable, was modified after saving, has more than 2GB of parameters, or if a
+     * non-CPU backend is used.
+     *
+     * @param arr Array to check
+     * @return True if the array's data is (part of) a memory mapped region of a model file
+     */
+    public static boolean isMemoryMapped(@NonNull INDArray arr) {
+        if (arr.isEmpty())
+            return false;
+        long address = arr.data().address();
+        for (MappedRegion r : MAPPED_REGIONS) {
+            if (r.get() != null && address >= r.address && address < r.address + r.mapped.capacity())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Weak reference to a parameter buffer, holding the memory mapped region it uses. Uses identity equals/hashCode
+     */
+    private static class MappedRegion extends WeakReference<DataBuffer> {
+        private final MappedByteBuffer mapped;
+        private final long address;
+
+        private MappedRegion(DataBuffer buffer, MappedByteBuffer mapped, long address) {
+            super(buffer, MAPPED_REGIONS_QUEUE);
+            this.mapped = mapped;
+            this.address = address;
+        }
+    }
+
+    /**
+     * Header for the parameters stored in {@link #COEFFICIENTS_RAW}
+     */
+    private static class RawParamsHeader {
+        private final DataType dataType;
+        private final long[] shape;
+        private final long numBytes;
+        private final long headerOffset;
+        private final long dataOffset;
+
+        private RawParamsHeader(Properties p) {
+            String order = p.getProperty("byteOrder");
+            if (!ByteOrder.nativeOrder().toString().equals(order))
+                throw new IllegalStateException("Cannot restore parameters saved with byte order " + order + " on a platform with byte order " + ByteOrder.nativeOrder());
+            dataType = DataType.valueOf(p.getProperty("dataType"));
+            String s = p.getProperty("shape").replaceAll("[\\[\\] ]", "");
+            shape = s.isEmpty() ? new long[0] : Arrays.stream(s.split(",")).mapToLong(Long::parseLong).toArray();
+            numBytes = ArrayUtil.prodLong(shape) * dataType.width();
+            headerOffset = Long.parseLong(p.getProperty("headerOffset", "-1"));
+            dataOffset = Long.parseLong(p.getProperty("dataOffset", "-1"));
+        }
+
+        private static RawParamsHeader read(InputStream is) throws IOException {
+            Properties p = new Properties();
+            p.load(is);
+            return new RawParamsHeader(p);
+        }
+    }
+
+    /**
+     * Copy the parameters in {@link #COEFFICIENTS_RAW} format into a new array
+     */
+    private static INDArray readRawParams(InputStream is, RawParamsHeader header) throws IOException {
+        INDArray params = Nd4j.createUninitialized(header.dataType, header.shape);
+        byte[] buffer = new byte[(int) Math.min(RAW_CHUNK_SIZE, header.numBytes)];
+        for (long pos = 0; pos < header.numBytes; pos += RAW_CHUNK_SIZE) {
+            int n = (int) Math.min(RAW_CHUNK_SIZE, header.numBytes - pos);
+            IOUtils.readFully(is, buffer, 0, n);
+            nativeBytes(params, pos, n).put(buffer, 0, n);
+        }
+        Nd4j.getAffinityManager().tagLocation(params, AffinityManager.Location.HOST);
+        return params;
+    }
+
+    /**
+     * Memory map the parameters in {@link #COEFFICIENTS_RAW} format if possible, otherwise copy them into a new array.<br>
+     * The mapping is private: pages are shared with the OS page cache (and other processes mapping the same file) until
+     * they are modified - for example by training - at which point they are copied. Changes are never written to the file.
+     * Mapping requires the CPU backend, a writable file (for a private mapping) and at most 2GB of parameters.
+     */
+    private static INDArray mapRawParams(File file, ZipFile zipFile, ZipEntry entry, RawParamsHeader header) throws IOException {
+        String reason;
+        if (entry.getMethod() != ZipEntry.STORED) {
+            reason = "parameters are compressed";
+        } else if (header.numBytes <= 0) {
+            reason = "no parameters";
+        } else if (header.numBytes > Integer.MAX_VALUE) {
+            reason = "parameters exceed 2GB";
+        } else if (!Nd4j.getEnvironment().isCPU()) {
+            reason = "not supported on non-CPU backends";
+        } else if (!file.canWrite()) {
+            reason = "file is not writable";
+        } else if (!isLocalHeaderValid(file, header)) {
+            reason = "file was modified after the model was saved";
+        } else {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.PRIVATE, header.dataOffset, header.numBytes);
+                long length = ArrayUtil.prodLong(header.shape);
+                BytePointer pointer = new BytePointer(mapped);
+                DataBuffer buffer = Nd4j.createBuffer(new PagedPointer(pointer, length), length, header.dataType);
+                retainMapping(buffer, mapped, pointer.address());
+                return Nd4j.create(buffer, header.shape);
+            }
+        }
+
+        log.info("Parameters in {} cannot be memory mapped ({}), copying instead", file, reason);
+        try (InputStream is = zipFile.getInputStream(entry)) {
+            return readRawParams(is, header);
+        }
+    }
+
+    /**
+     * Check that the offsets in the header are still valid - i.e., that the file hasn't been rewritten (for example, by
+     * {@link #addObjectToFile(File, String, Object)}) since the model was saved
+     */
+    private static boolean isLocalHeaderValid(File file, RawParamsHeader header) throws IOException {
+        if (header.headerOffset < 0 || header.dataOffset < 0)
+            return false;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (header.dataOffset + header.numBytes > raf.length())
+                return false;
+            byte[] bytes = new byte[30];
+            raf.seek(header.headerOffset);
+            raf.readFully(bytes);
+            ByteBuffer bb = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            int nameLength = bb.getShort(26) & 0xFFFF;
+            int extraLength = bb.getShort(28) & 0xFFFF;
+            if (bb.getInt(0) != 0x04034b50 || bb.getShort(8) != 0 || header.headerOffset + 30 + nameLength + extraLength != header.dataOffset)
+                return false;       //Not a local file header for a STORED entry, or not for this data
+            byte[] name = new byte[nameLength];
+            raf.readFully(name);
+            return COEFFICIENTS_RAW.equals(new String(name, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return True if the file is a model saved with {@link #writeModelMappable(Model, File, boolean)}
+     */
+    private static boolean hasRawParams(File file) {
+        try (ZipFile zipFile = new ZipFile(file)) {
+            return zipFile.getEntry(COEFFICIENTS_RAW) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Read the configuration, parameters (memory mapped if possible) and updater state of a model saved with
+     * {@link #writeModelMappable(Model, File, boolean)}
+     */
+    private static Triple<String, INDArray, INDArray> restoreMappable(File file, boolean loadUpdater) throws IOException {
+        try (ZipFile zipFile = new ZipFile(file)) {
+            ZipEntry config = zipFile.getEntry(CONFIGURATION_JSON);
+            ZipEntry header = zipFile.getEntry(COEFFICIENTS_RAW_HEADER);
+            if (config == null || header == null)
+                throw new IllegalStateException("Model wasnt found within file: gotConfig: [" + (config != null)
+                        + "], gotCoefficients: [" + (header != null) + "]");
+
+            String json;
+            try (InputStream is = zipFile.getInputStream(config)) {
+                json = IOUtils.toString(is, Charset.defaultCharset());
+            }
+            RawParamsHeader h;
+            try (InputStream is = zipFile.getInputStream(header)) {
+                h = RawParamsHeader.read(is);
+            }
+            INDArray params = mapRawParams(file, zipFile, zipFile.getEntry(COEFFICIENTS_RAW), h);
+
+            INDArray updaterState = null;
+            ZipEntry updater = zipFile.getEntry(UPDATER_BIN);
+            if (loadUpdater && updater != null) {
+                try (DataInputStream dis = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(updater)))) {
+                    updaterState = Nd4j.read(dis);
+                }
+            }
+            return new Triple<>(json, params, updaterState);
+        }
+    }
+
     /**
      * Load a multi layer network from a file
      *
@@ -217,6 +538,10 @@ public class ModelSerializer {
      */
     public static MultiLayerNetwork restoreMultiLayerNetwork(@NonNull File file, boolean loadUpdater)
             throws IOException {
+        if (hasRawParams(file)) {
+            Triple<String, INDArray, INDArray> t = restoreMappable(file, loadUpdater);
+            return buildMultiLayerNetwork(t.getFirst(), t.getSecond(), t.getThird());
+        }
         try(InputStream is = new BufferedInputStream(new FileInputStream(file))){
             return restoreMultiLayerNetwork(is, loadUpdater);
         }
@@ -287,6 +612,10 @@ public class ModelSerializer {
                 byte[] noParamsMarker = zipFile.get(NO_PARAMS_MARKER);
                 gotCoefficients = (noParamsMarker != null);
             }
+        } else if (zipFile.containsKey(COEFFICIENTS_RAW) && zipFile.containsKey(COEFFICIENTS_RAW_HEADER)) {
+            RawParamsHeader header = RawParamsHeader.read(new ByteArrayInputStream(zipFile.get(COEFFICIENTS_RAW_HEADER)));
+            params = readRawParams(new ByteArrayInputStream(zipFile.get(COEFFICIENTS_RAW)), header);
+            gotCoefficients = true;
         }
 
         if (loadUpdater) {
@@ -318,41 +647,46 @@ public class ModelSerializer {
 
 
         if (gotConfig && gotCoefficients) {
-            MultiLayerConfiguration confFromJson;
-            try{
-               confFromJson = MultiLayerConfiguration.fromJson(json);
-            } catch (Exception e){
-                ComputationGraphConfiguration cg;
-                try{
-                    cg = ComputationGraphConfiguration.fromJson(json);
-                } catch (Exception e2){
-                    //Invalid, and not a compgraph
-                    throw new RuntimeException("Error deserializing JSON MultiLayerConfiguration. Saved model JSON is" +
-                            " not a valid MultiLayerConfiguration", e);
-                }
-                if(cg.getNetworkInputs() != null && cg.getVertices() != null) {
-                    throw new RuntimeException("Error deserializing JSON MultiLayerConfiguration. Saved model appears to be " +
-                            "a ComputationGraph - use ModelSerializer.restoreComputationGraph instead");
-                } else {
-                    throw e;
-                }
-            }
-
-            //Handle legacy config - no network DataType in config, in beta3 or earlier
-            if(params != null)
-                confFromJson.setDataType(params.dataType());
-            MultiLayerNetwork network = new MultiLayerNetwork(confFromJson);
-            network.init(params, false);
-
-            if (gotUpdaterState && updaterState != null) {
-                network.getUpdater().setStateViewArray(network, updaterState, false);
-            }
+            MultiLayerNetwork network = buildMultiLayerNetwork(json, params, gotUpdaterState ? updaterState : null);
             return new Pair<>(network, zipFile);
         } else
             throw new IllegalStateException("Model wasnt found within file: gotConfig: [" + gotConfig
                     + "], gotCoefficients: [" + gotCoefficients + "], gotUpdater: [" + gotUpdaterState + "]");
     }
 
+    private static MultiLayerNetwork buildMultiLayerNetwork(String json, INDArray params, INDArray updaterState) {
+        MultiLayerConfiguration confFromJson;
+        try{
+           confFromJson = MultiLayerConfiguration.fromJson(json);
+        } catch (Exception e){
+            ComputationGraphConfiguration cg;
+            try{
+                cg = ComputationGraphConfiguration.fromJson(json);
+            } catch (Exception e2){
+                //Invalid, and not a compgraph
+                throw new RuntimeException("Error deserializing JSON MultiLayerConfiguration. Saved model JSON is" +
+                        " not a valid MultiLayerConfiguration", e);
+            }
+            if(cg.getNetworkInputs() != null && cg.getVertices() != null) {
+                throw new RuntimeException("Error deserializing JSON MultiLayerConfiguration. Saved model appears to be " +
+                        "a ComputationGraph - use ModelSerializer.restoreComputationGraph instead");
+            } else {
+                throw e;
+            }
+        }
+
+        //Handle legacy config - no network DataType in config, in beta3 or earlier
+        if(params != null)
+            confFromJson.setDataType(params.dataType());
+        MultiLayerNetwork network = new MultiLayerNetwork(confFromJson);
+        network.init(params, false);
+
+        if (updaterState != null) {
+            network.getUpdater().setStateViewArray(network, updaterState, false);
+        }
+        return network;
+    }
+
     /**
      * Restore a multi layer network from an input stream<br>
      * * Note: the input stream is read fully and closed by this method. Consequently, the input stream cannot be re-used.
@@ -511,6 +845,10 @@ public class ModelSerializer {
                 byte[] noParamsMarker = files.get(NO_PARAMS_MARKER);
                 gotCoefficients = (noParamsMarker != null);
             }
+        } else if (files.containsKey(COEFFICIENTS_RAW) && files.containsKey(COEFFICIENTS_RAW_HEADER)) {
+            RawParamsHeader header = RawParamsHeader.read(new ByteArrayInputStream(files.get(COEFFICIENTS_RAW_HEADER)));
+            params = readRawParams(new ByteArrayInputStream(files.get(COEFFICIENTS_RAW)), header);
+            gotCoefficients = true;
         }
 
 
@@ -542,43 +880,48 @@ public class ModelSerializer {
 
 
         if (gotConfig && gotCoefficients) {
-            ComputationGraphConfiguration confFromJson;
+            ComputationGraph cg = buildComputationGraph(json, params, gotUpdaterState ? updaterState : null);
+            return new Pair<>(cg, files);
+        } else
+            throw new IllegalStateException("Model wasnt found within file: gotConfig: [" + gotConfig
+                    + "], gotCoefficients: [" + gotCoefficients + "], gotUpdater: [" + gotUpdaterState + "]");
+    }
+
+    private static ComputationGraph buildComputationGraph(String json, INDArray params, INDArray updaterState) {
+        ComputationGraphConfiguration confFromJson;
+        try{
+            confFromJson = ComputationGraphConfiguration.fromJson(json);
+            if(confFromJson.getNetworkInputs() == null && (confFromJson.getVertices() == null || confFromJson.getVertices().size() == 0)){
+                //May be deserialized correctly, but mostly with null fields
+                throw new RuntimeException("Invalid JSON - not a ComputationGraphConfiguration");
+            }
+        } catch (Exception e){
+            if(e.getMessage() != null && e.getMessage().contains("registerLegacyCustomClassesForJSON")){
+                throw e;
+            }
             try{
-                confFromJson = ComputationGraphConfiguration.fromJson(json);
-                if(confFromJson.getNetworkInputs() == null && (confFromJson.getVertices() == null || confFromJson.getVertices().size() == 0)){
-                    //May be deserialized correctly, but mostly with null fields
-                    throw new RuntimeException("Invalid JSON - not a ComputationGraphConfiguration");
-                }
-            } catch (Exception e){
-                if(e.getMessage() != null && e.getMessage().contains("registerLegacyCustomClassesForJSON")){
-                    throw e;
-                }
-                try{
-                    MultiLayerConfiguration.fromJson(json);
-                } catch (Exception e2){
-                    //Invalid, and not a compgraph
-                    throw new RuntimeException("Error deserializing JSON ComputationGraphConfiguration. Saved model JSON is" +
-                            " not a valid ComputationGraphConfiguration", e);
-                }
-                throw new RuntimeException("Error deserializing JSON ComputationGraphConfiguration. Saved model appears to be " +
-                        "a MultiLayerNetwork - use ModelSerializer.restoreMultiLayerNetwork instead");
+                MultiLayerConfiguration.fromJson(json);
+            } catch (Exception e2){
+                //Invalid, and not a compgraph
+                throw new RuntimeException("Error deserializing JSON ComputationGraphConfiguration. Saved model JSON is" +
+                        " not a valid ComputationGraphConfiguration", e);
             }
+            throw new RuntimeException("Error deserializing JSON ComputationGraphConfiguration. Saved model appears to be " +
+                    "a MultiLayerNetwork - use ModelSerializer.restoreMultiLayerNetwork instead");
+        }
 
-            //Handle legacy config - no network DataType in config, in beta3 or earlier
-            if(params != null)
-                confFromJson.setDataType(params.dataType());
+        //Handle legacy config - no network DataType in config, in beta3 or earlier
+        if(params != null)
+            confFromJson.setDataType(params.dataType());
 
-            ComputationGraph cg = new ComputationGraph(confFromJson);
-            cg.init(params, false);
+        ComputationGraph cg = new ComputationGraph(confFromJson);
+        cg.init(params, false);
 
 
-            if (gotUpdaterState && updaterState != null) {
-                cg.getUpdater().setStateViewArray(updaterState);
-            }
-            return new Pair<>(cg, files);
-        } else
-            throw new IllegalStateException("Model wasnt found within file: gotConfig: [" + gotConfig
-                    + "], gotCoefficients: [" + gotCoefficients + "], gotUpdater: [" + gotUpdaterState + "]");
+        if (updaterState != null) {
+            cg.getUpdater().setStateViewArray(updaterState);
+        }
+        return cg;
     }
 
     /**
@@ -644,9 +987,30 @@ public class ModelSerializer {
      * @throws IOException
      */
     public static ComputationGraph restoreComputationGraph(@NonNull File file, boolean loadUpdater) throws IOException {
+        if (hasRawParams(file)) {
+            Triple<String, INDArray, INDArray> t = restoreMappable(file, loadUpdater);
+            return buildComputationGraph(t.getFirst(), t.getSecond(), t.getThird());
+        }
     	return restoreComputationGraph(new FileInputStream(file), loadUpdater);
     }
 
+    /**
+     * Load only the part of a computation graph required to calculate the specified outputs: see
+     * {@link ComputationGraph#subgraph(String...)}. The updater is not loaded.<br>
+     * For models saved with {@link #writeModelMappable(Model, File, boolean)}, the parameters are memory mapped on
+     * the CPU backend, and only the parameters of the required vertices are read from the file. For other models, all
+     * parameters are loaded, then the parameters that are not required are discarded.
+     *
+     * @param file    the file to get the computation graph from
+     * @param outputs Names of the vertices to use as outputs. These need not be outputs of the saved network
+     * @return the loaded computation graph, with the same inputs as the saved network and the specified outputs
+     * @throws IOException
+     */
+    public static ComputationGraph restoreComputationGraphForOutputs(@NonNull File file, @NonNull String... outputs)
+            throws IOException {
+        return restoreComputationGraph(file, false).subgraph(outputs);
+    }
+
     /**
      *
      * @param model
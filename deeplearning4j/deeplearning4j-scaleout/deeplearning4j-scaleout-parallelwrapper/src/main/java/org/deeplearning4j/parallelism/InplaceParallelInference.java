@@ -37,8 +37,10 @@ import org.nd4j.linalg.factory.Nd4j;
 
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -51,6 +53,7 @@ public class InplaceParallelInference extends ParallelInference {
 
     @Override
     protected void init() {
+        initModelVersion();
         for (int e = 0; e < Nd4j.getAffinityManager().getNumberOfDevices(); e++) {
             val h = ModelHolder.builder()
                     .sourceModel(model)
@@ -70,7 +73,8 @@ public class InplaceParallelInference extends ParallelInference {
     }
 
     @Override
-    public synchronized void updateModel(@NonNull Model model) {
+    protected synchronized void replaceModel(@NonNull Model model) {
+        super.replaceModel(model);
         for (val h:holders)
             h.updateModel(model);
     }
@@ -91,6 +95,21 @@ public class InplaceParallelInference extends ParallelInference {
         return selector.output(input, inputMasks);
     }
 
+    /**
+     * In INPLACE mode inference is performed in the calling thread, hence the output is calculated before this method
+     * returns, and the deadline is ignored
+     */
+    @Override
+    public CompletableFuture<INDArray[]> outputAsync(INDArray[] input, INDArray[] inputMasks, long deadline, @NonNull TimeUnit unit) {
+        CompletableFuture<INDArray[]> f = new CompletableFuture<>();
+        try {
+            f.complete(output(input, inputMasks));
+        } catch (Exception e) {
+            f.completeExceptionally(e);
+        }
+        return f;
+    }
+
     /**
      * This method does forward pass and returns output provided by OutputAdapter
      *
@@ -197,6 +216,7 @@ public class InplaceParallelInference extends ParallelInference {
                     // building configuration with shared parameters
                     val model = new ComputationGraph(ComputationGraphConfiguration.fromJson(((ComputationGraph) sourceModel).getConfiguration().toJson()));
                     model.init(params, false);
+                    model.setParamsReadOnly(true);
                     Nd4j.getExecutioner().commit();
 
                     // storing model for future reuse
@@ -207,6 +227,7 @@ public class InplaceParallelInference extends ParallelInference {
                 } else if (sourceModel instanceof MultiLayerNetwork) {
                     val model = new MultiLayerNetwork(MultiLayerConfiguration.fromJson(((MultiLayerNetwork) sourceModel).getLayerWiseConfigurations().toJson()));
                     model.init(params, false);
+                    model.setParamsReadOnly(true);
                     Nd4j.getExecutioner().commit();
 
                     replicas.add(model);
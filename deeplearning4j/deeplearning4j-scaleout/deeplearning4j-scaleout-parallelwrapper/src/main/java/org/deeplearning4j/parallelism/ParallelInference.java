@@ -29,9 +29,12 @@ import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.inference.InferenceMetrics;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
 import org.deeplearning4j.parallelism.inference.LoadBalanceMode;
+import org.deeplearning4j.parallelism.inference.ModelVersion;
+import org.deeplearning4j.parallelism.inference.SequenceBucketing;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
@@ -41,13 +44,13 @@ import org.nd4j.linalg.exception.ND4JIllegalStateException;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.common.primitives.Pair;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Observer;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Slf4j
@@ -59,6 +62,19 @@ public class ParallelInference {
     protected InferenceMode inferenceMode;
     protected int queueLimit;
     protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
+    protected long batchDeadlineNanos;
+    protected SequenceBucketing sequenceBucketing;
+    protected int retainedModelVersions;
+    protected List<INDArray[]> warmupInputs = Collections.emptyList();
+    protected boolean sharedParameters;
+
+    // model versions: the active one, and previous ones retained for rollback (most recent first)
+    protected volatile ModelVersion activeVersion;
+    private final Deque<ModelVersion> previousVersions = new ArrayDeque<>();
+    private final AtomicInteger versionCounter = new AtomicInteger(0);
+    private ExecutorService deployer;
+    // shared parameters mode: parameters of each model version, per device (key: version number)
+    private final Map<Integer, INDArray[]> deviceParams = new ConcurrentHashMap<>();
 
     // this queue holds data for inference
     private BlockingQueue<InferenceObservable> observables;
@@ -67,6 +83,8 @@ public class ParallelInference {
 
     private InferenceWorker[] zoo;
     private ObservablesProvider provider;
+    private DeadlineObservablesProvider deadlineProvider;
+    private InferenceMetrics metrics;
 
 
 
@@ -82,17 +100,285 @@ public class ParallelInference {
     }
 
     /**
-     * This method allows to update Model used for inference in runtime, without queue reset
+     * This method allows to update Model used for inference in runtime, without queue reset.
+     * This is equivalent to {@link #deployModel(Model)}, but blocks until the new model is used by all workers.
+     * Per thread replicas of the previous model (see {@link MultiLayerNetwork#setConcurrentOutput(boolean)}) are released
      *
      * @param model
      */
     public void updateModel(@NonNull Model model) {
-        if (zoo != null) {
-            for (val w: zoo)
-                w.updateModel(model);
+        Model previous = this.model;
+        Model[] previousWorkerModels = getCurrentModelsFromWorkers();
+        updateModelInternal(model);
+
+        releaseConcurrentReplicas(previous, model);
+        for (Model m : previousWorkerModels)
+            releaseConcurrentReplicas(m, model);
+    }
+
+    private void updateModelInternal(@NonNull Model model) {
+        if (activeVersion != null) {
+            try {
+                deployModel(model).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
         } else {
             // if zoo wasn't initalized yet - just replace model
-            this.model = model;
+            replaceModel(model);
+        }
+    }
+
+    /**
+     * Release the per thread replicas held by a model used with concurrent output
+     * (see {@link MultiLayerNetwork#setConcurrentOutput(boolean)}), unless it is still the current model
+     *
+     * @param model   Model to release the replicas of. May be null
+     * @param current Model that is still in use. May be null
+     */
+    protected static void releaseConcurrentReplicas(Model model, Model current) {
+        if (model == null || model == current)
+            return;
+
+        if (model instanceof MultiLayerNetwork)
+            ((MultiLayerNetwork) model).clearConcurrentReplicas();
+        else if (model instanceof ComputationGraph)
+            ((ComputationGraph) model).clearConcurrentReplicas();
+    }
+
+    /**
+     * Replace the model used for inference when there are no inference workers - i.e., in INPLACE mode, or before
+     * initialization. Called from the deployer thread once the model version has been warmed up
+     *
+     * @param model Model to use
+     */
+    protected void replaceModel(@NonNull Model model) {
+        this.model = model;
+    }
+
+    /**
+     * Deploy a new version of the model, using the warmup inputs set in the builder (if any). See
+     * {@link #deployModel(Model, List)}
+     *
+     * @param model Model to deploy
+     * @return Future for the new model version, completed once all workers use the new version
+     */
+    public CompletableFuture<ModelVersion> deployModel(@NonNull Model model) {
+        return deployModel(model, warmupInputs);
+    }
+
+    /**
+     * Deploy a new version of the model, without dropping or stalling requests:<br>
+     * 1. The new model is replicated for each worker in the background, while workers continue to use the current version<br>
+     * 2. Each worker runs the warmup inputs on its replica between batches, so that workspaces and the JIT are warm
+     *    before the first request<br>
+     * 3. The new version is activated atomically: every batch started after this point uses the new version, batches
+     *    in flight complete with the previous version<br>
+     * Deployments are performed one at a time, in the order they were submitted. If warmup fails, the deployment fails
+     * and the current version remains active.
+     *
+     * @param model        Model to deploy
+     * @param warmupInputs Inputs used to warm up the new model on each worker. May be empty
+     * @return Future for the new model version, completed once all workers use the new version
+     */
+    public CompletableFuture<ModelVersion> deployModel(@NonNull Model model, @NonNull List<INDArray[]> warmupInputs) {
+        final ModelVersion version = new ModelVersion(versionCounter.incrementAndGet(), model, batchLimit);
+        return submitDeployment(version, warmupInputs);
+    }
+
+    /**
+     * Switch back to the most recent previous model version. Previous versions are only retained if
+     * {@link Builder#retainModelVersions(int)} was set; their (already warm) replicas are kept by the workers, hence
+     * rollback doesn't require replication or warmup
+     *
+     * @return Future for the activated model version
+     */
+    public CompletableFuture<ModelVersion> rollback() {
+        ModelVersion previous;
+        synchronized (previousVersions) {
+            previous = previousVersions.peekFirst();
+        }
+        if (previous == null)
+            throw new ND4JIllegalStateException("No previous model versions are retained: use Builder.retainModelVersions(int)");
+
+        return submitDeployment(previous, Collections.<INDArray[]>emptyList());
+    }
+
+    /**
+     * Switch to the specified retained model version
+     *
+     * @param version Version number, as returned by {@link ModelVersion#getVersion()}
+     * @return Future for the activated model version
+     */
+    public CompletableFuture<ModelVersion> activateModelVersion(int version) {
+        for (ModelVersion v : getModelVersions()) {
+            if (v.getVersion() == version)
+                return submitDeployment(v, Collections.<INDArray[]>emptyList());
+        }
+        throw new ND4JIllegalStateException("Model version " + version + " is not retained");
+    }
+
+    /**
+     * @return Currently active model version
+     */
+    public ModelVersion getActiveModelVersion() {
+        return activeVersion;
+    }
+
+    /**
+     * @return The active model version, followed by the retained previous versions (most recent first)
+     */
+    public List<ModelVersion> getModelVersions() {
+        List<ModelVersion> out = new ArrayList<>();
+        synchronized (previousVersions) {
+            if (activeVersion != null)
+                out.add(activeVersion);
+            out.addAll(previousVersions);
+        }
+        return out;
+    }
+
+    protected synchronized CompletableFuture<ModelVersion> submitDeployment(final ModelVersion version, final List<INDArray[]> warmupInputs) {
+        if (deployer == null) {
+            deployer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ModelDeployer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                activate(version, warmupInputs);
+                return version;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, deployer);
+    }
+
+    /**
+     * Prepare, warm up and activate the specified model version. Called from the deployer thread only
+     */
+    protected void activate(ModelVersion version, List<INDArray[]> warmupInputs) throws Exception {
+        ModelVersion previous = activeVersion;
+        if (previous == version)
+            return;
+
+        InferenceWorker[] workers = zoo;
+        if (workers == null) {
+            // INPLACE mode (or not initialized yet): warm up in this thread, and replace the model
+            for (INDArray[] in : warmupInputs)
+                execute(version.getModel(), in, null);
+            replaceModel(version.getModel());
+            activeVersion = version;
+        } else {
+            List<CompletableFuture<Void>> prepared = new ArrayList<>(workers.length);
+            for (val w : workers)
+                prepared.add(w.prepare(version, warmupInputs));
+            try {
+                awaitAll(prepared);
+            } catch (Exception e) {
+                // discard any replicas prepared before the failure
+                Set<Integer> retain = retainedVersionNumbers();
+                deviceParams.keySet().retainAll(retain);
+                awaitAll(retainReplicas(workers, retain));
+                throw e;
+            }
+
+            // atomic switch: batches started after this point use the new version
+            activeVersion = version;
+
+            // drain: wait until each worker has finished its current batch and switched to the new version
+            List<CompletableFuture<Void>> switched = new ArrayList<>(workers.length);
+            for (val w : workers)
+                switched.add(w.submit(w::ensureActiveVersion));
+            awaitAll(switched);
+        }
+
+        Set<Integer> retain;
+        synchronized (previousVersions) {
+            previousVersions.remove(version);
+            if (previous != null)
+                previousVersions.addFirst(previous);
+            while (previousVersions.size() > retainedModelVersions)
+                previousVersions.removeLast();
+            retain = retainedVersionNumbers();
+        }
+        deviceParams.keySet().retainAll(retain);
+        if (workers != null)
+            awaitAll(retainReplicas(workers, retain));
+    }
+
+    private Set<Integer> retainedVersionNumbers() {
+        Set<Integer> out = new HashSet<>();
+        for (ModelVersion v : getModelVersions())
+            out.add(v.getVersion());
+        return out;
+    }
+
+    private static List<CompletableFuture<Void>> retainReplicas(InferenceWorker[] workers, final Set<Integer> versions) {
+        List<CompletableFuture<Void>> out = new ArrayList<>(workers.length);
+        for (val w : workers)
+            out.add(w.submit(() -> w.retainReplicas(versions)));
+        return out;
+    }
+
+    private static void awaitAll(List<CompletableFuture<Void>> futures) throws Exception {
+        for (CompletableFuture<Void> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception)
+                    throw (Exception) e.getCause();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Get the parameters of the specified model version for use on the specified device, in shared parameters mode.
+     * On a single device the model's own parameters array is used. Otherwise, each device gets one copy of the
+     * parameters, shared by all workers on that device
+     */
+    protected INDArray deviceParams(ModelVersion version, int deviceId) {
+        INDArray params = version.getModel().params();
+        int numDevices = Nd4j.getAffinityManager().getNumberOfDevices();
+        if (numDevices == 1)
+            return params;
+
+        INDArray[] perDevice = deviceParams.computeIfAbsent(version.getVersion(), v -> new INDArray[numDevices]);
+        synchronized (perDevice) {
+            if (perDevice[deviceId] == null) {
+                INDArray p = params.unsafeDuplication(true);
+                Nd4j.getAffinityManager().replicateToDevice(deviceId, p);
+                Nd4j.getExecutioner().commit();
+                perDevice[deviceId] = p;
+            }
+            return perDevice[deviceId];
+        }
+    }
+
+    /**
+     * Run the model on the specified inputs
+     */
+    protected static INDArray[] execute(Model model, INDArray[] input, INDArray[] inputMasks) {
+        if (model instanceof ComputationGraph) {
+            return ((ComputationGraph) model).output(false, input, inputMasks);
+        } else if (model instanceof MultiLayerNetwork) {
+            INDArray fm = (inputMasks == null ? null : inputMasks[0]);
+            return new INDArray[]{((MultiLayerNetwork) model).output(input[0], false, fm, null)};
+        } else {
+            throw new UnsupportedOperationException("Unsupported model type: " + model.getClass().getName());
         }
     }
 
@@ -115,7 +401,15 @@ public class ParallelInference {
         return models;
     }
 
+    /**
+     * Create the initial model version, for the model set in the builder
+     */
+    protected void initModelVersion() {
+        activeVersion = new ModelVersion(versionCounter.incrementAndGet(), model, batchLimit);
+    }
+
     protected void init() {
+        initModelVersion();
         observables = new LinkedBlockingQueue<>(queueLimit);
 
         int numDevices = Nd4j.getAffinityManager().getNumberOfDevices();
@@ -128,7 +422,7 @@ public class ParallelInference {
             boolean cRoot = !assignedRoot.get() && cDevice == currentDevice;
             assignedRoot.compareAndSet(false, cRoot);
 
-            zoo[i] = new InferenceWorker(i, model, observables, cRoot, cDevice);
+            zoo[i] = new InferenceWorker(i, activeVersion, observables, cRoot, cDevice);
 
             zoo[i].setDaemon(true);
             zoo[i].start();
@@ -137,10 +431,36 @@ public class ParallelInference {
 
         if (inferenceMode == InferenceMode.BATCHED) {
             log.info("Initializing ObservablesProvider...");
-            provider = new ObservablesProvider(nanos, batchLimit, observables);
+            provider = new ObservablesProvider(nanos, batchLimit, observables, sequenceBucketing);
+            if (batchDeadlineNanos > 0)
+                getDeadlineProvider();
         }
     }
 
+    /**
+     * Get the provider used for deadline-aware batching, creating it if necessary. This is used for all asynchronous
+     * requests in BATCHED mode, and for all requests if a batch deadline has been set
+     */
+    protected synchronized DeadlineObservablesProvider getDeadlineProvider() {
+        if (deadlineProvider == null) {
+            metrics = new InferenceMetrics(batchLimit);
+            deadlineProvider = new DeadlineObservablesProvider(batchLimit, observables, metrics, sequenceBucketing);
+            deadlineProvider.start();
+        }
+        return deadlineProvider;
+    }
+
+    /**
+     * Get the metrics for requests handled by deadline-aware batching: queue depth, batch sizes, queue wait and latency.
+     * Metrics are only available in BATCHED mode, and only for requests submitted via {@link #outputAsync(INDArray[], INDArray[])}
+     * or (if {@link Builder#batchDeadline(long, TimeUnit)} is set) for all requests
+     *
+     * @return Metrics, or null if no requests have used deadline-aware batching
+     */
+    public InferenceMetrics getMetrics() {
+        return metrics;
+    }
+
     protected long getWorkerCounter(int workerIdx) {
         return zoo[workerIdx].getCounterValue();
     }
@@ -149,6 +469,20 @@ public class ParallelInference {
      * This method gracefully shuts down ParallelInference instance
      */
     public synchronized void shutdown() {
+        if (deployer != null) {
+            deployer.shutdownNow();
+            deployer = null;
+        }
+
+        if (deadlineProvider != null) {
+            deadlineProvider.shutdown();
+            deadlineProvider = null;
+        }
+
+        releaseConcurrentReplicas(model, null);
+        for (Model m : getCurrentModelsFromWorkers())
+            releaseConcurrentReplicas(m, null);
+
         if (zoo == null)
             return;
 
@@ -226,6 +560,19 @@ public class ParallelInference {
      * @return Output from the network
      */
     public INDArray[] output(INDArray[] input, INDArray[] inputMasks){
+        if (inferenceMode == InferenceMode.BATCHED && batchDeadlineNanos > 0) {
+            try {
+                return outputAsync(input, inputMasks).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new RuntimeException("Exception encountered while getting output: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
         Nd4j.getExecutioner().commit(); //Commit before passing input to other thread
 
         // basically, depending on model type we either throw stuff to specific model, or wait for batch
@@ -258,6 +605,88 @@ public class ParallelInference {
         return observable.getOutput();
     }
 
+    /**
+     * Generate predictions/output from the network asynchronously. See {@link #outputAsync(INDArray[], INDArray[], long, TimeUnit)}
+     *
+     * @param input Input to the network
+     * @return Future for the output from the network
+     */
+    public CompletableFuture<INDArray> outputAsync(INDArray input) {
+        return outputAsync(input, null);
+    }
+
+    /**
+     * Generate predictions/output from the network asynchronously, for a network with a single output.
+     * See {@link #outputAsync(INDArray[], INDArray[], long, TimeUnit)}
+     *
+     * @param input     Input to the network
+     * @param inputMask Input mask for the network. May be null.
+     * @return Future for the output from the network
+     */
+    public CompletableFuture<INDArray> outputAsync(INDArray input, INDArray inputMask) {
+        return outputAsync(new INDArray[]{input}, (inputMask == null ? null : new INDArray[]{inputMask}))
+                .thenApply(out -> {
+                    if (out.length != 1) {
+                        throw new IllegalArgumentException("Network has multiple (" + out.length + ") output arrays, but only a" +
+                                " single output can be returned using this method. Use for outputAsync(INDArray[] input, INDArray[] " +
+                                "inputMasks) for multi-output nets");
+                    }
+                    return out[0];
+                });
+    }
+
+    /**
+     * Generate predictions/output from the network asynchronously, using the default batch deadline set via
+     * {@link Builder#batchDeadline(long, TimeUnit)} (if any). See {@link #outputAsync(INDArray[], INDArray[], long, TimeUnit)}
+     *
+     * @param input      Input to the network
+     * @param inputMasks Input masks for the network. May be null.
+     * @return Future for the output from the network
+     */
+    public CompletableFuture<INDArray[]> outputAsync(INDArray[] input, INDArray[] inputMasks) {
+        return outputAsync(input, inputMasks, batchDeadlineNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Generate predictions/output from the network asynchronously, without blocking the calling thread (other than when
+     * the queue is full).<br>
+     * In BATCHED mode, requests are batched subject to the specified deadline: a batch is dispatched to the workers
+     * once it reaches the batch limit, or once the request with the earliest deadline would otherwise miss it
+     * (based on a moving average of the time taken to process a batch). A deadline of 0 means requests are dispatched
+     * as soon as possible; batches then only form when the workers can't keep up.<br>
+     * Note that the returned future is completed by an inference thread: expensive processing of the results should use
+     * the "async" methods of {@link CompletableFuture}.
+     *
+     * @param input      Input to the network
+     * @param inputMasks Input masks for the network. May be null.
+     * @param deadline   Maximum time after submission that the result should be available. Ignored in SEQUENTIAL mode.
+     * @param unit       Time unit for the deadline
+     * @return Future for the output from the network
+     */
+    public CompletableFuture<INDArray[]> outputAsync(INDArray[] input, INDArray[] inputMasks, long deadline, @NonNull TimeUnit unit) {
+        Nd4j.getExecutioner().commit(); //Commit before passing input to other thread
+
+        if (inferenceMode == InferenceMode.BATCHED)
+            return getDeadlineProvider().submit(input, inputMasks, unit.toNanos(deadline));
+
+        final CompletableFuture<INDArray[]> future = new CompletableFuture<>();
+        final BasicInferenceObservable observable = new BasicInferenceObservable(input, inputMasks);
+        observable.addObserver((o, arg) -> {
+            try {
+                future.complete(observable.getOutput());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        try {
+            observables.put(observable);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     /**
      * This method does forward pass and returns output provided by OutputAdapter
      *
@@ -289,6 +718,11 @@ public class ParallelInference {
         private int batchLimit = DEFAULT_BATCH_LIMIT;
         private InferenceMode inferenceMode = DEFAULT_INFERENCE_MODE;
         private int queueLimit = DEFAULT_QUEUE_LIMIT;
+        private long batchDeadlineNanos = 0;
+        private SequenceBucketing sequenceBucketing;
+        private int retainedModelVersions = 0;
+        private List<INDArray[]> warmupInputs = Collections.emptyList();
+        private boolean sharedParameters = false;
         protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
 
         public Builder(@NonNull Model model) {
@@ -375,6 +809,96 @@ public class ParallelInference {
             return this;
         }
 
+        /**
+         * This method enables deadline-aware batching for all requests, with the specified default deadline (maximum
+         * time from submission until the result is available). Batches are dispatched to the workers when they reach
+         * the batch limit, or when the request with the earliest deadline would otherwise miss it. Larger values allow
+         * larger batches (higher throughput) at the cost of latency.
+         *
+         * PLEASE NOTE: This value has no effect in SEQUENTIAL or INPLACE inference modes
+         *
+         * @param deadline Default deadline for requests
+         * @param unit     Time unit for the deadline
+         * @return
+         */
+        public Builder batchDeadline(long deadline, @NonNull TimeUnit unit) {
+            if (deadline < 0)
+                throw new IllegalStateException("Batch deadline should be non-negative value");
+
+            this.batchDeadlineNanos = unit.toNanos(deadline);
+            return this;
+        }
+
+        /**
+         * This method enables sequence length bucketing: time series inputs (format [minibatch, size, timeSeriesLength])
+         * with different lengths in the same bucket are padded (with mask arrays) and batched together, and time series
+         * outputs are cropped back to the length of each request. Without bucketing, only inputs with identical shapes
+         * are batched.
+         *
+         * PLEASE NOTE: This value has no effect in SEQUENTIAL or INPLACE inference modes. The model must support masking,
+         * and time series outputs must have the same length as the inputs
+         *
+         * @param bucketMaxLengths Maximum (inclusive) length of each bucket, in increasing order. If none are specified,
+         *                         buckets of powers of 2 are used
+         * @return
+         */
+        public Builder sequenceBucketing(int... bucketMaxLengths) {
+            this.sequenceBucketing = new SequenceBucketing(bucketMaxLengths);
+            return this;
+        }
+
+        /**
+         * This method defines how many previous model versions are retained for {@link ParallelInference#rollback()},
+         * after new models are deployed with {@link ParallelInference#deployModel(Model)} or updateModel.
+         *
+         * PLEASE NOTE: Each worker keeps a warm replica of each retained version, hence memory use grows accordingly
+         *
+         * Default value: 0
+         *
+         * @param versions
+         * @return
+         */
+        public Builder retainModelVersions(int versions) {
+            if (versions < 0)
+                throw new IllegalStateException("Number of retained model versions should be non-negative value");
+
+            this.retainedModelVersions = versions;
+            return this;
+        }
+
+        /**
+         * This method defines the inputs used to warm up new models on each worker, before they are activated by
+         * {@link ParallelInference#deployModel(Model)} or updateModel. Inputs should be representative of the
+         * requests (shapes in particular).
+         *
+         * @param inputs Warmup inputs. For MultiLayerNetwork, only the first array of each input is used
+         * @return
+         */
+        public Builder warmupInputs(@NonNull List<INDArray[]> inputs) {
+            this.warmupInputs = inputs;
+            return this;
+        }
+
+        /**
+         * This method enables shared parameters: worker replicas of the model use the same (read-only) parameters
+         * array instead of a copy each, hence memory use for the parameters doesn't grow with the number of workers.
+         * With multiple devices, one copy of the parameters is used per device. Replicas are created with
+         * {@link MultiLayerNetwork#setParamsReadOnly(boolean)}, so any attempt to train or modify them fails.
+         *
+         * PLEASE NOTE: The models passed to ParallelInference must not be modified while they are in use, as the
+         * changes would be visible to the workers. This value has no effect in INPLACE inference mode, where workers
+         * always share the parameters
+         *
+         * Default value: false
+         *
+         * @param sharedParameters
+         * @return
+         */
+        public Builder sharedParameters(boolean sharedParameters) {
+            this.sharedParameters = sharedParameters;
+            return this;
+        }
+
         /**
          * This method builds new ParallelInference instance
          *
@@ -387,6 +911,8 @@ public class ParallelInference {
                 inf.model = this.model;
                 inf.workers = this.workers;
                 inf.loadBalanceMode = this.loadBalanceMode;
+                inf.retainedModelVersions = this.retainedModelVersions;
+                inf.warmupInputs = this.warmupInputs;
 
                 inf.init();
 
@@ -399,6 +925,11 @@ public class ParallelInference {
                 inference.model = this.model;
                 inference.workers = this.workers;
                 inference.loadBalanceMode = this.loadBalanceMode;
+                inference.batchDeadlineNanos = this.batchDeadlineNanos;
+                inference.sequenceBucketing = this.sequenceBucketing;
+                inference.retainedModelVersions = this.retainedModelVersions;
+                inference.warmupInputs = this.warmupInputs;
+                inference.sharedParameters = this.sharedParameters;
 
                 inference.init();
 
@@ -417,16 +948,26 @@ public class ParallelInference {
         private AtomicBoolean shouldWork = new AtomicBoolean(true);
         private AtomicBoolean isStopped = new AtomicBoolean(false);
         private Model protoModel;
-        private Model replicatedModel;
+        private volatile Model replicatedModel;
+        private volatile ModelVersion version;
         private AtomicLong counter = new AtomicLong(0);
         private boolean rootDevice;
         private int deviceId;
 
+        // replicas of the active, retained and prepared model versions
+        private final Map<Integer, Model> replicas = new ConcurrentHashMap<>();
+        // tasks executed by this worker between batches: warmup, model switch etc
+        private final BlockingQueue<WorkerTask> tasks = new LinkedBlockingQueue<>();
+        // set while the worker is blocked waiting for input; an idle worker is interrupted to run newly submitted tasks
+        private final Object idleLock = new Object();
+        private boolean idle;
+
         private ReentrantReadWriteLock modelLock = new ReentrantReadWriteLock();
 
-        private InferenceWorker(int id, @NonNull Model model, @NonNull BlockingQueue inputQueue, boolean rootDevice, int deviceId) {
+        private InferenceWorker(int id, @NonNull ModelVersion version, @NonNull BlockingQueue inputQueue, boolean rootDevice, int deviceId) {
             this.inputQueue = inputQueue;
-            this.protoModel = model;
+            this.version = version;
+            this.protoModel = version.getModel();
             this.rootDevice = rootDevice;
             this.deviceId = deviceId;
 
@@ -439,53 +980,130 @@ public class ParallelInference {
             return counter.get();
         }
 
-        protected void updateModel(@NonNull Model model) {
-            try {
-                modelLock.writeLock().lock();
-                this.protoModel = model;
+        /**
+         * This method duplicates model for future use during inference
+         */
+        protected void initializeReplicaModel() {
+            this.replicatedModel = createReplica(version);
+            replicas.put(version.getVersion(), replicatedModel);
+        }
 
-                // now re-init model
-                initializeReplicaModel();
-            } finally {
-                modelLock.writeLock().unlock();
+        protected Model createReplica(@NonNull ModelVersion v) {
+            Model model = v.getModel();
+            if (rootDevice)
+                return model;
+
+            Model replica;
+            if (model instanceof ComputationGraph) {
+                replica = new ComputationGraph(ComputationGraphConfiguration
+                        .fromJson(((ComputationGraph) model).getConfiguration().toJson()));
+            } else if (model instanceof MultiLayerNetwork) {
+                replica = new MultiLayerNetwork(MultiLayerConfiguration.fromJson(
+                        ((MultiLayerNetwork) model).getLayerWiseConfigurations().toJson()));
+            } else {
+                return model;
             }
+            if (sharedParameters) {
+                if (replica instanceof ComputationGraph) {
+                    ((ComputationGraph) replica).init(deviceParams(v, deviceId), false);
+                    ((ComputationGraph) replica).setParamsReadOnly(true);
+                } else {
+                    ((MultiLayerNetwork) replica).init(deviceParams(v, deviceId), false);
+                    ((MultiLayerNetwork) replica).setParamsReadOnly(true);
+                }
+                return replica;
+            }
+            replica.init();
+
+            synchronized (locker) {
+                replica.setParams(model.params().unsafeDuplication(true));
+
+                Nd4j.getExecutioner().commit();
+            }
+            return replica;
         }
 
         /**
-         * This method duplicates model for future use during inference
+         * Replicate the specified model version for this worker in the calling thread, then warm it up in the worker
+         * thread. Replicas of retained versions are already warm, and are reused
          */
-        protected void initializeReplicaModel() {
-            if (protoModel instanceof ComputationGraph) {
-                if (!rootDevice) {
-                    this.replicatedModel = new ComputationGraph(ComputationGraphConfiguration
-                            .fromJson(((ComputationGraph) protoModel).getConfiguration().toJson()));
-                    this.replicatedModel.init();
+        protected CompletableFuture<Void> prepare(final ModelVersion v, final List<INDArray[]> warmupInputs) {
+            if (replicas.containsKey(v.getVersion()))
+                return CompletableFuture.completedFuture(null);
 
-                    synchronized (locker) {
-                        this.replicatedModel.setParams(protoModel.params().unsafeDuplication(true));
-
-                        Nd4j.getExecutioner().commit();
-                    }
-                } else {
-                    this.replicatedModel = protoModel;
+            Nd4j.getAffinityManager().unsafeSetDevice(deviceId);
+            final Model replica = createReplica(v);
+            return submit(() -> {
+                for (INDArray[] in : warmupInputs) {
+                    execute(replica, in, null);
+                    Nd4j.getExecutioner().commit();
                 }
-            } else if (protoModel instanceof MultiLayerNetwork) {
-                if (!rootDevice) {
-                    this.replicatedModel = new MultiLayerNetwork(MultiLayerConfiguration.fromJson(
-                            ((MultiLayerNetwork) protoModel).getLayerWiseConfigurations().toJson()));
-                    this.replicatedModel.init();
+                replicas.put(v.getVersion(), replica);
+            });
+        }
 
-                    synchronized (locker) {
-                        this.replicatedModel.setParams(protoModel.params().unsafeDuplication(true));
+        /**
+         * Switch to the active model version, if this worker isn't already using it. Called from the worker thread,
+         * between batches
+         */
+        protected void ensureActiveVersion() {
+            ModelVersion target = activeVersion;
+            if (target == null || target == version)
+                return;
+
+            Model replica = replicas.get(target.getVersion());
+            if (replica == null) {
+                replica = createReplica(target);
+                replicas.put(target.getVersion(), replica);
+            }
 
-                        Nd4j.getExecutioner().commit();
-                    }
-                } else {
-                    this.replicatedModel = protoModel;
+            try {
+                modelLock.writeLock().lock();
+                this.protoModel = target.getModel();
+                this.replicatedModel = replica;
+                this.version = target;
+            } finally {
+                modelLock.writeLock().unlock();
+            }
+        }
+
+        protected void retainReplicas(Set<Integer> versions) {
+            replicas.keySet().removeIf(v -> v != version.getVersion() && !versions.contains(v));
+        }
+
+        protected CompletableFuture<Void> submit(@NonNull Runnable action) {
+            WorkerTask task = new WorkerTask(action);
+            tasks.add(task);
+            if (isStopped.get()) {
+                failPendingTasks();
+            } else {
+                synchronized (idleLock) {
+                    if (idle)
+                        this.interrupt();
+                }
+            }
+            return task.future;
+        }
+
+        protected void runPendingTasks() {
+            WorkerTask task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.action.run();
+                    task.future.complete(null);
+                } catch (Throwable t) {
+                    task.future.completeExceptionally(t);
                 }
             }
         }
 
+        protected void failPendingTasks() {
+            WorkerTask task;
+            while ((task = tasks.poll()) != null) {
+                task.future.completeExceptionally(new ND4JIllegalStateException("Inference worker was shut down"));
+            }
+        }
+
         @Override
         public void run() {
             Nd4j.getAffinityManager().unsafeSetDevice(deviceId);
@@ -493,95 +1111,102 @@ public class ParallelInference {
                 // model should be replicated & initialized here
                 initializeReplicaModel();
 
-                boolean isCG = replicatedModel instanceof  ComputationGraph;
-                boolean isMLN = replicatedModel instanceof  MultiLayerNetwork;
-
                 while (shouldWork.get()) {
-                    InferenceObservable request = inputQueue.take();
+                    runPendingTasks();
+                    ensureActiveVersion();
+
+                    InferenceObservable request;
+                    synchronized (idleLock) {
+                        idle = true;
+                    }
+                    try {
+                        request = inputQueue.take();
+                    } catch (InterruptedException e) {
+                        // interrupted either by shutdown, or to run newly submitted tasks
+                        continue;
+                    } finally {
+                        // clear any interrupt meant to wake an idle worker, so that it can't affect model execution
+                        synchronized (idleLock) {
+                            idle = false;
+                            Thread.interrupted();
+                        }
+                    }
 
                     if (request != null) {
                         counter.incrementAndGet();
-
-                        // FIXME: get rid of instanceof here, model won't change during runtime anyway
-                        if (isCG) {
-                            List<Pair<INDArray[],INDArray[]>> batches = request.getInputBatches();
-                            List<INDArray[]> out = new ArrayList<>(batches.size());
-                            try {
-                                for (Pair<INDArray[],INDArray[]> inBatch : batches) {
-                                    try {
-                                        modelLock.readLock().lock();
-
-                                        INDArray[] output = ((ComputationGraph) replicatedModel).output(false, inBatch.getFirst(), inBatch.getSecond());
-                                        out.add(output);
-                                    } finally {
-                                        Nd4j.getExecutioner().commit();
-                                        modelLock.readLock().unlock();
-                                    }
-
+                        ensureActiveVersion();
+
+                        ModelVersion v = version;
+                        List<Pair<INDArray[],INDArray[]>> batches = request.getInputBatches();
+                        List<INDArray[]> out = new ArrayList<>(batches.size());
+                        try {
+                            for (Pair<INDArray[],INDArray[]> inBatch : batches) {
+                                long start = System.nanoTime();
+                                boolean failed = true;
+                                try {
+                                    modelLock.readLock().lock();
+
+                                    out.add(execute(replicatedModel, inBatch.getFirst(), inBatch.getSecond()));
+                                    failed = false;
+                                } finally {
+                                    Nd4j.getExecutioner().commit();
+                                    modelLock.readLock().unlock();
+                                    v.getMetrics().batchExecuted((int) inBatch.getFirst()[0].size(0), System.nanoTime() - start, failed);
                                 }
-                                request.setOutputBatches(out);
-                            } catch (Exception e){
-                                request.setOutputException(e);
-                            }
-                        } else if (isMLN) {
-                            List<Pair<INDArray[],INDArray[]>> batches = request.getInputBatches();
-                            List<INDArray[]> out = new ArrayList<>(batches.size());
-                            try {
-                                for (Pair<INDArray[],INDArray[]> inBatch : batches) {
-                                    INDArray f = inBatch.getFirst()[0];
-                                    INDArray fm = (inBatch.getSecond() == null ? null : inBatch.getSecond()[0]);
-                                    try {
-                                        modelLock.readLock().lock();
-
-                                        INDArray output = ((MultiLayerNetwork) replicatedModel).output(f, false, fm, null);
-                                        out.add(new INDArray[]{output});
-                                    } finally {
-                                        Nd4j.getExecutioner().commit();
-                                        modelLock.readLock().unlock();
-                                    }
-                                }
-                                request.setOutputBatches(out);
-                            } catch (Exception e){
-                                request.setOutputException(e);
                             }
+                            request.setOutputBatches(out);
+                        } catch (Exception e){
+                            request.setOutputException(e);
                         }
-
-
                     } else {
                         // just do nothing, i guess and hope for next round?
                     }
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                // do nothing
             } catch (Exception e) {
                 throw new RuntimeException(e);
             } finally {
                 isStopped.set(true);
+                failPendingTasks();
             }
         }
 
         protected void shutdown() {
             shouldWork.set(false);
+            this.interrupt();
             while (!isStopped.get()) {
                 // block until main loop is finished
             }
         }
     }
 
+    private static class WorkerTask {
+        private final Runnable action;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private WorkerTask(Runnable action) {
+            this.action = action;
+        }
+    }
+
 
     protected static class ObservablesProvider {
         private BlockingQueue<InferenceObservable> targetQueue;
         private long nanos;
         private int batchLimit;
+        private SequenceBucketing sequenceBucketing;
 
         private volatile BatchedInferenceObservable currentObservable;
         private final Object locker = new Object();
 
         protected ObservablesProvider(long nanos, int batchLimit, @NonNull BlockingQueue<InferenceObservable> queue) {
+            this(nanos, batchLimit, queue, null);
+        }
+
+        protected ObservablesProvider(long nanos, int batchLimit, @NonNull BlockingQueue<InferenceObservable> queue, SequenceBucketing sequenceBucketing) {
             this.targetQueue = queue;
             this.nanos = nanos;
             this.batchLimit = batchLimit;
+            this.sequenceBucketing = sequenceBucketing;
         }
 
         protected InferenceObservable setInput(@NonNull Observer observer, INDArray input){
@@ -598,7 +1223,7 @@ public class ParallelInference {
                 if (currentObservable == null || currentObservable.getCounter() >= batchLimit
                                 || currentObservable.isLocked()) {
                     isNew = true;
-                    currentObservable = new BatchedInferenceObservable();
+                    currentObservable = new BatchedInferenceObservable(sequenceBucketing);
                 }
 
                 currentObservable.addInput(input, inputMask);
@@ -616,4 +1241,184 @@ public class ParallelInference {
             }
         }
     }
+
+
+    /**
+     * Batches requests subject to per-request deadlines. Requests are held until either the batch limit is reached, or
+     * the earliest deadline minus the estimated batch processing time has been reached; they are then dispatched (as one
+     * batch, earliest deadline first) to the worker queue. Unlike {@link ObservablesProvider}, a batch is only visible
+     * to the workers once it is complete.
+     */
+    protected static class DeadlineObservablesProvider extends Thread {
+        private final BlockingQueue<InferenceObservable> targetQueue;
+        private final int batchLimit;
+        private final InferenceMetrics metrics;
+        private final SequenceBucketing sequenceBucketing;
+
+        private final List<PendingRequest> pending = new ArrayList<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private volatile boolean shouldWork = true;
+        // Moving average of the time from dispatching a batch to the results being available
+        private volatile long serviceNanosEstimate = 0;
+
+        protected DeadlineObservablesProvider(int batchLimit, @NonNull BlockingQueue<InferenceObservable> queue, @NonNull InferenceMetrics metrics,
+                                              SequenceBucketing sequenceBucketing) {
+            this.targetQueue = queue;
+            this.batchLimit = batchLimit;
+            this.metrics = metrics;
+            this.sequenceBucketing = sequenceBucketing;
+
+            this.setDaemon(true);
+            this.setName("InferenceBatcher");
+        }
+
+        protected CompletableFuture<INDArray[]> submit(INDArray[] input, INDArray[] inputMasks, long deadlineNanos) {
+            long now = System.nanoTime();
+            PendingRequest r = new PendingRequest(input, inputMasks, now, now + Math.max(0, deadlineNanos));
+            lock.lock();
+            try {
+                if (!shouldWork) {
+                    r.future.completeExceptionally(new IllegalStateException("ParallelInference has been shut down"));
+                    return r.future;
+                }
+                pending.add(r);
+                metrics.requestQueued();
+                changed.signal();
+            } finally {
+                lock.unlock();
+            }
+            return r.future;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (shouldWork) {
+                    List<PendingRequest> batch;
+                    lock.lockInterruptibly();
+                    try {
+                        batch = nextBatch();
+                    } finally {
+                        lock.unlock();
+                    }
+
+                    if (batch != null)
+                        dispatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                failPending();
+            }
+        }
+
+        /**
+         * Wait until a batch should be dispatched, and remove it from the pending requests. Lock must be held
+         */
+        protected List<PendingRequest> nextBatch() throws InterruptedException {
+            while (shouldWork) {
+                if (pending.isEmpty()) {
+                    changed.await();
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                long earliestDeadline = Long.MAX_VALUE;
+                for (PendingRequest r : pending) {
+                    earliestDeadline = Math.min(earliestDeadline, r.deadline);
+                }
+                long waitNanos = earliestDeadline - serviceNanosEstimate - now;
+                if (pending.size() >= batchLimit || waitNanos <= 0) {
+                    //Earliest deadline first. Sort is stable, so requests with equal deadlines are handled in arrival order
+                    Collections.sort(pending, new Comparator<PendingRequest>() {
+                        @Override
+                        public int compare(PendingRequest r1, PendingRequest r2) {
+                            return Long.compare(r1.deadline, r2.deadline);
+                        }
+                    });
+                    List<PendingRequest> head = pending.subList(0, Math.min(batchLimit, pending.size()));
+                    List<PendingRequest> batch = new ArrayList<>(head);
+                    head.clear();
+                    return batch;
+                }
+                changed.awaitNanos(waitNanos);
+            }
+            return null;
+        }
+
+        protected void dispatch(final List<PendingRequest> batch) throws InterruptedException {
+            final BatchedInferenceObservable observable = new BatchedInferenceObservable(sequenceBucketing);
+            final long dispatched = System.nanoTime();
+            long[] queueWait = new long[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                PendingRequest r = batch.get(i);
+                observable.addInput(r.input, r.inputMasks);
+                queueWait[i] = dispatched - r.submitted;
+            }
+
+            observable.addObserver(new Observer() {
+                @Override
+                public void update(Observable o, Object arg) {
+                    long done = System.nanoTime();
+                    long service = done - dispatched;
+                    long est = serviceNanosEstimate;
+                    serviceNanosEstimate = est == 0 ? service : (long) (0.8 * est + 0.2 * service);
+
+                    for (int i = 0; i < batch.size(); i++) {
+                        PendingRequest r = batch.get(i);
+                        boolean failed = false;
+                        try {
+                            r.future.complete(observable.getOutput(i));
+                        } catch (Exception e) {
+                            failed = true;
+                            r.future.completeExceptionally(e);
+                        }
+                        metrics.requestCompleted(done - r.submitted, failed, done > r.deadline);
+                    }
+                }
+            });
+
+            metrics.batchDispatched(batch.size(), queueWait);
+            targetQueue.put(observable);
+        }
+
+        protected void failPending() {
+            lock.lock();
+            try {
+                for (PendingRequest r : pending) {
+                    r.future.completeExceptionally(new IllegalStateException("ParallelInference has been shut down"));
+                }
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        protected void shutdown() {
+            lock.lock();
+            try {
+                shouldWork = false;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            this.interrupt();
+        }
+    }
+
+    protected static class PendingRequest {
+        private final INDArray[] input;
+        private final INDArray[] inputMasks;
+        private final long submitted;
+        private final long deadline;
+        private final CompletableFuture<INDArray[]> future = new CompletableFuture<>();
+
+        protected PendingRequest(INDArray[] input, INDArray[] inputMasks, long submitted, long deadline) {
+            this.input = input;
+            this.inputMasks = inputMasks;
+            this.submitted = submitted;
+            this.deadline = deadline;
+        }
+    }
 }
@@ -0,0 +1,246 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism.inference;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics for requests submitted to ParallelInference using deadline-aware batching: the number of queued and in-flight
+ * requests, a histogram of batch sizes, and histograms of the queue wait (time from submission until the request's
+ * batch is dispatched to the workers) and of the total latency (time from submission until the result is available).<br>
+ * Timing histograms use power of 2 buckets in microseconds, hence percentiles are approximate (upper bound of the bucket).
+ * All methods are thread safe.
+ */
+public class InferenceMetrics {
+    private static final int NUM_TIME_BUCKETS = 40;
+
+    private final AtomicInteger queuedRequests = new AtomicInteger();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final AtomicLong completedRequests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final AtomicLong deadlineMisses = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLongArray batchSizes;
+    private final AtomicLongArray queueWait = new AtomicLongArray(NUM_TIME_BUCKETS);
+    private final AtomicLongArray latency = new AtomicLongArray(NUM_TIME_BUCKETS);
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public InferenceMetrics(int batchLimit) {
+        this.batchSizes = new AtomicLongArray(batchLimit + 1);
+    }
+
+    public void requestQueued() {
+        queuedRequests.incrementAndGet();
+    }
+
+    public void batchDispatched(int batchSize, long[] queueWaitNanos) {
+        batches.incrementAndGet();
+        batchSizes.incrementAndGet(Math.min(batchSize, batchSizes.length() - 1));
+        queuedRequests.addAndGet(-batchSize);
+        inFlightRequests.addAndGet(batchSize);
+        for (long l : queueWaitNanos) {
+            queueWait.incrementAndGet(bucket(l));
+            updateMax(maxQueueWaitNanos, l);
+        }
+    }
+
+    public void requestCompleted(long latencyNanos, boolean failed, boolean missedDeadline) {
+        inFlightRequests.decrementAndGet();
+        if (failed) {
+            failedRequests.incrementAndGet();
+        } else {
+            completedRequests.incrementAndGet();
+        }
+        if (missedDeadline)
+            deadlineMisses.incrementAndGet();
+        latency.incrementAndGet(bucket(latencyNanos));
+        updateMax(maxLatencyNanos, latencyNanos);
+    }
+
+    /**
+     * Record a batch executed by a worker, independently of the request queue: used for per model version metrics
+     *
+     * @param batchSize    Number of examples in the batch
+     * @param latencyNanos Model execution time for the batch
+     * @param failed       Whether the batch failed
+     */
+    public void batchExecuted(int batchSize, long latencyNanos, boolean failed) {
+        batches.incrementAndGet();
+        batchSizes.incrementAndGet(Math.min(batchSize, batchSizes.length() - 1));
+        if (failed) {
+            failedRequests.incrementAndGet();
+        } else {
+            completedRequests.incrementAndGet();
+        }
+        latency.incrementAndGet(bucket(latencyNanos));
+        updateMax(maxLatencyNanos, latencyNanos);
+    }
+
+    /**
+     * @return Number of requests waiting to be added to a batch
+     */
+    public int getQueuedRequests() {
+        return queuedRequests.get();
+    }
+
+    /**
+     * @return Number of requests in batches that have been dispatched to the workers, but are not yet complete
+     */
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    /**
+     * @return Queue depth: the number of requests submitted that are not yet complete
+     */
+    public int getQueueDepth() {
+        return queuedRequests.get() + inFlightRequests.get();
+    }
+
+    public long getCompletedRequests() {
+        return completedRequests.get();
+    }
+
+    public long getFailedRequests() {
+        return failedRequests.get();
+    }
+
+    /**
+     * @return Number of requests whose result was available only after their deadline
+     */
+    public long getDeadlineMisses() {
+        return deadlineMisses.get();
+    }
+
+    public long getNumBatches() {
+        return batches.get();
+    }
+
+    /**
+     * @return Batch size histogram: element i is the number of batches of size i
+     */
+    public long[] getBatchSizeHistogram() {
+        long[] out = new long[batchSizes.length()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = batchSizes.get(i);
+        }
+        return out;
+    }
+
+    public double getMeanBatchSize() {
+        long count = 0;
+        long sum = 0;
+        for (int i = 0; i < batchSizes.length(); i++) {
+            long c = batchSizes.get(i);
+            count += c;
+            sum += c * i;
+        }
+        return count == 0 ? 0.0 : sum / (double) count;
+    }
+
+    /**
+     * @param percentile Percentile, 0 to 100
+     * @return Approximate queue wait percentile (upper bound), in the specified time unit
+     */
+    public long getQueueWaitPercentile(double percentile, TimeUnit unit) {
+        return unit.convert(percentile(queueWait, percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param percentile Percentile, 0 to 100
+     * @return Approximate end-to-end latency percentile (upper bound), in the specified time unit
+     */
+    public long getLatencyPercentile(double percentile, TimeUnit unit) {
+        return unit.convert(percentile(latency, percentile), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxQueueWait(TimeUnit unit) {
+        return unit.convert(maxQueueWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxLatency(TimeUnit unit) {
+        return unit.convert(maxLatencyNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Reset all counters and histograms, other than the number of queued and in-flight requests
+     */
+    public void reset() {
+        completedRequests.set(0);
+        failedRequests.set(0);
+        deadlineMisses.set(0);
+        batches.set(0);
+        for (int i = 0; i < batchSizes.length(); i++)
+            batchSizes.set(i, 0);
+        for (int i = 0; i < NUM_TIME_BUCKETS; i++) {
+            queueWait.set(i, 0);
+            latency.set(i, 0);
+        }
+        maxQueueWaitNanos.set(0);
+        maxLatencyNanos.set(0);
+    }
+
+    protected static int bucket(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        return Math.min(NUM_TIME_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+    }
+
+    protected static long percentile(AtomicLongArray histogram, double percentile) {
+        long total = 0;
+        long[] counts = new long[histogram.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = histogram.get(i);
+            total += counts[i];
+        }
+        if (total == 0)
+            return 0;
+        long target = (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        long sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            sum += counts[i];
+            if (sum >= Math.max(1, target))
+                return (1L << i) * 1000L;       //Upper bound of bucket i: 2^i microseconds
+        }
+        return (1L << (counts.length - 1)) * 1000L;
+    }
+
+    protected static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InferenceMetrics(queueDepth=" + getQueueDepth() + ", completed=" + getCompletedRequests() +
+                ", failed=" + getFailedRequests() + ", deadlineMisses=" + getDeadlineMisses() + ", batches=" + getNumBatches() +
+                ", meanBatchSize=" + String.format("%.2f", getMeanBatchSize()) +
+                ", queueWaitP50us=" + getQueueWaitPercentile(50, TimeUnit.MICROSECONDS) +
+                ", queueWaitP99us=" + getQueueWaitPercentile(99, TimeUnit.MICROSECONDS) +
+                ", latencyP50us=" + getLatencyPercentile(50, TimeUnit.MICROSECONDS) +
+                ", latencyP99us=" + getLatencyPercentile(99, TimeUnit.MICROSECONDS) + ")";
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.deeplearning4j.parallelism.inference;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.nn.api.Model;
+
+/**
+ * A version of the model deployed to a ParallelInference instance. Versions are numbered sequentially in the order the
+ * models were deployed.<br>
+ * Metrics are recorded per batch executed with this version: the latency is the model execution time only, and the
+ * batch size is the number of examples in the batch.
+ */
+@Getter
+public class ModelVersion {
+    private final int version;
+    private final Model model;
+    private final long deployedTimeMillis;
+    private final InferenceMetrics metrics;
+
+    public ModelVersion(int version, @NonNull Model model, int batchLimit) {
+        this.version = version;
+        this.model = model;
+        this.deployedTimeMillis = System.currentTimeMillis();
+        this.metrics = new InferenceMetrics(batchLimit);
+    }
+
+    @Override
+    public String toString() {
+        return "ModelVersion(version=" + version + ", metrics=" + metrics + ")";
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism.inference;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Arrays;
+
+/**
+ * Sequence length buckets for batching variable length time series inputs in BATCHED inference mode.<br>
+ * Time series inputs (rank 3, format [minibatch, size, timeSeriesLength]) whose lengths fall into the same bucket are
+ * padded to the same length and merged into one batch, with mask arrays for the padded time steps. Time series outputs
+ * are cropped back to the length of each request.<br>
+ * Bucket i contains lengths in the range (maxLengths[i-1], maxLengths[i]]. Lengths above the largest boundary are
+ * bucketed by powers of 2.<br>
+ * PLEASE NOTE: this requires that the network supports masking for all of its time series inputs, and that the time
+ * series outputs have the same length as the inputs (i.e., no subsampling along the time dimension).
+ */
+public class SequenceBucketing {
+
+    @Getter
+    private final int[] maxLengths;
+
+    /**
+     * @param maxLengths Upper bound (inclusive) of each bucket, in increasing order. If empty: powers of 2 are used
+     */
+    public SequenceBucketing(@NonNull int... maxLengths) {
+        for (int i = 0; i < maxLengths.length; i++) {
+            if (maxLengths[i] < 1 || (i > 0 && maxLengths[i] <= maxLengths[i - 1]))
+                throw new IllegalArgumentException("Bucket lengths must be positive and strictly increasing, got " + Arrays.toString(maxLengths));
+        }
+        this.maxLengths = maxLengths;
+    }
+
+    /**
+     * @return Bucketing using powers of 2: lengths 1, 2, (2,4], (4,8], (8,16], ...
+     */
+    public static SequenceBucketing powersOfTwo() {
+        return new SequenceBucketing();
+    }
+
+    /**
+     * @param length Time series length
+     * @return Index of the bucket for the specified length
+     */
+    public int bucket(long length) {
+        for (int i = 0; i < maxLengths.length; i++) {
+            if (length <= maxLengths[i])
+                return i;
+        }
+        long l = Math.max(1, length);
+        return maxLengths.length + 64 - Long.numberOfLeadingZeros(l - 1);
+    }
+
+    /**
+     * Get the time series length of the specified inputs, if they can be bucketed: all inputs must be rank 3 time series
+     * of the same length, and any mask arrays must be per time step (rank 2).
+     *
+     * @return Length of the time series inputs, or -1 if the inputs can't be bucketed
+     */
+    public static long timeSeriesLength(INDArray[] inputs, INDArray[] inputMasks) {
+        long length = -1;
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputs[i].rank() != 3)
+                return -1;
+            if (length >= 0 && inputs[i].size(2) != length)
+                return -1;
+            length = inputs[i].size(2);
+            if (inputMasks != null && inputMasks[i] != null && inputMasks[i].rank() != 2)
+                return -1;
+        }
+        return length;
+    }
+}
@@ -23,16 +23,14 @@ package org.deeplearning4j.parallelism.inference.observers;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.SequenceBucketing;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.DataSetUtil;
 import org.nd4j.linalg.indexing.INDArrayIndex;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.common.primitives.Pair;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -45,6 +43,9 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     private AtomicInteger counter = new AtomicInteger(0);
     private ThreadLocal<Integer> position = new ThreadLocal<>();
     private List<int[]> outputBatchInputArrays = new ArrayList<>();
+    private final SequenceBucketing sequenceBucketing;
+    private List<int[]> bucketedBatchInputs = new ArrayList<>();          //Input positions in each batch (bucketing only)
+    private List<long[]> bucketedBatchLengths = new ArrayList<>();        //Time series length of each input, or -1
 
     private final Object locker = new Object();
 
@@ -53,7 +54,15 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     private AtomicBoolean isReadLocked = new AtomicBoolean(false);
 
     public BatchedInferenceObservable() {
+        this(null);
+    }
 
+    /**
+     * @param sequenceBucketing If non-null: batch variable length time series inputs that fall into the same length
+     *                          bucket, padding them with masks. May be null.
+     */
+    public BatchedInferenceObservable(SequenceBucketing sequenceBucketing) {
+        this.sequenceBucketing = sequenceBucketing;
     }
 
     @Override
@@ -74,10 +83,16 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         isLocked.set(true);
 
         outputBatchInputArrays.clear();
+        bucketedBatchInputs.clear();
+        bucketedBatchLengths.clear();
 
         // this method should pile individual examples into single batch
 
-        if (counter.get() > 1) {
+        if (counter.get() > 1 && sequenceBucketing != null) {
+            List<Pair<INDArray[],INDArray[]>> out = getBucketedInputBatches();
+            realLocker.writeLock().unlock();
+            return out;
+        } else if (counter.get() > 1) {
 
             int pos = 0;
             List<Pair<INDArray[],INDArray[]>> out = new ArrayList<>();
@@ -128,6 +143,62 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         }
     }
 
+    private List<Pair<INDArray[],INDArray[]>> getBucketedInputBatches() {
+        //Group the inputs by length bucket (time series) or by shape (anything else), in order of first arrival.
+        //Unlike the non-bucketed case, the inputs in one batch don't need to be adjacent
+        Map<List<Object>, List<Integer>> groups = new LinkedHashMap<>();
+        long[] lengths = new long[inputs.size()];
+        for (int i = 0; i < inputs.size(); i++) {
+            INDArray[] in = inputs.get(i);
+            lengths[i] = SequenceBucketing.timeSeriesLength(in, inputMasks.get(i));
+            List<Object> key = new ArrayList<>();
+            if (lengths[i] >= 0) {
+                key.add(sequenceBucketing.bucket(lengths[i]));
+                for (INDArray arr : in) {
+                    key.add(arr.dataType());
+                    key.add(arr.size(1));
+                }
+            } else {
+                key.add(-1);
+                for (INDArray arr : in) {
+                    key.add(arr.dataType());
+                    key.add(Arrays.toString(arr.shape()));
+                }
+            }
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+
+        List<Pair<INDArray[],INDArray[]>> out = new ArrayList<>(groups.size());
+        for (List<Integer> group : groups.values()) {
+            int n = group.size();
+            int[] idxs = new int[n];
+            long[] groupLengths = new long[n];
+            INDArray[][] featuresToMerge = new INDArray[n][0];
+            INDArray[][] fMasksToMerge = null;
+            for (int j = 0; j < n; j++) {
+                int idx = group.get(j);
+                idxs[j] = idx;
+                groupLengths[j] = lengths[idx];
+                featuresToMerge[j] = inputs.get(idx);
+                if (inputMasks.get(idx) != null) {
+                    if (fMasksToMerge == null)
+                        fMasksToMerge = new INDArray[n][];
+                    fMasksToMerge[j] = inputMasks.get(idx);
+                }
+            }
+
+            //Time series of different lengths are padded to the longest in the batch, with mask arrays
+            if (n == 1) {
+                out.add(new Pair<>(featuresToMerge[0], fMasksToMerge == null ? null : fMasksToMerge[0]));
+            } else {
+                out.add(DataSetUtil.mergeFeatures(featuresToMerge, fMasksToMerge));
+            }
+            bucketedBatchInputs.add(idxs);
+            bucketedBatchLengths.add(groupLengths);
+        }
+        return out;
+    }
+
     private static boolean canBatch(INDArray[] first, INDArray[] candidate){
         //Check if we can batch these inputs into the one array. This isn't always possible - for example, some fully
         // convolutional nets can support different input image sizes
@@ -146,6 +217,13 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     @Override
     public void setOutputBatches(List<INDArray[]> output) {
         //this method should split batched output INDArray[] into multiple separate INDArrays
+        if (!bucketedBatchInputs.isEmpty()) {
+            setBucketedOutputBatches(output);
+            this.setChanged();
+            notifyObservers();
+            return;
+        }
+
         int countNumInputBatches = 0;   //Counter for total number of input batches processed
         for( int outBatchNum=0; outBatchNum<output.size(); outBatchNum++ ){ //Iterate over output batch
             INDArray[] currBatchOutputs = output.get(outBatchNum);
@@ -176,6 +254,51 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         notifyObservers();
     }
 
+    private void setBucketedOutputBatches(List<INDArray[]> output) {
+        //Outputs are stored by input position, as the inputs in one batch aren't necessarily adjacent
+        outputs.clear();
+        for (int i = 0; i < inputs.size(); i++) {
+            outputs.add(null);
+        }
+
+        for (int outBatchNum = 0; outBatchNum < output.size(); outBatchNum++) {
+            INDArray[] currBatchOutputs = output.get(outBatchNum);
+            int[] idxs = bucketedBatchInputs.get(outBatchNum);
+            long[] lengths = bucketedBatchLengths.get(outBatchNum);
+            long maxLength = -1;
+            for (long l : lengths) {
+                maxLength = Math.max(maxLength, l);
+            }
+
+            for (int idx : idxs) {
+                outputs.set(idx, new INDArray[currBatchOutputs.length]);
+            }
+
+            for (int outputNumber = 0; outputNumber < currBatchOutputs.length; outputNumber++) {
+                INDArray netOutput = currBatchOutputs[outputNumber];
+                long examplesSoFar = 0;
+                for (int j = 0; j < idxs.length; j++) {
+                    INDArray o = netOutput;
+                    long inSizeEx = inputs.get(idxs[j])[0].size(0);
+                    //Time series outputs are cropped to the (unpadded) length of the input
+                    boolean crop = lengths[j] >= 0 && lengths[j] < maxLength && o.rank() == 3 && o.size(2) == maxLength;
+                    if (idxs.length > 1 || crop) {
+                        INDArrayIndex[] indices = new INDArrayIndex[o.rank()];
+                        for (int k = 1; k < indices.length; k++) {
+                            indices[k] = NDArrayIndex.all();
+                        }
+                        indices[0] = NDArrayIndex.interval(examplesSoFar, examplesSoFar + inSizeEx);
+                        if (crop)
+                            indices[2] = NDArrayIndex.interval(0, lengths[j]);
+                        o = o.get(indices);
+                    }
+                    outputs.get(idxs[j])[outputNumber] = o;
+                    examplesSoFar += inSizeEx;
+                }
+            }
+        }
+    }
+
     private INDArray[] splitExamples(INDArray netOutput, int firstInputComponent, int lastInputComponent){
 
         int numSplits = lastInputComponent - firstInputComponent + 1;
@@ -239,4 +362,16 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         checkOutputException();
         return outputs.get(position.get());
     }
+
+    /**
+     * Get the output for the input at the specified position - i.e., the order in which the inputs were added.
+     * Unlike {@link #getOutput()} this can be used from any thread, for example by an observer
+     *
+     * @param position Position of the input in this batch
+     * @return Output for the specified input
+     */
+    public INDArray[] getOutput(int position) {
+        checkOutputException();
+        return outputs.get(position);
+    }
 }
@@ -88,7 +88,11 @@ public class InplaceParallelInferenceTest extends BaseDL4JTest {
 
             assertNotEquals(net.params(), net2.params());
 
+            int version = pi.getActiveModelVersion().getVersion();
             pi.updateModel(net2);
+            assertEquals(version + 1, pi.getActiveModelVersion().getVersion());
+            assertSame(net2, pi.getActiveModelVersion().getModel());
+            assertEquals(1, pi.getModelVersions().size());
 
             val models2 = pi.getCurrentModelsFromWorkers();
 
@@ -39,8 +39,10 @@ import org.nd4j.linalg.activations.Activation;
 import org.deeplearning4j.datasets.iterator.impl.MnistDataSetIterator;
 import org.deeplearning4j.eval.Evaluation;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.inference.InferenceMetrics;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.ModelVersion;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
 import org.deeplearning4j.util.ModelSerializer;
@@ -55,8 +57,11 @@ import org.nd4j.common.resources.Resources;
 import java.io.File;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -682,6 +687,209 @@ public class ParallelInferenceTest extends BaseDL4JTest {
         }
     }
 
+    @Test()
+    @Timeout(60000)
+    public void testOutputAsync() throws Exception {
+        int nIn = 10;
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activation(Activation.TANH)
+                .seed(12345)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(nIn).nOut(5).build())
+                .layer(new OutputLayer.Builder().nIn(5).nOut(5).activation(Activation.SOFTMAX).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        int numRequests = 50;
+        List<INDArray> in = new ArrayList<>();
+        List<INDArray> exp = new ArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            INDArray arr = Nd4j.rand(1, nIn);
+            in.add(arr);
+            exp.add(net.output(arr));
+        }
+
+        for (InferenceMode m : InferenceMode.values()) {
+            final ParallelInference inf =
+                    new ParallelInference.Builder(net)
+                            .inferenceMode(m)
+                            .batchLimit(8)
+                            .batchDeadline(200, TimeUnit.MILLISECONDS)
+                            .workers(2).build();
+            try {
+                List<CompletableFuture<INDArray>> futures = new ArrayList<>();
+                for (INDArray arr : in) {
+                    futures.add(inf.outputAsync(arr));
+                }
+                for (int i = 0; i < numRequests; i++) {
+                    assertEquals(exp.get(i), futures.get(i).get(30, TimeUnit.SECONDS), "Failed at request " + i + " for mode " + m);
+                }
+
+                //Blocking output uses the same batching when a deadline is set
+                assertEquals(exp.get(0), inf.output(in.get(0)));
+
+                if (m == InferenceMode.BATCHED) {
+                    InferenceMetrics metrics = inf.getMetrics();
+                    assertNotNull(metrics);
+                    assertEquals(numRequests + 1, metrics.getCompletedRequests());
+                    assertEquals(0, metrics.getQueueDepth());
+                    long[] hist = metrics.getBatchSizeHistogram();
+                    assertEquals(9, hist.length);
+                    long batches = 0;
+                    long requests = 0;
+                    for (int i = 0; i < hist.length; i++) {
+                        batches += hist[i];
+                        requests += i * hist[i];
+                    }
+                    assertEquals(metrics.getNumBatches(), batches);
+                    assertEquals(numRequests + 1, requests);
+                    //All requests were submitted well within the deadline: they should have been batched
+                    assertTrue(metrics.getNumBatches() < numRequests, "Expected requests to be batched: " + metrics);
+                    assertTrue(metrics.getLatencyPercentile(100, TimeUnit.NANOSECONDS) >= metrics.getQueueWaitPercentile(100, TimeUnit.NANOSECONDS));
+                }
+            } finally {
+                inf.shutdown();
+            }
+        }
+    }
+
+    @Test()
+    @Timeout(60000)
+    public void testDeployModelAndRollback() throws Exception {
+        int nIn = 10;
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activation(Activation.TANH)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(nIn).nOut(5).build())
+                .layer(new OutputLayer.Builder().nIn(5).nOut(5).activation(Activation.SOFTMAX).build())
+                .build();
+
+        MultiLayerNetwork net1 = new MultiLayerNetwork(conf.clone());
+        net1.init();
+        MultiLayerNetwork net2 = new MultiLayerNetwork(conf.clone());
+        net2.init();
+
+        INDArray in = Nd4j.rand(1, nIn);
+        INDArray exp1 = net1.output(in);
+        INDArray exp2 = net2.output(in);
+        assertNotEquals(exp1, exp2);
+
+        for (InferenceMode m : new InferenceMode[]{InferenceMode.SEQUENTIAL, InferenceMode.BATCHED}) {
+            final ParallelInference inf = new ParallelInference.Builder(net1)
+                    .inferenceMode(m)
+                    .workers(2)
+                    .retainModelVersions(1)
+                    .warmupInputs(Collections.singletonList(new INDArray[]{Nd4j.rand(4, nIn)}))
+                    .build();
+            try {
+                ModelVersion v1 = inf.getActiveModelVersion();
+                assertEquals(exp1, inf.output(in));
+
+                //Requests submitted during the deployment must complete with either version
+                List<CompletableFuture<INDArray>> futures = new ArrayList<>();
+                CompletableFuture<ModelVersion> deployed = inf.deployModel(net2);
+                while (!deployed.isDone()) {
+                    futures.add(inf.outputAsync(in));
+                }
+                ModelVersion v2 = deployed.get();
+                for (CompletableFuture<INDArray> f : futures) {
+                    INDArray out = f.get(30, TimeUnit.SECONDS);
+                    assertTrue(exp1.equals(out) || exp2.equals(out));
+                }
+
+                assertEquals(v2, inf.getActiveModelVersion());
+                assertEquals(v1.getVersion() + 1, v2.getVersion());
+                assertEquals(exp2, inf.output(in));
+                assertEquals(Arrays.asList(v2, v1), inf.getModelVersions());
+                assertTrue(v2.getMetrics().getNumBatches() > 0);
+
+                assertEquals(v1, inf.rollback().get());
+                assertEquals(exp1, inf.output(in));
+                assertEquals(Arrays.asList(v1, v2), inf.getModelVersions());
+            } finally {
+                inf.shutdown();
+            }
+        }
+    }
+
+    @Test()
+    @Timeout(30000)
+    public void testSharedParameters() throws Exception {
+        int nIn = 10;
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activation(Activation.TANH)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(nIn).nOut(5).build())
+                .layer(new OutputLayer.Builder().nIn(5).nOut(5).activation(Activation.SOFTMAX).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        INDArray in = Nd4j.rand(1, nIn);
+        INDArray exp = net.output(in);
+
+        final ParallelInference inf = new ParallelInference.Builder(net)
+                .inferenceMode(InferenceMode.SEQUENTIAL)
+                .workers(3)
+                .sharedParameters(true)
+                .build();
+        try {
+            Model[] models = inf.getCurrentModelsFromWorkers();
+            assertEquals(3, models.length);
+            for (Model m : models) {
+                if (Nd4j.getAffinityManager().getNumberOfDevices() == 1)
+                    assertSame(net.params(), m.params());
+                if (m != net) {
+                    assertTrue(((MultiLayerNetwork) m).isParamsReadOnly());
+                    assertThrows(IllegalStateException.class, () -> ((MultiLayerNetwork) m).fit(in, exp));
+                }
+            }
+
+            for (int i = 0; i < 10; i++)
+                assertEquals(exp, inf.output(in));
+        } finally {
+            inf.shutdown();
+        }
+    }
+
+    @Test()
+    @Timeout(30000)
+    public void testOutputAsyncErrorPropagation() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activation(Activation.TANH)
+                .seed(12345)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(10).nOut(5).build())
+                .layer(new OutputLayer.Builder().nIn(5).nOut(5).activation(Activation.SOFTMAX).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        final ParallelInference inf = new ParallelInference.Builder(net)
+                .inferenceMode(InferenceMode.BATCHED)
+                .workers(1).build();
+        try {
+            CompletableFuture<INDArray> f = inf.outputAsync(Nd4j.ones(1, 5));
+            try {
+                f.get(20, TimeUnit.SECONDS);
+                fail("Expected exception");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof DL4JInvalidInputException);
+            }
+            assertEquals(net.output(Nd4j.ones(1, 10)), inf.outputAsync(Nd4j.ones(1, 10)).get(20, TimeUnit.SECONDS));
+            assertEquals(1, inf.getMetrics().getFailedRequests());
+        } finally {
+            inf.shutdown();
+        }
+    }
+
     @Test
     public void testInputMaskingCyclic() throws Exception {
         for (int e = 0; e < 3; e++) {
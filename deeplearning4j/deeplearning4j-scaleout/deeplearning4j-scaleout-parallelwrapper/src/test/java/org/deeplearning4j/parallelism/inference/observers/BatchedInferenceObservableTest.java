@@ -22,6 +22,7 @@ package org.deeplearning4j.parallelism.inference.observers;
 
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.parallelism.inference.SequenceBucketing;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
@@ -30,6 +31,8 @@ import org.nd4j.common.tests.tags.NativeTag;
 import org.nd4j.common.tests.tags.TagNames;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.common.primitives.Pair;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
@@ -39,6 +42,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @Slf4j
 @Tag(TagNames.FILE_IO)
@@ -147,4 +151,40 @@ public class BatchedInferenceObservableTest extends BaseDL4JTest {
             assertEquals((float) i, outputs.get(i)[1].meanNumber().floatValue(), 0.001f);
         }
     }
+
+    @Test
+    public void testSequenceBucketing() throws Exception {
+        BatchedInferenceObservable observable = new BatchedInferenceObservable(SequenceBucketing.powersOfTwo());
+        int[] lengths = {3, 7, 4, 5, 4};
+        List<INDArray> in = new ArrayList<>();
+        for (int i = 0; i < lengths.length; i++) {
+            INDArray arr = Nd4j.rand(1, 3, lengths[i]);
+            in.add(arr);
+            observable.addInput(new INDArray[]{arr}, null);
+        }
+
+        //Lengths 3 and 4 are in bucket (2,4], lengths 5 and 7 are in bucket (4,8]
+        List<Pair<INDArray[],INDArray[]>> batches = observable.getInputBatches();
+        assertEquals(2, batches.size());
+        assertArrayEquals(new long[]{3, 3, 4}, batches.get(0).getFirst()[0].shape());
+        assertArrayEquals(new long[]{2, 3, 7}, batches.get(1).getFirst()[0].shape());
+
+        INDArray mask0 = batches.get(0).getSecond()[0];
+        assertNotNull(mask0);
+        assertEquals(Nd4j.createFromArray(new float[][]{{1, 1, 1, 0}, {1, 1, 1, 1}, {1, 1, 1, 1}}).castTo(mask0.dataType()), mask0);
+        assertEquals(in.get(2), batches.get(0).getFirst()[0].get(NDArrayIndex.interval(1, 2), NDArrayIndex.all(), NDArrayIndex.all()));
+
+        //Use the padded inputs as the outputs: each request should get back exactly its own (unpadded) input
+        List<INDArray[]> outputs = new ArrayList<>();
+        for (Pair<INDArray[],INDArray[]> p : batches) {
+            outputs.add(new INDArray[]{p.getFirst()[0], Nd4j.create(p.getFirst()[0].size(0), 2)});
+        }
+        observable.setOutputBatches(outputs);
+
+        for (int i = 0; i < lengths.length; i++) {
+            INDArray[] out = observable.getOutput(i);
+            assertEquals(in.get(i), out[0]);
+            assertArrayEquals(new long[]{1, 2}, out[1].shape());
+        }
+    }
 }
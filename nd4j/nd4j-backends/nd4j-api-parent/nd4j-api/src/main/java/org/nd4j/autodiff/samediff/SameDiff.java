@@ -47,6 +47,7 @@ import org.nd4j.autodiff.samediff.internal.InferenceSession;
 import org.nd4j.autodiff.samediff.internal.SameDiffOp;
 import org.nd4j.autodiff.samediff.internal.TrainingSession;
 import org.nd4j.autodiff.samediff.internal.Variable;
+import org.nd4j.autodiff.samediff.internal.memory.PlannedMemoryMgr;
 import org.nd4j.autodiff.samediff.ops.*;
 import org.nd4j.autodiff.samediff.serde.FlatBuffersMapper;
 import org.nd4j.common.base.Preconditions;
@@ -98,6 +99,7 @@ import java.io.*;
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -119,6 +121,7 @@ public class SameDiff extends SDBaseOps {
     private final Map<String, SameDiffOp> ops = new LinkedHashMap<>();
     @Getter
     private final Map<Long, InferenceSession> sessions = new ConcurrentHashMap<>();      //Key: thread ID
+    private final AtomicLong graphVersion = new AtomicLong();       //Incremented on every change to the graph structure
     @Getter
     @Setter
     private ArrayHolder constantArrays = new ThreadSafeArrayHolder(true);
@@ -286,6 +289,25 @@ public class SameDiff extends SDBaseOps {
     @Setter
     boolean logExecution = true;
 
+    /**
+     * Default number of threads used to execute independent ops concurrently during inference - i.e., inter-op
+     * parallelism. 1 (the default) executes all ops sequentially. Note that most ops already use multiple threads
+     * internally (intra-op parallelism), hence this is mainly useful for wide graphs of relatively small ops.
+     * May be overridden for a single operation via {@link OutputConfig#interOpThreads(int)} or {@link BatchOutputConfig#interOpThreads(int)}
+     */
+    @Getter
+    @Setter
+    private int interOpThreads = 1;
+
+    /**
+     * If true: inference sessions use a {@link PlannedMemoryMgr}, which records the allocations of the first execution
+     * and then serves all intermediate arrays from a preallocated arena, sized for the peak memory requirement.
+     * Useful for fixed-shape inference; any change in shapes or requested outputs causes the plan to be recomputed.
+     * See {@link #setMemoryPlanning(boolean)}
+     */
+    @Getter
+    private boolean memoryPlanning;
+
     @Getter
     private SameDiff parent;
 
@@ -323,6 +345,24 @@ public class SameDiff extends SDBaseOps {
         return this;
     }
 
+    /**
+     * Enable or disable static memory planning for inference. When enabled, the first execution on each thread records
+     * the lifetime of all intermediate arrays, and later executions with the same input shapes and outputs reuse a
+     * single preallocated arena instead of allocating arrays per op. See {@link PlannedMemoryMgr} for details.<br>
+     * Any existing inference sessions (and their memory managers) are closed and cleared when this is changed.
+     *
+     * @param memoryPlanning If true: enable memory planning
+     */
+    public void setMemoryPlanning(boolean memoryPlanning) {
+        if (this.memoryPlanning != memoryPlanning) {
+            this.memoryPlanning = memoryPlanning;
+            for (InferenceSession is : sessions.values()) {
+                is.getMmgr().close();
+            }
+            sessions.clear();
+        }
+    }
+
     /**
      * Clears debugging state and disables debug mode.
      */
@@ -666,6 +706,7 @@ public class SameDiff extends SDBaseOps {
      * @param function the function
      */
     public void putOpForId(String id, DifferentialFunction function) {
+        markGraphModified();
         if (ops.containsKey(id) && ops.get(id).getOp() == null) {
             throw new ND4JIllegalStateException("Function by id already exists!");
         }
@@ -1059,6 +1100,7 @@ public class SameDiff extends SDBaseOps {
      * @param function Differential function
      */
     public void addOutgoingFor(String[] varNames, DifferentialFunction function) {
+        markGraphModified();
 
         if (function.getOwnName() == null)
             throw new ND4JIllegalStateException("Instance id can not be null. Function not initialized properly");
@@ -1178,6 +1220,7 @@ public class SameDiff extends SDBaseOps {
      * @param function  Function
      */
     public void addArgsFor(String[] variables, DifferentialFunction function) {
+        markGraphModified();
 
         ArgumentInterceptor interceptor = getArgumentInterceptorToUse();
 
@@ -1238,6 +1281,7 @@ public class SameDiff extends SDBaseOps {
      * Does not use (or remove) ArgumentInterceptor stuff
      */
     public void replaceArgFor(int i, @NonNull SDVariable newArg, @NonNull DifferentialFunction function) {
+        markGraphModified();
 
         Preconditions.checkArgument(i < function.args().length, "Index out of range: function " +
                 function.getOwnName() + " only has " + function.args().length + " args but you are trying" +
@@ -2429,6 +2473,14 @@ public class SameDiff extends SDBaseOps {
         return outputHelper(iterator, At.defaultAt(Operation.INFERENCE), listeners, outputs);
     }
 
+    /**
+     * As per {@link #outputBatches(MultiDataSetIterator, List, String...)}, but using the specified number of threads
+     * for executing independent ops concurrently - see {@link #setInterOpThreads(int)}
+     */
+    public List<Map<String, INDArray>> outputBatches(MultiDataSetIterator iterator, List<Listener> listeners, int interOpThreads, String... outputs) {
+        return outputHelper(iterator, At.defaultAt(Operation.INFERENCE), listeners, interOpThreads, outputs);
+    }
+
     /**
      * See {@link #outputBatches(MultiDataSetIterator, List, String...)}.  No additional listeners.
      * <p>
@@ -2469,6 +2521,10 @@ public class SameDiff extends SDBaseOps {
      * Helper method to run inference.  Also used for validation
      */
     private List<Map<String, INDArray>> outputHelper(MultiDataSetIterator iterator, At at, @NonNull List<Listener> listeners, @NonNull String... outputs) {
+        return outputHelper(iterator, at, listeners, interOpThreads, outputs);
+    }
+
+    private List<Map<String, INDArray>> outputHelper(MultiDataSetIterator iterator, At at, @NonNull List<Listener> listeners, int interOpThreads, @NonNull String... outputs) {
         Preconditions.checkState(trainingConfig != null, "Training config has not been set");
 
         List<Listener> activeListeners = new ArrayList<>();
@@ -2524,7 +2580,7 @@ public class SameDiff extends SDBaseOps {
                     l.iterationStart(this, at, ds, (dataEnd - dataStart));
                 }
 
-                Map<String, INDArray> outs = directExecHelper(placeholderMap, at, ds, requiredVars, activeListeners, neededOutputsArr);
+                Map<String, INDArray> outs = directExecHelper(placeholderMap, at, ds, requiredVars, activeListeners, interOpThreads, neededOutputsArr);
 
                 for (Listener l : activeListeners) {
                     l.iterationDone(this, at, ds, null);
@@ -2532,7 +2588,7 @@ public class SameDiff extends SDBaseOps {
 
                 predictions.add(outs);
             } else {
-                predictions.add(directExecHelper(placeholderMap, at, ds, requiredVars, activeListeners, neededOutputsArr));
+                predictions.add(directExecHelper(placeholderMap, at, ds, requiredVars, activeListeners, interOpThreads, neededOutputsArr));
             }
             at.setIteration(at.iteration() + 1);
         }
@@ -2628,7 +2684,25 @@ public class SameDiff extends SDBaseOps {
         return batchOutputHelper(placeholders, listeners, Operation.INFERENCE, outputs);
     }
 
+    /**
+     * As per {@link #output(Map, List, String...)}, but using the specified number of threads for executing
+     * independent ops concurrently - see {@link #setInterOpThreads(int)}
+     *
+     * @param placeholders   The values to use for placeholders.
+     * @param listeners      Additional listeners to use during this operation.
+     * @param interOpThreads Maximum number of threads to use for executing independent ops concurrently
+     * @param outputs        The variables to output and return.
+     */
+    public Map<String, INDArray> output(Map<String, INDArray> placeholders, List<Listener> listeners, int interOpThreads, String... outputs) {
+        return batchOutputHelper(placeholders, listeners, Operation.INFERENCE, interOpThreads, outputs);
+    }
+
     protected Map<String, INDArray> batchOutputHelper(Map<String, INDArray> placeholders, List<Listener> listeners, Operation operation, String... outputs) {
+        return batchOutputHelper(placeholders, listeners, operation, interOpThreads, outputs);
+    }
+
+    protected Map<String, INDArray> batchOutputHelper(Map<String, INDArray> placeholders, List<Listener> listeners, Operation operation,
+                                                      int interOpThreads, String... outputs) {
         List<Listener> activeListeners = new ArrayList<>();
 
         if(operation == null)
@@ -2650,7 +2724,7 @@ public class SameDiff extends SDBaseOps {
 
         validateListenerActivations(activeListeners, operation);
 
-        Map<String, INDArray> ret = directExecHelper(placeholders, At.defaultAt(operation), null, Collections.emptyList(), activeListeners, outputs);
+        Map<String, INDArray> ret = directExecHelper(placeholders, At.defaultAt(operation), null, Collections.emptyList(), activeListeners, interOpThreads, outputs);
 
         for (Listener l : activeListeners) {
             l.operationEnd(this, operation);
@@ -2663,6 +2737,16 @@ public class SameDiff extends SDBaseOps {
      */
     protected Map<String, INDArray> directExecHelper(Map<String, INDArray> placeholders, At at, MultiDataSet batch,
                                                      Collection<String> requiredActivations, List<Listener> activeListeners, String... outputs) {
+        return directExecHelper(placeholders, at, batch, requiredActivations, activeListeners, interOpThreads, outputs);
+    }
+
+    /**
+     * Do inference for the given variables for a single batch, with training information, executing independent
+     * ops using up to the specified number of threads
+     */
+    protected Map<String, INDArray> directExecHelper(Map<String, INDArray> placeholders, At at, MultiDataSet batch,
+                                                     Collection<String> requiredActivations, List<Listener> activeListeners,
+                                                     int interOpThreads, String... outputs) {
         if (at == null)
             at = At.defaultAt();
 
@@ -2670,7 +2754,10 @@ public class SameDiff extends SDBaseOps {
         long threadId = Thread.currentThread().getId();
         if (!sessions.containsKey(threadId)) {
             log.info("Creating new InferenceSession for thread {}", threadId);
-            sessions.put(threadId, new InferenceSession(this));
+            InferenceSession is = new InferenceSession(this);
+            if (memoryPlanning)
+                is.setMmgr(new PlannedMemoryMgr());
+            sessions.put(threadId, is);
         }
 
         List<String> phNames = inputs();
@@ -2682,6 +2769,7 @@ public class SameDiff extends SDBaseOps {
         //Placeholder validation is performed in InferenceSession
 
         InferenceSession is = sessions.get(threadId);
+        is.setInterOpThreads(interOpThreads);
         return is.output(outputs == null ? Collections.emptyList() : Arrays.asList(outputs),
                 placeholders, batch, requiredActivations, activeListeners, at);
     }
@@ -3146,6 +3234,7 @@ public class SameDiff extends SDBaseOps {
      * @return The (now constant) SDVariables
      */
     public void convertToConstants(List<SDVariable> variables) {
+        markGraphModified();
         if (variables.size() == 0)
             return;
         boolean allConst = true;
@@ -3244,6 +3333,7 @@ public class SameDiff extends SDBaseOps {
      * See also: {@link VariableType}
      */
     public void convertToVariables(@NonNull List<SDVariable> constants) {
+        markGraphModified();
         if (constants.size() == 0)
             return;
         boolean allConst = true;
@@ -3316,6 +3406,7 @@ public class SameDiff extends SDBaseOps {
      * @param dataTypeMap Map of SDVariables to change the datatype for. Key = SDVariable name, Value = new datatype
      */
     public void convertDataTypes(@NonNull Map<String, DataType> dataTypeMap) {
+        markGraphModified();
         if (dataTypeMap.isEmpty())
             return;
 
@@ -3440,6 +3531,7 @@ public class SameDiff extends SDBaseOps {
         Preconditions.checkState(variables.containsKey(from), "Cannot rename variable \"%s\": no variable with this name exists", from);
         Preconditions.checkState(!variables.containsKey(to), "Cannot rename variable \"%s\" to name \"%s\": a variable with name \"%s\" already exists", from, to, to);
 
+        markGraphModified();
         Variable v = variables.get(from);
         v.setName(to);
         v.getVariable().setVarName(to);
@@ -3599,6 +3691,7 @@ public class SameDiff extends SDBaseOps {
      * @param function the function to remove the argument from
      */
     public void removeArgFromOp(String varName, DifferentialFunction function) {
+        markGraphModified();
         val args = function.args();
 
         for (int i = 0; i < args.length; i++) {
@@ -3624,6 +3717,23 @@ public class SameDiff extends SDBaseOps {
         variables.get(varName).getInputsForOp().remove(function.getOwnName());
     }
 
+    /**
+     * Record that the graph structure (ops, variables, op inputs/outputs or variable types) has been modified. Sessions
+     * use this to detect when their cached subgraphs are no longer valid.<br>
+     * This is called by all SameDiff methods that modify the graph; code that modifies the ops or variables directly
+     * (for example, via {@link #getOps()}) should call it after doing so.
+     */
+    public void markGraphModified() {
+        graphVersion.incrementAndGet();
+    }
+
+    /**
+     * @return The current graph version - incremented each time {@link #markGraphModified()} is called
+     */
+    public long getGraphVersion() {
+        return graphVersion.get();
+    }
+
     /**
      * Get the variable based on the opName
      *
@@ -3904,6 +4014,7 @@ public class SameDiff extends SDBaseOps {
      * @param variable Variable to add
      */
     public SDVariable addVariable(SDVariable variable) {
+        markGraphModified();
         Preconditions.checkState(variable.getSameDiff() == this, "Samediff instance must be the same.");
 
         if (variables.containsKey(variable.name()) && !variables.get(variable.name()).getVariable().equals(variable)) {
@@ -5993,6 +6104,16 @@ public class SameDiff extends SDBaseOps {
             }
         }
 
+        if (memoryPlanning) {
+            sb.append("\n\n--- Memory Plan ---\n");
+            for (Map.Entry<Long, InferenceSession> e : sessions.entrySet()) {
+                if (e.getValue().getMmgr() instanceof PlannedMemoryMgr) {
+                    sb.append("Thread ").append(e.getKey()).append(":\n")
+                            .append(((PlannedMemoryMgr) e.getValue().getMmgr()).summary());
+                }
+            }
+        }
+
         return sb.toString();
     }
 
@@ -50,8 +50,11 @@ public class BatchOutputConfig {
     @NonNull
     private List<Listener> listeners = new ArrayList<>();
 
+    private int interOpThreads;
+
     public BatchOutputConfig(@NonNull SameDiff sd){
         this.sd = sd;
+        this.interOpThreads = sd.getInterOpThreads();
     }
 
     /**
@@ -127,6 +130,16 @@ public class BatchOutputConfig {
         return this;
     }
 
+    /**
+     * Set the maximum number of threads to use for executing independent ops concurrently (inter-op parallelism).
+     * Defaults to {@link SameDiff#getInterOpThreads()}
+     */
+    public BatchOutputConfig interOpThreads(int interOpThreads){
+        Preconditions.checkArgument(interOpThreads > 0, "Number of inter-op threads must be positive, got %s", interOpThreads);
+        this.interOpThreads = interOpThreads;
+        return this;
+    }
+
     /**
      * @deprecated Use {@link #output()}
      */
@@ -139,7 +152,7 @@ public class BatchOutputConfig {
      * Do inference and return the results
      */
     public Map<String,INDArray> output() {
-        return sd.output(placeholders, listeners, outputs.toArray(new String[0]));
+        return sd.output(placeholders, listeners, interOpThreads, outputs.toArray(new String[0]));
     }
 
     /**
@@ -56,8 +56,11 @@ public class OutputConfig {
 
     private MultiDataSetIterator data;
 
+    private int interOpThreads;
+
     public OutputConfig(@NonNull SameDiff sd) {
         this.sd = sd;
+        this.interOpThreads = sd.getInterOpThreads();
     }
 
     /**
@@ -118,6 +121,16 @@ public class OutputConfig {
         return this;
     }
 
+    /**
+     * Set the maximum number of threads to use for executing independent ops concurrently (inter-op parallelism).
+     * Defaults to {@link SameDiff#getInterOpThreads()}
+     */
+    public OutputConfig interOpThreads(int interOpThreads) {
+        Preconditions.checkArgument(interOpThreads > 0, "Number of inter-op threads must be positive, got %s", interOpThreads);
+        this.interOpThreads = interOpThreads;
+        return this;
+    }
+
     private void validateConfig() {
         Preconditions.checkNotNull(data, "Must specify data.  It may not be null.");
     }
@@ -129,14 +142,14 @@ public class OutputConfig {
      * variable time series length and CNNs with variable image sizes will most likely have issues.
      */
     public Map<String, INDArray> exec() {
-        return sd.output(data, listeners, outputs.toArray(new String[0]));
+        return SameDiffUtils.stackOutputs(execBatches());
     }
 
     /**
      * Do inference and return the results in batches.
      */
     public List<Map<String, INDArray>> execBatches() {
-        return sd.outputBatches(data, listeners, outputs.toArray(new String[0]));
+        return sd.outputBatches(data, listeners, interOpThreads, outputs.toArray(new String[0]));
     }
 
     /**
@@ -151,7 +164,7 @@ public class OutputConfig {
         Preconditions.checkState(outputs.size() == 1,
                 "Can only use execSingle() when exactly one output is specified, there were %s", outputs.size());
 
-        return sd.output(data, listeners, outputs.toArray(new String[0])).get(outputs.get(0));
+        return exec().get(outputs.get(0));
     }
 
 
@@ -165,6 +178,6 @@ public class OutputConfig {
                 "Can only use execSingleBatches() when exactly one output is specified, there were %s", outputs.size());
 
         return SameDiffUtils
-                .getSingleOutput(sd.outputBatches(data, listeners, outputs.toArray(new String[0])), outputs.get(0));
+                .getSingleOutput(execBatches(), outputs.get(0));
     }
 }
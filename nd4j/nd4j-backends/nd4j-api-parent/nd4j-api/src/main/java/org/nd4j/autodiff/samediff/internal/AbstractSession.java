@@ -25,7 +25,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.nd4j.autodiff.functions.DifferentialFunction;
 import org.nd4j.autodiff.listeners.At;
 import org.nd4j.autodiff.listeners.Listener;
-import org.nd4j.autodiff.samediff.SDVariable;
 import org.nd4j.autodiff.samediff.SameDiff;
 import org.nd4j.autodiff.samediff.VariableType;
 import org.nd4j.common.base.Preconditions;
@@ -81,6 +80,28 @@ public abstract class AbstractSession<T, O> {
      */
     protected final Set<String> zeroInputOpsInSubgraph = new HashSet<>();
 
+    /**
+     * Variables and constants in the subgraph, in the order they appear in the SameDiff instance.
+     * These are marked as available at the start of execution
+     */
+    protected final List<String> varsAndConstsInSubgraph = new ArrayList<>();
+
+    /**
+     * Cache of the subgraph structure (subgraph, subgraphOps, zeroInputOpsInSubgraph, varsAndConstsInSubgraph),
+     * keyed by the set of required variables. Avoids re-traversing the graph when the same outputs are requested
+     * repeatedly, as is typical for inference. Entries are discarded when the graph structure changes.
+     */
+    protected final Map<Set<String>, CachedSubgraph> subgraphCache = new HashMap<>();
+    protected static final int MAX_SUBGRAPH_CACHE_SIZE = 32;
+
+    /**
+     * Maximum number of threads used to execute independent ops concurrently. Values of 1 or less (the default)
+     * result in sequential execution of all ops
+     */
+    @Getter
+    @Setter
+    protected int interOpThreads = 1;
+
     public AbstractSession(@NonNull SameDiff sameDiff) {
         this.sameDiff = sameDiff;
     }
@@ -133,28 +154,26 @@ public abstract class AbstractSession<T, O> {
 
         //Step 0: validation - that variables exist, placeholders have arrays, etc
         for (String s : variables) {
-            Preconditions.checkState(sameDiff.variableMap().containsKey(s), "Requested output variable %s does not exist in SameDiff instance", s);
+            Preconditions.checkState(sameDiff.getVariables().containsKey(s), "Requested output variable %s does not exist in SameDiff instance", s);
         }
 
         Set<String> reqOutputVariablesSet = new LinkedHashSet<>(variables);
 
-        placeholderValues = preprocessPlaceholders(placeholderValues, at);
-
         //Clear state from past iterations, if any
         dt.clear();
-        subgraph.clear();
-        subgraphOps.clear();
         nodeOutputs.clear();            //TODO eventually we'll have (optional) cache here for later execs... main challenge is detecting in-place array modifications and invalidating old results. And overall memory use...
         tensorArrays.clear();
 
         //Step 1: determine subgraph structure we actually need to execute
         //Basic plan: work backwards from the variables we want, based on the graph structure, to work out what
         // we actually need to execute
-        //TODO we'll optimize this and cache the results, only recalculating if the graph structure changes
+        //This is cached per set of required variables, and only recalculated if the graph structure changes
         Set<String> userRequestedUnique = new LinkedHashSet<>(variables);
         Set<String> allRequired = new LinkedHashSet<>(requiredActivations);
         allRequired.addAll(variables);
-        initSubgraph(allRequired);
+        loadSubgraph(allRequired);
+
+        placeholderValues = preprocessPlaceholders(placeholderValues, at);
 
         //Step 2: Check that we have required placeholders
         List<String> phNames = sameDiff.inputs();
@@ -194,18 +213,16 @@ public abstract class AbstractSession<T, O> {
 
         //Step 3: Mark the (required) variables, constants and placeholders as available via dependency tracker
         //And also any "zero dependency" ops - i.e., those without any inputs
+        //Variables and constants not in the subgraph are never needed, so aren't added here
         ExecStep start = new ExecStep(ExecType.EXEC_START, "", null);   //Dummy dependency to trigger the variables and constants
-        for (SDVariable v : sameDiff.variables()) {
-            VariableType vt = v.getVariableType();
-            if (vt == VariableType.VARIABLE || vt == VariableType.CONSTANT) {
-                ExecType et = vt == VariableType.VARIABLE ? ExecType.VARIABLE : ExecType.CONSTANT;
-                ExecStep es = new ExecStep(et, v.name(), new FrameIter(OUTER_FRAME, 0, null));
-                dt.addDependency(es, start);
-
-                Variable var = sameDiff.getVariables().get(v.name());
-                if (var.getControlDeps() != null) {
-                    addVarControlDeps(es, var);     //Before this variable can be considered available for use, we need specified op to be executed
-                }
+        for (String s : varsAndConstsInSubgraph) {
+            Variable var = sameDiff.getVariables().get(s);
+            ExecType et = var.getVariable().getVariableType() == VariableType.VARIABLE ? ExecType.VARIABLE : ExecType.CONSTANT;
+            ExecStep es = new ExecStep(et, s, new FrameIter(OUTER_FRAME, 0, null));
+            dt.addDependency(es, start);
+
+            if (var.getControlDeps() != null) {
+                addVarControlDeps(es, var);     //Before this variable can be considered available for use, we need specified op to be executed
             }
         }
         for (String s : phNames) {
@@ -280,6 +297,29 @@ public abstract class AbstractSession<T, O> {
 
             log.trace("Beginning execution step {}: {}", step, es);
 
+            if (interOpThreads > 1 && es.getType() == ExecType.OP && canExecuteConcurrently(sameDiff.getOps().get(es.getName()))) {
+                //Inter-op parallelism: collect all other ops for the current frame/iteration that are also ready to be
+                // executed. All of their dependencies have been satisfied, hence they are independent of each other and
+                // can be executed at the same time
+                final FrameIter esFrameIter = es.getFrameIter();
+                List<ExecStep> concurrent = new ArrayList<>();
+                concurrent.add(es);
+                while (dt.hasNewAllSatisfied()) {
+                    ExecStep next = dt.getFirstNewAllSatisfiedMatching(s -> s.getType() == ExecType.OP && esFrameIter.equals(s.getFrameIter())
+                            && canExecuteConcurrently(sameDiff.getOps().get(s.getName())));
+                    if (next == null)
+                        break;
+                    concurrent.add(next);
+                }
+
+                if (concurrent.size() > 1) {
+                    executeConcurrently(concurrent, placeholderValues, userRequestedUnique, allRequired, allExecuted, out,
+                            listeners, at, batch, reqOutputVariablesSet);
+                    step += concurrent.size();
+                    continue;
+                }
+            }
+
             FrameIter outFrameIter;
             boolean skipDepUpdate = false;      //Only used for Switch ops, which have slightly different handling...
             boolean skipMarkSatisfied = false;  //Only for enter ops, because of different frame/iter
@@ -340,48 +380,10 @@ public abstract class AbstractSession<T, O> {
 
 
                 //Resolve the inputs to this execution step (op) to actual arrays
-                Set<VarId> inputs = null;
-                Set<VarId> allIterInputs = null;
-                Set<String> constAndPhInputs = null;
-                DependencyList<ExecStep, ExecStep> dl = dt.getDependencies(es);
-
-                List<String> inputNames = op.getInputsToOp();
-                if (inputNames != null && !inputNames.isEmpty()) {
-                    inputs = new LinkedHashSet<>();
-                    allIterInputs = new LinkedHashSet<>();
-                    constAndPhInputs = new LinkedHashSet<>();
-                    List<ExecStep> deps = dl.getDependencies();
-                    if (deps != null && !deps.isEmpty()) {
-                        for (ExecStep dep : deps) {
-                            switch (dep.getType()) {
-                                case OP:
-                                case SWITCH_L:
-                                case SWITCH_R:
-                                    //The current execution step depends on one output of the op "dep"
-                                    SameDiffOp toExecOp = sameDiff.getOps().get(es.getName());
-                                    List<String> inputsToExecOp = toExecOp.getInputsToOp();
-                                    SameDiffOp inputOp = sameDiff.getOps().get(dep.getName());
-                                    List<String> inputOpOutNames = inputOp.getOutputsOfOp();
-                                    for (String s : inputsToExecOp) {
-                                        if (inputOpOutNames.contains(s)) {
-                                            VarId vid = new VarId(s, dep.getFrameIter().getFrame(), dep.getFrameIter().getIteration(), dep.getFrameIter().getParentFrame());
-                                            inputs.add(vid);
-                                        }
-                                    }
-                                    break;
-                                case VARIABLE:
-                                    inputs.add(new VarId(dep.getName(), OUTER_FRAME, 0, null));
-                                    break;
-                                case CONSTANT:
-                                case PLACEHOLDER:
-                                    constAndPhInputs.add(dep.getName());
-                                    break;
-                                default:
-                                    throw new UnsupportedOperationException("Not yet implemented: " + dep.getType());
-                            }
-                        }
-                    }
-                }
+                OpInputs opInputs = resolveOpInputs(es, op);
+                Set<VarId> inputs = opInputs.getInputs();
+                Set<VarId> allIterInputs = opInputs.getAllIterInputs();
+                Set<String> constAndPhInputs = opInputs.getConstAndPhInputs();
 
 
                 // Do execution of the op, in 2 steps
@@ -494,6 +496,149 @@ public abstract class AbstractSession<T, O> {
         return out;
     }
 
+    /**
+     * Execute the specified (independent) op execution steps concurrently, using up to {@link #getInterOpThreads()} threads.
+     * Op parameterization (including output array allocation) and all post-execution bookkeeping - storing outputs and
+     * updating the dependency tracker - happens on the calling thread, in the order the steps are provided. Only the
+     * op execution itself is performed concurrently, hence the results are identical to sequential execution.
+     *
+     * @param steps The execution steps. All must be ops (that {@link #canExecuteConcurrently(SameDiffOp)}) in the same frame/iteration
+     */
+    protected void executeConcurrently(List<ExecStep> steps, Map<String, T> placeholderValues, Set<String> userRequestedUnique,
+                                       Set<String> allRequired, Set<String> allExecuted, Map<String, T> out,
+                                       List<Listener> listeners, At at, MultiDataSet batch, Set<String> reqOutputVariablesSet) {
+        FrameIter outFrameIter = steps.get(0).getFrameIter();
+        List<O> parameterizedOps = new ArrayList<>(steps.size());
+        List<OpInputs> opInputs = new ArrayList<>(steps.size());
+        for (ExecStep es : steps) {
+            SameDiffOp op = sameDiff.getOps().get(es.getName());
+            OpInputs in = resolveOpInputs(es, op);
+            opInputs.add(in);
+            parameterizedOps.add(getAndParameterizeOp(es.getName(), outFrameIter, in.getInputs(), in.getAllIterInputs(),
+                    in.getConstAndPhInputs(), placeholderValues, reqOutputVariablesSet));
+        }
+
+        List<T[]> allOutputs = getOutputsConcurrent(parameterizedOps, outFrameIter, opInputs, listeners, at, batch, reqOutputVariablesSet);
+
+        for (int i = 0; i < steps.size(); i++) {
+            ExecStep es = steps.get(i);
+            SameDiffOp op = sameDiff.getOps().get(es.getName());
+            T[] opOutputValues = allOutputs.get(i);
+            List<String> opOutVarNames = op.getOutputsOfOp();
+            Preconditions.checkState(opOutputValues.length == opOutVarNames.size(), "Unexpected number of outputs from executed op %s:" +
+                    " got %s outputs when %s outputs were expected (%s)", es.getName(), opOutputValues.length, opOutVarNames.size(), opOutVarNames);
+
+            for (int j = 0; j < opOutputValues.length; j++) {
+                String n = opOutVarNames.get(j);
+                nodeOutputs.put(outFrameIter.toVarId(n), opOutputValues[j]);
+                if (userRequestedUnique.contains(n)) {
+                    out.put(n, opOutputValues[j]);
+                }
+                if (allRequired.contains(n)) {
+                    allExecuted.add(n);
+                }
+            }
+
+            List<String> cdFor = op.getControlDepFor();
+            if (cdFor != null) {
+                ExecStep cdEs = new ExecStep(ExecType.CONTROL_DEP, es.getName(), null);
+                if (!dt.isSatisfied(cdEs)) {
+                    dt.markSatisfied(cdEs, true);
+                }
+            }
+
+            updateDescendantDeps(es, outFrameIter);
+            dt.markSatisfied(es, true);
+        }
+    }
+
+    /**
+     * Whether the specified op may be executed concurrently with other (independent) ops when inter-op parallelism
+     * is enabled. Returns false by default; control flow ops, and ops that modify the session state when executed
+     * should always be executed sequentially.
+     *
+     * @param op Op to check
+     * @return True if the op can be executed concurrently with other ops
+     */
+    protected boolean canExecuteConcurrently(SameDiffOp op) {
+        return false;
+    }
+
+    /**
+     * Execute the specified (independent, parameterized) ops, potentially concurrently - see {@link #executeConcurrently(List, Map, Set, Set, Set, Map, List, At, MultiDataSet, Set)}.
+     * The default implementation simply executes the ops sequentially using {@link #getOutputs(Object, FrameIter, Set, Set, Set, List, At, MultiDataSet, Set)}
+     *
+     * @param ops             The parameterized ops to execute
+     * @param outputFrameIter The frame and iteration of the outputs (same for all ops)
+     * @param inputs          The inputs for each op
+     * @param allReqVariables All required variables requested for the current session execution (not just the current op outputs)
+     * @return The outputs of each op, in the same order as the ops
+     */
+    protected List<T[]> getOutputsConcurrent(List<O> ops, FrameIter outputFrameIter, List<OpInputs> inputs, List<Listener> listeners,
+                                             At at, MultiDataSet batch, Set<String> allReqVariables) {
+        List<T[]> out = new ArrayList<>(ops.size());
+        for (int i = 0; i < ops.size(); i++) {
+            OpInputs in = inputs.get(i);
+            out.add(getOutputs(ops.get(i), outputFrameIter, in.getInputs(), in.getAllIterInputs(), in.getConstAndPhInputs(),
+                    listeners, at, batch, allReqVariables));
+        }
+        return out;
+    }
+
+    /**
+     * Resolve the inputs to the specified op execution step to the variables (at a specific frame/iteration) that
+     * should be used when executing it
+     *
+     * @param es Execution step for the op
+     * @param op Op to resolve the inputs for
+     * @return The inputs for the execution step
+     */
+    protected OpInputs resolveOpInputs(ExecStep es, SameDiffOp op) {
+        Set<VarId> inputs = null;
+        Set<VarId> allIterInputs = null;
+        Set<String> constAndPhInputs = null;
+        DependencyList<ExecStep, ExecStep> dl = dt.getDependencies(es);
+
+        List<String> inputNames = op.getInputsToOp();
+        if (inputNames != null && !inputNames.isEmpty()) {
+            inputs = new LinkedHashSet<>();
+            allIterInputs = new LinkedHashSet<>();
+            constAndPhInputs = new LinkedHashSet<>();
+            List<ExecStep> deps = dl.getDependencies();
+            if (deps != null && !deps.isEmpty()) {
+                for (ExecStep dep : deps) {
+                    switch (dep.getType()) {
+                        case OP:
+                        case SWITCH_L:
+                        case SWITCH_R:
+                            //The current execution step depends on one output of the op "dep"
+                            SameDiffOp toExecOp = sameDiff.getOps().get(es.getName());
+                            List<String> inputsToExecOp = toExecOp.getInputsToOp();
+                            SameDiffOp inputOp = sameDiff.getOps().get(dep.getName());
+                            List<String> inputOpOutNames = inputOp.getOutputsOfOp();
+                            for (String s : inputsToExecOp) {
+                                if (inputOpOutNames.contains(s)) {
+                                    VarId vid = new VarId(s, dep.getFrameIter().getFrame(), dep.getFrameIter().getIteration(), dep.getFrameIter().getParentFrame());
+                                    inputs.add(vid);
+                                }
+                            }
+                            break;
+                        case VARIABLE:
+                            inputs.add(new VarId(dep.getName(), OUTER_FRAME, 0, null));
+                            break;
+                        case CONSTANT:
+                        case PLACEHOLDER:
+                            constAndPhInputs.add(dep.getName());
+                            break;
+                        default:
+                            throw new UnsupportedOperationException("Not yet implemented: " + dep.getType());
+                    }
+                }
+            }
+        }
+        return new OpInputs(inputs, allIterInputs, constAndPhInputs);
+    }
+
     /**
      * Add the control dependency from Op -> variable
      *
@@ -776,6 +921,46 @@ public abstract class AbstractSession<T, O> {
         }
     }
 
+    /**
+     * Set the subgraph, subgraphOps, zeroInputOpsInSubgraph and varsAndConstsInSubgraph for the specified required
+     * variables - from the cache if possible, otherwise by calling {@link #initSubgraph(Set)}
+     *
+     * @param allRequired Set of variables we need
+     */
+    protected void loadSubgraph(Set<String> allRequired) {
+        subgraph.clear();
+        subgraphOps.clear();
+        zeroInputOpsInSubgraph.clear();
+        varsAndConstsInSubgraph.clear();
+
+        long graphVersion = sameDiff.getGraphVersion();
+        int numOps = sameDiff.getOps().size();
+        int numVars = sameDiff.getVariables().size();
+        CachedSubgraph c = subgraphCache.get(allRequired);
+        if (c != null && c.graphVersion == graphVersion && c.numOps == numOps && c.numVariables == numVars) {
+            subgraph.addAll(c.subgraph);
+            subgraphOps.addAll(c.subgraphOps);
+            zeroInputOpsInSubgraph.addAll(c.zeroInputOps);
+            varsAndConstsInSubgraph.addAll(c.varsAndConsts);
+            return;
+        }
+
+        initSubgraph(allRequired);
+        for (Variable v : sameDiff.getVariables().values()) {
+            VariableType vt = v.getVariable().getVariableType();
+            if ((vt == VariableType.VARIABLE || vt == VariableType.CONSTANT) && subgraph.contains(v.getName())) {
+                varsAndConstsInSubgraph.add(v.getName());
+            }
+        }
+
+        if (c == null && subgraphCache.size() >= MAX_SUBGRAPH_CACHE_SIZE) {
+            //Unusual to have many different output sets - simply start again rather than tracking usage
+            subgraphCache.clear();
+        }
+        subgraphCache.put(new HashSet<>(allRequired), new CachedSubgraph(new HashSet<>(subgraph), new HashSet<>(subgraphOps),
+                new HashSet<>(zeroInputOpsInSubgraph), new ArrayList<>(varsAndConstsInSubgraph), graphVersion, numOps, numVars));
+    }
+
     /**
      * Initialize the subgraph - the subgraph and subgraphOps sets
      * This works our what ops and variables we might need to execute to get the requested outputs.
@@ -1012,6 +1197,33 @@ public abstract class AbstractSession<T, O> {
         }
     }
 
+    /**
+     * OpInputs: the resolved inputs for a single op execution step - see {@link #getAndParameterizeOp(String, FrameIter, Set, Set, Set, Map, Set)}
+     */
+    @Getter
+    @AllArgsConstructor
+    protected static class OpInputs {
+        protected final Set<VarId> inputs;
+        protected final Set<VarId> allIterInputs;
+        protected final Set<String> constAndPhInputs;
+    }
+
+    /**
+     * CachedSubgraph: the subgraph structure for one set of required variables - see {@link #loadSubgraph(Set)}.
+     * The graph version, and the number of ops and variables (for ops or variables added directly to the maps) are
+     * recorded to detect changes to the graph structure
+     */
+    @AllArgsConstructor
+    protected static class CachedSubgraph {
+        protected final Set<String> subgraph;
+        protected final Set<String> subgraphOps;
+        protected final Set<String> zeroInputOps;
+        protected final List<String> varsAndConsts;
+        protected final long graphVersion;
+        protected final int numOps;
+        protected final int numVariables;
+    }
+
     /**
      * Used in getting the next ExecStep that matches the specified (current) frame/iteration
      */
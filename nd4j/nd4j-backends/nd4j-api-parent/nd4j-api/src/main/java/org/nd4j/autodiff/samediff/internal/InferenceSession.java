@@ -54,6 +54,8 @@ import org.nd4j.common.primitives.Pair;
 import org.nd4j.common.util.ArrayUtil;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.nd4j.imports.VariableUtils.stripVarSuffix;
 
@@ -78,6 +80,8 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
 
     private Map<String,OpContext> opContexts = new HashMap<>();
 
+    private ThreadPoolExecutor interOpExecutor;     //Used for inter-op parallelism, created only when required
+
     public InferenceSession(@NonNull SameDiff sameDiff) {
         super(sameDiff);
         mmgr = new ArrayCacheMemoryMgr();
@@ -90,11 +94,13 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
         //We'll also use this method as a "pre execution" hook-in, to mark variables as something we should never deallocate
         //This occurs by never marking these "ConstantDep" and "VariableDep" instances as satisfied, so there's always
         // an unsatisfied dependency for them in the array use tracker
+        //Only variables and constants in the subgraph are used in this execution, so only these need to be marked
         //TODO we shouldn't be clearing this on every single iteration, in 99.5% of cases variables will be same as last iteration...
-        for (SDVariable v : sameDiff.variables()) {
+        for (String s : varsAndConstsInSubgraph) {
+            SDVariable v = sameDiff.getVariables().get(s).getVariable();
             if (v.getVariableType() == VariableType.CONSTANT) {
                 arrayUseTracker.addDependency(v.getArr(), new ConstantDep(v.name()));
-            } else if (v.getVariableType() == VariableType.VARIABLE) {
+            } else {
                 arrayUseTracker.addDependency(v.getArr(), new VariableDep(v.name()));
             }
         }
@@ -194,6 +200,7 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
                 mmgr.release(arr);
             }
         }
+        mmgr.executionDone();
 
         return output;
     }
@@ -201,6 +208,95 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
     @Override
     public INDArray[] getOutputs(Pair<SameDiffOp,OpContext> opPair, FrameIter outputFrameIter, Set<VarId> opInputs, Set<VarId> allIterInputs,
                                  Set<String> constAndPhInputs, List<Listener> listeners, At at, MultiDataSet batch, Set<String> allReqVariables) {
+        preOpExecution(opPair, outputFrameIter, listeners, at);
+        INDArray[] out = doExec(opPair.getFirst().getOp(), opPair.getRight(), outputFrameIter, opInputs, allIterInputs, constAndPhInputs);
+        postOpExecution(opPair, out, outputFrameIter, listeners, at, batch, allReqVariables);
+        return out;
+    }
+
+    @Override
+    protected boolean canExecuteConcurrently(SameDiffOp op) {
+        DifferentialFunction df = op.getOp();
+        //Control flow, TensorArray and other special case ops read or modify the session state directly, hence are
+        // always executed sequentially. Random ops are also excluded, as their output depends on the executing thread's RNG
+        return (df instanceof CustomOp || df instanceof Op) && !(df instanceof Identity || df instanceof LoopCond || df instanceof Enter ||
+                df instanceof Exit || df instanceof NextIteration || df instanceof Merge || df instanceof Switch || df instanceof BaseTensorOp ||
+                df instanceof GradientBackwardsMarker || df instanceof ExternalErrorsFunction || df instanceof Assert || df instanceof RandomOp);
+    }
+
+    @Override
+    protected List<INDArray[]> getOutputsConcurrent(List<Pair<SameDiffOp, OpContext>> ops, FrameIter outputFrameIter, List<OpInputs> inputs,
+                                                    List<Listener> listeners, At at, MultiDataSet batch, Set<String> allReqVariables) {
+        //Listener calls and memory management (via the SessionMemMgr and array use tracker) happen only on this thread,
+        // in op order; only the execution of the (already parameterized) ops is done in parallel
+        for (Pair<SameDiffOp, OpContext> p : ops) {
+            preOpExecution(p, outputFrameIter, listeners, at);
+        }
+
+        ExecutorService executor = getInterOpExecutor();
+        final Integer deviceId = Nd4j.getAffinityManager().getDeviceForCurrentThread();
+        List<Future<INDArray[]>> futures = new ArrayList<>(ops.size());
+        for (int i = 1; i < ops.size(); i++) {
+            final Pair<SameDiffOp, OpContext> p = ops.get(i);
+            final OpInputs in = inputs.get(i);
+            futures.add(executor.submit(() -> {
+                Nd4j.getAffinityManager().unsafeSetDevice(deviceId);
+                return doExec(p.getFirst().getOp(), p.getSecond(), outputFrameIter, in.getInputs(), in.getAllIterInputs(), in.getConstAndPhInputs());
+            }));
+        }
+
+        //Execute the first op on the current thread while the others are running
+        List<INDArray[]> out = new ArrayList<>(ops.size());
+        OpInputs in0 = inputs.get(0);
+        out.add(doExec(ops.get(0).getFirst().getOp(), ops.get(0).getSecond(), outputFrameIter, in0.getInputs(), in0.getAllIterInputs(), in0.getConstAndPhInputs()));
+        for (Future<INDArray[]> f : futures) {
+            try {
+                out.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for concurrent op execution", e);
+            } catch (ExecutionException e) {
+                Throwable t = e.getCause();
+                if (t instanceof RuntimeException)
+                    throw (RuntimeException) t;
+                throw new RuntimeException("Error during concurrent op execution", t);
+            }
+        }
+
+        for (int i = 0; i < ops.size(); i++) {
+            postOpExecution(ops.get(i), out.get(i), outputFrameIter, listeners, at, batch, allReqVariables);
+        }
+        return out;
+    }
+
+    /**
+     * Get the thread pool used for inter-op parallelism, (re)creating it if the number of threads has changed.
+     * Threads are daemon threads, and are released when idle.
+     */
+    protected ExecutorService getInterOpExecutor() {
+        if (interOpExecutor == null || interOpExecutor.getMaximumPoolSize() != interOpThreads) {
+            if (interOpExecutor != null) {
+                interOpExecutor.shutdown();
+            }
+            final AtomicInteger threadCount = new AtomicInteger();
+            interOpExecutor = new ThreadPoolExecutor(interOpThreads, interOpThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "SameDiff-InterOp-" + threadCount.getAndIncrement());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            interOpExecutor.allowCoreThreadTimeOut(true);
+        }
+        return interOpExecutor;
+    }
+
+    /**
+     * Called before execution of the op: notifies the listeners
+     */
+    protected void preOpExecution(Pair<SameDiffOp,OpContext> opPair, FrameIter outputFrameIter, List<Listener> listeners, At at) {
         SameDiffOp op = opPair.getFirst();
         at.setFrameIter(outputFrameIter);
         if (listeners != null && listeners.size() > 0) {
@@ -214,9 +310,16 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
         if(sameDiff.isDebugMode()) {
             log.info("Executing samediff op: " + op.getName());
         }
+    }
 
-        INDArray[] out = doExec(op.getOp(), opPair.getRight(), outputFrameIter, opInputs, allIterInputs, constAndPhInputs);
-
+    /**
+     * Called after execution of the op: notifies the listeners, records the array uses for the op outputs, and
+     * releases any arrays that are no longer required
+     */
+    protected void postOpExecution(Pair<SameDiffOp,OpContext> opPair, INDArray[] out, FrameIter outputFrameIter, List<Listener> listeners,
+                                   At at, MultiDataSet batch, Set<String> allReqVariables) {
+        SameDiffOp op = opPair.getFirst();
+        at.setFrameIter(outputFrameIter);
         if (log.isTraceEnabled()) {
             StringBuilder sb = new StringBuilder();
             sb.append(op.getName()).append(" - ").append(outputFrameIter).append(" outputs: ");
@@ -341,8 +444,6 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
                 mmgr.release(arr);
             }
         }
-
-        return out;
     }
 
     public INDArray[] doExec(DifferentialFunction op, OpContext opContext, FrameIter outputFrameIter, Set<VarId> opInputs, Set<VarId> allIterInputs,
@@ -64,6 +64,15 @@ public interface SessionMemMgr extends Closeable {
      */
     void release(INDArray array);
 
+    /**
+     * Called at the end of each session execution, after all arrays that are not returned to the user have been released.
+     * Memory managers that track allocations across executions (such as {@link org.nd4j.autodiff.samediff.internal.memory.PlannedMemoryMgr})
+     * can use this as a hook
+     */
+    default void executionDone() {
+        //No op by default
+    }
+
     /**
      * Close the session memory manager and clean up any memory / resources, if any
      */
@@ -154,6 +154,12 @@ public class TrainingSession extends InferenceSession {
         return loss;
     }
 
+    @Override
+    protected boolean canExecuteConcurrently(SameDiffOp op) {
+        //Gradient application modifies the parameters in-place when the gradient is calculated - always execute sequentially
+        return false;
+    }
+
     @Override
     public INDArray[] getOutputs(Pair<SameDiffOp, OpContext> opPair, FrameIter outputFrameIter, Set<VarId> opInputs, Set<VarId> allIterInputs,
                                  Set<String> constAndPhInputs, List<Listener> listeners, At at, MultiDataSet batch, Set<String> allReqVariables) {
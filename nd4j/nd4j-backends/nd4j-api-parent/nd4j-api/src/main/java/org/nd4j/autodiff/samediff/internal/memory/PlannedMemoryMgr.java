@@ -0,0 +1,339 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.internal.memory;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.autodiff.samediff.internal.SessionMemMgr;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.shape.LongShapeDescriptor;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.common.util.ArrayUtil;
+
+import java.util.*;
+
+/**
+ * A memory manager for fixed-shape inference, that pre-plans the memory for all intermediate arrays.<br>
+ * The first execution records the sequence of allocations and releases performed by the session. From this, the
+ * lifetime of every array is known, and each array that is released during execution is assigned an offset in a single
+ * preallocated buffer (arena) per datatype, such that arrays with overlapping lifetimes never share memory.
+ * Subsequent executions return views of the arena that are created once, hence no memory is allocated for
+ * intermediate arrays.<br>
+ * Detached allocations (arrays that may be returned to the user) and arrays that were not released during the recorded
+ * execution are never placed in the arena, and are allocated as normal.<br>
+ * During planned executions, the n-th allocation must have the same datatype, order, shape and detached flag as the
+ * n-th recorded allocation, and must happen after the same number of releases. Each planned array must also be released
+ * between the same two allocations as when the plan was recorded. On the first mismatch (for example, due to different
+ * input shapes or requested outputs) the manager falls back to standard allocation for the remainder of the execution,
+ * and a new plan is recorded for the next execution. If any arena view is still in use at that point, the arenas are
+ * not closed, and their memory is released by the garbage collector once the views are no longer referenced.
+ */
+@Slf4j
+public class PlannedMemoryMgr extends AbstractMemoryMgr implements SessionMemMgr {
+
+    private static final long ALIGNMENT_BYTES = 64;
+
+    protected enum Mode {RECORD, PLANNED, FALLBACK}
+
+    @Getter
+    protected Mode mode = Mode.RECORD;
+
+    protected List<Allocation> allocations = new ArrayList<>();                   //In order of allocation
+    protected Map<INDArray, Allocation> live = new IdentityHashMap<>();           //Arrays that have not yet been released
+    protected Set<INDArray> unplanned = Collections.newSetFromMap(new IdentityHashMap<INDArray, Boolean>());
+    protected Map<DataType, INDArray> arenas = new HashMap<>();
+    protected int allocCount;
+    protected int releaseCount;
+    protected int plannedReleases;
+
+    /**
+     * Total size of the arenas, in bytes - i.e., the peak memory required for intermediate arrays
+     */
+    @Getter
+    protected long arenaBytes;
+    /**
+     * Total size of all planned arrays in bytes - i.e., the memory that would be required without any reuse
+     */
+    @Getter
+    protected long plannedArrayBytes;
+    @Getter
+    protected int numPlannedArrays;
+    @Getter
+    protected int numUnplannedArrays;
+
+    @Override
+    public INDArray allocate(boolean detached, DataType dataType, long... shape) {
+        return allocate(detached, LongShapeDescriptor.fromShape(shape, dataType));
+    }
+
+    @Override
+    public INDArray allocate(boolean detached, LongShapeDescriptor descriptor) {
+        if (descriptor.isEmpty()) {
+            INDArray ret = Nd4j.create(descriptor);
+            return detached ? ret.detach() : ret;
+        }
+
+        if (mode == Mode.RECORD) {
+            INDArray arr = Nd4j.createUninitializedDetached(descriptor.dataType(), descriptor.getOrder(), descriptor.getShape());
+            Allocation a = new Allocation(descriptor, detached, allocCount++, releaseCount);
+            allocations.add(a);
+            live.put(arr, a);
+            return arr;
+        } else if (mode == Mode.PLANNED) {
+            Allocation a = allocCount < allocations.size() ? allocations.get(allocCount) : null;
+            if (a != null && a.releasesBefore == releaseCount && a.matches(detached, descriptor)) {
+                allocCount++;
+                INDArray arr = a.view;
+                if (arr == null) {
+                    //Not planned - i.e., array is detached or is not released during execution
+                    arr = Nd4j.createUninitializedDetached(descriptor.dataType(), descriptor.getOrder(), descriptor.getShape());
+                    unplanned.add(arr);
+                }
+                live.put(arr, a);
+                return arr;
+            }
+            fallback("allocation of " + descriptor);
+        }
+
+        INDArray arr = Nd4j.createUninitializedDetached(descriptor.dataType(), descriptor.getOrder(), descriptor.getShape());
+        unplanned.add(arr);
+        return arr;
+    }
+
+    @Override
+    public void release(@NonNull INDArray array) {
+        Allocation a = live.remove(array);
+        if (mode == Mode.RECORD) {
+            if (a != null) {
+                a.releasedAfter = allocCount;
+                releaseCount++;
+            }
+        } else if (mode == Mode.PLANNED && a != null) {
+            //Arrays may be released in a different order within a group of releases, but each array must be released
+            // between the same two allocations as when the plan was recorded
+            if (a.releasedAfter != allocCount) {
+                fallback("release of array with shape " + Arrays.toString(array.shape()));
+            } else {
+                releaseCount++;
+            }
+        }
+
+        if (a != null && a.view == array) {
+            //Arena view - memory is managed by the plan
+            return;
+        }
+        unplanned.remove(array);
+        if (!array.wasClosed() && array.closeable()) {
+            array.close();
+        }
+    }
+
+    @Override
+    public void executionDone() {
+        if (mode == Mode.RECORD) {
+            plan();
+        } else if (mode == Mode.PLANNED && (allocCount != allocations.size() || releaseCount != plannedReleases)) {
+            fallback("end of execution after " + allocCount + " of " + allocations.size() + " planned allocations");
+        }
+
+        if (mode == Mode.FALLBACK) {
+            //Record a new plan on the next execution. Arena views that were not released may still be in use (for
+            // example, returned to the user as a non-detached array), in which case the arenas must not be closed
+            boolean viewsInUse = false;
+            for (Map.Entry<INDArray, Allocation> e : live.entrySet()) {
+                if (e.getValue().view == e.getKey()) {
+                    viewsInUse = true;
+                    break;
+                }
+            }
+            if (viewsInUse)
+                log.debug("Arena views still in use after fallback: arenas will be released by the garbage collector");
+            closeArenas(!viewsInUse);
+            mode = Mode.RECORD;
+        }
+        if (mode == Mode.RECORD)
+            allocations = new ArrayList<>();
+        live.clear();
+        unplanned.clear();
+        allocCount = 0;
+        releaseCount = 0;
+    }
+
+    protected void fallback(String reason) {
+        log.debug("Allocations do not match memory plan ({}): falling back to standard allocation for this execution", reason);
+        mode = Mode.FALLBACK;
+    }
+
+    /**
+     * Assign each released array an offset in the arena for its datatype, using greedy-by-size placement: the largest
+     * arrays are placed first, each at the lowest offset that does not overlap any already placed array that is live
+     * at the same time.
+     */
+    protected void plan() {
+        plannedReleases = releaseCount;
+        Map<DataType, List<Allocation>> byType = new HashMap<>();
+        for (Allocation a : allocations) {
+            if (a.releasedAfter < 0 || a.detached) {
+                numUnplannedArrays++;
+                continue;
+            }
+            DataType dt = a.descriptor.dataType();
+            if (!byType.containsKey(dt))
+                byType.put(dt, new ArrayList<Allocation>());
+            byType.get(dt).add(a);
+        }
+
+        for (Map.Entry<DataType, List<Allocation>> e : byType.entrySet()) {
+            DataType dt = e.getKey();
+            long align = Math.max(1, ALIGNMENT_BYTES / dt.width());
+            List<Allocation> list = e.getValue();
+            Collections.sort(list, new Comparator<Allocation>() {
+                @Override
+                public int compare(Allocation a1, Allocation a2) {
+                    int c = Long.compare(a2.length, a1.length);
+                    return c != 0 ? c : Integer.compare(a1.index, a2.index);
+                }
+            });
+
+            List<Allocation> placed = new ArrayList<>();
+            long arenaLength = 0;
+            for (Allocation a : list) {
+                List<Allocation> overlapping = new ArrayList<>();
+                for (Allocation p : placed) {
+                    if (a.index < p.releasedAfter && p.index < a.releasedAfter)
+                        overlapping.add(p);
+                }
+                Collections.sort(overlapping, new Comparator<Allocation>() {
+                    @Override
+                    public int compare(Allocation a1, Allocation a2) {
+                        return Long.compare(a1.offset, a2.offset);
+                    }
+                });
+
+                long offset = 0;
+                for (Allocation p : overlapping) {
+                    if (offset + a.length <= p.offset)
+                        break;
+                    offset = Math.max(offset, roundUp(p.offset + p.length, align));
+                }
+                a.offset = offset;
+                placed.add(a);
+                arenaLength = Math.max(arenaLength, offset + a.length);
+                plannedArrayBytes += a.length * dt.width();
+            }
+
+            INDArray arena = Nd4j.createUninitializedDetached(dt, arenaLength);
+            arenas.put(dt, arena);
+            arenaBytes += arenaLength * dt.width();
+            for (Allocation a : list) {
+                long[] shape = a.descriptor.getShape();
+                char order = a.descriptor.getOrder();
+                a.view = Nd4j.create(arena.data(), shape, Nd4j.getStrides(shape, order), a.offset, order, dt);
+            }
+            numPlannedArrays += list.size();
+        }
+
+        mode = Mode.PLANNED;
+        log.debug("Created memory plan: {} arrays in {} bytes of arenas ({} bytes without reuse), {} unplanned arrays",
+                numPlannedArrays, arenaBytes, plannedArrayBytes, numUnplannedArrays);
+    }
+
+    protected static long roundUp(long value, long multiple) {
+        return ((value + multiple - 1) / multiple) * multiple;
+    }
+
+    protected void closeArenas(boolean close) {
+        if (close) {
+            for (INDArray arena : arenas.values()) {
+                if (arena.closeable())
+                    arena.close();
+            }
+        }
+        arenas.clear();
+        arenaBytes = 0;
+        plannedArrayBytes = 0;
+        numPlannedArrays = 0;
+        numUnplannedArrays = 0;
+    }
+
+    /**
+     * @return True if a memory plan has been created and is currently in use
+     */
+    public boolean hasPlan() {
+        return mode == Mode.PLANNED;
+    }
+
+    /**
+     * @return A summary of the current memory plan, if any
+     */
+    public String summary() {
+        if (!hasPlan()) {
+            return "No memory plan";
+        }
+        StringBuilder sb = new StringBuilder();
+        String format = "%-25s%-20s";
+        sb.append(String.format(format, "Planned arrays:", numPlannedArrays)).append("\n")
+                .append(String.format(format, "Unplanned arrays:", numUnplannedArrays)).append(" (not released during execution)\n")
+                .append(String.format(format, "Arena size (bytes):", arenaBytes)).append("\n")
+                .append(String.format(format, "Without reuse (bytes):", plannedArrayBytes)).append("\n");
+        for (Map.Entry<DataType, INDArray> e : arenas.entrySet()) {
+            sb.append(String.format(format, "  Arena " + e.getKey() + ":", e.getValue().length() * e.getKey().width())).append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        closeArenas(true);
+        allocations = new ArrayList<>();
+        live.clear();
+        unplanned.clear();
+        allocCount = 0;
+        releaseCount = 0;
+        mode = Mode.RECORD;
+    }
+
+    protected static class Allocation {
+        protected final LongShapeDescriptor descriptor;
+        protected final boolean detached;
+        protected final long length;
+        protected final int index;              //Index of this allocation in the execution
+        protected final int releasesBefore;     //Number of planned array releases before this allocation
+        protected int releasedAfter = -1;       //Number of allocations before this array was released; -1 if not released
+        protected long offset;
+        protected INDArray view;
+
+        protected Allocation(LongShapeDescriptor descriptor, boolean detached, int index, int releasesBefore) {
+            this.descriptor = descriptor;
+            this.detached = detached;
+            this.length = descriptor.getShape().length == 0 ? 1 : ArrayUtil.prodLong(descriptor.getShape());
+            this.index = index;
+            this.releasesBefore = releasesBefore;
+        }
+
+        protected boolean matches(boolean detached, LongShapeDescriptor d) {
+            return this.detached == detached && descriptor.dataType() == d.dataType() && descriptor.getOrder() == d.getOrder() &&
+                    Arrays.equals(descriptor.getShape(), d.getShape());
+        }
+    }
+}
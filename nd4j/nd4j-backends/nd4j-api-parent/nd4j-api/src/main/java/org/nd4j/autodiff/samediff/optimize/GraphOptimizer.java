@@ -51,6 +51,33 @@ public class GraphOptimizer {
         );
     }
 
+    /**
+     * Operator fusion optimizations: these replace common chains of ops (matmul + bias + relu, conv2d + bias,
+     * conv2d + batch norm, chains of elementwise ops) with a single equivalent op, reducing the number of ops executed
+     * and the number of intermediate arrays. Some of these fold variables into new constants, hence they are intended
+     * for inference graphs - see {@link #inferenceOptimizations()}
+     */
+    public static List<OptimizerSet> fusionOptimizations() {
+        return Arrays.<OptimizerSet>asList(
+                new MatMulFunctionOptimizations(),
+                new ConvolutionFunctionOptimizations(),
+                new ElementwiseFunctionOptimizations()
+        );
+    }
+
+    /**
+     * The default optimizations ({@link #defaultOptimizations()}), common subexpression elimination
+     * ({@link CommonSubexpressionOptimizations}) and the operator fusion optimizations ({@link #fusionOptimizations()}),
+     * followed by a final pass to remove any constants that are no longer used
+     */
+    public static List<OptimizerSet> inferenceOptimizations() {
+        List<OptimizerSet> l = new ArrayList<>(defaultOptimizations());
+        l.add(new CommonSubexpressionOptimizations());
+        l.addAll(fusionOptimizations());
+        l.add(new UnusedFunctionOptimizations());
+        return l;
+    }
+
     public static SameDiff optimize(SameDiff graph, String... requiredOutputs){
         return optimize(graph, Arrays.asList(requiredOutputs));
     }
@@ -63,15 +90,31 @@ public class GraphOptimizer {
         return optimize(graph, requiredOutputs, optimizations, null);
     }
 
+    /**
+     * Optimize the graph for calculating the specified outputs. Ops and variables (other than placeholders) that are
+     * not required to calculate the outputs are removed before the optimizations are applied.
+     *
+     * @param graph           Graph to optimize. Not modified.
+     * @param requiredOutputs Outputs that must be available in the optimized graph. If null or empty, no ops are removed
+     *                        as unused
+     * @param optimizations   Optimizations to apply
+     * @param debugger        Optional debugger, may be null
+     * @return The optimized graph
+     */
     public static SameDiff optimize(SameDiff graph, List<String> requiredOutputs, List<OptimizerSet> optimizations, OptimizationDebugger debugger){
-        //TODO Use required outputs - strip unnecessary graph components
-
         SameDiff sd = graph.dup();
 
+        if(requiredOutputs != null && !requiredOutputs.isEmpty()) {
+            int removed = OptimizationUtils.removeUnreachable(sd, requiredOutputs);
+            if(removed > 0) {
+                log.info("Removed {} ops not required to calculate outputs {}", removed, requiredOutputs);
+            }
+        }
+
         ArrayHolder cArr = sd.getConstantArrays();
         ArrayHolder vArr = sd.getVariablesArrays();
 
-        OptimizationHelper h = new OptimizationHelper(graph, new OptimizationConfig());    //TODO defaults for config
+        OptimizationHelper h = new OptimizationHelper(graph, new OptimizationConfig(), requiredOutputs);    //TODO defaults for config
 
         for( int i=0; i<3; i++ ) {  //Run multiple times - one run isn't enough, as some more optimizations may need to be applied to the output of earlier optimizations
             for (OptimizerSet s : optimizations) {
@@ -89,6 +132,7 @@ public class GraphOptimizer {
 
                         boolean applied = o.checkAndApply(sd, h, op, cArr, vArr);
                         if(applied) {
+                            sd.markGraphModified();
                             log.info("Operation was applied: {}", o);
                         }
 
@@ -31,22 +31,35 @@ import org.nd4j.common.base.Preconditions;
 import org.nd4j.common.function.Supplier;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
-import java.util.Properties;
+import java.util.*;
 
 public class OptimizationHelper {
 
     private final SameDiff originalGraph;
     @Getter
     private final Properties properties;
+    /**
+     * Names of the variables that are required as outputs of the optimized graph. These variables must not be removed
+     * by any optimization (for example, when fusing the op that produces them into another op)
+     */
+    @Getter
+    private final Set<String> requiredOutputs;
     private boolean setConstantHolder = false;
     private boolean setVariableHolder = false;
 
     public OptimizationHelper(SameDiff originalGraph, Properties properties){
+        this(originalGraph, properties, null);
+    }
+
+    public OptimizationHelper(SameDiff originalGraph, Properties properties, Collection<String> requiredOutputs){
         this.originalGraph = originalGraph;
         this.properties = properties;
+        this.requiredOutputs = requiredOutputs == null ? Collections.<String>emptySet() : new HashSet<>(requiredOutputs);
     }
 
     public OptimizationHelper arrayRecoveryFunction(String arrayName, Supplier<INDArray> fn){
+        if(!originalGraph.hasVariable(arrayName))
+            return this;        //Array was created during optimization (for example, folded weights) - nothing to recover
         SDVariable v = originalGraph.getVariable(arrayName);
         Preconditions.checkState(v.getVariableType() == VariableType.VARIABLE || v.getVariableType() == VariableType.CONSTANT,
                 "Can only set an array recovery function for a variable or a constant");
@@ -0,0 +1,244 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.optimize.optimizations;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.ArrayHolder;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.autodiff.samediff.internal.Variable;
+import org.nd4j.autodiff.samediff.optimize.OptimizationHelper;
+import org.nd4j.autodiff.samediff.optimize.Optimizer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.BaseOp;
+import org.nd4j.linalg.api.ops.DynamicCustomOp;
+import org.nd4j.linalg.api.ops.RandomOp;
+import org.nd4j.linalg.api.ops.impl.layers.ExternalErrorsFunction;
+
+import java.util.*;
+
+/**
+ * Common subexpression elimination: ops that are structurally identical (same op type, same inputs and same
+ * arguments) always produce the same outputs, hence only one of them needs to be executed. Small constants with
+ * identical values are also merged, so that duplicated subtrees (common in imported graphs) can be deduplicated.<br>
+ * Random ops, control flow ops and ops with control dependencies are never merged.
+ */
+public class CommonSubexpressionOptimizations extends BaseOptimizerSet {
+
+    /**
+     * Maximum length of constants to compare in {@link DeduplicateConstants}. Duplicated constants in imported graphs
+     * are usually shapes, axes and scalars
+     */
+    public static final long MAX_DEDUPLICATE_CONSTANT_LENGTH = 1024;
+
+    /**
+     * Merge constant inputs of an op with other constants that have the same datatype, shape and values.<br>
+     * Candidate constants are bucketed by datatype, shape and content hash once per optimizer pass, so only constants
+     * in the same bucket are compared
+     */
+    public static class DeduplicateConstants implements Optimizer {
+        private SameDiff indexed;
+        private Map<ConstantKey, TreeSet<String>> buckets;
+
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            List<String> inputs = op.getInputsToOp();
+            if(inputs == null)
+                return false;
+            if(indexed != sd)
+                buildIndex(sd, helper);
+
+            boolean anyMerged = false;
+            for(String s : new ArrayList<>(inputs)){
+                Variable v = sd.getVariables().get(s);
+                if(v == null || !isMergeableConstant(sd, helper, v))
+                    continue;
+                INDArray arr = v.getVariable().getArr();
+                TreeSet<String> bucket = buckets.get(ConstantKey.of(arr));
+                if(bucket == null)
+                    continue;
+                //Always keep the constant with the lowest name, so merging is deterministic
+                for(String otherName : bucket.headSet(s, false)){
+                    Variable other = sd.getVariables().get(otherName);
+                    if(other == null || !isMergeableConstant(sd, helper, other))
+                        continue;
+                    INDArray otherArr = other.getVariable().getArr();
+                    if(otherArr.dataType() == arr.dataType() && Arrays.equals(otherArr.shape(), arr.shape()) && otherArr.equalsWithEps(arr, 0.0)){
+                        OptimizationUtils.mergeVariableInto(sd, s, otherName);
+                        OptimizationUtils.removeVariable(sd, s);
+                        constantArrays.removeArray(s);
+                        bucket.remove(s);
+                        anyMerged = true;
+                        break;
+                    }
+                }
+            }
+            return anyMerged;
+        }
+
+        protected void buildIndex(SameDiff sd, OptimizationHelper helper){
+            indexed = sd;
+            buckets = new HashMap<>();
+            for(Variable v : sd.getVariables().values()){
+                if(!isMergeableConstant(sd, helper, v))
+                    continue;
+                ConstantKey k = ConstantKey.of(v.getVariable().getArr());
+                if(!buckets.containsKey(k))
+                    buckets.put(k, new TreeSet<String>());
+                buckets.get(k).add(v.getName());
+            }
+        }
+
+        protected static boolean isMergeableConstant(SameDiff sd, OptimizationHelper helper, Variable v){
+            if(v.getVariable().getVariableType() != VariableType.CONSTANT || helper.getRequiredOutputs().contains(v.getName()))
+                return false;
+            if(v.getControlDeps() != null && !v.getControlDeps().isEmpty() || v.getControlDepsForOp() != null && !v.getControlDepsForOp().isEmpty()
+                    || v.getControlDepsForVar() != null && !v.getControlDepsForVar().isEmpty())
+                return false;
+            INDArray arr = v.getVariable().getArr();
+            return arr != null && !arr.isEmpty() && arr.length() <= MAX_DEDUPLICATE_CONSTANT_LENGTH;
+        }
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    protected static class ConstantKey {
+        private final DataType dataType;
+        private final long[] shape;
+        private final int hash;
+
+        protected static ConstantKey of(INDArray arr){
+            //String arrays are only bucketed by shape
+            return new ConstantKey(arr.dataType(), arr.shape(), arr.dataType() == DataType.UTF8 ? 0 : arr.hashCode());
+        }
+    }
+
+    /**
+     * Remove an op if an identical op with the same inputs exists, using the outputs of that op instead
+     */
+    public static class DeduplicateOps implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            List<String> inputs = op.getInputsToOp();
+            if(inputs == null || inputs.isEmpty() || !canMerge(sd, helper, op, true))
+                return false;
+
+            //Any identical op must also be a consumer of the first input
+            Variable in = sd.getVariables().get(inputs.get(0));
+            for(String s : new ArrayList<>(in.getInputsForOp())){
+                SameDiffOp other = sd.getOps().get(s);
+                if(other == null || other == op || !inputs.equals(other.getInputsToOp()) || !canMerge(sd, helper, other, false)
+                        || !equivalent(sd, op, other))
+                    continue;
+
+                List<String> outputs = op.getOutputsOfOp();
+                List<String> otherOutputs = other.getOutputsOfOp();
+                for( int i=0; i<outputs.size(); i++ ){
+                    OptimizationUtils.mergeVariableInto(sd, outputs.get(i), otherOutputs.get(i));
+                }
+                OptimizationUtils.removeOp(sd, op.getName());
+                for(String o : outputs){
+                    OptimizationUtils.removeVariable(sd, o);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @param remove If true: check if the op can be removed. Otherwise: check if the outputs of the op can be used
+         *               in place of the outputs of a removed op
+         */
+        protected static boolean canMerge(SameDiff sd, OptimizationHelper helper, SameDiffOp op, boolean remove){
+            DifferentialFunction df = op.getOp();
+            if(df instanceof RandomOp || df instanceof ExternalErrorsFunction || OptimizationUtils.hasControlDependencies(op))
+                return false;
+            String pkg = df.getClass().getPackage().getName();
+            if(pkg.contains(".random") || pkg.contains(".controlflow") || pkg.contains(".tensorops"))
+                return false;       //Random ops (including custom ones) aren't deterministic; control flow ops have frame semantics
+
+            List<String> outputs = op.getOutputsOfOp();
+            if(outputs == null || outputs.isEmpty())
+                return false;
+            for(String s : outputs){
+                Variable v = sd.getVariables().get(s);
+                if(v.getControlDeps() != null && !v.getControlDeps().isEmpty() || v.getControlDepsForOp() != null && !v.getControlDepsForOp().isEmpty()
+                        || v.getControlDepsForVar() != null && !v.getControlDepsForVar().isEmpty())
+                    return false;
+                if(remove && (helper.getRequiredOutputs().contains(s) || sd.getLossVariables().contains(s)))
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return True if the two ops (with identical inputs) will always produce the same outputs
+         */
+        protected static boolean equivalent(SameDiff sd, SameDiffOp op1, SameDiffOp op2){
+            DifferentialFunction d1 = op1.getOp();
+            DifferentialFunction d2 = op2.getOp();
+            if(d1.getClass() != d2.getClass() || !Objects.equals(d1.opName(), d2.opName()) || op1.getOutputsOfOp().size() != op2.getOutputsOfOp().size())
+                return false;
+            for( int i=0; i<op1.getOutputsOfOp().size(); i++ ){
+                if(sd.getVariable(op1.getOutputsOfOp().get(i)).dataType() != sd.getVariable(op2.getOutputsOfOp().get(i)).dataType())
+                    return false;
+            }
+
+            if(d1 instanceof DynamicCustomOp){
+                DynamicCustomOp c1 = (DynamicCustomOp) d1;
+                DynamicCustomOp c2 = (DynamicCustomOp) d2;
+                if(!Arrays.equals(c1.iArgs(), c2.iArgs()) || !Arrays.equals(c1.tArgs(), c2.tArgs()) || !Arrays.equals(c1.bArgs(), c2.bArgs())
+                        || !Arrays.equals(c1.dArgs(), c2.dArgs()) || !Arrays.equals(c1.sArgs(), c2.sArgs()))
+                    return false;
+            } else if(d1 instanceof BaseOp){
+                BaseOp o1 = (BaseOp) d1;
+                BaseOp o2 = (BaseOp) d2;
+                if(o1.opNum() != o2.opNum() || !Arrays.deepEquals(o1.extraArgs(), o2.extraArgs()) || !Arrays.equals(o1.getDimensions(), o2.getDimensions())
+                        || !Objects.equals(o1.getScalarValue(), o2.getScalarValue()))
+                    return false;
+            } else {
+                return false;       //SameDiff function invocations etc: unknown semantics
+            }
+
+            //Op-specific configuration not stored in the args above (for example, keepDims for reductions)
+            Map<String,Object> p1;
+            Map<String,Object> p2;
+            try {
+                p1 = d1.propertiesForFunction();
+                p2 = d2.propertiesForFunction();
+            } catch (Throwable t){
+                return false;
+            }
+            if(p1 == null || p2 == null || p1.size() != p2.size())
+                return false;
+            for(Map.Entry<String,Object> e : p1.entrySet()){
+                if(!Objects.deepEquals(e.getValue(), p2.get(e.getKey())))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.optimize.optimizations;
+
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.ArrayHolder;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.autodiff.samediff.optimize.OptimizationHelper;
+import org.nd4j.autodiff.samediff.optimize.Optimizer;
+import org.nd4j.enums.WeightsFormat;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.broadcast.BiasAdd;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.BatchNorm;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.Conv2D;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.Conv2DConfig;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.AddOp;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fuses the ops that commonly follow 2d convolutions into the convolution itself, so no intermediate array is required
+ * for them:<br>
+ * [conv2d(x,W) -> bias add] becomes conv2d(x,W,b), and [conv2d(x,W,b) -> batchNorm] becomes conv2d(x,W',b') where the
+ * (inference mode) batch normalization is folded into new constant weights and bias.<br>
+ * Note that these optimizations require the weights and bias (and batch norm parameters) to be constants or variables;
+ * when variables are folded the resulting parameters are constants, hence the optimized graph is intended for inference.
+ */
+public class ConvolutionFunctionOptimizations extends BaseOptimizerSet {
+
+    /**
+     * Fuse [conv2d(x,W) -> biasAdd(b)] into conv2d(x,W,b). For NHWC convolutions, [conv2d(x,W) -> add(b)] is also
+     * fused, as this broadcasts over the channels dimension
+     */
+    public static class FoldBiasAddIntoConv2d implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            if(!(op.getOp() instanceof Conv2D) || op.getInputsToOp().size() != 2 || OptimizationUtils.hasControlDependencies(op))
+                return false;
+
+            Conv2D conv = (Conv2D) op.getOp();
+            Conv2DConfig config = conv.getConfig();
+            String w = op.getInputsToOp().get(1);
+            if(config == null || !OptimizationUtils.isParameter(sd, w))
+                return false;
+
+            String convOut = op.getOutputsOfOp().get(0);
+            SameDiffOp next = OptimizationUtils.singleConsumer(sd, helper, convOut);
+            if(next == null || next.getInputsToOp().size() != 2 || OptimizationUtils.hasControlDependencies(next))
+                return false;
+
+            DifferentialFunction df = next.getOp();
+            List<String> in = next.getInputsToOp();
+            String b;
+            if(df instanceof BiasAdd && in.get(0).equals(convOut) && isNchw((BiasAdd) df) != config.isNHWC()){
+                b = in.get(1);
+            } else if(df instanceof AddOp && config.isNHWC()){
+                b = in.get(0).equals(convOut) ? in.get(1) : in.get(0);
+            } else {
+                return false;
+            }
+
+            long outChannels = outputChannels(sd.getVariable(w).getArr(), config);
+            if(!OptimizationUtils.isParameter(sd, b))
+                return false;
+            INDArray bArr = sd.getVariable(b).getArr();
+            if(bArr.rank() != 1 || bArr.length() != outChannels || bArr.dataType() != sd.getVariable(w).dataType())
+                return false;
+
+            Conv2D fused = new Conv2D(sd, sd.getVariable(op.getInputsToOp().get(0)), sd.getVariable(w), sd.getVariable(b), config);
+            OptimizationUtils.replaceOps(sd, Arrays.asList(op, next), fused, next.getOutputsOfOp().get(0));
+            return true;
+        }
+    }
+
+    /**
+     * Fold [conv2d(x,W,b) -> batchNorm(mean,var,gamma,beta)] into conv2d(x,W',b'), where<br>
+     * scale = gamma / sqrt(var + eps), W' = W * scale (per output channel), b' = (b - mean) * scale + beta
+     */
+    public static class FoldBatchNormIntoConv2d implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            if(!(op.getOp() instanceof Conv2D) || OptimizationUtils.hasControlDependencies(op))
+                return false;
+
+            Conv2D conv = (Conv2D) op.getOp();
+            Conv2DConfig config = conv.getConfig();
+            List<String> convIn = op.getInputsToOp();
+            if(config == null || !OptimizationUtils.isParameter(sd, convIn.get(1)) || (convIn.size() > 2 && !OptimizationUtils.isParameter(sd, convIn.get(2))))
+                return false;
+
+            SameDiffOp next = OptimizationUtils.singleConsumer(sd, helper, op.getOutputsOfOp().get(0));
+            if(next == null || !(next.getOp() instanceof BatchNorm))
+                return false;
+
+            BatchNorm bn = (BatchNorm) next.getOp();
+            List<String> bnIn = next.getInputsToOp();
+            int expInputs = 3 + (bn.isApplyGamma() ? 1 : 0) + (bn.isApplyBeta() ? 1 : 0);
+            if(bnIn.size() != expInputs || !bnIn.get(0).equals(op.getOutputsOfOp().get(0)))
+                return false;
+            for(int i = 1; i < bnIn.size(); i++) {
+                if (!OptimizationUtils.isParameter(sd, bnIn.get(i)))
+                    return false;
+            }
+
+            //Batch norm must be applied over the channels dimension. Default axis (none specified) is the last dimension
+            int[] axis = bn.getJaxis();
+            int channelAxis = config.isNHWC() ? 3 : 1;
+            boolean axisOk = (axis == null || axis.length == 0) ? config.isNHWC() : (axis.length == 1 && (axis[0] == channelAxis || (config.isNHWC() && axis[0] == -1)));
+            if(!axisOk)
+                return false;
+
+            SDVariable wVar = sd.getVariable(convIn.get(1));
+            INDArray w = wVar.getArr();
+            DataType dt = w.dataType();
+            if(!dt.isFPType())
+                return false;
+            long outChannels = outputChannels(w, config);
+            INDArray mean = sd.getVariable(bnIn.get(1)).getArr().castTo(dt);
+            INDArray var = sd.getVariable(bnIn.get(2)).getArr().castTo(dt);
+            INDArray gamma = bn.isApplyGamma() ? sd.getVariable(bnIn.get(3)).getArr().castTo(dt) : null;
+            INDArray beta = bn.isApplyBeta() ? sd.getVariable(bnIn.get(bn.isApplyGamma() ? 4 : 3)).getArr().castTo(dt) : null;
+            if(mean.length() != outChannels || var.length() != outChannels || (gamma != null && gamma.length() != outChannels) || (beta != null && beta.length() != outChannels))
+                return false;
+
+            INDArray scale = Transforms.sqrt(var.reshape(outChannels).add(bn.getEpsilon()), false).rdivi(1.0);
+            if(gamma != null)
+                scale.muli(gamma.reshape(outChannels));
+
+            long[] scaleShape = config.getWeightsFormat() == WeightsFormat.YXIO ? new long[]{1, 1, 1, outChannels} : new long[]{outChannels, 1, 1, 1};
+            INDArray newW = w.mul(scale.reshape(scaleShape));
+            INDArray newB = convIn.size() > 2 ? sd.getVariable(convIn.get(2)).getArr().castTo(dt).reshape(outChannels).dup() : Nd4j.zeros(dt, outChannels);
+            newB.subi(mean.reshape(outChannels)).muli(scale);
+            if(beta != null)
+                newB.addi(beta.reshape(outChannels));
+
+            SDVariable wFolded = sd.constant(sd.generateNewVarName(wVar.name() + "_bn_folded", 0), newW);
+            SDVariable bFolded = sd.constant(sd.generateNewVarName(next.getName() + "_bias_folded", 0), newB);
+            Conv2D fused = new Conv2D(sd, sd.getVariable(convIn.get(0)), wFolded, bFolded, config);
+            OptimizationUtils.replaceOps(sd, Arrays.asList(op, next), fused, next.getOutputsOfOp().get(0));
+            return true;
+        }
+    }
+
+    protected static boolean isNchw(BiasAdd biasAdd){
+        //Same default as the native op: NHWC if not specified
+        return biasAdd.numBArguments() > 0 && biasAdd.getBArgument(0);
+    }
+
+    protected static long outputChannels(INDArray weights, Conv2DConfig config){
+        return config.getWeightsFormat() == WeightsFormat.YXIO ? weights.size(3) : weights.size(0);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.optimize.optimizations;
+
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.ArrayHolder;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.autodiff.samediff.optimize.OptimizationHelper;
+import org.nd4j.autodiff.samediff.optimize.Optimizer;
+import org.nd4j.linalg.api.ops.BaseScalarOp;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarAdd;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarMultiplication;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.MulOp;
+import org.nd4j.linalg.api.ops.impl.transforms.strict.Sigmoid;
+import org.nd4j.linalg.api.ops.impl.transforms.strict.Swish;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fuses chains of elementwise ops into a single op where an equivalent single-pass op exists, so the data is read and
+ * written once instead of once per op in the chain:<br>
+ * [x + a + b] becomes [x + (a+b)], [x * a * b] becomes [x * (a*b)] (for scalars a, b) and [x * sigmoid(x)] becomes swish(x)
+ */
+public class ElementwiseFunctionOptimizations extends BaseOptimizerSet {
+
+    /**
+     * Fuse chained scalar add and scalar multiply ops: [scalarAdd(a) -> scalarAdd(b)] into scalarAdd(a+b), and
+     * [scalarMul(a) -> scalarMul(b)] into scalarMul(a*b)
+     */
+    public static class FuseChainedScalarOps implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            DifferentialFunction df = op.getOp();
+            if(!(df instanceof ScalarAdd || df instanceof ScalarMultiplication) || op.getInputsToOp().size() != 1 || OptimizationUtils.hasControlDependencies(op))
+                return false;
+
+            SameDiffOp next = OptimizationUtils.singleConsumer(sd, helper, op.getOutputsOfOp().get(0));
+            if(next == null || next.getOp().getClass() != df.getClass() || next.getInputsToOp().size() != 1)
+                return false;
+
+            SDVariable in = sd.getVariable(op.getInputsToOp().get(0));
+            if(!in.dataType().isFPType())
+                return false;       //Integer types: intermediate results may be truncated, so combining the scalars is not equivalent
+
+            double s1 = ((BaseScalarOp) df).scalar().getDouble(0);
+            double s2 = ((BaseScalarOp) next.getOp()).scalar().getDouble(0);
+            DifferentialFunction fused;
+            if(df instanceof ScalarAdd){
+                fused = new ScalarAdd(sd, in, s1 + s2);
+            } else {
+                fused = new ScalarMultiplication(sd, in, s1 * s2);
+            }
+            OptimizationUtils.replaceOps(sd, Arrays.asList(op, next), fused, next.getOutputsOfOp().get(0));
+            return true;
+        }
+    }
+
+    /**
+     * Fuse [x * sigmoid(x)] into swish(x)
+     */
+    public static class FuseSwish implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            if(!(op.getOp() instanceof Sigmoid) || op.getInputsToOp().size() != 1 || OptimizationUtils.hasControlDependencies(op))
+                return false;
+
+            String x = op.getInputsToOp().get(0);
+            String sigm = op.getOutputsOfOp().get(0);
+            SameDiffOp next = OptimizationUtils.singleConsumer(sd, helper, sigm);
+            if(next == null || !(next.getOp() instanceof MulOp))
+                return false;
+
+            List<String> in = next.getInputsToOp();
+            if(in.size() != 2 || !((in.get(0).equals(x) && in.get(1).equals(sigm)) || (in.get(0).equals(sigm) && in.get(1).equals(x))))
+                return false;
+
+            Swish fused = new Swish(sd, sd.getVariable(x));
+            OptimizationUtils.replaceOps(sd, Arrays.asList(op, next), fused, next.getOutputsOfOp().get(0));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.optimize.optimizations;
+
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.ArrayHolder;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.autodiff.samediff.optimize.OptimizationHelper;
+import org.nd4j.autodiff.samediff.optimize.Optimizer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.DynamicCustomOp;
+import org.nd4j.linalg.api.ops.impl.broadcast.BiasAdd;
+import org.nd4j.linalg.api.ops.impl.reduce.Mmul;
+import org.nd4j.linalg.api.ops.impl.scalar.RectifiedLinear;
+import org.nd4j.linalg.api.ops.impl.transforms.ReluLayer;
+import org.nd4j.linalg.api.ops.impl.transforms.custom.XwPlusB;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.AddOp;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fuses matrix multiplication with the ops that commonly follow it in dense layers, so that the output is computed in
+ * a single op instead of one op (and one intermediate array) per step:<br>
+ * [mmul(x,W) -> bias add] becomes xw_plus_b(x,W,b), and [xw_plus_b(x,W,b) -> relu] becomes relu_layer(x,W,b)<br>
+ * These optimizations are only applied when x is known to be rank 2, and W and b are constants or variables.
+ */
+public class MatMulFunctionOptimizations extends BaseOptimizerSet {
+
+    /**
+     * Fuse [mmul(x,W) -> biasAdd(b)] or [mmul(x,W) -> add(b)] into xw_plus_b(x,W,b)
+     */
+    public static class FuseMatMulBiasAdd implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            if(!(op.getOp() instanceof Mmul) || OptimizationUtils.hasControlDependencies(op))
+                return false;
+
+            Mmul mmul = (Mmul) op.getOp();
+            List<String> in = op.getInputsToOp();
+            if(in.size() != 2 || iArg(mmul, 0) != 0 || iArg(mmul, 2) != 0)
+                return false;       //Transpose of x or result is not supported by xw_plus_b
+            if(mmul.numTArguments() > 0 && (mmul.getTArgument(0) != 1.0 || (mmul.numTArguments() > 1 && mmul.getTArgument(1) != 0.0)))
+                return false;       //alpha != 1 or beta != 0
+            boolean transposeW = iArg(mmul, 1) != 0;
+
+            String x = in.get(0);
+            String w = in.get(1);
+            if(!OptimizationUtils.isParameter(sd, w) || sd.getVariable(w).getArr().rank() != 2 || OptimizationUtils.knownRank(sd, x) != 2)
+                return false;
+
+            SameDiffOp next = OptimizationUtils.singleConsumer(sd, helper, op.getOutputsOfOp().get(0));
+            if(next == null)
+                return false;
+
+            INDArray wArr = sd.getVariable(w).getArr();
+            String b = biasInput(sd, next, op.getOutputsOfOp().get(0), wArr.size(transposeW ? 0 : 1));
+            if(b == null)
+                return false;
+
+            //xw_plus_b requires all inputs to have the same floating point type
+            DataType dt = sd.getVariable(x).dataType();
+            if(!dt.isFPType() || wArr.dataType() != dt || sd.getVariable(b).dataType() != dt)
+                return false;
+
+            XwPlusB fused = new XwPlusB(sd, sd.getVariable(x), sd.getVariable(w), sd.getVariable(b));
+            if(transposeW)
+                fused.addIArgument(1);
+            OptimizationUtils.replaceOps(sd, Arrays.asList(op, next), fused, next.getOutputsOfOp().get(0));
+            return true;
+        }
+
+        /**
+         * @return The name of the bias input if the op adds a rank 1 parameter of the specified length to the input, or
+         * null otherwise
+         */
+        protected static String biasInput(SameDiff sd, SameDiffOp op, String input, long length){
+            DifferentialFunction df = op.getOp();
+            List<String> in = op.getInputsToOp();
+            if(in.size() != 2 || OptimizationUtils.hasControlDependencies(op))
+                return null;
+
+            String b;
+            if(df instanceof BiasAdd && in.get(0).equals(input)){
+                b = in.get(1);
+            } else if(df instanceof AddOp){
+                b = in.get(0).equals(input) ? in.get(1) : in.get(0);
+            } else {
+                return null;
+            }
+
+            if(!OptimizationUtils.isParameter(sd, b))
+                return null;
+            INDArray bArr = sd.getVariable(b).getArr();
+            return bArr.rank() == 1 && bArr.length() == length ? b : null;
+        }
+    }
+
+    /**
+     * Fuse [xw_plus_b(x,W,b) -> relu] into relu_layer(x,W,b)
+     */
+    public static class FuseXwPlusBRelu implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            //Exact class match: ReluLayer is a subclass of XwPlusB
+            if(op.getOp().getClass() != XwPlusB.class || OptimizationUtils.hasControlDependencies(op) || iArg((XwPlusB) op.getOp(), 0) != 0)
+                return false;
+
+            SameDiffOp next = OptimizationUtils.singleConsumer(sd, helper, op.getOutputsOfOp().get(0));
+            if(next == null || !(next.getOp() instanceof RectifiedLinear) || next.getInputsToOp().size() != 1)
+                return false;
+
+            double cutoff = ((RectifiedLinear) next.getOp()).scalar().getDouble(0);
+            List<String> in = op.getInputsToOp();
+            ReluLayer fused = new ReluLayer(sd, sd.getVariable(in.get(0)), sd.getVariable(in.get(1)), sd.getVariable(in.get(2)));
+            if(cutoff != 0.0)
+                fused.addTArgument(cutoff);
+            OptimizationUtils.replaceOps(sd, Arrays.asList(op, next), fused, next.getOutputsOfOp().get(0));
+            return true;
+        }
+    }
+
+    protected static long iArg(DynamicCustomOp op, int i){
+        return op.numIArguments() > i ? op.getIArgument(i) : 0;
+    }
+}
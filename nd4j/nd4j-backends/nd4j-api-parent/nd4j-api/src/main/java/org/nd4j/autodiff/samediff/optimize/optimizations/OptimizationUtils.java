@@ -21,13 +21,22 @@
 package org.nd4j.autodiff.samediff.optimize.optimizations;
 
 import lombok.NonNull;
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.SDVariable;
 import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
 import org.nd4j.autodiff.samediff.internal.SameDiffOp;
 import org.nd4j.autodiff.samediff.internal.Variable;
+import org.nd4j.autodiff.samediff.optimize.OptimizationHelper;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.ops.BaseReduceOp;
+import org.nd4j.linalg.api.ops.BaseScalarOp;
+import org.nd4j.linalg.api.ops.BaseTransformOp;
+import org.nd4j.linalg.api.ops.impl.broadcast.BiasAdd;
+import org.nd4j.linalg.api.ops.impl.reduce.Mmul;
+import org.nd4j.linalg.api.ops.impl.transforms.custom.XwPlusB;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 
 public class OptimizationUtils {
 
@@ -67,4 +76,222 @@ public class OptimizationUtils {
         sd.getVariables().remove(varToRemove);
     }
 
+    /**
+     * Get the op that is the only consumer of the specified variable, if the variable can be removed by fusing
+     * its producer op with its consumer op. This requires that the variable is used by exactly one op, is not a
+     * required output or loss variable, and has no control dependencies.
+     *
+     * @return The single op that uses the variable as an input, or null if the variable can't be fused away
+     */
+    public static SameDiffOp singleConsumer(@NonNull SameDiff sd, @NonNull OptimizationHelper helper, @NonNull String varName){
+        Variable v = sd.getVariables().get(varName);
+        if(v == null || helper.getRequiredOutputs().contains(varName) || sd.getLossVariables().contains(varName))
+            return null;
+        if(!isEmpty(v.getControlDeps()) || !isEmpty(v.getControlDepsForOp()) || !isEmpty(v.getControlDepsForVar()))
+            return null;
+        List<String> inputsFor = v.getInputsForOp();
+        if(inputsFor == null || inputsFor.size() != 1)
+            return null;
+        SameDiffOp consumer = sd.getOps().get(inputsFor.get(0));
+        if(consumer == null || hasControlDependencies(consumer) || Collections.frequency(consumer.getInputsToOp(), varName) != 1)
+            return null;
+        return consumer;
+    }
+
+    public static boolean hasControlDependencies(@NonNull SameDiffOp op){
+        return !isEmpty(op.getControlDeps()) || !isEmpty(op.getVarControlDeps()) || !isEmpty(op.getControlDepFor());
+    }
+
+    /**
+     * @return True if the variable is a constant or variable with an array set - i.e., a parameter whose value is known
+     */
+    public static boolean isParameter(@NonNull SameDiff sd, @NonNull String varName){
+        SDVariable v = sd.getVariable(varName);
+        return v != null && (v.getVariableType() == VariableType.CONSTANT || v.getVariableType() == VariableType.VARIABLE) && v.getArr() != null;
+    }
+
+    /**
+     * Infer the rank of a variable, where possible: from the array (constants and variables), from the placeholder shape,
+     * or through ops whose output rank is known from their input rank.
+     *
+     * @return The rank, or -1 if it cannot be determined
+     */
+    public static int knownRank(@NonNull SameDiff sd, @NonNull String varName){
+        SDVariable v = sd.getVariable(varName);
+        if(v == null)
+            return -1;
+        if(v.getVariableType() != VariableType.ARRAY){
+            long[] shape = v.getShape();
+            return shape == null ? -1 : shape.length;
+        }
+
+        String opName = sd.getVariables().get(varName).getOutputOfOp();
+        SameDiffOp op = opName == null ? null : sd.getOps().get(opName);
+        if(op == null)
+            return -1;
+        DifferentialFunction df = op.getOp();
+        List<String> in = op.getInputsToOp();
+        if(df instanceof XwPlusB){
+            return 2;
+        } else if(df instanceof Mmul){
+            //Mmul of two rank 2 arrays (transposed or not) is rank 2
+            return knownRank(sd, in.get(0)) == 2 && knownRank(sd, in.get(1)) == 2 ? 2 : -1;
+        } else if((df instanceof BaseTransformOp || df instanceof BaseScalarOp || df instanceof BiasAdd) && in != null && !in.isEmpty()
+                && !(df instanceof BaseTransformOp && in.size() > 1)){
+            //Elementwise ops: same rank as the input
+            return knownRank(sd, in.get(0));
+        } else if(df instanceof BaseReduceOp && in != null && in.size() == 1){
+            //Reductions along fixed dimensions
+            BaseReduceOp r = (BaseReduceOp) df;
+            int inRank = knownRank(sd, in.get(0));
+            int[] dims = r.getDimensions();
+            if(inRank < 0 || dims == null)
+                return -1;
+            if(r.isKeepDims())
+                return inRank;
+            boolean all = dims.length == 0 || (dims.length == 1 && dims[0] == Integer.MAX_VALUE);
+            return all ? 0 : inRank - dims.length;
+        }
+        return -1;
+    }
+
+    /**
+     * Replace a set of connected ops with a single new op. The new op should already have been created (with the
+     * same inputs as the removed subgraph), and will be set to produce the specified output variable, which must be
+     * an output of one of the removed ops. All other outputs of the removed ops are removed from the graph.
+     *
+     * @param sd       SameDiff instance
+     * @param toRemove The ops to remove
+     * @param newOp    The (already created) op to replace them with
+     * @param output   The name of the output variable of the new op
+     */
+    public static void replaceOps(@NonNull SameDiff sd, @NonNull List<SameDiffOp> toRemove, @NonNull DifferentialFunction newOp, @NonNull String output){
+        for(SameDiffOp op : toRemove){
+            removeOp(sd, op.getName());
+        }
+        for(SameDiffOp op : toRemove){
+            for(String s : op.getOutputsOfOp()){
+                if(!s.equals(output))
+                    removeVariable(sd, s);
+            }
+        }
+        sd.getVariables().get(output).setOutputOfOp(null);
+        sd.addOutgoingFor(new String[]{output}, newOp);
+    }
+
+    /**
+     * Replace all uses of one variable with another, adding the consumers of the replaced variable to the consumers of
+     * the new variable. Unlike {@link #replaceOpInputsWith(SameDiff, String, String)} this does not overwrite the
+     * existing consumers of the new variable, hence is safe to use when merging two variables that are both in use.
+     * The replaced variable is not removed from the graph.
+     *
+     * @param sd           SameDiff instance
+     * @param replaceInput Variable to replace
+     * @param newInput     Variable to use instead
+     */
+    public static void mergeVariableInto(@NonNull SameDiff sd, @NonNull String replaceInput, @NonNull String newInput){
+        if(replaceInput.equals(newInput))
+            return;
+
+        Variable v = sd.getVariables().get(replaceInput);
+        Variable v2 = sd.getVariables().get(newInput);
+        if(v.getInputsForOp() == null)
+            return;
+        if(v2.getInputsForOp() == null)
+            v2.setInputsForOp(new ArrayList<String>());
+
+        for(String opName : v.getInputsForOp()){
+            List<String> l = sd.getOps().get(opName).getInputsToOp();
+            for( int i=0; i<l.size(); i++ ){
+                if(l.get(i).equals(replaceInput))
+                    l.set(i, newInput);
+            }
+            if(!v2.getInputsForOp().contains(opName))
+                v2.getInputsForOp().add(opName);
+        }
+        v.setInputsForOp(new ArrayList<String>());
+    }
+
+    /**
+     * Remove all ops and variables that are not required to calculate the specified outputs. Placeholders are always
+     * kept, so that feeding values for unused placeholders remains valid.
+     *
+     * @param sd      SameDiff instance
+     * @param outputs Names of the output variables to keep
+     * @return Number of ops removed
+     */
+    public static int removeUnreachable(@NonNull SameDiff sd, @NonNull Collection<String> outputs){
+        //Work backwards from the outputs, via op inputs and control dependencies
+        Set<String> reqVars = new HashSet<>();
+        Set<String> reqOps = new HashSet<>();
+        Queue<String> queue = new LinkedList<>(outputs);
+        while(!queue.isEmpty()){
+            String varName = queue.remove();
+            if(!reqVars.add(varName))
+                continue;
+            Variable v = sd.getVariables().get(varName);
+            Preconditions.checkState(v != null, "Required output variable \"%s\" does not exist", varName);
+            if(v.getControlDeps() != null){
+                for(String s : v.getControlDeps()){
+                    //Variable control dependencies may be specified by op or variable name
+                    SameDiffOp cdOp = sd.getOps().get(s);
+                    queue.addAll(cdOp != null ? cdOp.getOutputsOfOp() : Collections.singletonList(s));
+                }
+            }
+            String opName = v.getOutputOfOp();
+            if(opName == null || !reqOps.add(opName))
+                continue;
+            SameDiffOp op = sd.getOps().get(opName);
+            if(op.getInputsToOp() != null)
+                queue.addAll(op.getInputsToOp());
+            if(op.getControlDeps() != null)
+                queue.addAll(op.getControlDeps());
+            if(op.getVarControlDeps() != null)
+                queue.addAll(op.getVarControlDeps());
+            //Other outputs of required ops must remain, even if they are not used
+            queue.addAll(op.getOutputsOfOp());
+        }
+
+        int opsBefore = sd.getOps().size();
+        sd.getOps().keySet().retainAll(reqOps);
+        Iterator<Variable> iter = sd.getVariables().values().iterator();
+        while(iter.hasNext()){
+            Variable v = iter.next();
+            VariableType vt = v.getVariable().getVariableType();
+            if(!reqVars.contains(v.getName()) && vt != VariableType.PLACEHOLDER){
+                iter.remove();
+                if(vt == VariableType.CONSTANT && sd.getConstantArrays().hasArray(v.getName()))
+                    sd.getConstantArrays().removeArray(v.getName());
+                else if(vt == VariableType.VARIABLE && sd.getVariablesArrays().hasArray(v.getName()))
+                    sd.getVariablesArrays().removeArray(v.getName());
+                continue;
+            }
+            if(v.getInputsForOp() != null)
+                v.getInputsForOp().retainAll(reqOps);
+            if(v.getControlDepsForOp() != null)
+                v.getControlDepsForOp().retainAll(reqOps);
+        }
+        for(Variable v : sd.getVariables().values()){
+            if(v.getControlDepsForVar() != null)
+                v.getControlDepsForVar().retainAll(sd.getVariables().keySet());
+        }
+        for(SameDiffOp op : sd.getOps().values()){
+            if(op.getControlDepFor() != null)
+                op.getControlDepFor().retainAll(reqOps);
+        }
+
+        List<String> loss = sd.getLossVariables();
+        if(loss != null && !loss.isEmpty()){
+            List<String> keep = new ArrayList<>(loss);
+            keep.retainAll(sd.getVariables().keySet());
+            if(keep.size() != loss.size())
+                sd.setLossVariables(keep.toArray(new String[0]));
+        }
+        return opsBefore - sd.getOps().size();
+    }
+
+    private static boolean isEmpty(Collection<?> c){
+        return c == null || c.isEmpty();
+    }
+
 }
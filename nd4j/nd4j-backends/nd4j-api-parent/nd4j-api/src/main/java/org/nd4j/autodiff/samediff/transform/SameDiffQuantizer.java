@@ -0,0 +1,391 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.nd4j.autodiff.samediff.transform;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.TrainingConfig;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.autodiff.samediff.optimize.optimizations.OptimizationUtils;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.enums.WeightsFormat;
+import org.nd4j.evaluation.IEvaluation;
+import org.nd4j.evaluation.classification.Evaluation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.Conv2D;
+import org.nd4j.linalg.api.ops.impl.layers.recurrent.LSTMLayer;
+import org.nd4j.linalg.api.ops.impl.reduce.Mmul;
+import org.nd4j.linalg.api.ops.impl.transforms.custom.FakeQuantWithMinMaxVars;
+import org.nd4j.linalg.api.ops.impl.transforms.custom.XwPlusB;
+import org.nd4j.linalg.dataset.adapter.MultiDataSetIteratorAdapter;
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
+import org.nd4j.linalg.quantization.ActivationRanges;
+import org.nd4j.linalg.quantization.PerChannelQuantizedArray;
+import org.nd4j.linalg.quantization.QuantizationReport;
+
+import java.util.*;
+
+/**
+ * Post-training int8 quantization for SameDiff graphs.<br>
+ * The weights of matrix multiplication (mmul, xw_plus_b), 2d convolution (conv2d) and LSTM (lstmLayer) ops are
+ * replaced by INT8 constants with per-output-channel scales (see {@link PerChannelQuantizedArray}), which are
+ * dequantized at the op boundary. Optionally, the activation inputs of these ops are quantized to 8 bits using ranges
+ * gathered from calibration data (see {@link ActivationRanges}), using fake quantization ops.<br>
+ * The original graph is not modified. Usage:
+ * <pre>
+ * {@code
+ * SameDiffQuantizer q = SameDiffQuantizer.builder().featureMapping("in").build();
+ * SameDiff quantized = q.quantize(sd, calibrationIter);
+ * QuantizationReport r = q.evaluate(sd, quantized, testIter, "out", 0);
+ * }
+ * </pre>
+ */
+@Slf4j
+public class SameDiffQuantizer {
+    public static final int NUM_BITS = 8;
+
+    private final List<String> featureMapping;
+    private final int maxCalibrationBatches;
+    private final boolean quantizeActivations;
+
+    @Getter
+    private ActivationRanges activationRanges;
+    @Getter
+    private Map<String, PerChannelQuantizedArray> quantizedWeights;
+
+    protected SameDiffQuantizer(Builder builder) {
+        this.featureMapping = builder.featureMapping;
+        this.maxCalibrationBatches = builder.maxCalibrationBatches;
+        this.quantizeActivations = builder.quantizeActivations;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Quantize the weights of the specified graph, without activation quantization (regardless of
+     * {@link Builder#quantizeActivations(boolean)}, as there is no calibration data)
+     *
+     * @param sd Graph to quantize. Not modified
+     * @return Quantized copy of the graph
+     */
+    public SameDiff quantize(@NonNull SameDiff sd) {
+        return quantize(sd, null);
+    }
+
+    /**
+     * Quantize the specified graph: see class javadoc
+     *
+     * @param sd              Graph to quantize. Not modified
+     * @param calibrationData Data used to gather activation ranges. May be null: activations are only quantized if
+     *                        activation quantization is enabled and calibration data is provided
+     * @return Quantized copy of the graph
+     */
+    public SameDiff quantize(@NonNull SameDiff sd, MultiDataSetIterator calibrationData) {
+        boolean quantizeActivations = this.quantizeActivations && calibrationData != null;
+        SameDiff out = sd.dup();
+
+        //Find the weights to quantize, and the activation inputs of the ops using them
+        Map<String, Integer> weightChannelDims = new LinkedHashMap<>();
+        Map<String, List<SameDiffOp>> activationConsumers = new LinkedHashMap<>();
+        for (SameDiffOp op : out.getOps().values()) {
+            DifferentialFunction df = op.getOp();
+            List<String> inputs = op.getInputsToOp();
+            if (inputs == null || inputs.size() < 2)
+                continue;
+            boolean found = false;
+            if (df instanceof Mmul) {
+                boolean transposeB = ((Mmul) df).numIArguments() > 1 && ((Mmul) df).getIArgument(1) > 0;
+                found = addWeight(out, inputs.get(1), 2, transposeB ? 0 : 1, weightChannelDims);
+            } else if (df instanceof XwPlusB) {
+                found = addWeight(out, inputs.get(1), 2, 1, weightChannelDims);
+            } else if (df instanceof Conv2D) {
+                WeightsFormat wf = ((Conv2D) df).getConfig() == null ? WeightsFormat.YXIO : ((Conv2D) df).getConfig().getWeightsFormat();
+                found = addWeight(out, inputs.get(1), 4, wf == WeightsFormat.YXIO ? 3 : 0, weightChannelDims);
+            } else if (df instanceof LSTMLayer && inputs.size() >= 3) {
+                found = addWeight(out, inputs.get(1), 2, 1, weightChannelDims);
+                found |= addWeight(out, inputs.get(2), 2, 1, weightChannelDims);
+            }
+            if (found) {
+                SDVariable act = out.getVariable(inputs.get(0));
+                if (act.dataType().isFPType()) {
+                    List<SameDiffOp> l = activationConsumers.get(act.name());
+                    if (l == null) {
+                        l = new ArrayList<>();
+                        activationConsumers.put(act.name(), l);
+                    }
+                    l.add(op);
+                }
+            }
+        }
+
+        activationRanges = new ActivationRanges();
+        if (quantizeActivations && !activationConsumers.isEmpty())
+            calibrate(out, calibrationData, activationConsumers.keySet());
+
+        //Replace weights by INT8 constants, dequantized before use
+        quantizedWeights = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> e : weightChannelDims.entrySet()) {
+            String name = e.getKey();
+            SDVariable w = out.getVariable(name);
+            PerChannelQuantizedArray q = PerChannelQuantizedArray.quantize(w.getArr(), e.getValue());
+            SDVariable values = out.constant(uniqueName(out, name + "_int8"), q.getValues());
+            SDVariable scales = out.constant(uniqueName(out, name + "_scale"), q.getScales().reshape(q.broadcastScalesShape()));
+            SDVariable dequantized = values.castTo(uniqueName(out, name + "_cast"), w.dataType())
+                    .mul(uniqueName(out, name + "_dequantized"), scales);
+
+            OptimizationUtils.replaceOpInputsWith(out, name, dequantized.name());
+            removeParameter(out, name);
+            quantizedWeights.put(name, q);
+        }
+
+        //Quantize activation inputs
+        int numActivations = 0;
+        if (quantizeActivations) {
+            for (Map.Entry<String, List<SameDiffOp>> e : activationConsumers.entrySet()) {
+                String name = e.getKey();
+                if (!activationRanges.contains(name))
+                    continue;
+                SDVariable act = out.getVariable(name);
+                SDVariable min = out.constant(uniqueName(out, name + "_min"), act.dataType(), activationRanges.getMin(name));
+                SDVariable max = out.constant(uniqueName(out, name + "_max"), act.dataType(), activationRanges.getMax(name));
+                SDVariable fq = new FakeQuantWithMinMaxVars(out, act, min, max, false, NUM_BITS).outputVariable();
+                for (SameDiffOp op : e.getValue()) {
+                    out.replaceArgFor(op.getInputsToOp().indexOf(name), fq, op.getOp());
+                }
+                numActivations++;
+            }
+        }
+
+        log.info("Quantized {} weight arrays and {} activations", quantizedWeights.size(), numActivations);
+        return out;
+    }
+
+    /**
+     * Evaluate the quantized graph against the original graph, using {@link Evaluation}
+     *
+     * @see #evaluate(SameDiff, SameDiff, MultiDataSetIterator, String, int, IEvaluation, IEvaluation)
+     */
+    public QuantizationReport evaluate(@NonNull SameDiff original, @NonNull SameDiff quantized, @NonNull DataSetIterator data,
+                                       @NonNull String outputVariable) {
+        return evaluate(original, quantized, new MultiDataSetIteratorAdapter(data), outputVariable, 0, new Evaluation(), new Evaluation());
+    }
+
+    /**
+     * Evaluate the quantized graph against the original graph, using {@link Evaluation}
+     *
+     * @see #evaluate(SameDiff, SameDiff, MultiDataSetIterator, String, int, IEvaluation, IEvaluation)
+     */
+    public QuantizationReport evaluate(@NonNull SameDiff original, @NonNull SameDiff quantized, @NonNull MultiDataSetIterator data,
+                                       @NonNull String outputVariable, int labelIndex) {
+        return evaluate(original, quantized, data, outputVariable, labelIndex, new Evaluation(), new Evaluation());
+    }
+
+    /**
+     * Evaluate the accuracy and latency of the quantized graph against the original graph
+     *
+     * @param original       Original graph
+     * @param quantized      Quantized graph, as returned by {@link #quantize(SameDiff, MultiDataSetIterator)}
+     * @param data           Evaluation data. Must support resetting
+     * @param outputVariable Name of the output variable to evaluate
+     * @param labelIndex     Index of the labels array for the output variable
+     * @param originalEval   Evaluation for the original graph
+     * @param quantizedEval  Evaluation for the quantized graph (same type as originalEval)
+     * @return Report
+     */
+    public QuantizationReport evaluate(@NonNull SameDiff original, @NonNull SameDiff quantized, @NonNull MultiDataSetIterator data,
+                                       @NonNull String outputVariable, int labelIndex, @NonNull IEvaluation originalEval,
+                                       @NonNull IEvaluation quantizedEval) {
+        Preconditions.checkState(quantizedWeights != null, "Graph has not been quantized yet");
+        double origMs = evaluate(original, data, outputVariable, labelIndex, originalEval);
+        data.reset();
+        double quantMs = evaluate(quantized, data, outputVariable, labelIndex, quantizedEval);
+
+        long origBytes = 0;
+        long quantBytes = 0;
+        for (PerChannelQuantizedArray q : quantizedWeights.values()) {
+            origBytes += q.getValues().length() * q.getDataType().width();
+            quantBytes += q.sizeBytes();
+        }
+        //The quantized graph stores the weights as INT8 constants
+        return new QuantizationReport(originalEval, quantizedEval, origMs, quantMs, origBytes, quantBytes, quantizedWeights.size(),
+                parameterBytes(original), parameterBytes(quantized), false);
+    }
+
+    /**
+     * @return Total size of the variable and constant arrays of the graph, in bytes
+     */
+    protected static long parameterBytes(SameDiff sd) {
+        long bytes = 0;
+        for (SDVariable v : sd.variables()) {
+            if (v.getVariableType() != VariableType.VARIABLE && v.getVariableType() != VariableType.CONSTANT)
+                continue;
+            INDArray arr = v.getArr();
+            if (arr != null)
+                bytes += arr.length() * arr.dataType().width();
+        }
+        return bytes;
+    }
+
+    protected double evaluate(SameDiff sd, MultiDataSetIterator data, String outputVariable, int labelIndex, IEvaluation eval) {
+        if (!data.hasNext() && data.resetSupported())
+            data.reset();
+        List<String> mapping = featureMapping(sd);
+        long totalNanos = 0;
+        int timedBatches = 0;
+        int batches = 0;
+        while (data.hasNext()) {
+            MultiDataSet mds = data.next();
+            Map<String, INDArray> placeholders = placeholders(mapping, mds);
+            long start = System.nanoTime();
+            INDArray out = sd.output(placeholders, outputVariable).get(outputVariable);
+            long end = System.nanoTime();
+            if (batches++ > 0) {
+                //First batch is warmup
+                totalNanos += end - start;
+                timedBatches++;
+            }
+            INDArray mask = mds.getLabelsMaskArrays() == null ? null : mds.getLabelsMaskArray(labelIndex);
+            eval.eval(mds.getLabels(labelIndex), out, mask);
+        }
+        return timedBatches == 0 ? 0.0 : totalNanos / (double) timedBatches / 1e6;
+    }
+
+    protected void calibrate(SameDiff sd, MultiDataSetIterator data, Collection<String> activations) {
+        if (!data.hasNext() && data.resetSupported())
+            data.reset();
+        List<String> mapping = featureMapping(sd);
+        List<String> outputs = new ArrayList<>();
+        for (String s : activations) {
+            if (sd.getVariable(s).getVariableType() != VariableType.PLACEHOLDER)
+                outputs.add(s);
+        }
+
+        int batches = 0;
+        while (data.hasNext() && (maxCalibrationBatches <= 0 || batches < maxCalibrationBatches)) {
+            MultiDataSet mds = data.next();
+            Map<String, INDArray> placeholders = placeholders(mapping, mds);
+            for (String s : activations) {
+                if (placeholders.containsKey(s))
+                    activationRanges.update(s, placeholders.get(s));
+            }
+            if (!outputs.isEmpty()) {
+                Map<String, INDArray> out = sd.output(placeholders, outputs);
+                for (Map.Entry<String, INDArray> e : out.entrySet())
+                    activationRanges.update(e.getKey(), e.getValue());
+            }
+            batches++;
+        }
+        log.info("Calibrated activation ranges using {} minibatches", batches);
+    }
+
+    protected List<String> featureMapping(SameDiff sd) {
+        if (featureMapping != null)
+            return featureMapping;
+        TrainingConfig tc = sd.getTrainingConfig();
+        Preconditions.checkState(tc != null && tc.getDataSetFeatureMapping() != null, "No feature mapping: set the feature " +
+                "mapping using SameDiffQuantizer.Builder.featureMapping(String...), or set a training configuration for the graph");
+        return tc.getDataSetFeatureMapping();
+    }
+
+    protected static Map<String, INDArray> placeholders(List<String> mapping, MultiDataSet mds) {
+        Preconditions.checkState(mapping.size() == mds.numFeatureArrays(), "Number of placeholders in the feature mapping (%s) " +
+                "does not match the number of feature arrays (%s)", mapping.size(), mds.numFeatureArrays());
+        Map<String, INDArray> placeholders = new HashMap<>();
+        for (int i = 0; i < mapping.size(); i++)
+            placeholders.put(mapping.get(i), mds.getFeatures(i));
+        return placeholders;
+    }
+
+    protected static boolean addWeight(SameDiff sd, String name, int rank, int channelDim, Map<String, Integer> weights) {
+        SDVariable v = sd.getVariable(name);
+        if (v == null || !OptimizationUtils.isParameter(sd, name) || !v.dataType().isFPType() || v.getArr().rank() != rank)
+            return false;
+        //Weights used by multiple ops are quantized once, along the channel dimension of the first use
+        if (!weights.containsKey(name))
+            weights.put(name, channelDim);
+        return true;
+    }
+
+    protected static void removeParameter(SameDiff sd, String name) {
+        VariableType vt = sd.getVariable(name).getVariableType();
+        if (vt == VariableType.CONSTANT && sd.getConstantArrays().hasArray(name))
+            sd.getConstantArrays().removeArray(name);
+        else if (vt == VariableType.VARIABLE && sd.getVariablesArrays().hasArray(name))
+            sd.getVariablesArrays().removeArray(name);
+        OptimizationUtils.removeVariable(sd, name);
+    }
+
+    protected static String uniqueName(SameDiff sd, String base) {
+        String name = base;
+        int i = 1;
+        while (sd.hasVariable(name))
+            name = base + "_" + (i++);
+        return name;
+    }
+
+    public static class Builder {
+        private List<String> featureMapping;
+        private int maxCalibrationBatches = 0;
+        private boolean quantizeActivations = true;
+
+        /**
+         * Names of the placeholders for the feature arrays of the calibration and evaluation data, in order. If not
+         * set, the feature mapping of the graph's training configuration is used
+         */
+        public Builder featureMapping(@NonNull String... placeholders) {
+            this.featureMapping = Arrays.asList(placeholders);
+            return this;
+        }
+
+        /**
+         * Maximum number of minibatches used for calibration. Default: 0 (all minibatches)
+         */
+        public Builder maxCalibrationBatches(int maxCalibrationBatches) {
+            this.maxCalibrationBatches = maxCalibrationBatches;
+            return this;
+        }
+
+        /**
+         * Whether the activation inputs of the quantized ops should be quantized (fake quantization, using the
+         * calibrated ranges). Only applies when calibration data is passed to
+         * {@link SameDiffQuantizer#quantize(SameDiff, MultiDataSetIterator)}. Default: true
+         */
+        public Builder quantizeActivations(boolean quantizeActivations) {
+            this.quantizeActivations = quantizeActivations;
+            return this;
+        }
+
+        public SameDiffQuantizer build() {
+            return new SameDiffQuantizer(this);
+        }
+    }
+}
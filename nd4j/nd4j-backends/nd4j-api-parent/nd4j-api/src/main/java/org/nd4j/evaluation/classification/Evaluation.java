@@ -405,17 +405,26 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
         final int nCols = labels2d.columns();
         final int nRows = labels2d.rows();
 
+        int[] actual = null;
         if (nCols == 1) {
-            INDArray binaryGuesses = predictions2d.gt(binaryDecisionThreshold == null ? 0.5 : binaryDecisionThreshold).castTo(predictions.dataType());
-
-            INDArray notLabel = labels2d.rsub(1.0); //Invert entries (assuming 1 and 0)
-            INDArray notGuess = binaryGuesses.rsub(1.0);
-            //tp: predicted = 1, actual = 1
-            int tp = labels2d.mul(binaryGuesses).castTo(DataType.INT).sumNumber().intValue();
-            //fp: predicted = 1, actual = 0
-            int fp = notLabel.mul(binaryGuesses).castTo(DataType.INT).sumNumber().intValue();
-            //fn: predicted = 0, actual = 1
-            int fn = notGuess.mul(labels2d).castTo(DataType.INT).sumNumber().intValue();
+            //Count on the host in a single pass - no intermediate arrays for the guesses/complements
+            double threshold = binaryDecisionThreshold == null ? 0.5 : binaryDecisionThreshold;
+            double[] l = labels2d.toDoubleVector();
+            double[] prob = predictions2d.toDoubleVector();
+            int tp = 0;
+            int fp = 0;
+            int fn = 0;
+            for (int i = 0; i < nRows; i++) {
+                double guess = prob[i] > threshold ? 1.0 : 0.0;
+                //tp: predicted = 1, actual = 1. fp: predicted = 1, actual = 0. fn: predicted = 0, actual = 1
+                tp += (int) (l[i] * guess);
+                fp += (int) ((1.0 - l[i]) * guess);
+                fn += (int) ((1.0 - guess) * l[i]);
+
+                if (recordMetaData != null && i < recordMetaData.size()) {
+                    addToMetaConfusionMatrix(l[i] == 0.0 ? 0 : 1, guess == 0.0 ? 0 : 1, recordMetaData.get(i));
+                }
+            }
             int tn = nRows - tp - fp - fn;
 
             confusion().add(1, 1, tp);
@@ -433,16 +442,6 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
             falseNegatives.incrementCount(0, fp);
             trueNegatives.incrementCount(0, tp);
 
-            if (recordMetaData != null) {
-                for (int i = 0; i < binaryGuesses.size(0); i++) {
-                    if (i >= recordMetaData.size())
-                        break;
-                    int actual = labels2d.getDouble(0) == 0.0 ? 0 : 1;
-                    int predicted = binaryGuesses.getDouble(0) == 0.0 ? 0 : 1;
-                    addToMetaConfusionMatrix(actual, predicted, recordMetaData.get(i));
-                }
-            }
-
         } else {
             INDArray guessIndex;
             if (binaryDecisionThreshold != null) {
@@ -453,7 +452,7 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
                 }
 
                 INDArray pClass1 = predictions2d.getColumn(1);
-                guessIndex = pClass1.gt(binaryDecisionThreshold);
+                guessIndex = pClass1.gt(binaryDecisionThreshold).castTo(DataType.INT);
             } else if (costArray != null) {
                 //With a cost array: do argmax(cost * probability) instead of just argmax(probability)
                 guessIndex = Nd4j.argMax(predictions2d.mulRowVector(costArray.castTo(predictions2d.dataType())), 1);
@@ -461,72 +460,28 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
                 //Standard case: argmax
                 guessIndex = Nd4j.argMax(predictions2d, 1);
             }
-            INDArray realOutcomeIndex = Nd4j.argMax(labels2d, 1);
-            val nExamples = guessIndex.length();
-
-            for (int i = 0; i < nExamples; i++) {
-                int actual = (int) realOutcomeIndex.getDouble(i);
-                int predicted = (int) guessIndex.getDouble(i);
-                confusion().add(actual, predicted);
+            actual = Nd4j.argMax(labels2d, 1).toIntVector();
+            int[] predicted = guessIndex.toIntVector();
 
-                if (recordMetaData != null && recordMetaData.size() > i) {
-                    Object m = recordMetaData.get(i);
-                    addToMetaConfusionMatrix(actual, predicted, m);
-                }
-
-                // instead of looping through each label for confusion
-                // matrix, instead infer those values by determining if true/false negative/positive,
-                // then just add across matrix
-
-                // if actual == predicted, then it's a true positive, assign true negative to every other label
-                if (actual == predicted) {
-                    truePositives.incrementCount(actual, 1);
-                    for (int col = 0; col < nCols; col++) {
-                        if (col == actual) {
-                            continue;
-                        }
-                        trueNegatives.incrementCount(col, 1); // all cols prior
-                    }
-                } else {
-                    falsePositives.incrementCount(predicted, 1);
-                    falseNegatives.incrementCount(actual, 1);
-
-                    // first determine intervals for adding true negatives
-                    int lesserIndex, greaterIndex;
-                    if (actual < predicted) {
-                        lesserIndex = actual;
-                        greaterIndex = predicted;
-                    } else {
-                        lesserIndex = predicted;
-                        greaterIndex = actual;
-                    }
-
-                    // now loop through intervals
-                    for (int col = 0; col < lesserIndex; col++) {
-                        trueNegatives.incrementCount(col, 1); // all cols prior
-                    }
-                    for (int col = lesserIndex + 1; col < greaterIndex; col++) {
-                        trueNegatives.incrementCount(col, 1); // all cols after
-                    }
-                    for (int col = greaterIndex + 1; col < nCols; col++) {
-                        trueNegatives.incrementCount(col, 1); // all cols after
-                    }
+            addToCounts(actual, predicted, nCols);
+            if (recordMetaData != null) {
+                for (int i = 0; i < actual.length && i < recordMetaData.size(); i++) {
+                    addToMetaConfusionMatrix(actual[i], predicted[i], recordMetaData.get(i));
                 }
             }
         }
 
         if (nCols > 1 && topN > 1) {
-            //Calculate top N accuracy
-            //TODO: this could be more efficient
-            INDArray realOutcomeIndex = Nd4j.argMax(labels2d, 1);
-            val nExamples = realOutcomeIndex.length();
-            for (int i = 0; i < nExamples; i++) {
-                int labelIdx = (int) realOutcomeIndex.getDouble(i);
-                double prob = predictions2d.getDouble(i, labelIdx);
-                INDArray row = predictions2d.getRow(i);
-                int countGreaterThan = (int) Nd4j.getExecutioner()
-                                .exec(new MatchCondition(row, Conditions.greaterThan(prob)))
-                                .getDouble(0);
+            //Calculate top N accuracy, from a single host copy of the predictions
+            double[] probs = predictions2d.dup('c').data().asDouble();
+            for (int i = 0; i < nRows; i++) {
+                int offset = i * nCols;
+                double prob = probs[offset + actual[i]];
+                int countGreaterThan = 0;
+                for (int j = 0; j < nCols; j++) {
+                    if (probs[offset + j] > prob)
+                        countGreaterThan++;
+                }
                 if (countGreaterThan < topN) {
                     //For example, for top 3 accuracy: can have at most 2 other probabilities larger
                     topNCorrectCount++;
@@ -536,6 +491,51 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
         }
     }
 
+    /**
+     * Add the given (actual, predicted) class pairs to the confusion matrix and the per-class counts.<br>
+     * Pairs and per-class counts are accumulated in primitive arrays first, so the confusion matrix and counters are
+     * updated once per distinct pair/class in the minibatch, instead of once per example (and class, for the true
+     * negatives)
+     */
+    private void addToCounts(int[] actual, int[] predicted, int nClasses) {
+        int n = actual.length;
+        long[] pairs = new long[n];
+        long[] tp = new long[nClasses];
+        long[] fp = new long[nClasses];
+        long[] fn = new long[nClasses];
+        for (int i = 0; i < n; i++) {
+            pairs[i] = (long) actual[i] * nClasses + predicted[i];
+            if (actual[i] == predicted[i]) {
+                tp[actual[i]]++;
+            } else {
+                fp[predicted[i]]++;
+                fn[actual[i]]++;
+            }
+        }
+
+        Arrays.sort(pairs);
+        for (int i = 0; i < n; ) {
+            int j = i + 1;
+            while (j < n && pairs[j] == pairs[i])
+                j++;
+            confusion().add((int) (pairs[i] / nClasses), (int) (pairs[i] % nClasses), j - i);
+            i = j;
+        }
+
+        for (int c = 0; c < nClasses; c++) {
+            //True negatives for class c: examples where c is neither the actual nor the predicted class
+            long tn = n - tp[c] - fp[c] - fn[c];
+            if (tp[c] > 0)
+                truePositives.incrementCount(c, tp[c]);
+            if (fp[c] > 0)
+                falsePositives.incrementCount(c, fp[c]);
+            if (fn[c] > 0)
+                falseNegatives.incrementCount(c, fn[c]);
+            if (tn > 0)
+                trueNegatives.incrementCount(c, tn);
+        }
+    }
+
     /**
      * Evaluate a single prediction (one prediction at a time)
      *
@@ -31,14 +31,10 @@ import org.nd4j.evaluation.curves.RocCurve;
 import org.nd4j.evaluation.serde.ROCSerializer;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.api.ops.Op;
 import org.nd4j.linalg.api.ops.impl.reduce.longer.MatchCondition;
-import org.nd4j.linalg.api.ops.impl.transforms.comparison.CompareAndSet;
-import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.MulOp;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.INDArrayIndex;
 import org.nd4j.linalg.indexing.NDArrayIndex;
-import org.nd4j.linalg.indexing.conditions.Condition;
 import org.nd4j.linalg.indexing.conditions.Conditions;
 import org.nd4j.common.primitives.Pair;
 import org.nd4j.common.primitives.Triple;
@@ -111,7 +107,10 @@ public class ROC extends BaseEvaluation<ROC> {
     }
 
     /**
-     * @param thresholdSteps Number of threshold steps to use for the ROC calculation. If set to 0: use exact calculation
+     * @param thresholdSteps Number of threshold steps to use for the ROC calculation. If set to 0: use exact calculation.
+     *                       Note that exact mode stores every prediction; thresholded mode uses a fixed amount of memory
+     *                       regardless of the number of examples, and merges in O(thresholdSteps) - use it for very
+     *                       large evaluation sets, or when merging many instances
      */
     public ROC(int thresholdSteps) {
         this(thresholdSteps, true);
@@ -605,7 +604,8 @@ public class ROC extends BaseEvaluation<ROC> {
 
             //Allocate a larger array if necessary
             if (exampleCount + labels2d.size(0) >= probAndLabel.size(0)) {
-                val newSize = probAndLabel.size(0) + Math.max(exactAllocBlockSize, labels2d.size(0));
+                //Grow by at least half the current size, so the total copying stays linear in the number of examples
+                val newSize = probAndLabel.size(0) + Math.max(Math.max(exactAllocBlockSize, labels2d.size(0)), probAndLabel.size(0) / 2);
                 INDArray newProbAndLabel = Nd4j.create(DataType.DOUBLE, new long[]{newSize, 2}, 'c');
                 if (exampleCount > 0) {
                     //If statement to handle edge case: no examples, but we need to re-allocate right away
@@ -636,72 +636,65 @@ public class ROC extends BaseEvaluation<ROC> {
             countActualPositive += countClass1CurrMinibatch;
             countActualNegative += labels2d.size(0) - countClass1CurrMinibatch;
         } else {
-            //Thresholded approach
-            INDArray positivePredictedClassColumn;
-            INDArray positiveActualClassColumn;
-            INDArray negativeActualClassColumn;
-
+            //Thresholded approach: a single pass over the minibatch on the host. Each prediction is binned by the
+            // highest threshold it is predicted positive at; the counts for each threshold are then the cumulative
+            // sums of the bins, from the highest threshold down
+            double[] prob;
+            double[] actualPositive;
+            double[] actualNegative;
             if (singleOutput) {
                 //Single binary variable case
-                positiveActualClassColumn = labels2d;
-                negativeActualClassColumn = labels2d.rsub(1.0); //1.0 - label
-                positivePredictedClassColumn = predictions2d;
+                prob = predictions2d.toDoubleVector();
+                actualPositive = labels2d.toDoubleVector();
+                actualNegative = null;  //1.0 - label
             } else {
                 //Standard case - 2 output variables (probability distribution)
-                positiveActualClassColumn = labels2d.getColumn(1,true);
-                negativeActualClassColumn = labels2d.getColumn(0,true);
-                positivePredictedClassColumn = predictions2d.getColumn(1,true);
+                prob = predictions2d.getColumn(1).toDoubleVector();
+                actualPositive = labels2d.getColumn(1).toDoubleVector();
+                actualNegative = labels2d.getColumn(0).toDoubleVector();
             }
 
-            //Increment global counts - actual positive/negative observed
-            countActualPositive += positiveActualClassColumn.sumNumber().intValue();
-            countActualNegative += negativeActualClassColumn.sumNumber().intValue();
-
-            //Here: calculate true positive rate (TPR) vs. false positive rate (FPR) at different threshold
-
-            INDArray ppc = null;
-            INDArray itp = null;
-            INDArray ifp = null;
-            for (int i = 0; i <= thresholdSteps; i++) {
-                double currThreshold = i * step;
-
-                //Work out true/false positives - do this by replacing probabilities (predictions) with 1 or 0 based on threshold
-                Condition condGeq = Conditions.greaterThanOrEqual(currThreshold);
-                Condition condLeq = Conditions.lessThanOrEqual(currThreshold);
-
-                if (ppc == null) {
-                    ppc = positivePredictedClassColumn.dup(positiveActualClassColumn.ordering());
-                } else {
-                    ppc.assign(positivePredictedClassColumn);
-                }
-                Op op = new CompareAndSet(ppc, 1.0, condGeq);
-                INDArray predictedClass1 = Nd4j.getExecutioner().exec(op);
-                op = new CompareAndSet(predictedClass1, 0.0, condLeq);
-                predictedClass1 = Nd4j.getExecutioner().exec(op);
-
-
-                //True positives: occur when positive predicted class and actual positive actual class...
-                //False positive occurs when positive predicted class, but negative actual class
-                INDArray isTruePositive; // = predictedClass1.mul(positiveActualClassColumn); //If predicted == 1 and actual == 1 at this threshold: 1x1 = 1. 0 otherwise
-                INDArray isFalsePositive; // = predictedClass1.mul(negativeActualClassColumn); //If predicted == 1 and actual == 0 at this threshold: 1x1 = 1. 0 otherwise
-                if (i == 0) {
-                    isTruePositive = predictedClass1.mul(positiveActualClassColumn);
-                    isFalsePositive = predictedClass1.mul(negativeActualClassColumn);
-                    itp = isTruePositive;
-                    ifp = isFalsePositive;
-                } else {
-                    isTruePositive = Nd4j.getExecutioner().exec(new MulOp(predictedClass1, positiveActualClassColumn, itp))[0];
-                    isFalsePositive = Nd4j.getExecutioner().exec(new MulOp(predictedClass1, negativeActualClassColumn, ifp))[0];
+            //Predicted class 1 at threshold i*step if prob >= i*step - except for a threshold of 1.0, where nothing is
+            // predicted as class 1
+            int maxThreshold = thresholdSteps;
+            while (maxThreshold >= 0 && maxThreshold * step >= 1.0)
+                maxThreshold--;
+
+            double[] binPositive = new double[thresholdSteps + 1];
+            double[] binNegative = new double[thresholdSteps + 1];
+            double sumPositive = 0.0;
+            double sumNegative = 0.0;
+            for (int i = 0; i < prob.length; i++) {
+                double pos = actualPositive[i];
+                double neg = actualNegative == null ? 1.0 - pos : actualNegative[i];
+                sumPositive += pos;
+                sumNegative += neg;
+
+                int bin = (int) Math.max(-1, Math.min(Math.floor(prob[i] * thresholdSteps), maxThreshold));
+                while (bin < maxThreshold && (bin + 1) * step <= prob[i])
+                    bin++;
+                while (bin >= 0 && bin * step > prob[i])
+                    bin--;
+                if (bin >= 0) {
+                    binPositive[bin] += pos;
+                    binNegative[bin] += neg;
                 }
+            }
+
+            //Increment global counts - actual positive/negative observed
+            countActualPositive += (int) sumPositive;
+            countActualNegative += (int) sumNegative;
 
-                //Counts for this batch:
-                int truePositiveCount = isTruePositive.sumNumber().intValue();
-                int falsePositiveCount = isFalsePositive.sumNumber().intValue();
+            double truePositiveCount = 0.0;
+            double falsePositiveCount = 0.0;
+            for (int i = thresholdSteps; i >= 0; i--) {
+                truePositiveCount += binPositive[i];
+                falsePositiveCount += binNegative[i];
 
                 //Increment counts for this thold
-                CountsForThreshold thresholdCounts = counts.get(currThreshold);
-                thresholdCounts.incrementTruePositive(truePositiveCount);
-                thresholdCounts.incrementFalsePositive(falsePositiveCount);
+                CountsForThreshold thresholdCounts = counts.get(i * step);
+                thresholdCounts.incrementTruePositive((int) truePositiveCount);
+                thresholdCounts.incrementFalsePositive((int) falsePositiveCount);
             }
         }
 
@@ -746,7 +739,8 @@ public class ROC extends BaseEvaluation<ROC> {
 
             if (this.exampleCount + other.exampleCount > this.probAndLabel.size(0)) {
                 //Allocate new array
-                val newSize = this.probAndLabel.size(0) + Math.max(other.probAndLabel.size(0), exactAllocBlockSize);
+                val newSize = this.probAndLabel.size(0) + Math.max(Math.max(other.probAndLabel.size(0), exactAllocBlockSize),
+                        this.probAndLabel.size(0) / 2);
                 INDArray newProbAndLabel = Nd4j.create(DataType.DOUBLE, newSize, 2);
                 newProbAndLabel.put(new INDArrayIndex[]{interval(0, exampleCount), all()}, probAndLabel.get(interval(0, exampleCount), all()));
                 probAndLabel = newProbAndLabel;
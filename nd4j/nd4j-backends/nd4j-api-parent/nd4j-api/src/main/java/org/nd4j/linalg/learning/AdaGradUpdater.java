@@ -32,7 +32,7 @@ import java.util.Map;
 
 
 @Data
-public class AdaGradUpdater implements GradientUpdater<AdaGrad> {
+public class AdaGradUpdater implements GradientUpdater<AdaGrad>, SparseGradientUpdater {
     public static final String GRAD_STATE = "grad";
     public INDArray historicalGradient;
     public int[] shape;
@@ -94,4 +94,19 @@ public class AdaGradUpdater implements GradientUpdater<AdaGrad> {
 
         Nd4j.exec(new org.nd4j.linalg.api.ops.impl.updaters.AdaGradUpdater(gradient, historicalGradient, learningRate, epsilon));
     }
+
+    @Override
+    public void applyUpdaterRows(INDArray gradient, int[] rows, int iteration, int epoch) {
+        if (historicalGradient == null)
+            throw new IllegalStateException("Updater has not been initialized with view state");
+
+        INDArray hAll = SparseGradientUpdater.stateAsGradientShape(historicalGradient, gradient);
+        INDArray g = SparseGradientUpdater.gatherRows(gradient, rows);
+        INDArray hRows = SparseGradientUpdater.gatherRows(hAll, rows);
+
+        Nd4j.exec(new org.nd4j.linalg.api.ops.impl.updaters.AdaGradUpdater(g, hRows, config.getLearningRate(iteration, epoch), config.getEpsilon()));
+
+        SparseGradientUpdater.scatterRows(gradient, rows, g);
+        SparseGradientUpdater.scatterRows(hAll, rows, hRows);
+    }
 }
@@ -38,7 +38,7 @@ import java.util.Map;
  * @author Adam Gibson
  */
 @Data
-public class AdamUpdater implements GradientUpdater<Adam> {
+public class AdamUpdater implements GradientUpdater<Adam>, SparseGradientUpdater {
     public static final String M_STATE = "M";
     public static final String V_STATE = "V";
 
@@ -107,4 +107,26 @@ public class AdamUpdater implements GradientUpdater<Adam> {
 
         Nd4j.exec(new org.nd4j.linalg.api.ops.impl.updaters.AdamUpdater(gradient, v, m, learningRate, beta1, beta2, epsilon, iteration));
     }
+
+    /**
+     * Lazy Adam: only the moving averages of the specified rows are updated. Bias correction uses the global iteration
+     */
+    @Override
+    public void applyUpdaterRows(INDArray gradient, int[] rows, int iteration, int epoch) {
+        if (m == null || v == null)
+            throw new IllegalStateException("Updater has not been initialized with view state");
+
+        INDArray mAll = SparseGradientUpdater.stateAsGradientShape(m, gradient);
+        INDArray vAll = SparseGradientUpdater.stateAsGradientShape(v, gradient);
+        INDArray g = SparseGradientUpdater.gatherRows(gradient, rows);
+        INDArray mRows = SparseGradientUpdater.gatherRows(mAll, rows);
+        INDArray vRows = SparseGradientUpdater.gatherRows(vAll, rows);
+
+        Nd4j.exec(new org.nd4j.linalg.api.ops.impl.updaters.AdamUpdater(g, vRows, mRows, config.getLearningRate(iteration, epoch),
+                config.getBeta1(), config.getBeta2(), config.getEpsilon(), iteration));
+
+        SparseGradientUpdater.scatterRows(gradient, rows, g);
+        SparseGradientUpdater.scatterRows(mAll, rows, mRows);
+        SparseGradientUpdater.scatterRows(vAll, rows, vRows);
+    }
 }
@@ -34,7 +34,7 @@ import java.util.Map;
  * @author Adam Gibson
  */
 @Data
-public class SgdUpdater implements GradientUpdater<Sgd> {
+public class SgdUpdater implements GradientUpdater<Sgd>, SparseGradientUpdater {
 
     private final Sgd config;
 
@@ -63,4 +63,11 @@ public class SgdUpdater implements GradientUpdater<Sgd> {
         double lr = config.getLearningRate(iteration, epoch);
         Nd4j.exec(new org.nd4j.linalg.api.ops.impl.updaters.SgdUpdater(gradient, lr));
     }
+
+    @Override
+    public void applyUpdaterRows(INDArray gradient, int[] rows, int iteration, int epoch) {
+        INDArray g = SparseGradientUpdater.gatherRows(gradient, rows);
+        applyUpdater(g, iteration, epoch);
+        SparseGradientUpdater.scatterRows(gradient, rows, g);
+    }
 }
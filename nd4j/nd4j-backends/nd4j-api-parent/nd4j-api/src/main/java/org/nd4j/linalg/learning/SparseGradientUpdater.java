@@ -0,0 +1,94 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.nd4j.linalg.learning;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.scatter.ScatterUpdate;
+import org.nd4j.linalg.api.shape.Shape;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.AdaGrad;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.learning.config.IUpdater;
+import org.nd4j.linalg.learning.config.NoOp;
+import org.nd4j.linalg.learning.config.Sgd;
+
+import java.util.Arrays;
+
+/**
+ * A {@link GradientUpdater} that can also be applied "lazily" to a subset of the rows of a 2d gradient - for example,
+ * the rows of an embedding table that were used in the current minibatch.<br>
+ * Only the specified rows of the gradient and of the updater state are read and modified; all other rows of the
+ * gradient are assumed to be zero, and their updater state (momentum, etc) is left unchanged. The cost of an update
+ * is hence proportional to the number of rows, rather than the size of the gradient.<br>
+ * Note that for updaters with state (such as Adam) this differs from the dense update, where the state of all rows
+ * decays every iteration.
+ */
+public interface SparseGradientUpdater {
+
+    /**
+     * Modify the specified rows of the gradient to be an update, in-place
+     *
+     * @param gradient  2d gradient array; rows other than the specified rows are assumed to be zero, and are not modified
+     * @param rows      Indices of the rows to update. Must not contain duplicates
+     * @param iteration Current iteration
+     * @param epoch     Current epoch
+     */
+    void applyUpdaterRows(INDArray gradient, int[] rows, int iteration, int epoch);
+
+    /**
+     * @param updater Updater configuration
+     * @return True if the updater instantiated from the specified configuration supports sparse (row-wise) updates
+     */
+    static boolean isSupported(IUpdater updater) {
+        return updater instanceof Sgd || updater instanceof Adam || updater instanceof AdaGrad || updater instanceof NoOp;
+    }
+
+    /**
+     * Get a view of the updater state array with the same shape and order as the gradient
+     */
+    static INDArray stateAsGradientShape(@NonNull INDArray state, @NonNull INDArray gradient) {
+        INDArray out = Shape.newShapeNoCopy(state, gradient.shape(), gradient.ordering() == 'f');
+        if (out == null)
+            throw new IllegalStateException("Could not reshape updater state of shape " + Arrays.toString(state.shape()) +
+                    " to gradient shape " + Arrays.toString(gradient.shape()));
+        return out;
+    }
+
+    /**
+     * Copy the specified rows of a 2d array to a new array of shape [rows.length, arr.size(1)]
+     */
+    static INDArray gatherRows(INDArray arr, int[] rows) {
+        return Nd4j.pullRows(arr, 1, rows);
+    }
+
+    /**
+     * Assign the values to the specified rows of the target array
+     *
+     * @param target 2d array to modify
+     * @param rows   Indices of the rows to assign
+     * @param values Array of shape [rows.length, target.size(1)]
+     */
+    static void scatterRows(INDArray target, int[] rows, INDArray values) {
+        Nd4j.scatterUpdate(ScatterUpdate.UpdateOp.ASSIGN, target, Nd4j.createFromArray(rows), values, 1);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.nd4j.linalg.quantization;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ranges (minimum and maximum values) of named activations, gathered from calibration data for post-training
+ * quantization. Not thread safe.
+ */
+public class ActivationRanges {
+
+    private final Map<String, double[]> ranges = new LinkedHashMap<>();
+
+    /**
+     * Expand the range of the specified activations to include the values of the specified array
+     *
+     * @param name        Name of the activations
+     * @param activations Activation values
+     */
+    public void update(@NonNull String name, @NonNull INDArray activations) {
+        if (activations.isEmpty())
+            return;
+        double min = activations.minNumber().doubleValue();
+        double max = activations.maxNumber().doubleValue();
+        double[] r = ranges.get(name);
+        if (r == null) {
+            ranges.put(name, new double[]{min, max});
+        } else {
+            r[0] = Math.min(r[0], min);
+            r[1] = Math.max(r[1], max);
+        }
+    }
+
+    public boolean contains(String name) {
+        return ranges.containsKey(name);
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(ranges.keySet());
+    }
+
+    public double getMin(String name) {
+        return range(name)[0];
+    }
+
+    public double getMax(String name) {
+        return range(name)[1];
+    }
+
+    /**
+     * @return Scale for symmetric int8 quantization of the specified activations: max(|min|, |max|) / 127
+     */
+    public double getScale(String name) {
+        double[] r = range(name);
+        return Math.max(Math.max(Math.abs(r[0]), Math.abs(r[1])) / PerChannelQuantizedArray.QUANTIZED_MAX,
+                PerChannelQuantizedArray.MIN_SCALE);
+    }
+
+    protected double[] range(String name) {
+        double[] r = ranges.get(name);
+        if (r == null)
+            throw new IllegalArgumentException("No range for activations \"" + name + "\". Activations with ranges: " + ranges.keySet());
+        return r;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ActivationRanges(");
+        boolean first = true;
+        for (Map.Entry<String, double[]> e : ranges.entrySet()) {
+            if (!first)
+                sb.append(", ");
+            sb.append(e.getKey()).append("=[").append(e.getValue()[0]).append(", ").append(e.getValue()[1]).append("]");
+            first = false;
+        }
+        return sb.append(")").toString();
+    }
+}
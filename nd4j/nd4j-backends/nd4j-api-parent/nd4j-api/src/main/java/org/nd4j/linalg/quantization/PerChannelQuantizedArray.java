@@ -0,0 +1,115 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.nd4j.linalg.quantization;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastDivOp;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastMulOp;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+/**
+ * Symmetric per-channel int8 quantization of an array, usually a weight array.<br>
+ * For each channel c (index along the channel dimension), values are stored as round(x / scale[c]) in the range
+ * [-127, 127], with scale[c] = max(|x|) / 127 over the values of that channel. The original values are approximated
+ * by {@link #dequantize()}, i.e., values * scale[c].<br>
+ * The channel dimension should be the output channel dimension of the weights: for example, 1 for dense weights with
+ * shape [nIn, nOut], or 0 for convolution weights with shape [oC, iC, kH, kW].
+ */
+@Getter
+public class PerChannelQuantizedArray {
+    public static final int QUANTIZED_MAX = 127;
+    //Lower bound for the scale of all-zero channels
+    protected static final double MIN_SCALE = 1e-12;
+
+    private final INDArray values;
+    private final INDArray scales;
+    private final int channelDimension;
+    private final DataType dataType;
+
+    protected PerChannelQuantizedArray(INDArray values, INDArray scales, int channelDimension, DataType dataType) {
+        this.values = values;
+        this.scales = scales;
+        this.channelDimension = channelDimension;
+        this.dataType = dataType;
+    }
+
+    /**
+     * Quantize the specified array, using one scale per channel along the specified dimension
+     *
+     * @param arr              Array to quantize. Must be a floating point array
+     * @param channelDimension Dimension of the channels (usually output channels) that get their own scale
+     * @return Quantized array, with INT8 values and scales of the same type as the original array
+     */
+    public static PerChannelQuantizedArray quantize(@NonNull INDArray arr, int channelDimension) {
+        Preconditions.checkArgument(arr.dataType().isFPType(), "Only floating point arrays can be quantized, got array with datatype %s", arr.dataType());
+        Preconditions.checkArgument(channelDimension >= 0 && channelDimension < arr.rank(), "Invalid channel dimension %s for array with rank %s",
+                channelDimension, arr.rank());
+
+        int[] reduceDims = new int[arr.rank() - 1];
+        int j = 0;
+        for (int i = 0; i < arr.rank(); i++) {
+            if (i != channelDimension)
+                reduceDims[j++] = i;
+        }
+
+        INDArray scales = reduceDims.length == 0 ? Transforms.abs(arr, true) : arr.amax(reduceDims);
+        scales = Transforms.max(scales.divi(QUANTIZED_MAX), MIN_SCALE, false).reshape(arr.size(channelDimension));
+
+        INDArray scaled = arr.ulike();
+        Nd4j.getExecutioner().exec(new BroadcastDivOp(arr, scales, scaled, channelDimension));
+        Transforms.round(scaled, false);
+        INDArray values = scaled.castTo(DataType.INT8);
+        return new PerChannelQuantizedArray(values, scales, channelDimension, arr.dataType());
+    }
+
+    /**
+     * @return The approximated original array, with the original datatype
+     */
+    public INDArray dequantize() {
+        INDArray out = values.castTo(dataType);
+        Nd4j.getExecutioner().exec(new BroadcastMulOp(out, scales, out, channelDimension));
+        return out;
+    }
+
+    /**
+     * @return Shape of the scales for broadcasting against the values: the number of channels along the channel
+     * dimension, and size 1 along all other dimensions
+     */
+    public long[] broadcastScalesShape() {
+        long[] shape = new long[values.rank()];
+        for (int i = 0; i < shape.length; i++)
+            shape[i] = (i == channelDimension ? values.size(i) : 1);
+        return shape;
+    }
+
+    /**
+     * @return Size of the quantized values and the scales, in bytes
+     */
+    public long sizeBytes() {
+        return values.length() * DataType.INT8.width() + scales.length() * scales.dataType().width();
+    }
+}
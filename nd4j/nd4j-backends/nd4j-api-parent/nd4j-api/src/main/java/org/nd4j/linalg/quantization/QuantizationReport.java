@@ -0,0 +1,95 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.nd4j.linalg.quantization;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.nd4j.evaluation.IEvaluation;
+import org.nd4j.evaluation.classification.Evaluation;
+
+/**
+ * Accuracy and latency of a quantized model compared to the original model, as evaluated on the same data.<br>
+ * Latency is the mean time per minibatch for the forward pass, measured after one warmup minibatch.<br>
+ * Parameter bytes are the actual size of the parameters held by each model. Weight bytes are for the quantized weight
+ * arrays only: for models that hold dequantized weights in the original datatype (see
+ * {@link #isQuantizedWeightBytesEstimated()}), the INT8 size is an estimate of the size if stored as INT8.
+ */
+@Getter
+@AllArgsConstructor
+public class QuantizationReport {
+    private final IEvaluation original;
+    private final IEvaluation quantized;
+    private final double originalMillisPerBatch;
+    private final double quantizedMillisPerBatch;
+    private final long originalWeightBytes;
+    private final long quantizedWeightBytes;
+    private final int numQuantizedArrays;
+    private final long originalParameterBytes;
+    private final long quantizedParameterBytes;
+    /**
+     * True if the quantized model holds dequantized weights, in which case {@link #getQuantizedWeightBytes()} is the
+     * estimated size of the weights if stored as INT8 rather than the memory actually used
+     */
+    private final boolean quantizedWeightBytesEstimated;
+
+    /**
+     * @return Accuracy of the quantized model minus the accuracy of the original model, or NaN if the evaluations
+     * are not {@link Evaluation} instances
+     */
+    public double getAccuracyDelta() {
+        if (original instanceof Evaluation && quantized instanceof Evaluation)
+            return ((Evaluation) quantized).accuracy() - ((Evaluation) original).accuracy();
+        return Double.NaN;
+    }
+
+    /**
+     * @return Original latency divided by the quantized model latency
+     */
+    public double getSpeedup() {
+        return quantizedMillisPerBatch > 0 ? originalMillisPerBatch / quantizedMillisPerBatch : Double.NaN;
+    }
+
+    public String stats() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Quantized arrays:          ").append(numQuantizedArrays).append("\n");
+        sb.append("Parameter bytes:           ").append(originalParameterBytes).append(" (original), ")
+                .append(quantizedParameterBytes).append(" (quantized)\n");
+        sb.append("Weight bytes (original):   ").append(originalWeightBytes).append("\n");
+        sb.append("Weight bytes (INT8):       ").append(quantizedWeightBytes);
+        if (quantizedWeightBytesEstimated)
+            sb.append(" (estimate - the quantized model holds dequantized weights)");
+        sb.append("\n");
+        sb.append(String.format("Latency ms/batch:          %.3f (original), %.3f (quantized)%n", originalMillisPerBatch, quantizedMillisPerBatch));
+        if (original instanceof Evaluation && quantized instanceof Evaluation) {
+            sb.append(String.format("Accuracy:                  %.4f (original), %.4f (quantized), delta %.4f%n",
+                    ((Evaluation) original).accuracy(), ((Evaluation) quantized).accuracy(), getAccuracyDelta()));
+        }
+        sb.append("\n========== Original ==========\n").append(original.stats());
+        sb.append("\n========== Quantized ==========\n").append(quantized.stats());
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return stats();
+    }
+}
@@ -32,6 +32,7 @@ import org.deeplearning4j.nn.layers.convolution.ConvolutionLayer;
 import org.deeplearning4j.nn.layers.convolution.subsampling.SubsamplingLayer;
 import org.deeplearning4j.nn.layers.normalization.BatchNormalization;
 import org.deeplearning4j.nn.layers.normalization.LocalResponseNormalization;
+import org.deeplearning4j.nn.layers.recurrent.GravesLSTM;
 import org.deeplearning4j.nn.layers.recurrent.LSTM;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.util.ModelSerializer;
@@ -296,6 +297,10 @@ public class TestUtils {
                 Field f4 = LSTM.class.getDeclaredField("helper");
                 f4.setAccessible(true);
                 f4.set(l, null);
+            } else if(l instanceof GravesLSTM){
+                Field f6 = GravesLSTM.class.getDeclaredField("helper");
+                f6.setAccessible(true);
+                f6.set(l, null);
             } else if(l instanceof LocalResponseNormalization){
                 Field f5 = LocalResponseNormalization.class.getDeclaredField("helper");
                 f5.setAccessible(true);
@@ -38,6 +38,7 @@ import org.datavec.api.records.reader.RecordReader;
 import org.datavec.api.records.reader.SequenceRecordReader;
 import org.datavec.api.records.reader.impl.collection.CollectionSequenceRecordReader;
 import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
+import org.datavec.api.records.reader.impl.csv.ColumnarCSVRecordReader;
 import org.datavec.api.records.reader.impl.csv.CSVSequenceRecordReader;
 import org.datavec.api.split.CollectionInputSplit;
 import org.datavec.api.split.FileSplit;
@@ -147,6 +148,41 @@ class RecordReaderMultiDataSetIteratorTest extends BaseDL4JTest {
         assertFalse(srrmdsi.hasNext());
     }
 
+    @Test
+    @DisplayName("Test Columnar CSV")
+    void testColumnarCsv() throws Exception {
+        // Columnar batches (converted with a bulk copy) should give the same features and labels as the standard path
+        RecordReader rr = new CSVRecordReader(0, ',');
+        rr.initialize(new FileSplit(Resources.asFile("iris.txt")));
+        RecordReaderDataSetIterator rrdsi = new RecordReaderDataSetIterator(rr, 10, 4, 3);
+        RecordReader rr2 = new ColumnarCSVRecordReader();
+        rr2.initialize(new FileSplit(Resources.asFile("iris.txt")));
+        RecordReaderDataSetIterator rrdsi2 = new RecordReaderDataSetIterator(rr2, 10, 4, 3);
+        while (rrdsi.hasNext()) {
+            assertTrue(rrdsi2.hasNext());
+            assertEquals(rrdsi.next(), rrdsi2.next());
+        }
+        assertFalse(rrdsi2.hasNext());
+
+        RecordReader rr3 = new CSVRecordReader(0, ',');
+        rr3.initialize(new FileSplit(Resources.asFile("iris.txt")));
+        MultiDataSetIterator rrmdsi = new RecordReaderMultiDataSetIterator.Builder(7).addReader("reader", rr3)
+                .addInput("reader").addInput("reader", 1, 2).addOutput("reader", 3, 4).build();
+        RecordReader rr4 = new ColumnarCSVRecordReader();
+        rr4.initialize(new FileSplit(Resources.asFile("iris.txt")));
+        MultiDataSetIterator rrmdsi2 = new RecordReaderMultiDataSetIterator.Builder(7).addReader("reader", rr4)
+                .addInput("reader").addInput("reader", 1, 2).addOutput("reader", 3, 4).build();
+        while (rrmdsi.hasNext()) {
+            MultiDataSet mds = rrmdsi.next();
+            MultiDataSet mds2 = rrmdsi2.next();
+            for (int i = 0; i < 2; i++) {
+                assertEquals(mds.getFeatures(i), mds2.getFeatures(i));
+            }
+            assertEquals(mds.getLabels(0), mds2.getLabels(0));
+        }
+        assertFalse(rrmdsi2.hasNext());
+    }
+
     @Test
     @DisplayName("Tests Basic Meta")
     void testsBasicMeta() throws Exception {
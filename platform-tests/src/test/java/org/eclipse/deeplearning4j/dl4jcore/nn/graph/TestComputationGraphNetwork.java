@@ -2244,4 +2244,50 @@ public class TestComputationGraphNetwork extends BaseDL4JTest {
 
         assertEquals(out, out2);
     }
+
+    @Test
+    public void testSubgraphAndSharedParameters(@TempDir Path testDir) throws Exception {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activation(Activation.TANH)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("d0", new DenseLayer.Builder().nIn(4).nOut(5).build(), "in")
+                .addLayer("d1", new DenseLayer.Builder().nIn(5).nOut(5).build(), "d0")
+                .addLayer("out1", new OutputLayer.Builder().nIn(5).nOut(3).activation(Activation.SOFTMAX).build(), "d0")
+                .addLayer("out2", new OutputLayer.Builder().nIn(5).nOut(2).activation(Activation.SOFTMAX).build(), "d1")
+                .setOutputs("out1", "out2")
+                .build();
+
+        ComputationGraph cg = new ComputationGraph(conf);
+        cg.init();
+
+        INDArray in = Nd4j.rand(3, 4);
+        INDArray[] exp = cg.output(in);
+
+        //Subgraph: only d0 and out1 are required
+        ComputationGraph sub = cg.subgraph("out1");
+        assertEquals(Arrays.asList("d0", "out1"), new ArrayList<>(sub.getConfiguration().getVertices().keySet()));
+        assertEquals(cg.getLayer("d0").numParams() + cg.getLayer("out1").numParams(), sub.numParams());
+        assertEquals(exp[0], sub.outputSingle(in));
+
+        File f = new File(testDir.toFile(), "net.zip");
+        ModelSerializer.writeModelMappable(cg, f, false);
+        ComputationGraph restored = ModelSerializer.restoreComputationGraphForOutputs(f, "out2");
+        assertEquals(Collections.singletonList("out2"), restored.getConfiguration().getNetworkOutputs());
+        assertEquals(exp[1], restored.outputSingle(in));
+
+        //Shared parameters: same array instance, read only
+        ComputationGraph shared = cg.cloneSharingParameters();
+        assertSame(cg.params(), shared.params());
+        assertTrue(shared.isParamsReadOnly());
+        assertFalse(cg.isParamsReadOnly());
+        assertArrayEquals(exp, shared.output(in));
+
+        INDArray paramsBefore = cg.params().dup();
+        MultiDataSet mds = new org.nd4j.linalg.dataset.MultiDataSet(new INDArray[]{in},
+                new INDArray[]{Nd4j.rand(3, 3), Nd4j.rand(3, 2)});
+        assertThrows(IllegalStateException.class, () -> shared.fit(mds));
+        assertThrows(IllegalStateException.class, () -> shared.setParams(Nd4j.rand(paramsBefore.dataType(), paramsBefore.shape())));
+        assertEquals(paramsBefore, cg.params());
+    }
 }
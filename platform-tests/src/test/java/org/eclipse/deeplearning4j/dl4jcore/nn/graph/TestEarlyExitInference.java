@@ -0,0 +1,194 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.graph;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.recurrent.SimpleRnn;
+import org.deeplearning4j.nn.conf.preprocessor.FeedForwardToRnnPreProcessor;
+import org.deeplearning4j.nn.conf.preprocessor.RnnToFeedForwardPreProcessor;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.graph.EarlyExitInference;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class TestEarlyExitInference extends BaseDL4JTest {
+
+    @Test
+    public void testNoExitMatchesOutput() {
+        ComputationGraph net = getNet();
+        INDArray in = Nd4j.rand(DataType.FLOAT, 20, 4);
+        INDArray exp = net.output(in)[1];
+
+        EarlyExitInference ee = new EarlyExitInference.Builder(net).exit("aux", 1.0).build();
+        EarlyExitInference.Result r = ee.outputWithExits(in);
+        assertEquals(exp, r.getOutput());
+        assertArrayEquals(new long[]{0, 20}, r.getExitCounts());
+        assertEquals(1.0, r.getComputeFraction(), 1e-9);
+    }
+
+    @Test
+    public void testAllExit() {
+        ComputationGraph net = getNet();
+        INDArray in = Nd4j.rand(DataType.FLOAT, 20, 4);
+        INDArray exp = net.output(in)[0];
+
+        EarlyExitInference ee = new EarlyExitInference.Builder(net).exit("aux", 1e-6).build();
+        EarlyExitInference.Result r = ee.outputWithExits(in);
+        assertEquals(exp, r.getOutput());
+        assertArrayEquals(new long[]{20, 0}, r.getExitCounts());
+        //2 of 4 vertices (dense0, aux) computed
+        assertEquals(0.5, r.getComputeFraction(), 1e-9);
+    }
+
+    @Test
+    public void testPartialExit() {
+        ComputationGraph net = getNet();
+        INDArray in = Nd4j.rand(DataType.FLOAT, 50, 4);
+        INDArray[] all = net.output(in);
+        double[] auxMax = all[0].max(1).toDoubleVector();
+        double[] sorted = auxMax.clone();
+        Arrays.sort(sorted);
+        double threshold = sorted[sorted.length / 2];
+
+        List<EarlyExitInference.Result> seen = new ArrayList<>();
+        EarlyExitInference ee = new EarlyExitInference.Builder(net)
+                .exit("aux", threshold)
+                .listeners((inference, result) -> seen.add(result))
+                .build();
+        EarlyExitInference.Result r = ee.outputWithExits(in);
+
+        long expExit = 0;
+        for (int i = 0; i < auxMax.length; i++) {
+            boolean exit = auxMax[i] >= threshold;
+            if (exit)
+                expExit++;
+            assertEquals(exit ? 0 : 1, r.getExitIndex()[i]);
+            INDArray expRow = all[exit ? 0 : 1].getRow(i);
+            assertTrue(expRow.equalsWithEps(r.getOutput().getRow(i), 1e-5), String.valueOf(i));
+        }
+        assertArrayEquals(new long[]{expExit, 50 - expExit}, r.getExitCounts());
+        assertTrue(r.getComputeFraction() < 1.0);
+
+        assertEquals(1, seen.size());
+        assertArrayEquals(r.getExitCounts(), ee.getExitCounts());
+        assertEquals(expExit / 50.0, ee.getExitRates()[0], 1e-9);
+    }
+
+    @Test
+    public void testPreprocessorAfterExit() {
+        //The preprocessors after the exit use the minibatch size: must be the number of remaining examples
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .dataType(DataType.FLOAT)
+                .activation(Activation.TANH)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("dense0", new DenseLayer.Builder().nIn(4).nOut(8).build(), "in")
+                .addLayer("aux", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).activation(Activation.SOFTMAX).nIn(8).nOut(3).build(), "dense0")
+                .addLayer("rnn", new SimpleRnn.Builder().nIn(8).nOut(6).build(), new FeedForwardToRnnPreProcessor(), "dense0")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).activation(Activation.SOFTMAX).nIn(6).nOut(3).build(),
+                        new RnnToFeedForwardPreProcessor(), "rnn")
+                .setOutputs("aux", "out")
+                .build();
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+
+        INDArray in = Nd4j.rand(DataType.FLOAT, 20, 4);
+        INDArray[] all = net.output(in);
+        double[] auxMax = all[0].max(1).toDoubleVector();
+        double[] sorted = auxMax.clone();
+        Arrays.sort(sorted);
+        double threshold = sorted[sorted.length / 2];
+
+        EarlyExitInference ee = new EarlyExitInference.Builder(net).exit("aux", threshold).build();
+        EarlyExitInference.Result r = ee.outputWithExits(in);
+        assertTrue(r.getExitCounts()[0] > 0 && r.getExitCounts()[1] > 0);
+        for (int i = 0; i < auxMax.length; i++) {
+            INDArray expRow = all[auxMax[i] >= threshold ? 0 : 1].getRow(i);
+            assertTrue(expRow.equalsWithEps(r.getOutput().getRow(i), 1e-5), String.valueOf(i));
+        }
+        assertEquals(in, net.getInput(0));
+    }
+
+    @Test
+    public void testIncompatibleExitShape() {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .dataType(DataType.FLOAT)
+                .activation(Activation.TANH)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("dense0", new DenseLayer.Builder().nOut(8).build(), "in")
+                .addLayer("aux", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).activation(Activation.SOFTMAX).nOut(3).build(), "dense0")
+                .addLayer("dense1", new DenseLayer.Builder().nOut(8).build(), "dense0")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).activation(Activation.SOFTMAX).nOut(5).build(), "dense1")
+                .setOutputs("aux", "out")
+                .setInputTypes(InputType.feedForward(4))
+                .build();
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+
+        //Fails on construction, regardless of which exits the data would use
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> new EarlyExitInference.Builder(net).exit("aux", 0.5).build());
+        assertTrue(e.getMessage().contains("not compatible"), e.getMessage());
+    }
+
+    private static ComputationGraph getNet() {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .dataType(DataType.FLOAT)
+                .activation(Activation.TANH)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("dense0", new DenseLayer.Builder().nOut(8).build(), "in")
+                .addLayer("aux", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).activation(Activation.SOFTMAX).nOut(3).build(), "dense0")
+                .addLayer("dense1", new DenseLayer.Builder().nOut(8).build(), "dense0")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).activation(Activation.SOFTMAX).nOut(3).build(), "dense1")
+                .setOutputs("aux", "out")
+                .setInputTypes(InputType.feedForward(4))
+                .build();
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+        return net;
+    }
+}
@@ -24,6 +24,7 @@ import org.deeplearning4j.BaseDL4JTest;
 import org.eclipse.deeplearning4j.dl4jcore.TestUtils;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.RNNFormat;
@@ -46,6 +47,11 @@ import org.nd4j.linalg.activations.impl.ActivationIdentity;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.deeplearning4j.nn.updater.MultiLayerUpdater;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.learning.config.AdaGrad;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.learning.config.IUpdater;
 import org.nd4j.linalg.learning.config.Sgd;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
@@ -546,6 +552,68 @@ class EmbeddingLayerTest extends BaseDL4JTest {
         }
     }
 
+    @Test
+    @DisplayName("Test Embedding Sparse Gradients")
+    void testEmbeddingSparseGradients() {
+        int nIn = 20;
+        int inputLength = 3;
+        for (boolean seq : new boolean[] { false, true }) {
+            for (IUpdater u : new IUpdater[] { new Sgd(0.1), new AdaGrad(0.1), new Adam(0.1) }) {
+                MultiLayerNetwork[] nets = new MultiLayerNetwork[2];
+                for (int i = 0; i < 2; i++) {
+                    boolean sparse = i == 1;
+                    MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).updater(u).activation(Activation.TANH).list()
+                            .layer(seq ? new EmbeddingSequenceLayer.Builder().inputLength(inputLength).hasBias(true).sparseGradients(sparse).nIn(nIn).nOut(5).build()
+                                    : new EmbeddingLayer.Builder().hasBias(true).sparseGradients(sparse).nIn(nIn).nOut(5).build())
+                            .layer(seq ? new RnnOutputLayer.Builder().nIn(5).nOut(4).activation(Activation.SOFTMAX).build()
+                                    : new OutputLayer.Builder().nIn(5).nOut(4).activation(Activation.SOFTMAX).build())
+                            .build();
+                    nets[i] = new MultiLayerNetwork(conf);
+                    nets[i].init();
+                }
+                String str = (seq ? "EmbeddingSequenceLayer" : "EmbeddingLayer") + " - " + u.getClass().getSimpleName();
+
+                //Sparse weights are in their own updater block: [0_W], [0_b, 1_W, 1_b]
+                assertEquals(1, ((MultiLayerUpdater) nets[0].getUpdater()).getUpdaterBlocks().size(), str);
+                assertEquals(2, ((MultiLayerUpdater) nets[1].getUpdater()).getUpdaterBlocks().size(), str);
+
+                //Same rows (0 to 3) used every iteration: lazy updates are identical to dense updates
+                INDArray in = seq ? Nd4j.createFromArray(new double[][] { { 0, 1, 2 }, { 3, 0, 1 }, { 2, 3, 0 }, { 1, 2, 3 } })
+                        : Nd4j.createFromArray(new double[][] { { 0 }, { 1 }, { 2 }, { 3 } });
+                for (int iter = 0; iter < 3; iter++) {
+                    INDArray labels = seq ? Nd4j.rand(DataType.FLOAT, 4, 4, inputLength) : Nd4j.rand(DataType.FLOAT, 4, 4);
+                    nets[0].fit(in, labels);
+                    nets[1].fit(in, labels);
+                }
+                assertEquals(nets[0].params(), nets[1].params(), str);
+
+                //Rows not present in the minibatch are not modified
+                INDArray wBefore = nets[1].getParam("0_W").dup();
+                in = seq ? Nd4j.valueArrayOf(new long[] { 4, inputLength }, 10.0) : Nd4j.valueArrayOf(new long[] { 4, 1 }, 10.0);
+                INDArray labels = seq ? Nd4j.rand(DataType.FLOAT, 4, 4, inputLength) : Nd4j.rand(DataType.FLOAT, 4, 4);
+                nets[0].fit(in, labels);
+                nets[1].fit(in, labels);
+                INDArray wAfter = nets[1].getParam("0_W");
+                assertEquals(wBefore.get(NDArrayIndex.interval(0, 10), NDArrayIndex.all()), wAfter.get(NDArrayIndex.interval(0, 10), NDArrayIndex.all()), str);
+                assertNotEquals(wBefore.getRow(10), wAfter.getRow(10), str);
+                assertEquals(wBefore.get(NDArrayIndex.interval(11, nIn), NDArrayIndex.all()), wAfter.get(NDArrayIndex.interval(11, nIn), NDArrayIndex.all()), str);
+
+                //Sgd and AdaGrad: the dense update of a zero gradient row is zero. Adam: the dense update of rows 0 to 3
+                // is non-zero due to momentum, whereas the lazy update leaves them unchanged
+                INDArray wDense = nets[0].getParam("0_W");
+                if (u instanceof Adam) {
+                    assertNotEquals(wDense.get(NDArrayIndex.interval(0, 4), NDArrayIndex.all()), wAfter.get(NDArrayIndex.interval(0, 4), NDArrayIndex.all()), str);
+                } else {
+                    assertEquals(nets[0].params(), nets[1].params(), str);
+                }
+                assertEquals(wDense.getRow(10), wAfter.getRow(10), str);
+
+                assertArrayEquals(new int[] { 10 }, ((SparseGradientLayer) nets[1].getLayer(0)).getSparseGradientRows(DefaultParamInitializer.WEIGHT_KEY), str);
+                assertNull(((SparseGradientLayer) nets[0].getLayer(0)).getSparseGradientRows(DefaultParamInitializer.WEIGHT_KEY), str);
+            }
+        }
+    }
+
     public static double relErr(double d1, double d2) {
         if (d1 == 0.0 && d2 == 0.0)
             return 0.0;
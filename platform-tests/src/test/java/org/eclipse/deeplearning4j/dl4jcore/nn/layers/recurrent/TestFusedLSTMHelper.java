@@ -0,0 +1,182 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.layers.recurrent;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.eclipse.deeplearning4j.dl4jcore.TestUtils;
+import org.deeplearning4j.config.DL4JSystemProperties;
+import org.deeplearning4j.nn.conf.BackpropType;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.GravesLSTM;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.layers.recurrent.FusedLSTMHelper;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Sgd;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.nd4j.linalg.indexing.NDArrayIndex.all;
+import static org.nd4j.linalg.indexing.NDArrayIndex.interval;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class TestFusedLSTMHelper extends BaseDL4JTest {
+
+    private static final int N_IN = 5;
+    private static final int N_OUT = 4;
+    private static final int TS_LENGTH = 12;
+
+    private String helpersDisabled;
+
+    @BeforeEach
+    public void enableHelpers() {
+        helpersDisabled = System.getProperty(DL4JSystemProperties.DISABLE_HELPER_PROPERTY);
+        System.setProperty(DL4JSystemProperties.DISABLE_HELPER_PROPERTY, "false");
+    }
+
+    @AfterEach
+    public void restoreHelpers() {
+        if (helpersDisabled == null) {
+            System.clearProperty(DL4JSystemProperties.DISABLE_HELPER_PROPERTY);
+        } else {
+            System.setProperty(DL4JSystemProperties.DISABLE_HELPER_PROPERTY, helpersDisabled);
+        }
+    }
+
+    @Test
+    public void testFusedMatchesBuiltIn() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray f = Nd4j.rand(DataType.DOUBLE, 3, N_IN, TS_LENGTH);
+        INDArray l = TestUtils.randomOneHotTimeSeries(3, N_OUT, TS_LENGTH, 12345).castTo(DataType.DOUBLE);
+
+        //Variable length: used by the fused path as sequence lengths
+        INDArray prefixMask = Nd4j.ones(DataType.DOUBLE, 3, TS_LENGTH);
+        prefixMask.putScalar(0, TS_LENGTH - 1, 0.0);
+        for (int t = 5; t < TS_LENGTH; t++) {
+            prefixMask.putScalar(2, t, 0.0);
+        }
+        //Not expressible as sequence lengths: falls back on the built-in implementation
+        INDArray otherMask = prefixMask.dup();
+        otherMask.putScalar(1, 0, 0.0);
+
+        for (boolean graves : new boolean[]{false, true}) {
+            for (INDArray mask : new INDArray[]{null, prefixMask, otherMask}) {
+                String msg = "graves=" + graves + ", mask=" + (mask == null ? "none" : mask == prefixMask ? "prefix" : "other");
+                MultiLayerNetwork fused = getNet(graves, null);
+                MultiLayerNetwork builtIn = getNet(graves, null);
+                TestUtils.removeHelpers(builtIn.getLayers());
+                assertTrue(fused.getLayer(0).getHelper() instanceof FusedLSTMHelper, msg);
+                assertNull(builtIn.getLayer(0).getHelper(), msg);
+
+                INDArray outFused = fused.output(f, false, mask, mask);
+                INDArray outBuiltIn = builtIn.output(f, false, mask, mask);
+                assertTrue(outBuiltIn.equalsWithEps(outFused, 1e-8), msg);
+
+                for (MultiLayerNetwork net : new MultiLayerNetwork[]{fused, builtIn}) {
+                    net.setInput(f);
+                    net.setLabels(l);
+                    net.setLayerMaskArrays(mask, mask);
+                    net.computeGradientAndScore();
+                }
+                assertEquals(builtIn.score(), fused.score(), 1e-8, msg);
+                assertGradientsEqual(builtIn.gradient(), fused.gradient(), msg);
+            }
+        }
+    }
+
+    @Test
+    public void testFusedTbpttAndRnnTimeStep() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray f = Nd4j.rand(DataType.DOUBLE, 3, N_IN, 2 * TS_LENGTH);
+        INDArray l = TestUtils.randomOneHotTimeSeries(3, N_OUT, 2 * TS_LENGTH, 12345).castTo(DataType.DOUBLE);
+
+        for (boolean graves : new boolean[]{false, true}) {
+            //Backward length shorter than forward length: only the last steps of each segment contribute gradients
+            for (boolean shortBackward : new boolean[]{false, true}) {
+                String msg = "graves=" + graves + ", shortBackward=" + shortBackward;
+                int backwardLength = shortBackward ? TS_LENGTH / 3 : TS_LENGTH;
+                MultiLayerNetwork fused = getNet(graves, backwardLength);
+                MultiLayerNetwork builtIn = getNet(graves, backwardLength);
+                TestUtils.removeHelpers(builtIn.getLayers());
+
+                for (int i = 0; i < 3; i++) {
+                    fused.fit(f, l);
+                    builtIn.fit(f, l);
+                }
+                assertTrue(builtIn.params().equalsWithEps(fused.params(), 1e-6), msg);
+
+                fused.rnnClearPreviousState();
+                builtIn.rnnClearPreviousState();
+                for (int t = 0; t < 2 * TS_LENGTH; t += 6) {
+                    INDArray in = f.get(all(), all(), interval(t, t + 6));
+                    assertTrue(builtIn.rnnTimeStep(in).equalsWithEps(fused.rnnTimeStep(in), 1e-8), msg);
+                }
+            }
+        }
+    }
+
+    private static void assertGradientsEqual(Gradient expected, Gradient actual, String msg) {
+        Map<String, INDArray> e = expected.gradientForVariable();
+        Map<String, INDArray> a = actual.gradientForVariable();
+        assertEquals(e.keySet(), a.keySet(), msg);
+        for (String s : e.keySet()) {
+            INDArray diff = e.get(s).sub(a.get(s));
+            assertEquals(0.0, diff.amaxNumber().doubleValue(), 1e-8, msg + " - " + s);
+        }
+    }
+
+    private static MultiLayerNetwork getNet(boolean graves, Integer tbpttBackwardLength) {
+        NeuralNetConfiguration.ListBuilder b = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .dataType(DataType.DOUBLE)
+                .updater(new Sgd(0.1))
+                .activation(Activation.TANH)
+                .list();
+        for (int i = 0; i < 2; i++) {
+            b.layer(graves ? new GravesLSTM.Builder().nOut(6).build() : new LSTM.Builder().nOut(6).build());
+        }
+        b.layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT).activation(Activation.SOFTMAX).nOut(N_OUT).build())
+                .setInputType(InputType.recurrent(N_IN));
+        if (tbpttBackwardLength != null) {
+            b.backpropType(BackpropType.TruncatedBPTT).tBPTTForwardLength(TS_LENGTH).tBPTTBackwardLength(tbpttBackwardLength);
+        }
+        MultiLayerNetwork net = new MultiLayerNetwork(b.build());
+        net.init();
+        return net;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.misc;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.ActivationCheckpointing;
+import org.deeplearning4j.nn.conf.CacheMode;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.WorkspaceMode;
+import org.deeplearning4j.nn.conf.graph.ElementWiseVertex;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.memory.MemoryType;
+import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.executioner.OpExecutioner;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Sgd;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+@Tag(TagNames.WORKSPACES)
+public class TestActivationCheckpointing extends BaseDL4JTest {
+
+    @BeforeEach
+    public void before() {
+        Nd4j.getExecutioner().setProfilingMode(OpExecutioner.ProfilingMode.SCOPE_PANIC);
+    }
+
+    @AfterEach
+    public void after() {
+        Nd4j.getExecutioner().setProfilingMode(OpExecutioner.ProfilingMode.DISABLED);
+    }
+
+    private static MultiLayerConfiguration getMlnConf(WorkspaceMode wsm, ActivationCheckpointing checkpointing) {
+        NeuralNetConfiguration.ListBuilder b = new NeuralNetConfiguration.Builder()
+                .dataType(DataType.DOUBLE)
+                .seed(12345)
+                .updater(new Sgd(0.1))
+                .trainingWorkspaceMode(wsm)
+                .inferenceWorkspaceMode(wsm)
+                .list();
+        for (int i = 0; i < 6; i++) {
+            b.layer(new DenseLayer.Builder().nOut(8).activation(Activation.TANH).build());
+        }
+        return b.layer(new OutputLayer.Builder().nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .setInputType(InputType.feedForward(5))
+                .activationCheckpointing(checkpointing)
+                .build();
+    }
+
+    private static ComputationGraphConfiguration getGraphConf(WorkspaceMode wsm, ActivationCheckpointing checkpointing) {
+        return new NeuralNetConfiguration.Builder()
+                .dataType(DataType.DOUBLE)
+                .seed(12345)
+                .updater(new Sgd(0.1))
+                .trainingWorkspaceMode(wsm)
+                .inferenceWorkspaceMode(wsm)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("0", new DenseLayer.Builder().nOut(8).activation(Activation.TANH).build(), "in")
+                .addLayer("1", new DenseLayer.Builder().nOut(8).activation(Activation.TANH).build(), "0")
+                .addLayer("2", new DenseLayer.Builder().nOut(8).activation(Activation.TANH).build(), "1")
+                .addVertex("add", new ElementWiseVertex(ElementWiseVertex.Op.Add), "0", "2")
+                .addLayer("3", new DenseLayer.Builder().nOut(8).activation(Activation.TANH).build(), "add")
+                .addLayer("4", new DenseLayer.Builder().nOut(8).activation(Activation.TANH).build(), "3")
+                .addLayer("out1", new OutputLayer.Builder().nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build(), "4")
+                .addLayer("out2", new OutputLayer.Builder().nOut(2).activation(Activation.IDENTITY)
+                        .lossFunction(LossFunctions.LossFunction.MSE).build(), "1")
+                .setOutputs("out1", "out2")
+                .setInputTypes(InputType.feedForward(5))
+                .activationCheckpointing(checkpointing)
+                .build();
+    }
+
+    @Test
+    public void testMultiLayerNetworkGradients() {
+        INDArray f = Nd4j.rand(DataType.DOUBLE, 10, 5);
+        INDArray l = Nd4j.zeros(DataType.DOUBLE, 10, 3);
+        for (int i = 0; i < 10; i++) {
+            l.putScalar(i, i % 3, 1.0);
+        }
+
+        for (WorkspaceMode wsm : WorkspaceMode.values()) {
+            for (ActivationCheckpointing c : new ActivationCheckpointing[]{ActivationCheckpointing.everyNLayers(2),
+                    ActivationCheckpointing.atLayers("layer2")}) {
+                MultiLayerNetwork net = new MultiLayerNetwork(getMlnConf(wsm, null));
+                net.init();
+                MultiLayerNetwork netCheckpointed = new MultiLayerNetwork(getMlnConf(wsm, c));
+                netCheckpointed.init();
+                netCheckpointed.setParams(net.params().dup());
+
+                net.setInput(f);
+                net.setLabels(l);
+                net.computeGradientAndScore();
+                netCheckpointed.setInput(f);
+                netCheckpointed.setLabels(l);
+                netCheckpointed.computeGradientAndScore();
+
+                String msg = wsm + " - " + c;
+                assertEquals(net.score(), netCheckpointed.score(), 1e-10, msg);
+                assertEquals(net.gradient().gradient(), netCheckpointed.gradient().gradient(), msg);
+                assertEquals(net.gradient().gradientForVariable().keySet(),
+                        netCheckpointed.gradient().gradientForVariable().keySet(), msg);
+
+                net.fit(f, l);
+                netCheckpointed.fit(f, l);
+                assertEquals(net.params(), netCheckpointed.params(), msg);
+            }
+        }
+    }
+
+    @Test
+    public void testComputationGraphGradients() {
+        INDArray f = Nd4j.rand(DataType.DOUBLE, 10, 5);
+        INDArray l1 = Nd4j.zeros(DataType.DOUBLE, 10, 3);
+        for (int i = 0; i < 10; i++) {
+            l1.putScalar(i, i % 3, 1.0);
+        }
+        INDArray l2 = Nd4j.rand(DataType.DOUBLE, 10, 2);
+
+        for (WorkspaceMode wsm : WorkspaceMode.values()) {
+            for (ActivationCheckpointing c : new ActivationCheckpointing[]{ActivationCheckpointing.everyNLayers(2),
+                    ActivationCheckpointing.atLayers("1", "3")}) {
+                ComputationGraph net = new ComputationGraph(getGraphConf(wsm, null));
+                net.init();
+                ComputationGraph netCheckpointed = new ComputationGraph(getGraphConf(wsm, c));
+                netCheckpointed.init();
+                netCheckpointed.setParams(net.params().dup());
+
+                net.setInputs(f);
+                net.setLabels(l1, l2);
+                net.computeGradientAndScore();
+                netCheckpointed.setInputs(f);
+                netCheckpointed.setLabels(l1, l2);
+                netCheckpointed.computeGradientAndScore();
+
+                String msg = wsm + " - " + c;
+                assertEquals(net.score(), netCheckpointed.score(), 1e-10, msg);
+                assertEquals(net.gradient().gradient(), netCheckpointed.gradient().gradient(), msg);
+
+                net.fit(new INDArray[]{f}, new INDArray[]{l1, l2});
+                netCheckpointed.fit(new INDArray[]{f}, new INDArray[]{l1, l2});
+                assertEquals(net.params(), netCheckpointed.params(), msg);
+            }
+        }
+    }
+
+    @Test
+    public void testMemoryReport() {
+        MultiLayerConfiguration conf = getMlnConf(WorkspaceMode.ENABLED, null);
+        MultiLayerConfiguration confCheckpointed = getMlnConf(WorkspaceMode.ENABLED, ActivationCheckpointing.everyNLayers(2));
+
+        InputType it = InputType.feedForward(5);
+        long standard = conf.getMemoryReport(it).getMemoryBytes(MemoryType.ACTIVATIONS, 32, MemoryUseMode.TRAINING, CacheMode.NONE);
+        long checkpointed = confCheckpointed.getMemoryReport(it).getMemoryBytes(MemoryType.ACTIVATIONS, 32, MemoryUseMode.TRAINING, CacheMode.NONE);
+        assertTrue(checkpointed < standard, checkpointed + " vs. " + standard);
+
+        //Inference memory is not affected
+        assertEquals(conf.getMemoryReport(it).getTotalMemoryBytes(32, MemoryUseMode.INFERENCE, CacheMode.NONE),
+                confCheckpointed.getMemoryReport(it).getTotalMemoryBytes(32, MemoryUseMode.INFERENCE, CacheMode.NONE));
+    }
+}
@@ -53,6 +53,7 @@ import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
 import org.deeplearning4j.optimize.api.BaseTrainingListener;
 import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
 import org.deeplearning4j.util.ModelSerializer;
+import org.apache.commons.lang3.SerializationUtils;
 import org.junit.jupiter.api.*;import org.junit.jupiter.api.Test;
 import org.nd4j.common.tests.tags.NativeTag;
 import org.nd4j.common.tests.tags.TagNames;
@@ -81,6 +82,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.jupiter.api.Assertions.*;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -1025,4 +1027,69 @@ public class MultiLayerTest extends BaseDL4JTest {
         net.fit(new DataSet(in, lbl));
         Nd4j.getExecutioner().setProfilingMode(OpExecutioner.ProfilingMode.SCOPE_PANIC);
     }
+
+    @Test
+    @DisplayName("Test Concurrent Output")
+    void testConcurrentOutput() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).updater(new Sgd(0.5)).activation(Activation.TANH).list().layer(new DenseLayer.Builder().nIn(10).nOut(20).build()).layer(new DenseLayer.Builder().nIn(20).nOut(20).build()).layer(new OutputLayer.Builder().nIn(20).nOut(5).activation(Activation.SOFTMAX).build()).build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        int nThreads = 8;
+        INDArray[] inputs = new INDArray[nThreads];
+        INDArray[] expected = new INDArray[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            inputs[i] = Nd4j.rand(DataType.FLOAT, 3, 10);
+            expected[i] = net.output(inputs[i]);
+        }
+        net.setConcurrentOutput(true);
+        assertTrue(net.isConcurrentOutput());
+        INDArray[][] actual = new INDArray[nThreads][50];
+        Thread[] threads = new Thread[nThreads];
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < nThreads; i++) {
+            int idx = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    for (int j = 0; j < actual[idx].length; j++) {
+                        actual[idx][j] = net.output(inputs[idx]);
+                    }
+                } catch (Throwable t) {
+                    log.error("", t);
+                    failures.incrementAndGet();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, failures.get());
+        for (int i = 0; i < nThreads; i++) {
+            for (INDArray out : actual[i]) {
+                assertEquals(expected[i], out);
+            }
+        }
+        // One replica per thread is held until released, e.g. when the threads are no longer used for inference
+        assertEquals(nThreads, net.getNumConcurrentReplicas());
+        net.clearConcurrentReplicas();
+        assertEquals(0, net.getNumConcurrentReplicas());
+        assertTrue(net.isConcurrentOutput());
+
+        // Parameter changes (training) are visible to the replica of this thread
+        assertEquals(expected[0], net.output(inputs[0]));
+        assertEquals(1, net.getNumConcurrentReplicas());
+        net.fit(inputs[0], expected[1]);
+        INDArray outAfterFit = net.output(inputs[0]);
+        assertNotEquals(expected[0], outAfterFit);
+        net.setConcurrentOutput(false);
+        assertFalse(net.isConcurrentOutput());
+        assertEquals(0, net.getNumConcurrentReplicas());
+        assertEquals(net.output(inputs[0]), outAfterFit);
+
+        // The setting is not serialized: a deserialized network must not expect the (transient) replicas
+        net.setConcurrentOutput(true);
+        MultiLayerNetwork restored = SerializationUtils.deserialize(SerializationUtils.serialize(net));
+        assertFalse(restored.isConcurrentOutput());
+        assertEquals(outAfterFit, restored.output(inputs[0]));
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.quantization;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.quantization.NetworkQuantizer;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.quantization.PerChannelQuantizedArray;
+import org.nd4j.linalg.quantization.QuantizationReport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NetworkQuantizerTest extends BaseDL4JTest {
+
+    @Test
+    public void testQuantizeMultiLayerNetwork() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .updater(new Adam(0.01))
+                .activation(Activation.TANH)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(16).build())
+                .layer(new OutputLayer.Builder().nIn(16).nOut(3).activation(Activation.SOFTMAX).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        DataSetIterator iter = new IrisDataSetIterator(30, 150);
+        net.fit(iter, 5);
+        INDArray paramsBefore = net.params().dup();
+
+        NetworkQuantizer q = NetworkQuantizer.builder().build();
+        MultiLayerNetwork quantized = (MultiLayerNetwork) q.quantize(net);
+
+        //Original network is unchanged
+        assertEquals(paramsBefore, net.params());
+        assertNotSame(net.params(), quantized.params());
+
+        assertEquals(2, q.getQuantizedWeights().size());
+        PerChannelQuantizedArray w0 = q.getQuantizedWeights().get("0_W");
+        assertNotNull(w0);
+        assertArrayEquals(new long[]{16}, w0.getScales().shape());
+        assertEquals(w0.dequantize(), quantized.getLayer(0).getParam("W"));
+        assertEquals(net.getLayer(0).getParam("b"), quantized.getLayer(0).getParam("b"));
+
+        iter.reset();
+        QuantizationReport r = q.evaluate(net, quantized, iter);
+        assertEquals((4 * 16 + 16 * 3) * 4, r.getOriginalWeightBytes());
+        assertEquals(4 * 16 + 16 * 3 + (16 + 3) * 4, r.getQuantizedWeightBytes());
+        assertTrue(r.isQuantizedWeightBytesEstimated());
+        assertEquals(net.params().length() * 4, r.getOriginalParameterBytes());
+        assertEquals(r.getOriginalParameterBytes(), r.getQuantizedParameterBytes());
+        assertTrue(Math.abs(r.getAccuracyDelta()) < 0.05, r.stats());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.transferlearning;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.transferlearning.FrozenFeatureCache;
+import org.deeplearning4j.nn.transferlearning.TransferLearningHelper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Sgd;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class TestFrozenFeatureCache extends BaseDL4JTest {
+
+    @TempDir
+    public Path testDir;
+
+    @Test
+    public void testCachedFitMatchesFeaturizedFit() {
+        List<DataSet> data = getData();
+
+        MultiLayerNetwork net1 = getNet();
+        MultiLayerNetwork net2 = net1.clone();
+        TransferLearningHelper helper1 = new TransferLearningHelper(net1, 1);
+        TransferLearningHelper helper2 = new TransferLearningHelper(net2, 1);
+
+        File dir = testDir.toFile();
+        try (FrozenFeatureCache cache = new FrozenFeatureCache(helper1, dir)) {
+            assertEquals(1, dir.listFiles().length);
+            for (int epoch = 0; epoch < 3; epoch++) {
+                cache.fit(new ListDataSetIterator<>(data, 10));
+                for (DataSet ds : data) {
+                    helper2.fitFeaturized(helper2.featurize(ds));
+                }
+                assertEquals(30, cache.size());
+                assertTrue(cache.isComplete());
+                assertEquals(net2.params(), net1.params());
+            }
+        }
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testInvalidateOnFrozenParamChange() {
+        List<DataSet> data = getData();
+        MultiLayerNetwork net = getNet();
+        TransferLearningHelper helper = new TransferLearningHelper(net, 1);
+
+        try (FrozenFeatureCache cache = new FrozenFeatureCache(helper, testDir.toFile())) {
+            cache.fit(new ListDataSetIterator<>(data, 10));
+            assertTrue(cache.isComplete());
+
+            //Replayed from the cache
+            DataSetIterator iter = cache.iterator(new ListDataSetIterator<>(data, 10));
+            for (DataSet ds : data) {
+                DataSet cached = iter.next();
+                assertEquals(helper.featurize(ds).getFeatures(), cached.getFeatures());
+                assertEquals(ds.getLabels(), cached.getLabels());
+            }
+            assertFalse(iter.hasNext());
+
+            //Changing the frozen parameters invalidates the cache
+            net.getLayer(0).params().addi(1.0);
+            iter = cache.iterator(new ListDataSetIterator<>(data, 10));
+            assertEquals(0, cache.size());
+            assertFalse(cache.isComplete());
+            for (DataSet ds : data) {
+                assertEquals(helper.featurize(ds).getFeatures(), iter.next().getFeatures());
+            }
+            assertFalse(iter.hasNext());
+            assertEquals(30, cache.size());
+            assertTrue(cache.isComplete());
+        }
+    }
+
+    @Test
+    public void testDifferentSourceData() {
+        List<DataSet> data = getData();
+        MultiLayerNetwork net = getNet();
+        TransferLearningHelper helper = new TransferLearningHelper(net, 1);
+
+        try (FrozenFeatureCache cache = new FrozenFeatureCache(helper, testDir.toFile())) {
+            //Keyed by position: other data at a cached position is detected, rather than replaced by the cached features
+            cache.fit(new ListDataSetIterator<>(data, 10));
+            assertTrue(cache.isComplete());
+            List<DataSet> other = new ArrayList<>();
+            for (DataSet ds : data) {
+                other.add(new DataSet(ds.getFeatures().add(1.0), ds.getLabels()));
+            }
+            DataSetIterator otherIter = cache.iterator(new ListDataSetIterator<>(other, 10));
+            assertThrows(IllegalStateException.class, otherIter::next);
+
+            //Keyed by metadata: a reshuffled order or a subset of the examples gets the features of those examples
+            cache.invalidate();
+            List<DataSet> withMeta = new ArrayList<>();
+            for (int i = 0; i < data.size(); i++) {
+                for (int j = 0; j < data.get(i).numExamples(); j++) {
+                    DataSet ds = data.get(i).get(j);
+                    ds.setExampleMetaData(Collections.singletonList(i * 100 + j));
+                    withMeta.add(ds);
+                }
+            }
+            cache.fit(new ListDataSetIterator<>(withMeta, 10));
+            assertEquals(30, cache.size());
+            List<DataSet> subset = new ArrayList<>(withMeta.subList(0, 15));
+            Collections.shuffle(subset, new Random(12345));
+            DataSetIterator iter = cache.iterator(new ListDataSetIterator<>(subset, 5));
+            for (int i = 0; i < 3; i++) {
+                DataSet expected = DataSet.merge(subset.subList(i * 5, (i + 1) * 5));
+                DataSet cached = iter.next();
+                assertEquals(helper.featurize(expected).getFeatures(), cached.getFeatures());
+                assertEquals(expected.getLabels(), cached.getLabels());
+            }
+            assertFalse(iter.hasNext());
+            assertEquals(30, cache.size());
+
+            //Examples without metadata cannot be mixed with examples keyed by metadata
+            assertThrows(IllegalStateException.class, () -> cache.iterator(new ListDataSetIterator<>(data, 10)).next());
+        }
+    }
+
+    private static List<DataSet> getData() {
+        Nd4j.getRandom().setSeed(12345);
+        List<DataSet> data = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            data.add(new DataSet(Nd4j.rand(DataType.FLOAT, 10, 4), Nd4j.rand(DataType.FLOAT, 10, 3)));
+        }
+        return data;
+    }
+
+    private static MultiLayerNetwork getNet() {
+        MultiLayerNetwork net = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .dataType(DataType.FLOAT)
+                .updater(new Sgd(0.1))
+                .activation(Activation.TANH)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(6).build())
+                .layer(new DenseLayer.Builder().nIn(6).nOut(5).build())
+                .layer(new DenseLayer.Builder().nIn(5).nOut(4).build())
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MSE).activation(Activation.IDENTITY).nIn(4).nOut(3).build())
+                .build());
+        net.init();
+        return net;
+    }
+}
@@ -26,6 +26,8 @@ import org.deeplearning4j.BaseDL4JTest;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Updater;
 import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.GradientNormalization;
+import org.deeplearning4j.nn.conf.MixedPrecision;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.*;
@@ -38,6 +40,7 @@ import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.params.DefaultParamInitializer;
 import org.deeplearning4j.nn.params.PretrainParamInitializer;
 import org.deeplearning4j.nn.updater.BaseMultiLayerUpdater;
+import org.deeplearning4j.nn.updater.LossScaler;
 import org.deeplearning4j.nn.updater.MultiLayerUpdater;
 import org.deeplearning4j.nn.updater.UpdaterBlock;
 import org.deeplearning4j.nn.updater.UpdaterCreator;
@@ -1117,4 +1120,116 @@ public class TestUpdaters extends BaseDL4JTest {
         INDArray expView3 = view.get(interval(0,0,true), interval(start3, start3 + length3));
         assertEquals(expView3, l.get(2));
     }
+
+    @Test
+    public void testMixedPrecision() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .mixedPrecision(DataType.HALF, new MixedPrecision.Builder()
+                        .initialLossScale(1024).growthInterval(2).lossScaleRange(1, 1 << 24).build())
+                .updater(new Adam(0.01))
+                .list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(5).activation(Activation.IDENTITY).build())
+                .layer(new OutputLayer.Builder().nIn(5).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        assertEquals(DataType.HALF, net.params().dataType());
+
+        INDArray f = Nd4j.rand(DataType.HALF, 8, 4);
+        INDArray l = Nd4j.zeros(DataType.HALF, 8, 3);
+        for (int i = 0; i < 8; i++) {
+            l.putScalar(i, i % 3, 1.0);
+        }
+
+        INDArray before = net.params().dup();
+        net.fit(f, l);
+        net.fit(f, l);
+        assertNotEquals(before, net.params());
+
+        LossScaler lossScaler = net.getLossScaler();
+        assertEquals(0, lossScaler.getSkippedSteps());
+        assertEquals(2048, lossScaler.getLossScale(), 1e-6);
+
+        //Updater state and master parameters are FP32
+        BaseMultiLayerUpdater<?> u = (BaseMultiLayerUpdater<?>) net.getUpdater();
+        assertEquals(DataType.FLOAT, u.getMasterParams().dataType());
+        assertEquals(DataType.FLOAT, u.getStateViewArray().dataType());
+        assertEquals(net.params(), u.getMasterParams().castTo(DataType.HALF));
+
+        //Gradients overflow in half precision: step should be skipped, and loss scale reduced
+        INDArray large = f.mul(60000);
+        before = net.params().dup();
+        net.fit(large, l);
+        assertEquals(before, net.params());
+        assertTrue(lossScaler.isLastStepSkipped());
+        assertEquals(1, lossScaler.getSkippedSteps());
+        assertEquals(1024, lossScaler.getLossScale(), 1e-6);
+
+        //Parameters set externally: master parameters should be reset
+        INDArray newParams = Nd4j.rand(DataType.HALF, before.shape());
+        net.setParams(newParams);
+        assertEquals(newParams, u.getMasterParams().castTo(DataType.HALF));
+
+        //Loss scale must remain representable in FP16 (max value 65504), by default and when configured larger
+        assertEquals(32768, new LossScaler(new MixedPrecision(), DataType.HALF).getLossScale(), 1e-6);
+        LossScaler capped = new LossScaler(new MixedPrecision.Builder().initialLossScale(1 << 20).growthInterval(1)
+                .lossScaleRange(1, 1 << 24).build(), DataType.HALF);
+        assertEquals(LossScaler.MAX_HALF_LOSS_SCALE, capped.getLossScale(), 1e-6);
+        capped.update(false);
+        assertEquals(LossScaler.MAX_HALF_LOSS_SCALE, capped.getLossScale(), 1e-6);
+        assertTrue(Double.isFinite(Nd4j.ones(DataType.HALF, 2).muli(capped.getLossScale()).sumNumber().doubleValue()));
+        assertEquals(1 << 20, new LossScaler(new MixedPrecision.Builder().initialLossScale(1 << 20)
+                .lossScaleRange(1, 1 << 24).build(), DataType.BFLOAT16).getLossScale(), 1e-6);
+    }
+
+    @Test
+    public void testPipelinedUpdates() {
+        INDArray f = Nd4j.rand(DataType.DOUBLE, 8, 4);
+        INDArray l = Nd4j.zeros(DataType.DOUBLE, 8, 3);
+        for (int i = 0; i < 8; i++) {
+            l.putScalar(i, i % 3, 1.0);
+        }
+
+        MultiLayerNetwork[] nets = new MultiLayerNetwork[2];
+        for (int i = 0; i < 2; i++) {
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .dataType(DataType.DOUBLE)
+                    .seed(12345)
+                    .updater(new Adam(0.01))
+                    .biasUpdater(new Sgd(0.1))
+                    .l2(1e-3)
+                    .gradientNormalization(GradientNormalization.RenormalizeL2PerLayer)
+                    .list()
+                    .pipelinedUpdates(i == 1)
+                    .layer(new DenseLayer.Builder().nIn(4).nOut(5).activation(Activation.TANH).build())
+                    .layer(new DenseLayer.Builder().nIn(5).nOut(5).activation(Activation.TANH).updater(new Nesterovs(0.1)).build())
+                    .layer(new DenseLayer.Builder().nIn(5).nOut(5).activation(Activation.TANH).build())
+                    .layer(new OutputLayer.Builder().nIn(5).nOut(3).activation(Activation.SOFTMAX)
+                            .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                    .build();
+            nets[i] = new MultiLayerNetwork(conf);
+            nets[i].init();
+        }
+        nets[1].setParams(nets[0].params().dup());
+
+        for (int iter = 0; iter < 3; iter++) {
+            nets[0].fit(f, l);
+            nets[1].fit(f, l);
+            assertEquals(nets[0].score(), nets[1].score(), 1e-10);
+            assertEquals(nets[0].params(), nets[1].params());
+            assertEquals(nets[0].getUpdater().getStateViewArray(), nets[1].getUpdater().getStateViewArray());
+        }
+        assertEquals(3, nets[1].getIterationCount());
+
+        //Pipelined updates are not used when calculating gradients outside of fit
+        INDArray before = nets[1].params().dup();
+        nets[1].setInput(f);
+        nets[1].setLabels(l);
+        nets[1].computeGradientAndScore();
+        assertEquals(before, nets[1].params());
+        nets[1].close();
+    }
 }
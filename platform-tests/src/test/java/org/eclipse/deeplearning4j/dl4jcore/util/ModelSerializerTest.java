@@ -126,6 +126,60 @@ class ModelSerializerTest extends BaseDL4JTest {
         assertEquals(cg.getUpdater().getStateViewArray(), network.getUpdater().getStateViewArray());
     }
 
+    @Test
+    @DisplayName("Test Write Mappable Model")
+    void testWriteMappableModel() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).updater(new Sgd(0.1)).activation(Activation.TANH).list().layer(0, new DenseLayer.Builder().nIn(4).nOut(20).build()).layer(1, new OutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MCXENT).activation(Activation.SOFTMAX).nIn(20).nOut(3).build()).build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        INDArray paramsBefore = net.params().dup();
+        File tempFile = new File(tempDir.toFile(), "mappable.zip");
+        ModelSerializer.writeModelMappable(net, tempFile, true);
+        MultiLayerNetwork network = ModelSerializer.restoreMultiLayerNetwork(tempFile);
+        assertEquals(net.getLayerWiseConfigurations().toJson(), network.getLayerWiseConfigurations().toJson());
+        assertEquals(net.params(), network.params());
+        assertTrue(ModelSerializer.isMemoryMapped(network.params()));
+        assertTrue(ModelSerializer.isMemoryMapped(network.getLayer(1).getParam("W")));
+        assertFalse(ModelSerializer.isMemoryMapped(net.params()));
+        assertEquals(net.getUpdater().getStateViewArray(), network.getUpdater().getStateViewArray());
+        // Training modifies the (copy-on-write) parameters, but not the file
+        network.fit(new IrisDataSetIterator(150, 150));
+        assertNotEquals(paramsBefore, network.params());
+        assertTrue(ModelSerializer.isMemoryMapped(network.params()));
+        assertEquals(paramsBefore, ModelSerializer.restoreMultiLayerNetwork(tempFile).params());
+        // Restoring the same file more than once: each restored model keeps its own mapping, even after the others
+        // have been garbage collected
+        MultiLayerNetwork first = ModelSerializer.restoreMultiLayerNetwork(tempFile);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(paramsBefore, ModelSerializer.restoreMultiLayerNetwork(tempFile).params());
+            System.gc();
+        }
+        assertEquals(paramsBefore, first.params());
+        assertTrue(ModelSerializer.isMemoryMapped(first.params()));
+        first.output(Nd4j.rand(5, 4));
+        // Input stream: parameters are copied
+        try (InputStream is = new FileInputStream(tempFile)) {
+            INDArray copied = ModelSerializer.restoreMultiLayerNetwork(is).params();
+            assertEquals(paramsBefore, copied);
+            assertFalse(ModelSerializer.isMemoryMapped(copied));
+        }
+        // Rewriting the file invalidates the offsets: parameters are copied
+        ModelSerializer.addObjectToFile(tempFile, "key", "value");
+        INDArray copied = ModelSerializer.restoreMultiLayerNetwork(tempFile).params();
+        assertEquals(paramsBefore, copied);
+        assertFalse(ModelSerializer.isMemoryMapped(copied));
+
+        ComputationGraphConfiguration config = new NeuralNetConfiguration.Builder().updater(new Sgd(0.1)).graphBuilder().addInputs("in").addLayer("dense", new DenseLayer.Builder().nIn(4).nOut(2).build(), "in").addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(2).nOut(3).activation(Activation.SOFTMAX).build(), "dense").setOutputs("out").build();
+        ComputationGraph cg = new ComputationGraph(config);
+        cg.init();
+        File cgFile = new File(tempDir.toFile(), "mappableCg.zip");
+        ModelSerializer.writeModelMappable(cg, cgFile, false);
+        ComputationGraph restored = ModelSerializer.restoreComputationGraph(cgFile);
+        assertEquals(cg.getConfiguration().toJson(), restored.getConfiguration().toJson());
+        assertEquals(cg.params(), restored.params());
+        assertTrue(ModelSerializer.isMemoryMapped(restored.params()));
+    }
+
     @Test
     @DisplayName("Test Write CG Model Input Stream")
     void testWriteCGModelInputStream() throws Exception {
@@ -0,0 +1,186 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.util;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
+import org.deeplearning4j.nn.conf.CacheMode;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.memory.MemoryReport;
+import org.deeplearning4j.nn.conf.memory.MemoryType;
+import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.MinibatchSizeTuner;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class TestMinibatchSizeTuner extends BaseDL4JTest {
+
+    @Test
+    public void testEstimateFromMemoryReport() {
+        MultiLayerNetwork net = getNet();
+        InputType it = InputType.feedForward(32);
+        MemoryReport r = net.getLayerWiseConfigurations().getMemoryReport(it);
+        long perEx = required(r, 2) - required(r, 1);
+        long fixed = required(r, 1) - perEx;
+        long budget = fixed + 100 * perEx;
+
+        //No trial: largest size within the budget according to the memory report
+        MinibatchSizeTuner.Result res = new MinibatchSizeTuner.Builder()
+                .memoryBudgetBytes(budget)
+                .safetyFactor(1.0)
+                .maxTrials(0)
+                .build()
+                .tune(net, it);
+        assertEquals(100, res.getMinibatchSize());
+        assertEquals(budget, res.getEstimatedBytes());
+        assertEquals(0, res.getTrials());
+
+        res = new MinibatchSizeTuner.Builder()
+                .memoryBudgetBytes(budget)
+                .safetyFactor(1.0)
+                .maxMinibatchSize(64)
+                .maxTrials(0)
+                .build()
+                .tune(net, it);
+        assertEquals(64, res.getMinibatchSize());
+    }
+
+    @Test
+    public void testTrial() {
+        MultiLayerNetwork net = getNet();
+        INDArray params = net.params().dup();
+        DataSetIterator iter = new ListDataSetIterator<>(examples(40), 8);
+
+        MinibatchSizeTuner.Result res = new MinibatchSizeTuner.Builder()
+                .memoryBudgetBytes(64L * 1024 * 1024)
+                .maxMinibatchSize(256)
+                .build()
+                .tune(net, iter);
+        assertTrue(res.getTrials() >= 1);
+        assertTrue(res.getMinibatchSize() >= 1 && res.getMinibatchSize() <= 256);
+        assertTrue(res.getMeasuredBytes() <= 0.8 * res.getBudgetBytes() || res.getMinibatchSize() == 1);
+        //Trials are run on a copy of the network
+        assertEquals(params, net.params());
+        assertTrue(iter.hasNext());
+    }
+
+    @Test
+    public void testMeasuredBytesForReturnedSize() {
+        MultiLayerNetwork net = getNet();
+        //1 MB per example measured: 256 examples exceeds the budget, 32 examples fits
+        MinibatchSizeTuner.Builder b = new MinibatchSizeTuner.Builder()
+                .memoryBudgetBytes(32_000_000)
+                .safetyFactor(1.0)
+                .maxMinibatchSize(256);
+
+        MinibatchSizeTuner.Result res = new FixedTrialTuner(b.maxTrials(2)).tune(net, InputType.feedForward(32));
+        assertEquals(2, res.getTrials());
+        assertEquals(32, res.getMinibatchSize());
+        assertEquals(32_000_000, res.getMeasuredBytes());
+
+        //Trials run out after reducing the size: the measurement for 256 examples is not reported for 32 examples
+        res = new FixedTrialTuner(b.maxTrials(1)).tune(net, InputType.feedForward(32));
+        assertEquals(1, res.getTrials());
+        assertEquals(32, res.getMinibatchSize());
+        assertEquals(-1, res.getMeasuredBytes());
+    }
+
+    @Test
+    public void testRebatch() {
+        DataSetIterator iter = new ListDataSetIterator<>(examples(40), 8);
+        DataSetIterator rebatched = MinibatchSizeTuner.rebatch(iter, 15);
+        assertTrue(rebatched.resetSupported());
+        for (int epoch = 0; epoch < 2; epoch++) {
+            List<Integer> sizes = new ArrayList<>();
+            while (rebatched.hasNext()) {
+                sizes.add(rebatched.next().numExamples());
+            }
+            assertEquals(Arrays.asList(15, 15, 10), sizes);
+            rebatched.reset();
+        }
+    }
+
+    private static class FixedTrialTuner extends MinibatchSizeTuner {
+
+        private FixedTrialTuner(Builder builder) {
+            super(builder);
+        }
+
+        @Override
+        protected long trial(MultiLayerNetwork net, DataSet ds) {
+            return ds.numExamples() * 1_000_000L;
+        }
+    }
+
+    private static long required(MemoryReport r, int minibatch) {
+        long total = r.getTotalMemoryBytes(minibatch, MemoryUseMode.TRAINING, CacheMode.NONE, DataType.FLOAT);
+        for (MemoryType t : new MemoryType[]{MemoryType.PARAMETERS, MemoryType.PARAMATER_GRADIENTS, MemoryType.UPDATER_STATE}) {
+            total -= r.getMemoryBytes(t, minibatch, MemoryUseMode.TRAINING, CacheMode.NONE, DataType.FLOAT);
+        }
+        return total;
+    }
+
+    private static List<DataSet> examples(int n) {
+        List<DataSet> l = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            DataSet ds = new DataSet(Nd4j.rand(DataType.FLOAT, 1, 32), Nd4j.zeros(DataType.FLOAT, 1, 10));
+            ds.getLabels().putScalar(0, i % 10, 1.0);
+            l.add(ds);
+        }
+        return l;
+    }
+
+    private static MultiLayerNetwork getNet() {
+        MultiLayerNetwork net = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .dataType(DataType.FLOAT)
+                .activation(Activation.TANH)
+                .list()
+                .layer(new DenseLayer.Builder().nOut(64).build())
+                .layer(new DenseLayer.Builder().nOut(64).build())
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).activation(Activation.SOFTMAX).nOut(10).build())
+                .setInputType(InputType.feedForward(32))
+                .build());
+        net.init();
+        return net;
+    }
+}
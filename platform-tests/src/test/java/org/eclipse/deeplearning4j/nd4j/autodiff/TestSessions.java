@@ -25,6 +25,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.nd4j.autodiff.functions.DifferentialFunction;
 import org.nd4j.autodiff.listeners.At;
 import org.nd4j.autodiff.listeners.Operation;
 import org.nd4j.autodiff.samediff.SDVariable;
@@ -39,8 +40,10 @@ import org.nd4j.imports.graphmapper.tf.TFGraphMapper;
 import org.nd4j.linalg.BaseNd4jTestWithBackends;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.OpContext;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.factory.Nd4jBackend;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.common.io.ClassPathResource;
 import org.nd4j.samediff.frameworkimport.tensorflow.importer.TensorflowFrameworkImporter;
 
@@ -49,6 +52,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -325,4 +331,105 @@ public class TestSessions extends BaseNd4jTestWithBackends {
         }
 
     }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testInterOpParallelExecution(Nd4jBackend backend) {
+        //Wide graph: 8 independent branches (matmul -> add bias -> tanh), concatenated at the end
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 16);
+        SDVariable[] branches = new SDVariable[8];
+        for (int i = 0; i < branches.length; i++) {
+            SDVariable w = sd.var("w" + i, Nd4j.rand(DataType.FLOAT, 16, 16));
+            SDVariable b = sd.var("b" + i, Nd4j.rand(DataType.FLOAT, 16));
+            branches[i] = sd.math().tanh(in.mmul(w).add(b));
+        }
+        sd.concat("out", 1, branches);
+
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 10, 16);
+        Map<String,INDArray> ph = Collections.singletonMap("in", inArr);
+
+        INDArray exp = sd.batchOutput().input("in", inArr).output("out").interOpThreads(1).outputSingle();
+        for (int i = 0; i < 3; i++) {
+            INDArray act = sd.batchOutput().input("in", inArr).output("out").interOpThreads(4).outputSingle();
+            assertEquals(exp, act);
+        }
+
+        //Also check the SameDiff-wide default, and a (sequential) intermediate output
+        sd.setInterOpThreads(4);
+        Map<String,INDArray> m = sd.output(ph, "out", branches[3].name());
+        assertEquals(exp, m.get("out"));
+        assertEquals(exp.get(NDArrayIndex.all(), NDArrayIndex.interval(48, 64)), m.get(branches[3].name()));
+
+        //Check that the independent ops actually overlap in time, on more than one thread
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        InferenceSession is = new InferenceSession(sd) {
+            @Override
+            public INDArray[] doExec(DifferentialFunction op, OpContext opContext, FrameIter outputFrameIter, Set<AbstractSession.VarId> opInputs,
+                                     Set<AbstractSession.VarId> allIterInputs, Set<String> constAndPhInputs) {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                threads.add(Thread.currentThread().getName());
+                try {
+                    Thread.sleep(20);
+                    return super.doExec(op, opContext, outputFrameIter, opInputs, allIterInputs, constAndPhInputs);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    active.decrementAndGet();
+                }
+            }
+        };
+        is.setInterOpThreads(4);
+        INDArray out = is.output(Collections.singletonList("out"), ph, null, Collections.emptyList(), null,
+                At.defaultAt(Operation.INFERENCE)).get("out");
+        assertEquals(exp, out);
+        assertTrue(maxActive.get() > 1, "Expected concurrent op execution, max concurrent ops: " + maxActive.get());
+        assertTrue(threads.size() > 1, "Expected ops to execute on multiple threads: " + threads);
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testSubgraphCache(Nd4jBackend backend) {
+        SameDiff sd = SameDiff.create();
+        SDVariable x = sd.placeHolder("x", DataType.FLOAT, 3, 3);
+        SDVariable y = sd.placeHolder("y", DataType.FLOAT, 3, 3);
+        SDVariable a = x.add("a", y);
+        SDVariable b = x.mmul("b", y);
+        SDVariable d = a.add("d", b);
+
+        INDArray xArr = Nd4j.linspace(1, 9, 9).castTo(DataType.FLOAT).reshape(3, 3);
+        INDArray yArr = Nd4j.linspace(0.0, 0.9, 9, DataType.DOUBLE).castTo(DataType.FLOAT).reshape(3, 3);
+        Map<String,INDArray> m = new HashMap<>();
+        m.put("x", xArr);
+        m.put("y", yArr);
+
+        INDArray aExp = xArr.add(yArr);
+        INDArray dExp = aExp.add(xArr.mmul(yArr));
+
+        //Alternate between output sets - each should use its own cached subgraph
+        for (int i = 0; i < 3; i++) {
+            assertEquals(dExp, sd.output(m, "d").get("d"));
+            assertEquals(aExp, sd.output(m, "a").get("a"));
+        }
+
+        //New op added after execution, that only requires placeholder "x"
+        SDVariable e = x.mul("e", 2.0);
+        assertEquals(xArr.mul(2.0), sd.output(Collections.singletonMap("x", xArr), "e").get("e"));
+
+        //Modifying the graph after execution: the cached subgraph for "d" should not be used
+        SDVariable f = d.sub("f", a);
+        assertEquals(dExp.sub(aExp), sd.output(m, "f").get("f"));
+        sd.renameVariable("d", "d2");
+        assertEquals(dExp, sd.output(m, "d2").get("d2"));
+        assertEquals(dExp.sub(aExp), sd.output(m, "f").get("f"));
+
+        //Changing an op input doesn't change the number of ops or variables, but must still invalidate the cache
+        long version = sd.getGraphVersion();
+        sd.replaceArgFor(1, x, sd.getVariableOutputOp("a"));
+        assertTrue(sd.getGraphVersion() > version);
+        assertEquals(xArr.add(xArr), sd.output(m, "a").get("a"));
+    }
 }
@@ -29,17 +29,32 @@ import org.nd4j.autodiff.samediff.SDVariable;
 import org.nd4j.autodiff.samediff.SameDiff;
 import org.nd4j.autodiff.samediff.VariableType;
 import org.nd4j.autodiff.samediff.optimize.GraphOptimizer;
+import org.nd4j.autodiff.samediff.optimize.OptimizerSet;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.autodiff.samediff.optimize.optimizations.CommonSubexpressionOptimizations;
 import org.nd4j.autodiff.samediff.optimize.optimizations.ConstantFunctionOptimizations;
+import org.nd4j.autodiff.samediff.optimize.optimizations.ConvolutionFunctionOptimizations;
+import org.nd4j.autodiff.samediff.optimize.optimizations.ElementwiseFunctionOptimizations;
 import org.nd4j.autodiff.samediff.optimize.optimizations.IdentityFunctionOptimizations;
+import org.nd4j.autodiff.samediff.optimize.optimizations.MatMulFunctionOptimizations;
 import org.nd4j.common.tests.tags.TagNames;
 import org.nd4j.linalg.BaseNd4jTestWithBackends;
 import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.Conv2DConfig;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.PaddingMode;
+import org.nd4j.linalg.api.ops.impl.transforms.ReluLayer;
+import org.nd4j.linalg.api.ops.impl.transforms.custom.XwPlusB;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.factory.Nd4jBackend;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -160,4 +175,191 @@ public class TestOptimization extends BaseNd4jTestWithBackends {
         assertFalse(optimized.hasVariable(i3.name()));
         assertTrue(optimized.hasVariable("out"));
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testMatMulBiasReluFusion(Nd4jBackend nd4jBackend) {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w0 = sd.var("w0", Nd4j.rand(DataType.FLOAT, 4, 5));
+        SDVariable b0 = sd.var("b0", Nd4j.rand(DataType.FLOAT, 5));
+        SDVariable w1 = sd.var("w1", Nd4j.rand(DataType.FLOAT, 5, 3));
+        SDVariable b1 = sd.var("b1", Nd4j.rand(DataType.FLOAT, 3));
+        SDVariable mmul0 = in.mmul(w0);
+        SDVariable h = sd.nn.relu(sd.nn.biasAdd(mmul0, b0, true), 0.0);
+        SDVariable out = sd.nn.softmax("out", h.mmul(w1).add(b1));
+
+        File subDir = tempDir.resolve("matmul-fusion").toFile();
+        assertTrue(subDir.mkdirs());
+        OptTestConfig conf = OptTestConfig.builder()
+                .original(sd)
+                .tempFolder(subDir)
+                .outputs(Collections.singletonList("out"))
+                .placeholder("in", Nd4j.rand(DataType.FLOAT, 5, 4))
+                .optimizerSets(GraphOptimizer.inferenceOptimizations())
+                .mustApply(sd.getVariables().get(mmul0.name()).getOutputOfOp(), MatMulFunctionOptimizations.FuseMatMulBiasAdd.class)
+                .build();
+
+        SameDiff optimized = OptimizationTestUtil.testOptimization(conf);
+        //relu_layer, xw_plus_b, softmax
+        assertEquals(3, optimized.getOps().size());
+        Set<Class<?>> opClasses = new HashSet<>();
+        for(SameDiffOp op : optimized.getOps().values()){
+            opClasses.add(op.getOp().getClass());
+        }
+        assertTrue(opClasses.contains(ReluLayer.class));
+        assertTrue(opClasses.contains(XwPlusB.class));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testConv2dBatchNormFolding(Nd4jBackend nd4jBackend) {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.DOUBLE, -1, 3, 8, 8);
+        SDVariable w = sd.constant("w", Nd4j.rand(DataType.DOUBLE, 3, 3, 3, 4));
+        SDVariable b = sd.constant("b", Nd4j.rand(DataType.DOUBLE, 4));
+        SDVariable mean = sd.constant("mean", Nd4j.rand(DataType.DOUBLE, 4));
+        SDVariable var = sd.constant("var", Nd4j.rand(DataType.DOUBLE, 4).addi(0.5));
+        SDVariable gamma = sd.constant("gamma", Nd4j.rand(DataType.DOUBLE, 4));
+        SDVariable beta = sd.constant("beta", Nd4j.rand(DataType.DOUBLE, 4));
+
+        Conv2DConfig c = Conv2DConfig.builder().kH(3).kW(3).paddingMode(PaddingMode.SAME).build();
+        SDVariable conv = sd.cnn.conv2d(in, w, c);
+        SDVariable biased = sd.nn.biasAdd(conv, b, true);
+        SDVariable bn = sd.nn.batchNorm(biased, mean, var, gamma, beta, 1e-5, 1);
+        SDVariable out = sd.nn.relu("out", bn, 0.0);
+
+        File subDir = tempDir.resolve("conv-bn-folding").toFile();
+        assertTrue(subDir.mkdirs());
+        OptTestConfig conf = OptTestConfig.builder()
+                .original(sd)
+                .tempFolder(subDir)
+                .outputs(Collections.singletonList("out"))
+                .placeholder("in", Nd4j.rand(DataType.DOUBLE, 2, 3, 8, 8))
+                .optimizerSets(GraphOptimizer.fusionOptimizations())
+                .mustApply(sd.getVariables().get(conv.name()).getOutputOfOp(), ConvolutionFunctionOptimizations.FoldBiasAddIntoConv2d.class)
+                .build();
+
+        SameDiff optimized = OptimizationTestUtil.testOptimization(conf);
+        //conv2d (with folded batch norm and bias), relu
+        assertEquals(2, optimized.getOps().size());
+        assertFalse(optimized.hasVariable(biased.name()));
+        assertFalse(optimized.hasVariable(bn.name()));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testElementwiseFusion(Nd4jBackend nd4jBackend) {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable x = in.add(1.0).add(2.0).mul(3.0).mul(0.5);
+        SDVariable sigm = sd.nn.sigmoid(x);
+        SDVariable out = x.mul("out", sigm);
+
+        File subDir = tempDir.resolve("elementwise-fusion").toFile();
+        assertTrue(subDir.mkdirs());
+        OptTestConfig conf = OptTestConfig.builder()
+                .original(sd)
+                .tempFolder(subDir)
+                .outputs(Collections.singletonList("out"))
+                .placeholder("in", Nd4j.rand(DataType.FLOAT, 5, 4))
+                .optimizerSets(GraphOptimizer.fusionOptimizations())
+                .mustApply(sd.getVariables().get(sigm.name()).getOutputOfOp(), ElementwiseFunctionOptimizations.FuseSwish.class)
+                .build();
+
+        SameDiff optimized = OptimizationTestUtil.testOptimization(conf);
+        //scalar add, scalar mul, swish
+        assertEquals(3, optimized.getOps().size());
+        assertTrue(optimized.hasVariable("out"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testFusionKeepsRequiredOutputs(Nd4jBackend nd4jBackend) {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 4, 3));
+        SDVariable b = sd.var("b", Nd4j.rand(DataType.FLOAT, 3));
+        SDVariable mmul = in.mmul("mmul", w);
+        SDVariable out = mmul.add("out", b);
+
+        SameDiff optimized = GraphOptimizer.optimize(sd, Arrays.asList("mmul", "out"), GraphOptimizer.fusionOptimizations());
+        assertEquals(2, optimized.getOps().size());
+        assertTrue(optimized.hasVariable("mmul"));
+
+        Map<String, INDArray> ph = Collections.singletonMap("in", Nd4j.rand(DataType.FLOAT, 5, 4));
+        assertEquals(sd.output(ph, "mmul", "out"), optimized.output(ph, "mmul", "out"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testCommonSubexpressionElimination(Nd4jBackend nd4jBackend) {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 4, 3));
+        SDVariable mmul1 = in.mmul(w);
+        SDVariable mmul2 = in.mmul(w);
+        SDVariable t1 = sd.math.tanh(mmul1);
+        SDVariable t2 = sd.math.tanh(mmul2);
+        SDVariable s1 = t1.sum(1);
+        SDVariable s2 = t2.sum(true, 1);     //Different args (keepDims): should not be merged
+        SDVariable out = t1.add("out", t2);
+
+        //Duplicated constants: after merging the constants, the two mul ops are identical
+        SDVariable c1 = sd.constant("c1", Nd4j.scalar(DataType.FLOAT, 2.0));
+        SDVariable c2 = sd.constant("c2", Nd4j.scalar(DataType.FLOAT, 2.0));
+        SDVariable mul1 = in.mul(c1);
+        SDVariable mul2 = in.mul(c2);
+        SDVariable out2 = mul1.add("out2", mul2);
+
+        File subDir = tempDir.resolve("cse").toFile();
+        assertTrue(subDir.mkdirs());
+        OptTestConfig conf = OptTestConfig.builder()
+                .original(sd)
+                .tempFolder(subDir)
+                .outputs(Arrays.asList("out", "out2", s1.name(), s2.name()))
+                .placeholder("in", Nd4j.rand(DataType.FLOAT, 5, 4))
+                .optimizerSets(Collections.<OptimizerSet>singletonList(new CommonSubexpressionOptimizations()))
+                .mustApply(sd.getVariables().get(mmul2.name()).getOutputOfOp(), CommonSubexpressionOptimizations.DeduplicateOps.class)
+                .mustApply(sd.getVariables().get(t2.name()).getOutputOfOp(), CommonSubexpressionOptimizations.DeduplicateOps.class)
+                .mustApply(sd.getVariables().get(mul2.name()).getOutputOfOp(), CommonSubexpressionOptimizations.DeduplicateConstants.class)
+                .build();
+
+        SameDiff optimized = OptimizationTestUtil.testOptimization(conf);
+        //mmul, tanh, 2x sum, add, mul, add
+        assertEquals(7, optimized.getOps().size());
+        assertFalse(optimized.hasVariable(mmul2.name()));
+        assertFalse(optimized.hasVariable(t2.name()));
+        assertFalse(optimized.hasVariable("c2"));
+        assertFalse(optimized.hasVariable(mul2.name()));
+        assertTrue(optimized.hasVariable(s1.name()));
+        assertTrue(optimized.hasVariable(s2.name()));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testRemoveUnreachable(Nd4jBackend nd4jBackend) {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable label = sd.placeHolder("label", DataType.FLOAT, -1, 3);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 4, 3));
+        SDVariable c = sd.constant("c", Nd4j.rand(DataType.FLOAT, 4, 3));
+        SDVariable probs = sd.nn.softmax("probabilities", in.mmul(w));
+        SDVariable unused = sd.math.tanh("unused", in.mmul(c));
+        sd.loss.logLoss("loss", label, probs);
+        sd.setLossVariables("loss");
+
+        SameDiff optimized = GraphOptimizer.optimize(sd, Collections.singletonList("probabilities"), Collections.<OptimizerSet>emptyList());
+        //mmul, softmax
+        assertEquals(2, optimized.getOps().size());
+        assertFalse(optimized.hasVariable("unused"));
+        assertFalse(optimized.hasVariable("c"));
+        assertFalse(optimized.hasVariable("loss"));
+        assertTrue(optimized.hasVariable("label"));     //Placeholders are always kept
+        assertTrue(optimized.getLossVariables().isEmpty());
+        assertTrue(sd.hasVariable("unused"));           //Original graph is not modified
+
+        Map<String, INDArray> ph = Collections.singletonMap("in", Nd4j.rand(DataType.FLOAT, 5, 4));
+        assertEquals(sd.outputSingle(ph, "probabilities"), optimized.outputSingle(ph, "probabilities"));
+    }
+}
@@ -23,7 +23,11 @@ package org.eclipse.deeplearning4j.nd4j.autodiff.samediff;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.internal.InferenceSession;
 import org.nd4j.autodiff.samediff.internal.memory.ArrayCacheMemoryMgr;
+import org.nd4j.autodiff.samediff.internal.memory.PlannedMemoryMgr;
 import org.nd4j.common.tests.tags.NativeTag;
 import org.nd4j.common.tests.tags.TagNames;
 import org.nd4j.linalg.BaseNd4jTestWithBackends;
@@ -33,6 +37,8 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.factory.Nd4jBackend;
 
 import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -142,4 +148,115 @@ public class MemoryMgrTest extends BaseNd4jTestWithBackends {
         assertEquals(2000, mmgr.getLruCacheValues().size());
     }
 
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testPlannedMemoryMgr(Nd4jBackend backend) throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 16);
+        SDVariable x = in;
+        for (int i = 0; i < 5; i++) {
+            SDVariable w = sd.var("w" + i, Nd4j.rand(DataType.FLOAT, 16, 16));
+            SDVariable b = sd.var("b" + i, Nd4j.rand(DataType.FLOAT, 16));
+            x = sd.nn().tanh(x.mmul(w).add(b));
+        }
+        SDVariable out = x.sum("out", 1);
+
+        INDArray input = Nd4j.rand(DataType.FLOAT, 8, 16);
+        INDArray expected = sd.output(Collections.singletonMap("in", input), "out").get("out");
+
+        sd.setMemoryPlanning(true);
+        for (int i = 0; i < 3; i++) {
+            INDArray actual = sd.output(Collections.singletonMap("in", input), "out").get("out");
+            assertEquals(expected, actual);
+        }
+
+        Field f = SameDiff.class.getDeclaredField("sessions");
+        f.setAccessible(true);
+        Map<Long, InferenceSession> sessions = (Map<Long, InferenceSession>) f.get(sd);
+        PlannedMemoryMgr mmgr = (PlannedMemoryMgr) sessions.get(Thread.currentThread().getId()).getMmgr();
+        assertTrue(mmgr.hasPlan());
+        assertTrue(mmgr.getNumPlannedArrays() > 0);
+        assertTrue(mmgr.getArenaBytes() > 0);
+        assertTrue(mmgr.getArenaBytes() < mmgr.getPlannedArrayBytes(), "Expected arena to be smaller than the total size of all intermediate arrays");
+        assertTrue(sd.summary().contains("--- Memory Plan ---"));
+
+        //Different input shape: should fall back to standard allocation and replan
+        INDArray input2 = Nd4j.rand(DataType.FLOAT, 4, 16);
+        sd.setMemoryPlanning(false);
+        INDArray expected2 = sd.output(Collections.singletonMap("in", input2), "out").get("out");
+        sd.setMemoryPlanning(true);
+        sd.output(Collections.singletonMap("in", input), "out");
+        sd.output(Collections.singletonMap("in", input), "out");
+        for (int i = 0; i < 3; i++) {
+            INDArray actual2 = sd.output(Collections.singletonMap("in", input2), "out").get("out");
+            assertEquals(expected2, actual2);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testPlannedMemoryMgrFallback(Nd4jBackend backend) {
+        PlannedMemoryMgr mmgr = new PlannedMemoryMgr();
+        //Record: one intermediate array, and one detached (output) array
+        INDArray a = mmgr.allocate(false, DataType.FLOAT, 4);
+        mmgr.release(a);
+        mmgr.allocate(true, DataType.FLOAT, 4);
+        mmgr.executionDone();
+        assertTrue(mmgr.hasPlan());
+        assertEquals(1, mmgr.getNumPlannedArrays());
+        assertEquals(1, mmgr.getNumUnplannedArrays());
+
+        //Detached arrays are never arena views, so are not overwritten by later executions
+        INDArray out1 = null;
+        for (int i = 0; i < 2; i++) {
+            INDArray a2 = mmgr.allocate(false, DataType.FLOAT, 4).assign(10 + i);
+            mmgr.release(a2);
+            INDArray o = mmgr.allocate(true, DataType.FLOAT, 4).assign(i);
+            mmgr.executionDone();
+            assertTrue(mmgr.hasPlan());
+            if (i == 0)
+                out1 = o;
+        }
+        assertEquals(Nd4j.createFromArray(0f, 0f, 0f, 0f), out1);
+
+        //Arena view that is still in use when the execution falls back: must not be freed
+        INDArray held = mmgr.allocate(false, DataType.FLOAT, 4).assign(5);
+        mmgr.allocate(false, DataType.FLOAT, 4);        //Does not match the plan: planned allocation is detached
+        mmgr.executionDone();
+        assertFalse(mmgr.hasPlan());
+        assertFalse(held.wasClosed());
+        assertEquals(Nd4j.createFromArray(5f, 5f, 5f, 5f), held);
+        assertEquals(Nd4j.createFromArray(0f, 0f, 0f, 0f), out1);
+        mmgr.close();
+
+        //Outputs from before and during a fallback (due to different requested outputs) remain valid
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 16);
+        SDVariable h = sd.nn().tanh("h", in.mmul(sd.var("w0", Nd4j.rand(DataType.FLOAT, 16, 16))).add(sd.var("b0", Nd4j.rand(DataType.FLOAT, 16))));
+        sd.nn().tanh(h.mmul(sd.var("w1", Nd4j.rand(DataType.FLOAT, 16, 16)))).sum("out", 1);
+
+        Map<String,INDArray> ph = Collections.singletonMap("in", Nd4j.rand(DataType.FLOAT, 8, 16));
+        Map<String,INDArray> expected = sd.output(ph, "out", "h");
+
+        sd.setMemoryPlanning(true);
+        INDArray out = null;
+        for (int i = 0; i < 3; i++) {
+            out = sd.output(ph, "out").get("out");
+        }
+        Map<String,INDArray> fallback = sd.output(ph, "out", "h");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected.get("out"), sd.output(ph, "out").get("out"));
+        }
+        assertEquals(expected.get("out"), out);
+        assertEquals(expected.get("out"), fallback.get("out"));
+        assertEquals(expected.get("h"), fallback.get("h"));
+
+        //Changing the memory planning setting closes the session memory managers, but not the returned arrays
+        sd.setMemoryPlanning(false);
+        assertEquals(expected.get("out"), out);
+        assertEquals(expected.get("h"), fallback.get("h"));
+    }
+
 }
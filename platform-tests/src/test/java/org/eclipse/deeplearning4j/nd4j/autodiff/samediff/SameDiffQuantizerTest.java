@@ -0,0 +1,151 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.eclipse.deeplearning4j.nd4j.autodiff.samediff;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.autodiff.samediff.transform.SameDiffQuantizer;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.BaseNd4jTestWithBackends;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.transforms.custom.FakeQuantWithMinMaxVars;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.adapter.SingletonDataSetIterator;
+import org.nd4j.linalg.dataset.adapter.MultiDataSetIteratorAdapter;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+import org.nd4j.linalg.quantization.PerChannelQuantizedArray;
+import org.nd4j.linalg.quantization.QuantizationReport;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag(TagNames.SAMEDIFF)
+@NativeTag
+public class SameDiffQuantizerTest extends BaseNd4jTestWithBackends {
+
+    @Override
+    public char ordering() {
+        return 'c';
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testPerChannelQuantizedArray(Nd4jBackend backend) {
+        INDArray w = Nd4j.rand(DataType.FLOAT, 6, 4).subi(0.5);
+        w.getColumn(2).assign(0);
+
+        PerChannelQuantizedArray q = PerChannelQuantizedArray.quantize(w, 1);
+        assertEquals(DataType.INT8, q.getValues().dataType());
+        assertArrayEquals(new long[]{4}, q.getScales().shape());
+        assertArrayEquals(new long[]{1, 4}, q.broadcastScalesShape());
+        assertEquals(127, q.getValues().amaxNumber().intValue());
+        assertEquals(6 * 4 + 4 * 4, q.sizeBytes());
+
+        INDArray deq = q.dequantize();
+        assertEquals(DataType.FLOAT, deq.dataType());
+        assertEquals(0.0, deq.getColumn(2).amaxNumber().doubleValue(), 0.0);
+        for (int c = 0; c < 4; c++) {
+            //Error is at most half a quantization step
+            double step = q.getScales().getDouble(c);
+            assertTrue(deq.getColumn(c).sub(w.getColumn(c)).amaxNumber().doubleValue() <= step / 2 + 1e-6);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testQuantizeMmul(Nd4jBackend backend) {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 8);
+        SDVariable w0 = sd.var("w0", Nd4j.rand(DataType.FLOAT, 8, 16).subi(0.5));
+        SDVariable b0 = sd.var("b0", Nd4j.rand(DataType.FLOAT, 16));
+        SDVariable h = sd.nn().tanh(sd.nn().linear(in, w0, b0));
+        SDVariable w1 = sd.var("w1", Nd4j.rand(DataType.FLOAT, 16, 3).subi(0.5));
+        SDVariable out = sd.nn().softmax("out", h.mmul(w1));
+
+        INDArray f = Nd4j.rand(DataType.FLOAT, 10, 8);
+        INDArray l = Nd4j.zeros(DataType.FLOAT, 10, 3);
+        l.getColumn(0).assign(1);
+        INDArray exp = sd.outputSingle(Collections.singletonMap("in", f), "out");
+
+        SameDiffQuantizer q = SameDiffQuantizer.builder().featureMapping("in").build();
+        SameDiff quantized = q.quantize(sd, new MultiDataSetIteratorAdapter(new SingletonDataSetIterator(new DataSet(f, l))));
+
+        //Original graph is unchanged
+        assertTrue(sd.hasVariable("w0"));
+        assertEquals(exp, sd.outputSingle(Collections.singletonMap("in", f), "out"));
+
+        assertEquals(2, q.getQuantizedWeights().size());
+        assertFalse(quantized.hasVariable("w0"));
+        assertFalse(quantized.hasVariable("w1"));
+        assertEquals(DataType.INT8, quantized.getVariable("w0_int8").dataType());
+        assertTrue(q.getActivationRanges().contains("in"));
+
+        INDArray outQ = quantized.outputSingle(Collections.singletonMap("in", f), "out");
+        assertArrayEquals(exp.shape(), outQ.shape());
+        assertTrue(exp.equalsWithEps(outQ, 0.05));
+
+        QuantizationReport r = q.evaluate(sd, quantized, new SingletonDataSetIterator(new DataSet(f, l)), "out");
+        assertEquals((8 * 16 + 16 * 3) * 4, r.getOriginalWeightBytes());
+        assertEquals(8 * 16 + 16 * 3 + (16 + 3) * 4, r.getQuantizedWeightBytes());
+        assertFalse(r.isQuantizedWeightBytesEstimated());
+        assertTrue(r.getQuantizedParameterBytes() < r.getOriginalParameterBytes());
+        assertEquals(2, r.getNumQuantizedArrays());
+        assertFalse(Double.isNaN(r.getAccuracyDelta()));
+        assertNotNull(r.stats());
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testQuantizeWithoutCalibration(Nd4jBackend backend) {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 8);
+        SDVariable w0 = sd.var("w0", Nd4j.rand(DataType.FLOAT, 8, 3).subi(0.5));
+        SDVariable out = sd.nn().softmax("out", in.mmul(w0));
+
+        INDArray f = Nd4j.rand(DataType.FLOAT, 10, 8);
+        INDArray exp = sd.outputSingle(Collections.singletonMap("in", f), "out");
+
+        //Default builder (activation quantization enabled), but no calibration data: only weights are quantized
+        SameDiffQuantizer q = SameDiffQuantizer.builder().build();
+        SameDiff quantized = q.quantize(sd);
+
+        assertEquals(1, q.getQuantizedWeights().size());
+        assertFalse(quantized.hasVariable("w0"));
+        assertTrue(q.getActivationRanges().getNames().isEmpty());
+        for (SameDiffOp op : quantized.getOps().values()) {
+            assertFalse(op.getOp() instanceof FakeQuantWithMinMaxVars, op.getName());
+        }
+
+        INDArray outQ = quantized.outputSingle(Collections.singletonMap("in", f), "out");
+        assertTrue(exp.equalsWithEps(outQ, 0.05));
+    }
+}
@@ -1124,4 +1124,55 @@ public class EvalTest extends BaseNd4jTestWithBackends {
         assertTrue(stats2.contains(preS),stats2);
         assertTrue(stats2.contains(f1S),stats2);
     }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testEvalMinibatchMatchesSingleExample(Nd4jBackend backend) {
+        Nd4j.getRandom().setSeed(12345);
+        int nClasses = 7;
+        int n = 300;
+        int topN = 3;
+        INDArray labels = Nd4j.zeros(DataType.FLOAT, n, nClasses);
+        Random r = new Random(12345);
+        for (int i = 0; i < n; i++) {
+            labels.putScalar(i, r.nextInt(nClasses), 1.0);
+        }
+        INDArray predictions = Nd4j.rand(DataType.FLOAT, n, nClasses);
+
+        List<String> labelNames = new ArrayList<>();
+        for (int i = 0; i < nClasses; i++) {
+            labelNames.add(String.valueOf(i));
+        }
+        Evaluation e = new Evaluation(labelNames, topN);
+        for (int i = 0; i < n; i += 100) {
+            e.eval(labels.get(interval(i, i + 100), all()), predictions.get(interval(i, i + 100), all()));
+        }
+
+        Evaluation single = new Evaluation(nClasses);
+        int expTopN = 0;
+        for (int i = 0; i < n; i++) {
+            int actual = labels.getRow(i).argMax().getInt(0);
+            single.eval(predictions.getRow(i).argMax().getInt(0), actual);
+            int greater = 0;
+            for (int j = 0; j < nClasses; j++) {
+                if (predictions.getDouble(i, j) > predictions.getDouble(i, actual))
+                    greater++;
+            }
+            if (greater < topN)
+                expTopN++;
+        }
+
+        for (int a = 0; a < nClasses; a++) {
+            assertEquals(single.getTruePositives().getCount(a), e.getTruePositives().getCount(a), 0.0);
+            assertEquals(single.getFalsePositives().getCount(a), e.getFalsePositives().getCount(a), 0.0);
+            assertEquals(single.getFalseNegatives().getCount(a), e.getFalseNegatives().getCount(a), 0.0);
+            assertEquals(single.getTrueNegatives().getCount(a), e.getTrueNegatives().getCount(a), 0.0);
+            for (int p = 0; p < nClasses; p++) {
+                assertEquals(single.getConfusionMatrix().getCount(a, p), e.getConfusionMatrix().getCount(a, p));
+            }
+        }
+        assertEquals(single.accuracy(), e.accuracy(), 1e-12);
+        assertEquals(expTopN, e.getTopNCorrectCount());
+        assertEquals(n, e.getTopNTotalCount());
+    }
 }
@@ -1207,4 +1207,51 @@ public class ROCTest extends BaseNd4jTestWithBackends {
             }
         }
     }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testRocThresholdedCounts(Nd4jBackend backend) {
+        Nd4j.getRandom().setSeed(12345);
+        int thresholdSteps = 10;
+        int n = 200;
+        INDArray prob = Nd4j.rand(DataType.DOUBLE, n, 1);
+        //Include predictions exactly at the thresholds
+        for (int i = 0; i <= thresholdSteps; i++) {
+            prob.putScalar(i, 0, i * (1.0 / thresholdSteps));
+        }
+        INDArray label = Nd4j.getExecutioner().exec(new BernoulliDistribution(Nd4j.createUninitialized(DataType.DOUBLE, n, 1), 0.5));
+
+        for (boolean singleOutput : new boolean[]{true, false}) {
+            INDArray p = singleOutput ? prob : Nd4j.hstack(prob.rsub(1.0), prob);
+            INDArray l = singleOutput ? label : Nd4j.hstack(label.rsub(1.0), label);
+
+            ROC roc = new ROC(thresholdSteps);
+            roc.eval(l, p);
+
+            ROC merged = new ROC(thresholdSteps);
+            ROC other = new ROC(thresholdSteps);
+            merged.eval(l.get(NDArrayIndex.interval(0, 50), NDArrayIndex.all()), p.get(NDArrayIndex.interval(0, 50), NDArrayIndex.all()));
+            other.eval(l.get(NDArrayIndex.interval(50, n), NDArrayIndex.all()), p.get(NDArrayIndex.interval(50, n), NDArrayIndex.all()));
+            merged.merge(other);
+
+            for (int i = 0; i <= thresholdSteps; i++) {
+                double t = i * (1.0 / thresholdSteps);
+                long expTP = 0;
+                long expFP = 0;
+                for (int j = 0; j < n; j++) {
+                    //Predicted positive if prob >= threshold, except for threshold 1.0
+                    if (t < 1.0 && prob.getDouble(j) >= t) {
+                        if (label.getDouble(j) == 1.0)
+                            expTP++;
+                        else
+                            expFP++;
+                    }
+                }
+                assertEquals(expTP, roc.getCounts().get(t).getCountTruePositive(), String.valueOf(t));
+                assertEquals(expFP, roc.getCounts().get(t).getCountFalsePositive(), String.valueOf(t));
+            }
+            assertEquals(label.sumNumber().longValue(), roc.getCountActualPositive());
+            assertEquals(roc, merged);
+        }
+    }
 }